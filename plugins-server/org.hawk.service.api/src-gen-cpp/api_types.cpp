@@ -8101,6 +8101,11 @@ void QueryReport::__set_isCancelled(const bool val) {
   this->isCancelled = val;
 }
 
+void QueryReport::__set_isCached(const bool val) {
+  this->isCached = val;
+__isset.isCached = true;
+}
+
 uint32_t QueryReport::read(::apache::thrift::protocol::TProtocol* iprot) {
 
   apache::thrift::protocol::TInputRecursionTracker tracker(*iprot);
@@ -8149,6 +8154,14 @@ uint32_t QueryReport::read(::apache::thrift::protocol::TProtocol* iprot) {
           xfer += iprot->skip(ftype);
         }
         break;
+      case 4:
+        if (ftype == ::apache::thrift::protocol::T_BOOL) {
+          xfer += iprot->readBool(this->isCached);
+          this->__isset.isCached = true;
+        } else {
+          xfer += iprot->skip(ftype);
+        }
+        break;
       default:
         xfer += iprot->skip(ftype);
         break;
@@ -8184,6 +8197,11 @@ uint32_t QueryReport::write(::apache::thrift::protocol::TProtocol* oprot) const
   xfer += oprot->writeBool(this->isCancelled);
   xfer += oprot->writeFieldEnd();
 
+  if (this->__isset.isCached) {
+    xfer += oprot->writeFieldBegin("isCached", ::apache::thrift::protocol::T_BOOL, 4);
+    xfer += oprot->writeBool(this->isCached);
+    xfer += oprot->writeFieldEnd();
+  }
   xfer += oprot->writeFieldStop();
   xfer += oprot->writeStructEnd();
   return xfer;
@@ -8194,17 +8212,23 @@ void swap(QueryReport &a, QueryReport &b) {
   swap(a.result, b.result);
   swap(a.wallMillis, b.wallMillis);
   swap(a.isCancelled, b.isCancelled);
+  swap(a.isCached, b.isCached);
+  swap(a.__isset, b.__isset);
 }
 
 QueryReport::QueryReport(const QueryReport& other287) {
   result = other287.result;
   wallMillis = other287.wallMillis;
   isCancelled = other287.isCancelled;
+  isCached = other287.isCached;
+  __isset = other287.__isset;
 }
 QueryReport& QueryReport::operator=(const QueryReport& other288) {
   result = other288.result;
   wallMillis = other288.wallMillis;
   isCancelled = other288.isCancelled;
+  isCached = other288.isCached;
+  __isset = other288.__isset;
   return *this;
 }
 void QueryReport::printTo(std::ostream& out) const {
@@ -8213,6 +8237,7 @@ void QueryReport::printTo(std::ostream& out) const {
   out << "result=" << to_string(result);
   out << ", " << "wallMillis=" << to_string(wallMillis);
   out << ", " << "isCancelled=" << to_string(isCancelled);
+  out << ", " << "isCached="; (__isset.isCached ? (out << to_string(isCached)) : (out << "<null>"));
   out << ")";
 }
 
@@ -3296,18 +3296,26 @@ inline std::ostream& operator<<(std::ostream& out, const QueryResult& obj)
 }
 
 
+typedef struct _QueryReport__isset {
+  _QueryReport__isset() : isCached(true) {}
+  bool isCached :1;
+} _QueryReport__isset;
+
 class QueryReport {
  public:
 
   QueryReport(const QueryReport&);
   QueryReport& operator=(const QueryReport&);
-  QueryReport() : wallMillis(0), isCancelled(0) {
+  QueryReport() : wallMillis(0), isCancelled(0), isCached(false) {
   }
 
   virtual ~QueryReport() throw();
   QueryResult result;
   int64_t wallMillis;
   bool isCancelled;
+  bool isCached;
+
+  _QueryReport__isset __isset;
 
   void __set_result(const QueryResult& val);
 
@@ -3315,6 +3323,8 @@ class QueryReport {
 
   void __set_isCancelled(const bool val);
 
+  void __set_isCached(const bool val);
+
   bool operator == (const QueryReport & rhs) const
   {
     if (!(result == rhs.result))
@@ -3323,6 +3333,10 @@ class QueryReport {
       return false;
     if (!(isCancelled == rhs.isCancelled))
       return false;
+    if (__isset.isCached != rhs.__isset.isCached)
+      return false;
+    else if (__isset.isCached && !(isCached == rhs.isCached))
+      return false;
     return true;
   }
   bool operator != (const QueryReport &rhs) const {
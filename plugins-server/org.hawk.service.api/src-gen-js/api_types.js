@@ -5475,6 +5475,7 @@ QueryReport = function(args) {
   this.result = null;
   this.wallMillis = null;
   this.isCancelled = null;
+  this.isCached = false;
   if (args) {
     if (args.result !== undefined && args.result !== null) {
       this.result = new QueryResult(args.result);
@@ -5491,6 +5492,9 @@ QueryReport = function(args) {
     } else {
       throw new Thrift.TProtocolException(Thrift.TProtocolExceptionType.UNKNOWN, 'Required field isCancelled is unset!');
     }
+    if (args.isCached !== undefined && args.isCached !== null) {
+      this.isCached = args.isCached;
+    }
   }
 };
 QueryReport.prototype = {};
@@ -5529,6 +5533,13 @@ QueryReport.prototype.read = function(input) {
         input.skip(ftype);
       }
       break;
+      case 4:
+      if (ftype == Thrift.Type.BOOL) {
+        this.isCached = input.readBool().value;
+      } else {
+        input.skip(ftype);
+      }
+      break;
       default:
         input.skip(ftype);
     }
@@ -5555,6 +5566,11 @@ QueryReport.prototype.write = function(output) {
     output.writeBool(this.isCancelled);
     output.writeFieldEnd();
   }
+  if (this.isCached !== null && this.isCached !== undefined) {
+    output.writeFieldBegin('isCached', Thrift.Type.BOOL, 4);
+    output.writeBool(this.isCached);
+    output.writeFieldEnd();
+  }
   output.writeFieldStop();
   output.writeStructEnd();
   return;
@@ -41,6 +41,7 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
   private static final org.apache.thrift.protocol.TField RESULT_FIELD_DESC = new org.apache.thrift.protocol.TField("result", org.apache.thrift.protocol.TType.STRUCT, (short)1);
   private static final org.apache.thrift.protocol.TField WALL_MILLIS_FIELD_DESC = new org.apache.thrift.protocol.TField("wallMillis", org.apache.thrift.protocol.TType.I64, (short)2);
   private static final org.apache.thrift.protocol.TField IS_CANCELLED_FIELD_DESC = new org.apache.thrift.protocol.TField("isCancelled", org.apache.thrift.protocol.TType.BOOL, (short)3);
+  private static final org.apache.thrift.protocol.TField IS_CACHED_FIELD_DESC = new org.apache.thrift.protocol.TField("isCached", org.apache.thrift.protocol.TType.BOOL, (short)4);
 
   private static final Map<Class<? extends IScheme>, SchemeFactory> schemes = new HashMap<Class<? extends IScheme>, SchemeFactory>();
   static {
@@ -51,12 +52,14 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
   public QueryResult result; // required
   public long wallMillis; // required
   public boolean isCancelled; // required
+  public boolean isCached; // optional
 
   /** The set of fields this struct contains, along with convenience methods for finding and manipulating them. */
   public enum _Fields implements org.apache.thrift.TFieldIdEnum {
     RESULT((short)1, "result"),
     WALL_MILLIS((short)2, "wallMillis"),
-    IS_CANCELLED((short)3, "isCancelled");
+    IS_CANCELLED((short)3, "isCancelled"),
+    IS_CACHED((short)4, "isCached");
 
     private static final Map<String, _Fields> byName = new HashMap<String, _Fields>();
 
@@ -77,6 +80,8 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
           return WALL_MILLIS;
         case 3: // IS_CANCELLED
           return IS_CANCELLED;
+        case 4: // IS_CACHED
+          return IS_CACHED;
         default:
           return null;
       }
@@ -119,7 +124,9 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
   // isset id assignments
   private static final int __WALLMILLIS_ISSET_ID = 0;
   private static final int __ISCANCELLED_ISSET_ID = 1;
+  private static final int __ISCACHED_ISSET_ID = 2;
   private byte __isset_bitfield = 0;
+  private static final _Fields optionals[] = {_Fields.IS_CACHED};
   public static final Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> metaDataMap;
   static {
     Map<_Fields, org.apache.thrift.meta_data.FieldMetaData> tmpMap = new EnumMap<_Fields, org.apache.thrift.meta_data.FieldMetaData>(_Fields.class);
@@ -129,11 +136,15 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.I64)));
     tmpMap.put(_Fields.IS_CANCELLED, new org.apache.thrift.meta_data.FieldMetaData("isCancelled", org.apache.thrift.TFieldRequirementType.REQUIRED, 
         new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
+    tmpMap.put(_Fields.IS_CACHED, new org.apache.thrift.meta_data.FieldMetaData("isCached", org.apache.thrift.TFieldRequirementType.OPTIONAL, 
+        new org.apache.thrift.meta_data.FieldValueMetaData(org.apache.thrift.protocol.TType.BOOL)));
     metaDataMap = Collections.unmodifiableMap(tmpMap);
     org.apache.thrift.meta_data.FieldMetaData.addStructMetaDataMap(QueryReport.class, metaDataMap);
   }
 
   public QueryReport() {
+    this.isCached = false;
+
   }
 
   public QueryReport(
@@ -159,6 +170,7 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     }
     this.wallMillis = other.wallMillis;
     this.isCancelled = other.isCancelled;
+    this.isCached = other.isCached;
   }
 
   public QueryReport deepCopy() {
@@ -172,6 +184,8 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     this.wallMillis = 0;
     setIsCancelledIsSet(false);
     this.isCancelled = false;
+    this.isCached = false;
+
   }
 
   public QueryResult getResult() {
@@ -244,6 +258,29 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __ISCANCELLED_ISSET_ID, value);
   }
 
+  public boolean isIsCached() {
+    return this.isCached;
+  }
+
+  public QueryReport setIsCached(boolean isCached) {
+    this.isCached = isCached;
+    setIsCachedIsSet(true);
+    return this;
+  }
+
+  public void unsetIsCached() {
+    __isset_bitfield = EncodingUtils.clearBit(__isset_bitfield, __ISCACHED_ISSET_ID);
+  }
+
+  /** Returns true if field isCached is set (has been assigned a value) and false otherwise */
+  public boolean isSetIsCached() {
+    return EncodingUtils.testBit(__isset_bitfield, __ISCACHED_ISSET_ID);
+  }
+
+  public void setIsCachedIsSet(boolean value) {
+    __isset_bitfield = EncodingUtils.setBit(__isset_bitfield, __ISCACHED_ISSET_ID, value);
+  }
+
   public void setFieldValue(_Fields field, Object value) {
     switch (field) {
     case RESULT:
@@ -270,6 +307,14 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
       }
       break;
 
+    case IS_CACHED:
+      if (value == null) {
+        unsetIsCached();
+      } else {
+        setIsCached((Boolean)value);
+      }
+      break;
+
     }
   }
 
@@ -284,6 +329,9 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     case IS_CANCELLED:
       return isIsCancelled();
 
+    case IS_CACHED:
+      return isIsCached();
+
     }
     throw new IllegalStateException();
   }
@@ -301,6 +349,8 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
       return isSetWallMillis();
     case IS_CANCELLED:
       return isSetIsCancelled();
+    case IS_CACHED:
+      return isSetIsCached();
     }
     throw new IllegalStateException();
   }
@@ -345,6 +395,15 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
         return false;
     }
 
+    boolean this_present_isCached = true && this.isSetIsCached();
+    boolean that_present_isCached = true && that.isSetIsCached();
+    if (this_present_isCached || that_present_isCached) {
+      if (!(this_present_isCached && that_present_isCached))
+        return false;
+      if (this.isCached != that.isCached)
+        return false;
+    }
+
     return true;
   }
 
@@ -367,6 +426,11 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     if (present_isCancelled)
       list.add(isCancelled);
 
+    boolean present_isCached = true && (isSetIsCached());
+    list.add(present_isCached);
+    if (present_isCached)
+      list.add(isCached);
+
     return list.hashCode();
   }
 
@@ -408,6 +472,16 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
         return lastComparison;
       }
     }
+    lastComparison = Boolean.valueOf(isSetIsCached()).compareTo(other.isSetIsCached());
+    if (lastComparison != 0) {
+      return lastComparison;
+    }
+    if (isSetIsCached()) {
+      lastComparison = org.apache.thrift.TBaseHelper.compareTo(this.isCached, other.isCached);
+      if (lastComparison != 0) {
+        return lastComparison;
+      }
+    }
     return 0;
   }
 
@@ -443,6 +517,12 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
     sb.append("isCancelled:");
     sb.append(this.isCancelled);
     first = false;
+    if (isSetIsCached()) {
+      if (!first) sb.append(", ");
+      sb.append("isCached:");
+      sb.append(this.isCached);
+      first = false;
+    }
     sb.append(")");
     return sb.toString();
   }
@@ -518,6 +598,14 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
               org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
             }
             break;
+          case 4: // IS_CACHED
+            if (schemeField.type == org.apache.thrift.protocol.TType.BOOL) {
+              struct.isCached = iprot.readBool();
+              struct.setIsCachedIsSet(true);
+            } else { 
+              org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
+            }
+            break;
           default:
             org.apache.thrift.protocol.TProtocolUtil.skip(iprot, schemeField.type);
         }
@@ -550,6 +638,11 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
       oprot.writeFieldBegin(IS_CANCELLED_FIELD_DESC);
       oprot.writeBool(struct.isCancelled);
       oprot.writeFieldEnd();
+      if (struct.isSetIsCached()) {
+        oprot.writeFieldBegin(IS_CACHED_FIELD_DESC);
+        oprot.writeBool(struct.isCached);
+        oprot.writeFieldEnd();
+      }
       oprot.writeFieldStop();
       oprot.writeStructEnd();
     }
@@ -570,6 +663,14 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
       struct.result.write(oprot);
       oprot.writeI64(struct.wallMillis);
       oprot.writeBool(struct.isCancelled);
+      BitSet optionals = new BitSet();
+      if (struct.isSetIsCached()) {
+        optionals.set(0);
+      }
+      oprot.writeBitSet(optionals, 1);
+      if (struct.isSetIsCached()) {
+        oprot.writeBool(struct.isCached);
+      }
     }
 
     @Override
@@ -582,6 +683,11 @@ public class QueryReport implements org.apache.thrift.TBase<QueryReport, QueryRe
       struct.setWallMillisIsSet(true);
       struct.isCancelled = iprot.readBool();
       struct.setIsCancelledIsSet(true);
+      BitSet incoming = iprot.readBitSet(1);
+      if (incoming.get(0)) {
+        struct.isCached = iprot.readBool();
+        struct.setIsCachedIsSet(true);
+      }
     }
   }
 
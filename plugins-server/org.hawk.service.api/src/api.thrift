@@ -369,6 +369,7 @@ struct QueryReport {
 	 /* Result of the query. */ 1: required QueryResult result,
 	 /* Wall time on the server in milliseconds. */ 2: required i64 wallMillis,
 	 /* Was the query cancelled?. */ 3: required bool isCancelled,
+	 /* Was the result served from the server-side query cache?. */ 4: optional bool isCached = false,
 }
 
 /* The majority of service operations provided by the server
@@ -27,10 +27,14 @@ import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
 import org.apache.thrift.TServiceClient;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.protocol.TCompactProtocol;
@@ -38,6 +42,7 @@ import org.apache.thrift.protocol.TJSONProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.protocol.TTupleProtocol;
 import org.apache.thrift.transport.THttpClient;
+import org.apache.thrift.transport.TIOStreamTransport;
 import org.apache.thrift.transport.TSocket;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
@@ -156,6 +161,34 @@ public class APIUtils {
 		}
 	}
 
+	public static ModelElementPageStream openModelStream(String url, ThriftProtocol thriftProtocol, String username, String password) throws IOException {
+		final UsernamePasswordCredentials credentials = (username != null && password != null) ? new UsernamePasswordCredentials(username, password) : null;
+		return openModelStream(url, thriftProtocol, credentials, ModelElementPageStream.DEFAULT_POSITION_WINDOW);
+	}
+
+	/**
+	 * Opens a stream of model element pages from the model streaming endpoint
+	 * of a Hawk server (<code>/thrift/hawk/stream/model</code>). The URL must
+	 * include the query parameters, with a <code>protocol</code> that matches
+	 * <code>thriftProtocol</code>. The stream should be closed once done.
+	 */
+	@SuppressWarnings({ "deprecation", "restriction" })
+	public static ModelElementPageStream openModelStream(String url, ThriftProtocol thriftProtocol, final Credentials credentials, int positionWindow) throws IOException {
+		final DefaultHttpClient httpClient = APIUtils.createGZipAwareHttpClient();
+		if (credentials != null) {
+			httpClient.getCredentialsProvider().setCredentials(new AuthScope(null, -1), credentials);
+		}
+
+		final HttpResponse response = httpClient.execute(new HttpGet(url));
+		if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+			EntityUtils.consume(response.getEntity());
+			throw new IOException("Could not open the model stream at " + url + ": " + response.getStatusLine());
+		}
+
+		final TTransport transport = new TIOStreamTransport(response.getEntity().getContent());
+		return new ModelElementPageStream(thriftProtocol.getProtocolFactory().getProtocol(transport), positionWindow);
+	}
+
 	public static File convertJavaFileToThriftFile(java.io.File rawFile) throws FileNotFoundException, IOException {
 		try (FileInputStream fIS = new FileInputStream(rawFile)) {
 			FileChannel chan = fIS.getChannel();
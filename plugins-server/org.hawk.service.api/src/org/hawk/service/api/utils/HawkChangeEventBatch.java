@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.api.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.apache.thrift.protocol.TType;
+import org.hawk.service.api.HawkAttributeRemovalEvent;
+import org.hawk.service.api.HawkAttributeUpdateEvent;
+import org.hawk.service.api.HawkChangeEvent;
+
+/**
+ * Reads and writes the {@link HawkChangeEvent}s in the Artemis messages sent
+ * by the Hawk server. A message normally contains a single event, but the
+ * server can be configured to pack several events into one message: in that
+ * case, the message has the {@link #BATCH_SIZE_PROPERTY} property, and its
+ * body is a Thrift list of events.
+ */
+public final class HawkChangeEventBatch {
+
+	/**
+	 * Integer message property with the number of events in a batched message.
+	 */
+	public static final SimpleString BATCH_SIZE_PROPERTY = new SimpleString("hawkBatchSize");
+
+	private HawkChangeEventBatch() {
+		// use the static methods
+	}
+
+	/**
+	 * Writes a batch of events to the body of the message, and marks it as a
+	 * batched message.
+	 */
+	public static void write(ClientMessage message, TProtocolFactory protocolFactory, List<HawkChangeEvent> events) throws TException {
+		final TProtocol protocol = protocolFactory.getProtocol(new ActiveMQBufferTransport(message.getBodyBuffer()));
+		protocol.writeListBegin(new TList(TType.STRUCT, events.size()));
+		for (HawkChangeEvent event : events) {
+			event.write(protocol);
+		}
+		protocol.writeListEnd();
+		message.putIntProperty(BATCH_SIZE_PROPERTY, events.size());
+	}
+
+	/**
+	 * Reads all the events in a message, whether it is batched or not.
+	 */
+	public static List<HawkChangeEvent> read(ClientMessage message, TProtocolFactory protocolFactory) throws TException {
+		final TProtocol protocol = protocolFactory.getProtocol(new ActiveMQBufferTransport(message.getBodyBuffer()));
+		if (!message.containsProperty(BATCH_SIZE_PROPERTY)) {
+			final HawkChangeEvent event = new HawkChangeEvent();
+			event.read(protocol);
+			return Collections.singletonList(event);
+		}
+
+		final TList tList = protocol.readListBegin();
+		final List<HawkChangeEvent> events = new ArrayList<>(tList.size);
+		for (int i = 0; i < tList.size; i++) {
+			final HawkChangeEvent event = new HawkChangeEvent();
+			event.read(protocol);
+			events.add(event);
+		}
+		protocol.readListEnd();
+		return events;
+	}
+
+	/**
+	 * Returns the events in the same order, dropping the attribute updates and
+	 * removals that are superseded by a later update or removal of the same
+	 * attribute in the same node.
+	 */
+	public static List<HawkChangeEvent> coalesceAttributeEvents(List<HawkChangeEvent> events) {
+		final List<HawkChangeEvent> kept = new ArrayList<>(events);
+		final Map<String, Integer> lastAttributeEvent = new HashMap<>();
+		for (int i = 0; i < kept.size(); i++) {
+			final HawkChangeEvent change = kept.get(i);
+
+			String key = null;
+			if (change.isSetModelElementAttributeUpdate()) {
+				final HawkAttributeUpdateEvent ev = change.getModelElementAttributeUpdate();
+				key = ev.getId() + "/" + ev.getAttribute();
+			} else if (change.isSetModelElementAttributeRemoval()) {
+				final HawkAttributeRemovalEvent ev = change.getModelElementAttributeRemoval();
+				key = ev.getId() + "/" + ev.getAttribute();
+			}
+			if (key != null) {
+				final Integer previous = lastAttributeEvent.put(key, i);
+				if (previous != null) {
+					kept.set(previous, null);
+				}
+			}
+		}
+
+		final List<HawkChangeEvent> coalesced = new ArrayList<>(kept.size());
+		for (HawkChangeEvent change : kept) {
+			if (change != null) {
+				coalesced.add(change);
+			}
+		}
+		return coalesced;
+	}
+
+}
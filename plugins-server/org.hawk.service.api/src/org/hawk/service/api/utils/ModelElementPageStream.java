@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.api.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TList;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TType;
+import org.hawk.service.api.MixedReference;
+import org.hawk.service.api.ModelElement;
+import org.hawk.service.api.ReferenceSlot;
+
+/**
+ * Reads and writes a stream of pages of {@link ModelElement}s, as produced by
+ * the model streaming endpoint of the Hawk server. Each page is written as a
+ * Thrift list of {@link ModelElement}s, and the stream ends with an empty page.
+ *
+ * Elements in a stream are flat (they do not use containment slots) and
+ * always include their node IDs. References to elements which were sent
+ * recently are position-based, with positions counted from the start of the
+ * stream: a client only needs to keep the recent elements to resolve them, and
+ * can resolve any other references through the node IDs. Readers keep the
+ * last {@link #DEFAULT_POSITION_WINDOW} elements by default, which is the
+ * same number of elements the server will reference by position: see
+ * {@link #getReferencedIds(ReferenceSlot)}.
+ */
+public class ModelElementPageStream implements Closeable {
+
+	public static final int DEFAULT_POSITION_WINDOW = 100_000;
+
+	private final TProtocol protocol;
+	private final Map<Integer, ModelElement> recentElements;
+	private boolean finished = false;
+	private int nextPosition = 0;
+
+	public ModelElementPageStream(TProtocol protocol) {
+		this(protocol, DEFAULT_POSITION_WINDOW);
+	}
+
+	/**
+	 * Creates a new reader.
+	 *
+	 * @param protocol
+	 *            Protocol to read the pages from.
+	 * @param positionWindow
+	 *            Number of the most recently read elements to keep, so
+	 *            position-based references to them can be resolved. It should
+	 *            not be smaller than the one used by the server.
+	 */
+	public ModelElementPageStream(TProtocol protocol, final int positionWindow) {
+		this.protocol = protocol;
+		this.recentElements = new LinkedHashMap<Integer, ModelElement>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ModelElement> eldest) {
+				return size() > positionWindow;
+			}
+		};
+	}
+
+	/**
+	 * Writes a page of elements to the protocol, and flushes it.
+	 */
+	public static void writePage(TProtocol protocol, List<ModelElement> page) throws TException {
+		protocol.writeListBegin(new TList(TType.STRUCT, page.size()));
+		for (ModelElement me : page) {
+			me.write(protocol);
+		}
+		protocol.writeListEnd();
+		protocol.getTransport().flush();
+	}
+
+	/**
+	 * Writes the empty page that marks the end of the stream, and flushes it.
+	 */
+	public static void writeEnd(TProtocol protocol) throws TException {
+		writePage(protocol, new ArrayList<ModelElement>(0));
+	}
+
+	/**
+	 * Reads the next page of elements from the stream.
+	 *
+	 * @return Non-empty page of elements, or <code>null</code> if the stream
+	 *         has ended.
+	 */
+	public List<ModelElement> nextPage() throws TException {
+		if (finished) {
+			return null;
+		}
+
+		final TList tList = protocol.readListBegin();
+		final List<ModelElement> page = new ArrayList<>(tList.size);
+		for (int i = 0; i < tList.size; i++) {
+			final ModelElement me = new ModelElement();
+			me.read(protocol);
+			page.add(me);
+		}
+		protocol.readListEnd();
+
+		if (page.isEmpty()) {
+			finished = true;
+			return null;
+		}
+		for (ModelElement me : page) {
+			recentElements.put(nextPosition++, me);
+		}
+		return page;
+	}
+
+	/**
+	 * Returns the element read at a certain position of the stream, if it is
+	 * still among the most recently read elements.
+	 *
+	 * @return Model element at that position, or <code>null</code> if it is
+	 *         not available anymore.
+	 */
+	public ModelElement getElement(int position) {
+		return recentElements.get(position);
+	}
+
+	/**
+	 * Returns the node IDs of the elements referenced from a slot of an
+	 * element read from this stream, resolving any position-based references
+	 * against the most recently read elements.
+	 *
+	 * @throws IllegalStateException
+	 *             A position-based reference points to an element which is
+	 *             no longer available: the position window of this reader is
+	 *             smaller than the one used by the server.
+	 */
+	public List<String> getReferencedIds(ReferenceSlot slot) {
+		final List<String> ids = new ArrayList<>();
+		if (slot.isSetId()) {
+			ids.add(slot.getId());
+		}
+		if (slot.isSetIds()) {
+			ids.addAll(slot.getIds());
+		}
+		if (slot.isSetPosition()) {
+			ids.add(getIdAt(slot.getPosition()));
+		}
+		if (slot.isSetPositions()) {
+			for (int position : slot.getPositions()) {
+				ids.add(getIdAt(position));
+			}
+		}
+		if (slot.isSetMixed()) {
+			for (MixedReference ref : slot.getMixed()) {
+				ids.add(ref.isSetId() ? ref.getId() : getIdAt(ref.getPosition()));
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Returns the position in the stream of the first element of the next
+	 * page.
+	 */
+	public int getNextPosition() {
+		return nextPosition;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Closes the underlying transport.
+	 */
+	@Override
+	public void close() {
+		protocol.getTransport().close();
+	}
+
+	private String getIdAt(int position) {
+		final ModelElement me = recentElements.get(position);
+		if (me == null) {
+			throw new IllegalStateException(
+				"Element at position " + position + " is no longer available: the position window is too small");
+		}
+		return me.getId();
+	}
+
+}
@@ -18,18 +18,20 @@ package org.hawk.service.cli;
 
 import java.io.Console;
 import java.net.ConnectException;
+import java.net.URI;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 
 import org.apache.activemq.artemis.api.core.ActiveMQException;
 import org.apache.activemq.artemis.api.core.client.ClientMessage;
 import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.transport.TTransport;
 import org.eclipse.osgi.framework.console.CommandInterpreter;
 import org.eclipse.osgi.framework.console.CommandProvider;
@@ -39,7 +41,6 @@ import org.hawk.service.api.Credentials;
 import org.hawk.service.api.DerivedAttributeSpec;
 import org.hawk.service.api.File;
 import org.hawk.service.api.Hawk;
-import org.hawk.service.api.HawkChangeEvent;
 import org.hawk.service.api.HawkInstance;
 import org.hawk.service.api.HawkQueryOptions;
 import org.hawk.service.api.HawkState;
@@ -50,7 +51,8 @@ import org.hawk.service.api.Repository;
 import org.hawk.service.api.Subscription;
 import org.hawk.service.api.SubscriptionDurability;
 import org.hawk.service.api.utils.APIUtils;
-import org.hawk.service.api.utils.ActiveMQBufferTransport;
+import org.hawk.service.api.utils.HawkChangeEventBatch;
+import org.hawk.service.api.utils.ModelElementPageStream;
 import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
 import org.hawk.service.artemis.consumer.Consumer;
 import org.slf4j.Logger;
@@ -64,6 +66,7 @@ public class HawkCommandProvider implements CommandProvider {
 	private static final Logger LOGGER = LoggerFactory.getLogger(HawkCommandProvider.class);
 
 	private Hawk.Client client;
+	private String clientURL;
 	private ThriftProtocol clientProtocol;
 	private String currentInstance;
 	private String defaultNamespaces;
@@ -103,6 +106,7 @@ public class HawkCommandProvider implements CommandProvider {
 
 		client = APIUtils.connectTo(Hawk.Client.class, url, clientProtocol, username, password);
 		Activator.getInstance().addCloseable(client.getInputProtocol().getTransport());
+		clientURL = url;
 		currentInstance = null;
 
 		return "Connected to " + url;
@@ -115,6 +119,7 @@ public class HawkCommandProvider implements CommandProvider {
 			transport.close();
 
 			client = null;
+			clientURL = null;
 			currentInstance = null;
 			username = null;
 			password = null;
@@ -377,6 +382,48 @@ public class HawkCommandProvider implements CommandProvider {
 		return listModelElements(intp, false);
 	}
 
+	public Object _hawkStreamModel(CommandInterpreter intp) throws Exception {
+		checkInstanceSelected();
+
+		final String repo = requiredArgument(intp, "repo");
+		final List<String> patterns = readRemainingArguments(intp);
+		if (patterns.isEmpty()) {
+			patterns.add("*");
+		}
+
+		// The streaming servlet is next to the Thrift endpoints (e.g. /thrift/hawk/stream/model)
+		final URI connectedURI = new URI(clientURL);
+		if (connectedURI.getScheme() == null || !connectedURI.getScheme().startsWith("http")) {
+			throw new IllegalStateException("Model streaming is only available over HTTP(S)");
+		}
+		final StringBuffer sbuf = new StringBuffer(connectedURI.resolve("stream/model").toString());
+		sbuf.append("?instance=").append(URLEncoder.encode(currentInstance, "UTF-8"));
+		sbuf.append("&protocol=").append(clientProtocol.name().toLowerCase(Locale.ROOT));
+		sbuf.append("&repository=").append(URLEncoder.encode(repo, "UTF-8"));
+		for (String pattern : patterns) {
+			sbuf.append("&file=").append(URLEncoder.encode(pattern, "UTF-8"));
+		}
+
+		int nElements = 0;
+		try (ModelElementPageStream stream = APIUtils.openModelStream(sbuf.toString(), clientProtocol, username, password)) {
+			for (List<ModelElement> page = stream.nextPage(); page != null; page = stream.nextPage()) {
+				for (ModelElement me : page) {
+					// Positions are only valid within the stream: show the node IDs instead
+					if (me.isSetReferences()) {
+						final List<ReferenceSlot> resolved = new ArrayList<>();
+						for (ReferenceSlot s : me.references) {
+							resolved.add(new ReferenceSlot(s.name).setIds(stream.getReferencedIds(s)));
+						}
+						me.setReferences(resolved);
+					}
+				}
+				intp.println(formatModelElements(page, ""));
+				nElements += page.size();
+			}
+		}
+		return String.format("Received %d model elements", nElements);
+	}
+
 	public Object _hawkResolveProxies(CommandInterpreter intp) throws Exception {
 		checkInstanceSelected();
 
@@ -504,10 +551,8 @@ public class HawkCommandProvider implements CommandProvider {
 			@Override
 			public void onMessage(ClientMessage message) {
 				try {
-					final TProtocol proto = clientProtocol.getProtocolFactory().getProtocol(new ActiveMQBufferTransport(message.getBodyBuffer()));
-					final HawkChangeEvent change = new HawkChangeEvent();
 					try {
-						change.read(proto);
+						HawkChangeEventBatch.read(message, clientProtocol.getProtocolFactory());
 					} catch (TException e) {
 						LOGGER.error(e.getMessage(), e);
 					}
@@ -703,6 +748,7 @@ public class HawkCommandProvider implements CommandProvider {
 		sbuf.append("hawkSetDefaultNamespaces <namespaces...> - changes the default namespaces used to deambiguate type names\n\t");
 		sbuf.append("hawkGetModel <repo> [filepatterns...] - returns all the model elements of the specified files within the repo\n\t");
 		sbuf.append("hawkGetRoots <repo> [filepatterns...] - returns only the root model elements of the specified files within the repo\n\t");
+		sbuf.append("hawkStreamModel <repo> [filepatterns...] - prints all the model elements of the specified files within the repo, one page at a time (HTTP only)\n\t");
 		sbuf.append("hawkListQueryLanguages - lists all available query languages\n\t");
 		sbuf.append("hawkQuery <query> <language> [repo] [files] - queries the index\n\t");
 		sbuf.append("hawkResolveProxies <ids...> - retrieves model elements by ID\n");
@@ -42,7 +42,6 @@ import org.apache.activemq.artemis.api.core.client.ClientMessage;
 import org.apache.activemq.artemis.api.core.client.MessageHandler;
 import org.apache.http.auth.Credentials;
 import org.apache.thrift.TException;
-import org.apache.thrift.protocol.TProtocol;
 import org.apache.thrift.protocol.TProtocolFactory;
 import org.apache.thrift.transport.TTransportException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -102,7 +101,7 @@ import org.hawk.service.api.Subscription;
 import org.hawk.service.api.SubscriptionDurability;
 import org.hawk.service.api.UnknownQueryLanguage;
 import org.hawk.service.api.utils.APIUtils;
-import org.hawk.service.api.utils.ActiveMQBufferTransport;
+import org.hawk.service.api.utils.HawkChangeEventBatch;
 import org.hawk.service.artemis.consumer.Consumer;
 import org.hawk.service.emf.HawkModelDescriptor;
 import org.hawk.service.emf.HawkModelDescriptor.LoadingMode;
@@ -156,46 +155,46 @@ public class HawkResourceImpl extends ResourceImpl implements HawkResource {
 		@Override
 		public void onMessage(final ClientMessage message) {
 			try {
-				final TProtocol proto = protocolFactory.getProtocol(new ActiveMQBufferTransport(message.getBodyBuffer()));
-				final HawkChangeEvent change = new HawkChangeEvent();
 				try {
-					change.read(proto);
+					final List<HawkChangeEvent> changes = HawkChangeEventBatch.read(message, protocolFactory);
 
 					// Artemis uses a pool of threads to receive messages: we need to serialize
 					// the accesses to avoid race conditions between 'model element added' and
 					// 'attribute changed', for instance.
 					synchronized (nodeIdToEObjectMap) {
-						LOGGER.debug("Received message from Artemis at {}: {}", message.getAddress(), change);
+						for (HawkChangeEvent change : changes) {
+							LOGGER.debug("Received message from Artemis at {}: {}", message.getAddress(), change);
 
-						if (change.isSetModelElementAttributeUpdate()) {
-							handle(change.getModelElementAttributeUpdate());
-						}
-						else if (change.isSetModelElementAttributeRemoval()) {
-							handle(change.getModelElementAttributeRemoval());
-						}
-						else if (change.isSetModelElementAddition()) {
-							handle(change.getModelElementAddition());
-						}
-						else if (change.isSetModelElementRemoval()) {
-							handle(change.getModelElementRemoval());
-						}
-						else if (change.isSetReferenceAddition()) {
-							handle(change.getReferenceAddition());
-						}
-						else if (change.isSetReferenceRemoval()) {
-							handle(change.getReferenceRemoval());
-						}
-						else if (change.isSetSyncStart()) {
-							handle(change.getSyncStart());
-						}
-						else if (change.isSetSyncEnd()) {
-							handle(change.getSyncEnd());
-						}
-						else if (change.isSetFileAddition()) {
-							handle(change.getFileAddition());
-						}
-						else if (change.isSetFileRemoval()) {
-							handle(change.getFileRemoval());
+							if (change.isSetModelElementAttributeUpdate()) {
+								handle(change.getModelElementAttributeUpdate());
+							}
+							else if (change.isSetModelElementAttributeRemoval()) {
+								handle(change.getModelElementAttributeRemoval());
+							}
+							else if (change.isSetModelElementAddition()) {
+								handle(change.getModelElementAddition());
+							}
+							else if (change.isSetModelElementRemoval()) {
+								handle(change.getModelElementRemoval());
+							}
+							else if (change.isSetReferenceAddition()) {
+								handle(change.getReferenceAddition());
+							}
+							else if (change.isSetReferenceRemoval()) {
+								handle(change.getReferenceRemoval());
+							}
+							else if (change.isSetSyncStart()) {
+								handle(change.getSyncStart());
+							}
+							else if (change.isSetSyncEnd()) {
+								handle(change.getSyncEnd());
+							}
+							else if (change.isSetFileAddition()) {
+								handle(change.getFileAddition());
+							}
+							else if (change.isSetFileRemoval()) {
+								handle(change.getFileRemoval());
+							}
 						}
 					}
 				} catch (final Throwable e) {
@@ -45,6 +45,7 @@ import org.hawk.core.model.IHawkClass;
 import org.hawk.core.model.IHawkObject;
 import org.hawk.core.model.IHawkPackage;
 import org.hawk.core.runtime.CompositeGraphChangeListener;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.service.api.CommitItem;
 import org.hawk.service.api.CommitItemChangeType;
 import org.hawk.service.api.HawkAttributeRemovalEvent;
@@ -60,6 +61,7 @@ import org.hawk.service.api.HawkSynchronizationEndEvent;
 import org.hawk.service.api.HawkSynchronizationStartEvent;
 import org.hawk.service.api.SubscriptionDurability;
 import org.hawk.service.api.utils.ActiveMQBufferTransport;
+import org.hawk.service.api.utils.HawkChangeEventBatch;
 import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
 import org.hawk.service.servlet.utils.HawkModelElementEncoder;
 import org.slf4j.Logger;
@@ -74,11 +76,39 @@ import org.slf4j.LoggerFactory;
  * address, so "duplicate" listeners that would result in duplicate events being
  * sent to the destination address are implicitly avoided by the
  * {@link CompositeGraphChangeListener} in most indexers.
+ *
+ * By default, each event is sent as its own message. If the
+ * {@link #BATCH_SIZE_PROPERTY} system property is set to a value above 1, events
+ * are packed into messages with up to that many events, which are read through
+ * {@link HawkChangeEventBatch}. Within a synchronisation, a batch may span
+ * several graph changes until the {@link #BATCH_WINDOW_PROPERTY} elapses. In
+ * this mode, repeated updates or removals of the same attribute of a node
+ * within a graph change are coalesced into the last one.
  */
 public class ArtemisProducerGraphChangeListener implements IGraphChangeListener {
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(ArtemisProducerGraphChangeListener.class);
 
+	/**
+	 * Name of the system property with the maximum number of events per message.
+	 * Batching is disabled for values of 1 or less: note that clients must use
+	 * {@link HawkChangeEventBatch} to be able to read batched messages.
+	 */
+	public static final String BATCH_SIZE_PROPERTY = "hawk.server.events.batchSize";
+	public static final long DEFAULT_BATCH_SIZE = 1;
+
+	/**
+	 * Name of the system property with the maximum time in milliseconds that
+	 * events from completed graph changes may be held back during a
+	 * synchronisation, while their batch fills up.
+	 */
+	public static final String BATCH_WINDOW_PROPERTY = "hawk.server.events.batchWindowMillis";
+	public static final long DEFAULT_BATCH_WINDOW_MILLIS = 100;
+
+	private static final int BATCH_SIZE = (int) Math.min(Integer.MAX_VALUE,
+			SystemProperties.getLong(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE, 0));
+	private static final long BATCH_WINDOW_NANOS = SystemProperties.getLong(BATCH_WINDOW_PROPERTY, DEFAULT_BATCH_WINDOW_MILLIS, 0) * 1_000_000L;
+
 	private final ServerLocator locator;
 	private final ClientSessionFactory sessionFactory;
 	private final boolean messagesAreDurable;
@@ -105,6 +135,10 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 	 */
 	private final List<HawkChangeEventFactory> collectedEventFactories = new ArrayList<>();
 
+	// Events waiting to be sent in the next batch, and when the batch was started
+	private final List<HawkChangeEvent> pendingBatch = new ArrayList<>();
+	private long pendingBatchStart;
+
 	// True if the current session was opened from synchronizeStart
 	private boolean isSessionOpenedFromSync = false;
 
@@ -163,7 +197,8 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 		final HawkSynchronizationStartEvent ev = new HawkSynchronizationStartEvent(System.nanoTime());
 		final HawkChangeEvent change = new HawkChangeEvent();
 		change.setSyncStart(ev);
-		sendEvent(change);
+		queueEvent(change);
+		flushBatch();
 		try {
 			session.commit();
 		} catch (ActiveMQException e) {
@@ -177,7 +212,8 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 			final HawkSynchronizationEndEvent ev = new HawkSynchronizationEndEvent(System.nanoTime());
 			final HawkChangeEvent change = new HawkChangeEvent();
 			change.setSyncEnd(ev);
-			sendEvent(change);
+			queueEvent(change);
+			flushBatch();
 			session.commit();
 		} catch (ActiveMQException e) {
 			LOGGER.error("Could not commit the transaction", e);
@@ -195,8 +231,21 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 	@Override
 	public void changeSuccess() {
 		try {
-			for (HawkChangeEventFactory eventFactory : collectedEventFactories) {
-				sendEvent(eventFactory.create());
+			if (BATCH_SIZE > 1) {
+				final List<HawkChangeEvent> changes = new ArrayList<>(collectedEventFactories.size());
+				for (HawkChangeEventFactory eventFactory : collectedEventFactories) {
+					changes.add(eventFactory.create());
+				}
+				for (HawkChangeEvent change : HawkChangeEventBatch.coalesceAttributeEvents(changes)) {
+					queueEvent(change);
+				}
+				if (!isSessionOpenedFromSync || System.nanoTime() - pendingBatchStart >= BATCH_WINDOW_NANOS) {
+					flushBatch();
+				}
+			} else {
+				for (HawkChangeEventFactory eventFactory : collectedEventFactories) {
+					sendEvent(eventFactory.create());
+				}
 			}
 			session.commit();
 		} catch (ActiveMQException e) {
@@ -441,6 +490,39 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 		}
 	}
 
+	private void queueEvent(HawkChangeEvent change) {
+		if (BATCH_SIZE <= 1) {
+			sendEvent(change);
+			return;
+		}
+
+		if (pendingBatch.isEmpty()) {
+			pendingBatchStart = System.nanoTime();
+		}
+		pendingBatch.add(change);
+		if (pendingBatch.size() >= BATCH_SIZE) {
+			flushBatch();
+		}
+	}
+
+	private void flushBatch() {
+		if (pendingBatch.isEmpty()) {
+			return;
+		}
+
+		try {
+			final ClientMessage msg = session.createMessage(Message.BYTES_TYPE, messagesAreDurable);
+			HawkChangeEventBatch.write(msg, protocolFactory, pendingBatch);
+			producer.send(msg);
+		} catch (TException ex) {
+			LOGGER.error("Serialization error", ex);
+		} catch (ActiveMQException ex) {
+			LOGGER.error("Error while sending event batch", ex);
+		} finally {
+			pendingBatch.clear();
+		}
+	}
+
 	private void sendEvent(HawkChangeEvent change) {
 		try {
 			final ClientMessage msg = session.createMessage(Message.BYTES_TYPE,
@@ -482,6 +564,7 @@ public class ArtemisProducerGraphChangeListener implements IGraphChangeListener
 		} finally {
 			session = null;
 			isSessionOpenedFromSync = false;
+			pendingBatch.clear();
 		}
 	}
 
@@ -24,7 +24,6 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
@@ -72,11 +71,10 @@ import org.hawk.core.util.GraphChangeAdapter;
 import org.hawk.core.util.IndexedAttributeParameters;
 import org.hawk.graph.FileNode;
 import org.hawk.graph.GraphWrapper;
-import org.hawk.graph.MetamodelNode;
 import org.hawk.graph.ModelElementNode;
-import org.hawk.graph.TypeNode;
 import org.hawk.osgiserver.HManager;
 import org.hawk.osgiserver.HModel;
+import org.hawk.osgiserver.HModel.QuerySlot;
 import org.hawk.osgiserver.HModelSchedulingRule;
 import org.hawk.osgiserver.SecurePreferencesCredentialsStore;
 import org.hawk.service.api.Credentials;
@@ -117,6 +115,7 @@ import org.hawk.service.servlet.Activator;
 import org.hawk.service.servlet.artemis.ArtemisProducerGraphChangeListener;
 import org.hawk.service.servlet.artemis.ArtemisProducerStateListener;
 import org.hawk.service.servlet.servlets.HawkThriftTupleServlet;
+import org.hawk.service.servlet.utils.HawkModelElementCollector;
 import org.hawk.service.servlet.utils.HawkModelElementEncoder;
 import org.hawk.service.servlet.utils.HawkModelElementTypeEncoder;
 import org.osgi.framework.FrameworkUtil;
@@ -124,55 +123,60 @@ import org.osgi.service.prefs.BackingStoreException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ImmutableSet;
-
 /**
  * Entry point to the Hawk model indexers, implementing a Thrift-based API.
  */
 public final class HawkThriftIface implements Hawk.Iface {
 
+	/**
+	 * Job which runs a query in the background. Queries take a shared
+	 * scheduling rule, so several of them can run at once on the same instance.
+	 * Like synchronous queries, they are still limited by the query concurrency
+	 * limit of the instance (see {@link HModel#acquireQuerySlot()}).
+	 */
 	protected class AsyncQueryExecutionJob extends Job {
 		private final String uuid;
-		private final String hawkInstanceName;
+		private final HModel model;
 		private final String language;
 		private final String query;
 		private final HawkQueryOptions options;
 
-		private Runnable doCancel;
+		private volatile Runnable doCancel;
 		private CompletableFuture<QueryReport> report = new CompletableFuture<>();
 		private long startMillis;
 
 		protected AsyncQueryExecutionJob(String uuid, String language, HawkQueryOptions options,
-				String query, String hawkInstanceName) {
+				String query, HModel model) {
 			super("Running query " + uuid);
 
 			this.language = language;
 			this.options = options;
 			this.query = query;
 			this.uuid = uuid;
-			this.hawkInstanceName = hawkInstanceName;
+			this.model = model;
+
+			setRule(HModelSchedulingRule.shared(model));
 		}
 
 		@Override
 		protected void canceling() {
-			if (doCancel != null) {
-				doCancel.run();
-				
-				QueryReport rValue = new QueryReport();
-				QueryResult rResult = new QueryResult();
-				rResult.setVString("cancelled");
-				rValue.setResult(rResult);
-				rValue.setWallMillis(System.currentTimeMillis() - startMillis);
-				rValue.setIsCancelled(true);
-				report.complete(rValue);
+			final Runnable cancel = doCancel;
+			if (cancel != null) {
+				cancel.run();
+				completeAsCancelled();
 			}
 		}
 
 		@Override
 		protected IStatus run(IProgressMonitor monitor) {
+			startMillis = System.currentTimeMillis();
+			if (monitor.isCanceled()) {
+				completeAsCancelled();
+				return new Status(IStatus.CANCEL, getBundleName(), "Cancelled query " + uuid);
+			}
+
 			try {
-				startMillis = System.currentTimeMillis();
-				final QueryReport rValue = performTimedQuery(hawkInstanceName, query, language, options, this::setDoCancel);
+				final QueryReport rValue = performTimedQuery(model.getName(), query, language, options, this::setDoCancel);
 				report.complete(rValue);
 				return new Status(IStatus.OK, getBundleName(), "Completed query " + uuid);
 			} catch (Throwable e) {
@@ -189,6 +193,19 @@ public final class HawkThriftIface implements Hawk.Iface {
 			return report;
 		}
 
+		private void completeAsCancelled() {
+			if (report.isDone()) {
+				return;
+			}
+			QueryReport rValue = new QueryReport();
+			QueryResult rResult = new QueryResult();
+			rResult.setVString("cancelled");
+			rValue.setResult(rResult);
+			rValue.setWallMillis(System.currentTimeMillis() - startMillis);
+			rValue.setIsCancelled(true);
+			report.complete(rValue);
+		}
+
 		private String getBundleName() {
 			return FrameworkUtil.getBundle(getClass()).getSymbolicName();
 		}
@@ -198,6 +215,51 @@ public final class HawkThriftIface implements Hawk.Iface {
 		}
 	}
 
+	/**
+	 * Cancellation of a query, registered with the caller before the query
+	 * starts waiting for a slot. While waiting, it interrupts the waiting
+	 * thread. Afterwards, it is forwarded to the query engine: a cancellation
+	 * which arrives before the engine registers its own callback is passed on
+	 * as soon as it does.
+	 */
+	private static final class QueryCancellation implements Runnable {
+		private final Thread waitingThread = Thread.currentThread();
+		private boolean cancelled = false, waiting = true, interruptSent = false;
+		private Runnable engineCancel;
+
+		@Override
+		public synchronized void run() {
+			cancelled = true;
+			if (waiting) {
+				interruptSent = true;
+				waitingThread.interrupt();
+			} else if (engineCancel != null) {
+				engineCancel.run();
+			}
+		}
+
+		/**
+		 * Called by the waiting thread once it stops waiting for a slot.
+		 * Clears the interrupt sent by this cancellation if the wait finished
+		 * before seeing it. Returns <code>true</code> if the query has been
+		 * cancelled.
+		 */
+		public synchronized boolean stopWaiting(boolean acquired) {
+			waiting = false;
+			if (acquired && interruptSent) {
+				Thread.interrupted();
+			}
+			return cancelled;
+		}
+
+		public synchronized void setEngineCancel(Runnable engineCancel) {
+			this.engineCancel = engineCancel;
+			if (cancelled && engineCancel != null) {
+				engineCancel.run();
+			}
+		}
+	}
+
 	/**
 	 * {@link IGraphChangeListener} that waits for a synchronisation process to end and then start.
 	 * The actual waiting is done through the {@link CountDownLatch#await()} method of the latch
@@ -342,23 +404,25 @@ public final class HawkThriftIface implements Hawk.Iface {
 
 	private QueryResult performQuery(String name, String query, String language, HawkQueryOptions opts, Consumer<Runnable> cancelConsumer)
 			throws HawkInstanceNotFound, HawkInstanceNotRunning, InvalidQuery, FailedQuery, TException {
-		final HModel model = getRunningHawkByName(name);
+		return performTimedQuery(name, query, language, opts, cancelConsumer).getResult();
+	}
+
+	QueryResult runQuery(HModel model, String query, String language, HawkQueryOptions opts,
+			Consumer<Runnable> cancelConsumer, QueryResultCache.Lookup cacheLookup)
+			throws InvalidQuery, FailedQuery, TException {
+		final QueryCancellation cancellation = cancelConsumer != null ? new QueryCancellation() : null;
+		if (cancellation != null) {
+			cancelConsumer.accept(cancellation);
+		}
+
+		final QuerySlot slot = acquireQuerySlot(model, cancellation);
 		try {
-			final Map<String, Object> context = new HashMap<>();
-			if (opts.isSetDefaultNamespaces()) {
-				context.put(IQueryEngine.PROPERTY_DEFAULTNAMESPACES, opts.getDefaultNamespaces());
+			final Map<String, Object> context = createQueryContext(opts);
+			if (cancellation != null) {
+				context.put(IQueryEngine.PROPERTY_CANCEL_CONSUMER, (Consumer<Runnable>) cancellation::setEngineCancel);
 			}
-	
-			if (opts.isSetRepositoryPattern() || opts.isSetFilePatterns()) {
-				final boolean allRepositories = !opts.isSetRepositoryPattern() || "*".equals(opts.getRepositoryPattern());
-				final boolean allFiles = !opts.isSetFilePatterns() || Arrays.asList("*").equals(opts.getFilePatterns());
-				if (!allRepositories || !allFiles) {
-					context.put(IQueryEngine.PROPERTY_REPOSITORYCONTEXT, opts.isSetRepositoryPattern() ? opts.getRepositoryPattern() : "*");
-					context.put(IQueryEngine.PROPERTY_FILECONTEXT, opts.isSetFilePatterns() ? join(opts.getFilePatterns(), ",") : "*");
-				}
-			}
-			if (cancelConsumer != null) {
-				context.put(IQueryEngine.PROPERTY_CANCEL_CONSUMER, cancelConsumer);
+			if (cacheLookup != null && cacheLookup.getAccessListener() != null) {
+				context.put(IQueryEngine.PROPERTY_ACCESS_LISTENER, cacheLookup.getAccessListener());
 			}
 			Object ret = model.query(query, language, context);
 	
@@ -377,7 +441,11 @@ public final class HawkThriftIface implements Hawk.Iface {
 	
 			final HawkModelElementTypeEncoder typeEnc = new HawkModelElementTypeEncoder(gw);
 			try (final IGraphTransaction t = model.getGraph().beginTransaction()) {
-				return encodeValue(model, ret, enc, typeEnc);
+				final QueryResult result = encodeValue(model, ret, enc, typeEnc);
+				if (cacheLookup != null) {
+					cacheLookup.store(result, model.getGraph(), enc.getEncodedNodeIds());
+				}
+				return result;
 			}
 		} catch (InvalidQueryException ex) {
 			throw new InvalidQuery(ex.getMessage());
@@ -385,22 +453,79 @@ public final class HawkThriftIface implements Hawk.Iface {
 			throw new FailedQuery(ex.getMessage());
 		} catch (Exception ex) {
 			throw new TException(ex);
+		} finally {
+			slot.close();
 		}
 	}
 
+	/**
+	 * Creates the context for running a query with the default namespaces and
+	 * the repository and file scope in the options.
+	 */
+	public static Map<String, Object> createQueryContext(HawkQueryOptions opts) {
+		final Map<String, Object> context = new HashMap<>();
+		if (opts.isSetDefaultNamespaces()) {
+			context.put(IQueryEngine.PROPERTY_DEFAULTNAMESPACES, opts.getDefaultNamespaces());
+		}
+
+		if (opts.isSetRepositoryPattern() || opts.isSetFilePatterns()) {
+			final boolean allRepositories = !opts.isSetRepositoryPattern() || "*".equals(opts.getRepositoryPattern());
+			final boolean allFiles = !opts.isSetFilePatterns() || Arrays.asList("*").equals(opts.getFilePatterns());
+			if (!allRepositories || !allFiles) {
+				context.put(IQueryEngine.PROPERTY_REPOSITORYCONTEXT, opts.isSetRepositoryPattern() ? opts.getRepositoryPattern() : "*");
+				context.put(IQueryEngine.PROPERTY_FILECONTEXT, opts.isSetFilePatterns() ? join(opts.getFilePatterns(), ",") : "*");
+			}
+		}
+		return context;
+	}
+
+	/**
+	 * Waits for a query slot in the instance. The cancellation (if any) stops
+	 * the wait, and is checked again once the slot has been obtained, in case
+	 * it arrived just afterwards.
+	 */
+	private QuerySlot acquireQuerySlot(HModel model, QueryCancellation cancellation) throws FailedQuery {
+		final QuerySlot slot;
+		try {
+			slot = model.acquireQuerySlot();
+		} catch (InterruptedException e) {
+			if (cancellation == null || !cancellation.stopWaiting(false)) {
+				// Not interrupted by the cancellation: let the caller know
+				Thread.currentThread().interrupt();
+			}
+			throw new FailedQuery("Cancelled while waiting for a query slot");
+		}
+
+		if (cancellation != null && cancellation.stopWaiting(true)) {
+			slot.close();
+			throw new FailedQuery("Cancelled while waiting for a query slot");
+		}
+		return slot;
+	}
+
 	private QueryReport performTimedQuery(String name, String query, String language, HawkQueryOptions opts, Consumer<Runnable> cancelConsumer)
 			throws HawkInstanceNotFound, UnknownQueryLanguage, InvalidQuery, FailedQuery, TException {
 		final long startMillis = System.currentTimeMillis();
-		final QueryResult result = performQuery(name, query, language, opts, cancelConsumer);
+		final HModel model = getRunningHawkByName(name);
+
+		final QueryResultCache.Lookup cacheLookup = QueryResultCache.getInstance().lookup(model, language, query, opts);
+		QueryResult result = cacheLookup != null ? cacheLookup.getCachedResult() : null;
+		final boolean isCached = result != null;
+		if (!isCached) {
+			result = runQuery(model, query, language, opts, cancelConsumer, cacheLookup);
+		}
 		final long endMillis = System.currentTimeMillis();
 
 		final QueryReport queryReport = new QueryReport();
 		queryReport.setResult(result);
 		queryReport.setWallMillis(endMillis - startMillis);
+		if (cacheLookup != null) {
+			queryReport.setIsCached(isCached);
+		}
 		return queryReport;
 	}
 
-	private String join(List<String> strings, String separator) {
+	private static String join(List<String> strings, String separator) {
 		final StringBuffer sbuf = new StringBuffer();
 		boolean first = true;
 		for (String s : strings) {
@@ -682,50 +807,19 @@ public final class HawkThriftIface implements Hawk.Iface {
 			encoder.setIncludeNodeIDs(opts.includeNodeIDs);
 			encoder.setUseContainment(opts.includeContained);
 
-			final EffectiveMetamodelRuleset emm = new EffectiveMetamodelRuleset(
-					opts.getEffectiveMetamodelIncludes(), opts.getEffectiveMetamodelExcludes());
+			final HawkModelElementCollector collector = new HawkModelElementCollector(gw, opts);
+			final EffectiveMetamodelRuleset emm = collector.getEffectiveMetamodel();
 			if (!emm.isEverythingIncluded()) {
 				encoder.setEffectiveMetamodel(emm);
 			}
 
-			final Set<FileNode> fileNodes = gw.getFileNodes(Arrays.asList(opts.getRepositoryPattern()), opts.getFilePatterns());
-			if (emm.getInclusionRules().isEmpty() || collectType == CollectElements.ONLY_ROOTS) {
-				// No explicitly included types or we only want the roots - start with the files
-				for (FileNode fileNode : fileNodes) {
-					LOGGER.info("Retrieving elements from file {}", opts.getFilePatterns());
-
-					switch (collectType) {
-					case ALL:
-						for (ModelElementNode meNode : fileNode.getModelElements()) {
-							encoder.encode(meNode);
-						}
-						break;
-					case ONLY_ROOTS:
-						for (ModelElementNode meNode : fileNode.getRootModelElements()) {
-							encoder.encode(meNode);
-						}
-						break;
-					}
-				}
-			} else {
-				// Explicitly listed metamodels/types - start with the types
-				// TODO: talk with Dimitris about this (optimal traversal can vary)
-				for (Entry<String, Map<String, ImmutableSet<String>>> mmEntry : emm.getInclusionRules().rowMap().entrySet()) {
-					final String mmURI = mmEntry.getKey();
-					final MetamodelNode mn = gw.getMetamodelNodeByNsURI(mmURI);
-					for (final TypeNode tn : mn.getTypes()) {
-						// Filter by type
-						if (emm.isIncluded(mmURI, tn.getTypeName())) {
-							LOGGER.info("Retrieving elements from type {}", tn.getTypeName());
-							for (final ModelElementNode meNode : tn.getAll()) {
-								// Filter by scope
-								if (fileNodes.contains(meNode.getFileNode())) {
-									encoder.encode(meNode);
-								}
-							} // for (meNode)
-						}
-					} // for (tn)
-				} // for (mmEntry)
+			switch (collectType) {
+			case ALL:
+				collector.visitAll(encoder::encode);
+				break;
+			case ONLY_ROOTS:
+				collector.visitRoots(encoder::encode);
+				break;
 			}
 
 			return encoder.getElements();
@@ -1027,9 +1121,8 @@ public final class HawkThriftIface implements Hawk.Iface {
 		final HModel model = getRunningHawkByName(hawkInstanceName);
 
 		final String queryUUID = UUID.randomUUID().toString();
-		final AsyncQueryExecutionJob timedQueryJob = new AsyncQueryExecutionJob(queryUUID, language, options, query, hawkInstanceName);
+		final AsyncQueryExecutionJob timedQueryJob = new AsyncQueryExecutionJob(queryUUID, language, options, query, model);
 		ASYNC_QUERIES.put(queryUUID, timedQueryJob);
-		timedQueryJob.setRule(new HModelSchedulingRule(model));
 		timedQueryJob.schedule();
 
 		return queryUUID;
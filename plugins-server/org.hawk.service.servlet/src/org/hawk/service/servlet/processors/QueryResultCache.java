@@ -0,0 +1,736 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.processors;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.hawk.core.VcsCommitItem;
+import org.hawk.core.graph.IGraphDatabase;
+import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.model.IHawkClass;
+import org.hawk.core.model.IHawkObject;
+import org.hawk.core.model.IHawkPackage;
+import org.hawk.core.query.IAccess;
+import org.hawk.core.query.IAccessListener;
+import org.hawk.core.query.IQueryEngine;
+import org.hawk.core.util.GraphChangeAdapter;
+import org.hawk.core.util.SystemProperties;
+import org.hawk.graph.FileNode;
+import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.Slot;
+import org.hawk.graph.TypeNode;
+import org.hawk.graph.updater.GraphModelUpdater;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.QueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.MapMaker;
+
+/**
+ * Server-side cache of encoded query results, shared by all the Thrift
+ * endpoints. Results are keyed by instance, language, query and options, and
+ * tagged with the generation of the index they were computed from.
+ *
+ * There are two invalidation modes (see {@link #INVALIDATION_PROPERTY}):
+ * <ul>
+ * <li>{@link Invalidation#INDEX}: any synchronisation (or metamodel / derived
+ * attribute change) that modifies the graph moves the instance to a new
+ * generation and drops all its results.</li>
+ * <li>{@link Invalidation#FILE}: for query engines which can report their
+ * accesses (see {@link IQueryEngine#isAccessTrackingSupported()}), each result
+ * remembers the type extents it used and the files of the elements it read,
+ * and only the results depending on the changed files or on the extents of the
+ * types with new instances are dropped. As removed elements cannot be traced
+ * back to their types, any removal drops the results which used a type
+ * extent. Metamodel changes still drop all results.</li>
+ * </ul>
+ *
+ * The cache is disabled by default, as it assumes queries are deterministic
+ * functions of the index contents. It is enabled by giving it a positive size
+ * through the {@link #MAX_BYTES_PROPERTY} system property.
+ */
+final class QueryResultCache {
+
+	/**
+	 * Maximum total size in bytes of the cached results (in their compact
+	 * Thrift encoding). Zero (the default) disables the cache.
+	 */
+	public static final String MAX_BYTES_PROPERTY = "hawk.server.queryCache.maxBytes";
+	public static final long DEFAULT_MAX_BYTES = 0;
+
+	/**
+	 * Number of seconds after which a cached result is dropped, even if the
+	 * index has not changed.
+	 */
+	public static final String TTL_SECONDS_PROPERTY = "hawk.server.queryCache.ttlSeconds";
+	public static final long DEFAULT_TTL_SECONDS = 300;
+
+	/**
+	 * Invalidation mode: either <code>index</code> (the default) or
+	 * <code>file</code>. See {@link Invalidation}.
+	 */
+	public static final String INVALIDATION_PROPERTY = "hawk.server.queryCache.invalidation";
+
+	/**
+	 * Maximum number of distinct graph nodes to be tracked for a query in the
+	 * {@link Invalidation#FILE} mode. The results of queries which read more
+	 * nodes are dropped on any change to the index.
+	 */
+	public static final String MAX_TRACKED_NODES_PROPERTY = "hawk.server.queryCache.maxTrackedNodes";
+	public static final long DEFAULT_MAX_TRACKED_NODES = 100_000;
+
+	public static enum Invalidation {
+		/** Drop all results of an instance on any change. */
+		INDEX,
+		/** Drop only the results which depended on what changed. */
+		FILE;
+	}
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCache.class);
+	private static final QueryResultCache INSTANCE = new QueryResultCache(
+		SystemProperties.getLong(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES, 0),
+		SystemProperties.getLong(TTL_SECONDS_PROPERTY, DEFAULT_TTL_SECONDS, 0),
+		getInvalidationProperty(),
+		SystemProperties.getLong(MAX_TRACKED_NODES_PROPERTY, DEFAULT_MAX_TRACKED_NODES, 0));
+
+	/**
+	 * Generations are unique across all instances, so results from a removed
+	 * instance can never be mistaken for those of a new one with the same name.
+	 */
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+
+	private static final class Key {
+		private final String instance, language, query;
+		private final HawkQueryOptions options;
+
+		public Key(String instance, String language, String query, HawkQueryOptions options) {
+			this.instance = instance;
+			this.language = language;
+			this.query = query;
+			this.options = options;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(instance, language, query, options);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			} else if (!(obj instanceof Key)) {
+				return false;
+			}
+			final Key other = (Key) obj;
+			return instance.equals(other.instance) && language.equals(other.language)
+				&& query.equals(other.query) && Objects.equals(options, other.options);
+		}
+	}
+
+	/**
+	 * Parts of the index that a query result depends on. Type extents cover
+	 * the membership of the extent and the values of its indexed and derived
+	 * attributes (which can be looked up without reading every element): the
+	 * elements read from it are tracked through their files.
+	 */
+	static final class Dependencies {
+		private final Set<String> files;
+		private final Set<String> typeExtents;
+		private final boolean allContents;
+
+		public Dependencies(Set<String> files, Set<String> typeExtents, boolean allContents) {
+			this.files = files;
+			this.typeExtents = typeExtents;
+			this.allContents = allContents;
+		}
+
+		public boolean isAffectedBy(Changes changes) {
+			return allContents && changes.contents
+				|| !typeExtents.isEmpty() && changes.removals
+				|| !Collections.disjoint(files, changes.files)
+				|| !Collections.disjoint(typeExtents, changes.typeExtents);
+		}
+	}
+
+	/**
+	 * Changes made to the index since the last invalidation.
+	 */
+	static final class Changes {
+		final Set<String> files = ConcurrentHashMap.newKeySet();
+		final Set<String> typeExtents = ConcurrentHashMap.newKeySet();
+		volatile boolean contents;
+
+		/** Set if model elements were removed: their types are not known any more. */
+		volatile boolean removals;
+
+		volatile boolean global;
+
+		public boolean isEmpty() {
+			return !global && !contents && !removals && files.isEmpty() && typeExtents.isEmpty();
+		}
+
+		public void clear() {
+			files.clear();
+			typeExtents.clear();
+			contents = false;
+			removals = false;
+			global = false;
+		}
+	}
+
+	private static final class Entry {
+		private final QueryResult result;
+		private final long generation;
+		private final int bytes;
+
+		/** Parts of the index that this result depends on, or <code>null</code> if unknown. */
+		private final Dependencies dependencies;
+
+		public Entry(QueryResult result, long generation, int bytes, Dependencies dependencies) {
+			this.result = result;
+			this.generation = generation;
+			this.bytes = bytes;
+			this.dependencies = dependencies;
+		}
+	}
+
+	/**
+	 * Collects the graph nodes and type extents read by a query.
+	 */
+	private final class AccessTracker implements IAccessListener {
+		private final Set<String> nodeIds = new HashSet<>();
+		private final Set<String> typeExtents = new HashSet<>();
+		private boolean allContents;
+		private boolean overflowed;
+
+		@Override
+		public void accessed(String accessObject, String property) {
+			if (IQueryEngine.ACCESS_TYPE_EXTENT.equals(property)) {
+				typeExtents.add(accessObject);
+			} else if (IQueryEngine.ACCESS_ALL_CONTENTS.equals(property)) {
+				allContents = true;
+			} else if (!overflowed) {
+				nodeIds.add(accessObject);
+				if (nodeIds.size() > maxTrackedNodes) {
+					overflowed = true;
+					nodeIds.clear();
+				}
+			}
+		}
+
+		@Override
+		public void setSourceObject(String s) {
+			// not used
+		}
+
+		@Override
+		public Set<IAccess> getAccesses() {
+			return Collections.emptySet();
+		}
+
+		@Override
+		public void resetAccesses() {
+			nodeIds.clear();
+			typeExtents.clear();
+			allContents = false;
+			overflowed = false;
+		}
+
+		@Override
+		public void removeAccess(IAccess a) {
+			// not used
+		}
+
+		/**
+		 * Computes the dependencies of the query from the tracked accesses and
+		 * the encoded nodes, or returns <code>null</code> if there were too many
+		 * nodes. Must be called within a transaction.
+		 */
+		public Dependencies getDependencies(IGraphDatabase graph, Collection<String> encodedNodeIds) {
+			if (overflowed || nodeIds.size() + encodedNodeIds.size() > maxTrackedNodes) {
+				return null;
+			}
+
+			final Set<String> files = new HashSet<>();
+			addFiles(graph, nodeIds, files);
+			addFiles(graph, encodedNodeIds, files);
+			return new Dependencies(files, new HashSet<>(typeExtents), allContents);
+		}
+
+		private void addFiles(IGraphDatabase graph, Collection<String> ids, final Set<String> files) {
+			for (String id : ids) {
+				final IGraphNode node = graph.getNodeById(id);
+				if (node == null) {
+					continue;
+				}
+
+				if (node.getProperty(FileNode.PROP_REPOSITORY) != null) {
+					files.add(getFileKey(new FileNode(node)));
+				} else {
+					for (FileNode fn : new ModelElementNode(node).getFileNodes()) {
+						files.add(getFileKey(fn));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Keeps the current generation of an instance up to date, by listening to
+	 * the changes in its graph.
+	 */
+	final class InstanceGeneration extends GraphChangeAdapter {
+		private final String instance;
+		final Changes changes = new Changes();
+		private volatile long generation = GENERATIONS.incrementAndGet();
+		private final AtomicLong invalidations = new AtomicLong();
+		private volatile boolean synchronising;
+
+		public InstanceGeneration(String instance) {
+			this.instance = instance;
+		}
+
+		@Override
+		public String getName() {
+			return "Query result cache";
+		}
+
+		@Override
+		public void synchroniseStart() {
+			synchronising = true;
+		}
+
+		@Override
+		public void synchroniseEnd() {
+			synchronising = false;
+			invalidateIfChanged();
+		}
+
+		@Override
+		public void changeSuccess() {
+			if (!synchronising) {
+				invalidateIfChanged();
+			}
+		}
+
+		@Override
+		public void changeFailure() {
+			changeSuccess();
+		}
+
+		@Override
+		public void metamodelAddition(IHawkPackage pkg, IGraphNode pkgNode) {
+			changes.global = true;
+		}
+
+		@Override
+		public void metamodelRemoval(String nsURI, IGraphNode pkgNode) {
+			changes.global = true;
+		}
+
+		@Override
+		public void classAddition(IHawkClass cls, IGraphNode clsNode) {
+			changes.global = true;
+		}
+
+		@Override
+		public void fileAddition(VcsCommitItem s, IGraphNode fileNode) {
+			changes.contents = true;
+			addChangedFile(s, null);
+		}
+
+		@Override
+		public void fileRemoval(VcsCommitItem s, IGraphNode fileNode) {
+			changes.contents = true;
+			addChangedFile(s, null);
+		}
+
+		@Override
+		public void modelElementAddition(VcsCommitItem s, IHawkObject element, IGraphNode elementNode, boolean isTransient) {
+			changes.contents = true;
+			addChangedFile(s, elementNode);
+			addChangedExtents(elementNode, null);
+		}
+
+		@Override
+		public void modelElementRemoval(VcsCommitItem s, IGraphNode elementNode, boolean isTransient) {
+			// The node may be gone already: rely on the file
+			changes.contents = true;
+			changes.removals = true;
+			addChangedFile(s, null);
+		}
+
+		@Override
+		public void modelElementAttributeUpdate(VcsCommitItem s, IHawkObject eObject, String attrName, Object oldValue,
+				Object newValue, IGraphNode elementNode, boolean isTransient) {
+			addChangedFile(s, elementNode);
+			addChangedExtents(elementNode, attrName);
+		}
+
+		@Override
+		public void modelElementAttributeRemoval(VcsCommitItem s, IHawkObject eObject, String attrName,
+				IGraphNode elementNode, boolean isTransient) {
+			addChangedFile(s, elementNode);
+			addChangedExtents(elementNode, attrName);
+		}
+
+		@Override
+		public void referenceAddition(VcsCommitItem s, IGraphNode source, IGraphNode destination, String edgelabel,
+				boolean isTransient) {
+			addChangedFile(s, source);
+			addChangedFile(null, destination);
+		}
+
+		@Override
+		public void referenceRemoval(VcsCommitItem s, IGraphNode source, IGraphNode destination, String edgelabel,
+				boolean isTransient) {
+			addChangedFile(s, source);
+			addChangedFile(null, destination);
+		}
+
+		/**
+		 * Records the type and kinds of the element as changed extents. If an
+		 * attribute name is given, this is only done when the attribute is
+		 * indexed or derived, as queries can then find the element through
+		 * the index without reading the attribute from each element.
+		 */
+		private void addChangedExtents(IGraphNode elementNode, String attrName) {
+			if (invalidation != Invalidation.FILE || changes.global) {
+				return;
+			}
+
+			try {
+				final ModelElementNode meNode = new ModelElementNode(elementNode);
+				final TypeNode typeNode = meNode.getTypeNode();
+				if (attrName != null) {
+					final Slot slot = typeNode.getSlot(attrName);
+					if (slot == null || !slot.isIndexed() && !slot.isDerived()) {
+						return;
+					}
+				}
+
+				changes.typeExtents.add(typeNode.getNode().getId() + "");
+				for (TypeNode kindNode : meNode.getKindNodes()) {
+					changes.typeExtents.add(kindNode.getNode().getId() + "");
+				}
+			} catch (Exception ex) {
+				LOGGER.debug("Could not find the types of a changed model element: dropping all results", ex);
+				changes.global = true;
+			}
+		}
+
+		/**
+		 * Records the file of the commit item and/or the files of the node
+		 * as changed. If neither is available, all results will be dropped.
+		 */
+		private void addChangedFile(VcsCommitItem s, IGraphNode node) {
+			if (invalidation != Invalidation.FILE || changes.global) {
+				changes.contents = true;
+				return;
+			}
+
+			boolean found = false;
+			if (s != null) {
+				changes.files.add(getFileKey(s));
+				found = true;
+			}
+			if (node != null) {
+				try {
+					for (FileNode fn : new ModelElementNode(node).getFileNodes()) {
+						changes.files.add(getFileKey(fn));
+						found = true;
+					}
+				} catch (Exception ex) {
+					LOGGER.debug("Could not find the files of a changed node", ex);
+				}
+			}
+			if (!found && s == null) {
+				changes.global = true;
+			}
+		}
+
+		private void invalidateIfChanged() {
+			if (changes.isEmpty()) {
+				return;
+			}
+
+			/*
+			 * Bump the counter first: stores racing with the invalidation will
+			 * notice it and remove their entries.
+			 */
+			invalidations.incrementAndGet();
+			if (invalidation == Invalidation.INDEX || changes.global) {
+				generation = GENERATIONS.incrementAndGet();
+				invalidateInstance(instance, null);
+			} else {
+				invalidateInstance(instance, changes);
+			}
+			changes.clear();
+		}
+	}
+
+	/**
+	 * Pending lookup of a query result, which can later store the result if it
+	 * was not found.
+	 */
+	final class Lookup {
+		private final Key key;
+		private final InstanceGeneration instanceGeneration;
+		private final long generation, invalidations;
+		private final AccessTracker accessTracker;
+
+		private Lookup(Key key, InstanceGeneration instanceGeneration, boolean trackAccesses) {
+			this.key = key;
+			this.instanceGeneration = instanceGeneration;
+			this.generation = instanceGeneration.generation;
+			this.invalidations = instanceGeneration.invalidations.get();
+			this.accessTracker = trackAccesses ? new AccessTracker() : null;
+		}
+
+		/**
+		 * Returns the cached result, or <code>null</code> if there is no result
+		 * for the current generation of the index.
+		 */
+		public QueryResult getCachedResult() {
+			if (instanceGeneration.synchronising) {
+				return null;
+			}
+
+			final Entry entry = cache.getIfPresent(key);
+			if (entry == null) {
+				return null;
+			} else if (entry.generation != generation) {
+				cache.asMap().remove(key, entry);
+				return null;
+			}
+			return entry.result;
+		}
+
+		/**
+		 * Returns the listener to be passed to the query engine through
+		 * {@link IQueryEngine#PROPERTY_ACCESS_LISTENER}, or <code>null</code>
+		 * if accesses are not being tracked.
+		 */
+		public IAccessListener getAccessListener() {
+			return accessTracker;
+		}
+
+		/**
+		 * Stores the result, unless the index changed while it was computed.
+		 * The result must not be modified afterwards. Must be called within
+		 * a transaction if accesses are being tracked.
+		 *
+		 * @param encodedNodeIds
+		 *            IDs of the model element nodes encoded in the result.
+		 */
+		public void store(QueryResult result, IGraphDatabase graph, Collection<String> encodedNodeIds) {
+			if (!isUnchanged()) {
+				return;
+			}
+
+			final int bytes;
+			try {
+				bytes = new TSerializer(new TCompactProtocol.Factory()).serialize(result).length;
+			} catch (TException e) {
+				LOGGER.warn("Could not measure query result: it will not be cached", e);
+				return;
+			}
+			if (bytes > maxBytes) {
+				return;
+			}
+
+			final Dependencies deps = accessTracker != null
+				? accessTracker.getDependencies(graph, encodedNodeIds) : null;
+			final Entry entry = new Entry(result, generation, bytes, deps);
+			cachedBytes.addAndGet(bytes);
+			cache.put(key, entry);
+			if (!isUnchanged()) {
+				cache.asMap().remove(key, entry);
+			}
+		}
+
+		private boolean isUnchanged() {
+			return !instanceGeneration.synchronising && instanceGeneration.invalidations.get() == invalidations;
+		}
+	}
+
+	private final long maxBytes;
+	private final Invalidation invalidation;
+	private final long maxTrackedNodes;
+	private final Cache<Key, Entry> cache;
+	private final AtomicLong cachedBytes = new AtomicLong();
+	private final ConcurrentMap<HModel, InstanceGeneration> generations = new MapMaker().weakKeys().makeMap();
+
+	QueryResultCache(long maxBytes, long ttlSeconds, Invalidation invalidation, long maxTrackedNodes) {
+		this.maxBytes = maxBytes;
+		this.invalidation = invalidation;
+		this.maxTrackedNodes = maxTrackedNodes;
+		if (maxBytes > 0) {
+			this.cache = CacheBuilder.newBuilder()
+				.maximumWeight(maxBytes)
+				.weigher(new Weigher<Key, Entry>() {
+					@Override
+					public int weigh(Key key, Entry value) {
+						return value.bytes;
+					}
+				})
+				.expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+				.removalListener(new RemovalListener<Key, Entry>() {
+					@Override
+					public void onRemoval(RemovalNotification<Key, Entry> notification) {
+						cachedBytes.addAndGet(-notification.getValue().bytes);
+					}
+				})
+				.recordStats()
+				.build();
+			LOGGER.info("Query result cache enabled: up to {} bytes, {}s TTL, {} invalidation",
+				maxBytes, ttlSeconds, invalidation.name().toLowerCase());
+		} else {
+			this.cache = null;
+		}
+	}
+
+	public static QueryResultCache getInstance() {
+		return INSTANCE;
+	}
+
+	public boolean isEnabled() {
+		return cache != null;
+	}
+
+	public Invalidation getInvalidation() {
+		return invalidation;
+	}
+
+	/**
+	 * Starts the lookup of a query result, or returns <code>null</code> if the
+	 * cache is disabled. The options are copied, so they can be reused later.
+	 */
+	public Lookup lookup(HModel model, String language, String query, HawkQueryOptions options) {
+		if (!isEnabled()) {
+			return null;
+		}
+
+		InstanceGeneration instanceGeneration = generations.get(model);
+		if (instanceGeneration == null) {
+			final InstanceGeneration newGeneration = new InstanceGeneration(model.getName());
+			instanceGeneration = generations.putIfAbsent(model, newGeneration);
+			if (instanceGeneration == null) {
+				instanceGeneration = newGeneration;
+				model.addGraphChangeListener(newGeneration);
+			}
+		}
+
+		boolean trackAccesses = false;
+		if (invalidation == Invalidation.FILE) {
+			final IQueryEngine engine = model.getIndexer().getKnownQueryLanguages().get(language);
+			trackAccesses = engine != null && engine.isAccessTrackingSupported();
+		}
+
+		final Key key = new Key(model.getName(), language, query, options.deepCopy());
+		return new Lookup(key, instanceGeneration, trackAccesses);
+	}
+
+	/**
+	 * Returns the total size in bytes of the cached results.
+	 */
+	public long getCachedBytes() {
+		return cachedBytes.get();
+	}
+
+	/**
+	 * Returns the hit/miss/eviction statistics of the cache, or
+	 * <code>null</code> if the cache is disabled.
+	 */
+	public CacheStats getStats() {
+		return isEnabled() ? cache.stats() : null;
+	}
+
+	/**
+	 * Drops the results of an instance which may have been affected by the
+	 * changes, or all of them if <code>changes</code> is <code>null</code>.
+	 */
+	private void invalidateInstance(String instance, Changes changes) {
+		int dropped = 0, kept = 0;
+		for (Iterator<Map.Entry<Key, Entry>> itEntry = cache.asMap().entrySet().iterator(); itEntry.hasNext(); ) {
+			final Map.Entry<Key, Entry> mapEntry = itEntry.next();
+			if (!instance.equals(mapEntry.getKey().instance)) {
+				continue;
+			}
+
+			final Dependencies deps = mapEntry.getValue().dependencies;
+			if (changes == null || deps == null || deps.isAffectedBy(changes)) {
+				itEntry.remove();
+				dropped++;
+			} else {
+				kept++;
+			}
+		}
+
+		if (changes != null) {
+			LOGGER.debug("Dropped {} and kept {} cached results of {} after changes to {} files and {} type extents",
+				dropped, kept, instance, changes.files.size(), changes.typeExtents.size());
+		} else {
+			LOGGER.debug("Dropped all {} cached results of {}", dropped, instance);
+		}
+	}
+
+	private static String getFileKey(VcsCommitItem s) {
+		return s.getCommit().getDelta().getManager().getLocation()
+			+ GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + s.getPath();
+	}
+
+	private static String getFileKey(FileNode fn) {
+		return fn.getRepositoryURL() + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + fn.getFilePath();
+	}
+
+	private static Invalidation getInvalidationProperty() {
+		final String sValue = System.getProperty(INVALIDATION_PROPERTY);
+		if (sValue != null) {
+			try {
+				return Invalidation.valueOf(sValue.toUpperCase());
+			} catch (IllegalArgumentException ex) {
+				LOGGER.error("{} has invalid value '{}': falling back to {}",
+					INVALIDATION_PROPERTY, sValue, Invalidation.INDEX.name().toLowerCase());
+			}
+		}
+		return Invalidation.INDEX;
+	}
+
+}
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.servlets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.graph.IGraphNodeReference;
+import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.graph.IGraphTypeNodeReference;
+import org.hawk.core.query.InvalidQueryException;
+import org.hawk.core.util.SystemProperties;
+import org.hawk.graph.GraphWrapper;
+import org.hawk.graph.ModelElementNode;
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.osgiserver.HModel.QuerySlot;
+import org.hawk.service.api.EffectiveMetamodelRuleset;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.ModelElement;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.api.utils.ModelElementPageStream;
+import org.hawk.service.servlet.processors.HawkThriftIface;
+import org.hawk.service.servlet.utils.HawkModelElementCollector;
+import org.hawk.service.servlet.utils.HawkModelElementCollector.IModelElementVisitor;
+import org.hawk.service.servlet.utils.HawkModelElementEncoder;
+import org.hawk.service.servlet.utils.HawkModelElementPager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet which sends the model elements of a Hawk instance as a stream of
+ * pages over a chunked HTTP response, so neither the server nor the client
+ * need to keep the entire model in memory, and the client receives the first
+ * elements before the traversal is complete. The format of the stream is
+ * described in {@link ModelElementPageStream}.
+ *
+ * It accepts these parameters:
+ * <ul>
+ * <li><code>instance</code>: name of the Hawk instance (required).</li>
+ * <li><code>repository</code>: repository URL pattern (<code>*</code> by
+ * default).</li>
+ * <li><code>file</code>: file pattern, can be repeated (<code>*</code> by
+ * default).</li>
+ * <li><code>roots</code>: if <code>true</code>, only the root elements are
+ * sent (<code>false</code> by default).</li>
+ * <li><code>attributes</code>, <code>references</code>,
+ * <code>derived</code>: whether to include these slots (<code>true</code> by
+ * default).</li>
+ * <li><code>pageSize</code>: maximum number of elements per page.</li>
+ * <li><code>protocol</code>: Thrift protocol to encode the pages with (one of
+ * {@link ThriftProtocol}, <code>tuple</code> by default).</li>
+ * <li><code>query</code>, <code>language</code>: if set, only the model
+ * elements in the result of this query are sent, instead of the elements in
+ * the repository and files above (which are used as the query scope).</li>
+ * </ul>
+ *
+ * Query results are not computed incrementally: the query engine produces the
+ * full result before the first page is sent, and only its encoding is
+ * streamed. Values in the result which are not model elements are skipped.
+ *
+ * The stream holds a query slot and a read transaction of the instance until
+ * it ends. To keep a client which stops reading from holding them forever,
+ * writing a page is aborted if it takes longer than the number of
+ * milliseconds in the {@value #WRITE_TIMEOUT_PROPERTY} system property
+ * ({@value #DEFAULT_WRITE_TIMEOUT_MILLIS} by default, 0 disables it), by
+ * interrupting the thread that writes it.
+ */
+public class HawkModelStreamServlet extends HttpServlet {
+	public static final String WRITE_TIMEOUT_PROPERTY = "hawk.server.streamWriteTimeout";
+	public static final long DEFAULT_WRITE_TIMEOUT_MILLIS = 60_000;
+
+	private static final long serialVersionUID = 1L;
+	private static final Logger LOGGER = LoggerFactory.getLogger(HawkModelStreamServlet.class);
+
+	/**
+	 * Interrupts the thread writing a page if it is still not done when it
+	 * runs, unless it has been stopped before.
+	 */
+	private static final class WriteWatchdog implements Runnable {
+		private final Thread writer;
+		private boolean stopped, timedOut;
+
+		public WriteWatchdog(Thread writer) {
+			this.writer = writer;
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!stopped) {
+				timedOut = true;
+				writer.interrupt();
+			}
+		}
+
+		/**
+		 * Stops the watchdog, and returns <code>true</code> if it had already
+		 * interrupted the writer.
+		 */
+		public synchronized boolean stop() {
+			stopped = true;
+			return timedOut;
+		}
+	}
+
+	private transient ScheduledExecutorService writeTimer;
+
+	@Override
+	public void init() throws ServletException {
+		super.init();
+		writeTimer = Executors.newSingleThreadScheduledExecutor((r) -> {
+			final Thread t = new Thread(r, "hawk-model-stream-timeout");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+
+	@Override
+	public void destroy() {
+		writeTimer.shutdownNow();
+		super.destroy();
+	}
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		final String instanceName = request.getParameter("instance");
+		if (instanceName == null) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The 'instance' parameter is required");
+			return;
+		}
+		final HModel model = HManager.getInstance().getHawkByName(instanceName);
+		if (model == null) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND, "No Hawk instance exists with name '" + instanceName + "'");
+			return;
+		} else if (!model.isRunning()) {
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Hawk instance '" + instanceName + "' is not running");
+			return;
+		}
+
+		final ThriftProtocol protocol;
+		final int pageSize;
+		try {
+			protocol = ThriftProtocol.valueOf(getParameter(request, "protocol", "tuple").toUpperCase(Locale.ROOT));
+			pageSize = Integer.parseInt(getParameter(request, "pageSize", HawkModelElementPager.DEFAULT_PAGE_SIZE + ""));
+		} catch (IllegalArgumentException ex) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+			return;
+		}
+
+		final HawkQueryOptions opts = new HawkQueryOptions();
+		opts.setRepositoryPattern(getParameter(request, "repository", "*"));
+		final String[] filePatterns = request.getParameterValues("file");
+		opts.setFilePatterns(Arrays.asList(filePatterns == null ? new String[] { "*" } : filePatterns));
+		opts.setIncludeAttributes(Boolean.parseBoolean(getParameter(request, "attributes", "true")));
+		opts.setIncludeReferences(Boolean.parseBoolean(getParameter(request, "references", "true")));
+		opts.setIncludeDerived(Boolean.parseBoolean(getParameter(request, "derived", "true")));
+		final boolean onlyRoots = Boolean.parseBoolean(getParameter(request, "roots", "false"));
+
+		final String query = request.getParameter("query");
+		final String language = request.getParameter("language");
+		if (query != null && language == null) {
+			response.sendError(HttpServletResponse.SC_BAD_REQUEST, "The 'language' parameter is required for queries");
+			return;
+		}
+		final long writeTimeout = SystemProperties.getLong(WRITE_TIMEOUT_PROPERTY, DEFAULT_WRITE_TIMEOUT_MILLIS, 0);
+
+		try (QuerySlot slot = model.acquireQuerySlot()) {
+			Object queryResult = null;
+			if (query != null) {
+				try {
+					queryResult = model.query(query, language, HawkThriftIface.createQueryContext(opts));
+				} catch (NoSuchElementException ex) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown query language '" + language + "'");
+					return;
+				} catch (InvalidQueryException ex) {
+					response.sendError(HttpServletResponse.SC_BAD_REQUEST, ex.getMessage());
+					return;
+				}
+				if (queryResult == null) {
+					queryResult = Collections.emptyList();
+				}
+			}
+
+			/*
+			 * Once the first page has been sent, errors can only be reported by
+			 * ending the response early: the client will find a truncated stream.
+			 */
+			response.setContentType("application/x-thrift");
+			final TProtocol out = protocol.getProtocolFactory().getProtocol(
+				new TIOStreamTransport(response.getOutputStream()));
+
+			try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+				streamElements(model, opts, onlyRoots, queryResult, pageSize, out, writeTimeout);
+			}
+		} catch (TimeoutException ex) {
+			LOGGER.warn("Stopped streaming the model of instance {}: {}", instanceName, ex.getMessage());
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new ServletException("Interrupted while waiting to stream the model", ex);
+		} catch (Exception ex) {
+			LOGGER.error("Could not stream the model of instance " + instanceName, ex);
+			throw new ServletException(ex);
+		}
+	}
+
+	private void streamElements(final HModel model, final HawkQueryOptions opts, final boolean onlyRoots,
+			final Object queryResult, final int pageSize, final TProtocol out, final long writeTimeout) throws Exception {
+		final GraphWrapper gw = new GraphWrapper(model.getGraph());
+		final HawkModelElementEncoder encoder = new HawkModelElementEncoder(gw);
+		encoder.setIncludeAttributes(opts.isIncludeAttributes());
+		encoder.setIncludeReferences(opts.isIncludeReferences());
+		encoder.setIncludeDerived(opts.isIncludeDerived());
+
+		final HawkModelElementCollector collector = new HawkModelElementCollector(gw, opts);
+		final EffectiveMetamodelRuleset emm = collector.getEffectiveMetamodel();
+		if (!emm.isEverythingIncluded()) {
+			encoder.setEffectiveMetamodel(emm);
+		}
+
+		try (HawkModelElementPager pager = new HawkModelElementPager(encoder, pageSize,
+				HawkModelElementPager.DEFAULT_POSITION_WINDOW,
+				(page) -> writePage(out, page, writeTimeout))) {
+			if (queryResult != null) {
+				visitQueryResult(queryResult, pager);
+			} else if (onlyRoots) {
+				collector.visitRoots(pager);
+			} else {
+				collector.visitAll(pager);
+			}
+		}
+		writePage(out, new ArrayList<ModelElement>(0), writeTimeout);
+	}
+
+	private void writePage(TProtocol out, List<ModelElement> page, long timeoutMillis) throws TException, TimeoutException {
+		if (timeoutMillis <= 0) {
+			ModelElementPageStream.writePage(out, page);
+			return;
+		}
+
+		final WriteWatchdog watchdog = new WriteWatchdog(Thread.currentThread());
+		final ScheduledFuture<?> timeout = writeTimer.schedule(watchdog, timeoutMillis, TimeUnit.MILLISECONDS);
+		Exception writeError = null;
+		try {
+			ModelElementPageStream.writePage(out, page);
+		} catch (TException | RuntimeException ex) {
+			writeError = ex;
+		}
+		timeout.cancel(false);
+
+		if (watchdog.stop()) {
+			// Clear the interrupt, in case it arrived after the write was done
+			Thread.interrupted();
+			throw new TimeoutException("Client took more than " + timeoutMillis + "ms to receive a page");
+		} else if (writeError instanceof TException) {
+			throw (TException) writeError;
+		} else if (writeError != null) {
+			throw (RuntimeException) writeError;
+		}
+	}
+
+	private static void visitQueryResult(Object value, IModelElementVisitor visitor) throws Exception {
+		if (value instanceof IGraphTypeNodeReference) {
+			// Types are not model elements
+		} else if (value instanceof IGraphNodeReference) {
+			visitor.visit(new ModelElementNode(((IGraphNodeReference) value).getNode()));
+		} else if (value instanceof IGraphNode) {
+			visitor.visit(new ModelElementNode((IGraphNode) value));
+		} else if (value instanceof Map) {
+			for (Object v : ((Map<?, ?>) value).values()) {
+				visitQueryResult(v, visitor);
+			}
+		} else if (value instanceof Iterable) {
+			for (Object v : (Iterable<?>) value) {
+				visitQueryResult(v, visitor);
+			}
+		}
+	}
+
+	@Override
+	protected void doPost(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		doGet(request, response);
+	}
+
+	private static String getParameter(HttpServletRequest request, String name, String defaultValue) {
+		final String value = request.getParameter(name);
+		return value == null ? defaultValue : value;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.utils;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.hawk.graph.FileNode;
+import org.hawk.graph.GraphWrapper;
+import org.hawk.graph.MetamodelNode;
+import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.TypeNode;
+import org.hawk.service.api.EffectiveMetamodelRuleset;
+import org.hawk.service.api.HawkQueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Visits the model elements within the scope of a set of
+ * {@link HawkQueryOptions} (repository, files and effective metamodel), one
+ * at a time, so they can be encoded all at once or in pages. Must be used
+ * within a graph transaction.
+ */
+public class HawkModelElementCollector {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HawkModelElementCollector.class);
+
+	/**
+	 * Receives each of the visited model elements.
+	 */
+	@FunctionalInterface
+	public interface IModelElementVisitor {
+		void visit(ModelElementNode meNode) throws Exception;
+	}
+
+	private final GraphWrapper graph;
+	private final HawkQueryOptions options;
+	private final EffectiveMetamodelRuleset effectiveMetamodel;
+
+	public HawkModelElementCollector(GraphWrapper gw, HawkQueryOptions options) {
+		this.graph = gw;
+		this.options = options;
+		this.effectiveMetamodel = new EffectiveMetamodelRuleset(
+			options.getEffectiveMetamodelIncludes(), options.getEffectiveMetamodelExcludes());
+	}
+
+	public EffectiveMetamodelRuleset getEffectiveMetamodel() {
+		return effectiveMetamodel;
+	}
+
+	/**
+	 * Visits all the model elements in scope. If specific types were included
+	 * in the effective metamodel, only the instances of those types are
+	 * visited.
+	 */
+	public void visitAll(IModelElementVisitor visitor) throws Exception {
+		final Set<FileNode> fileNodes = getFileNodes();
+		if (effectiveMetamodel.getInclusionRules().isEmpty()) {
+			// No explicitly included types - start with the files
+			for (FileNode fileNode : fileNodes) {
+				LOGGER.info("Retrieving elements from file {}", fileNode.getFilePath());
+				for (ModelElementNode meNode : fileNode.getModelElements()) {
+					visitor.visit(meNode);
+				}
+			}
+		} else {
+			// Explicitly listed metamodels/types - start with the types
+			// TODO: talk with Dimitris about this (optimal traversal can vary)
+			for (Entry<String, Map<String, ImmutableSet<String>>> mmEntry : effectiveMetamodel.getInclusionRules().rowMap().entrySet()) {
+				final String mmURI = mmEntry.getKey();
+				final MetamodelNode mn = graph.getMetamodelNodeByNsURI(mmURI);
+				for (final TypeNode tn : mn.getTypes()) {
+					// Filter by type
+					if (effectiveMetamodel.isIncluded(mmURI, tn.getTypeName())) {
+						LOGGER.info("Retrieving elements from type {}", tn.getTypeName());
+						for (final ModelElementNode meNode : tn.getAll()) {
+							// Filter by scope
+							if (fileNodes.contains(meNode.getFileNode())) {
+								visitor.visit(meNode);
+							}
+						} // for (meNode)
+					}
+				} // for (tn)
+			} // for (mmEntry)
+		}
+	}
+
+	/**
+	 * Visits the model elements in scope which are not contained in any other
+	 * model element.
+	 */
+	public void visitRoots(IModelElementVisitor visitor) throws Exception {
+		for (FileNode fileNode : getFileNodes()) {
+			LOGGER.info("Retrieving root elements from file {}", fileNode.getFilePath());
+			for (ModelElementNode meNode : fileNode.getRootModelElements()) {
+				visitor.visit(meNode);
+			}
+		}
+	}
+
+	private Set<FileNode> getFileNodes() {
+		return graph.getFileNodes(Arrays.asList(options.getRepositoryPattern()), options.getFilePatterns());
+	}
+
+}
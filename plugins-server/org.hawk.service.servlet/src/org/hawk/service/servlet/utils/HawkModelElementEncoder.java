@@ -184,6 +184,37 @@ public class HawkModelElementEncoder {
 		return lRoots;
 	}
 
+	/**
+	 * Returns the encoded {@link ModelElement}s as a page of a larger stream,
+	 * and forgets about them, so a large model can be sent in several pages
+	 * without keeping all of it in memory. Each page is optimised on its own,
+	 * except for references to elements in earlier pages (see below). This is
+	 * meant to be used without containment and with node IDs, so the client can
+	 * resolve references to elements in later pages.
+	 *
+	 * @param positions
+	 *            Positions in the stream of the elements sent so far, used to
+	 *            produce position-based references. The elements of this page
+	 *            are added to it. It may forget about older elements, in which
+	 *            case references to them will use their node IDs.
+	 * @param firstPosition
+	 *            Position in the stream of the first element of this page.
+	 */
+	public List<ModelElement> getElementsPage(Map<String, Integer> positions, int firstPosition) {
+		final List<ModelElement> lRoots = new ArrayList<>(rootElements);
+		if (isSortByNodeIDs()) {
+			sortTreeByNodeId(lRoots);
+		}
+
+		computePreorderPositionMap(lRoots, positions, firstPosition);
+		lastMetamodelURI = lastTypename = lastRepository = lastFile = null;
+		optimizeTree(lRoots, positions);
+
+		nodeIdToElement.clear();
+		rootElements.clear();
+		return lRoots;
+	}
+
 	private void sortTreeByNodeId(List<ModelElement> elements) {
 		Collections.sort(elements, new Comparator<ModelElement>() {
 			public int compare(ModelElement l, ModelElement r) {
@@ -367,6 +398,13 @@ public class HawkModelElementEncoder {
 		return isEncoded(meNode.getNodeId());
 	}
 
+	/**
+	 * Returns the IDs of the nodes of all the model elements encoded so far.
+	 */
+	public Set<String> getEncodedNodeIds() {
+		return Collections.unmodifiableSet(nodeIdToElement.keySet());
+	}
+
 	/**
 	 * Returns <code>true</code> if the model element should be encoded (i.e.
 	 * it's in the effective metamodel). Does not need to retrieve the type node
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.utils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawk.graph.ModelElementNode;
+import org.hawk.service.api.ModelElement;
+import org.hawk.service.api.utils.ModelElementPageStream;
+import org.hawk.service.servlet.utils.HawkModelElementCollector.IModelElementVisitor;
+
+/**
+ * Encodes the visited model elements into pages of a fixed size, passing each
+ * page to a consumer as soon as it is complete. Only the current page and the
+ * positions of the most recently sent elements are kept in memory.
+ *
+ * Elements are encoded without containment and always include their node
+ * IDs, as they would otherwise be impossible to resolve from other pages.
+ */
+public class HawkModelElementPager implements IModelElementVisitor, AutoCloseable {
+
+	/**
+	 * Receives each page of encoded model elements.
+	 */
+	@FunctionalInterface
+	public interface IPageConsumer {
+		void accept(List<ModelElement> page) throws Exception;
+	}
+
+	public static final int DEFAULT_PAGE_SIZE = 1_000;
+	public static final int DEFAULT_POSITION_WINDOW = ModelElementPageStream.DEFAULT_POSITION_WINDOW;
+
+	private final HawkModelElementEncoder encoder;
+	private final int pageSize;
+	private final IPageConsumer consumer;
+	private final Map<String, Integer> positions;
+
+	private int pendingElements = 0;
+	private int nextPosition = 0;
+
+	/**
+	 * Creates a new pager.
+	 *
+	 * @param encoder
+	 *            Encoder to be used. Its containment and node ID options will
+	 *            be overridden.
+	 * @param pageSize
+	 *            Maximum number of elements per page.
+	 * @param positionWindow
+	 *            Number of the most recently sent elements which can be
+	 *            referenced by position. Clients should keep at least as many
+	 *            elements to resolve these references.
+	 * @param consumer
+	 *            Consumer for the pages.
+	 */
+	public HawkModelElementPager(HawkModelElementEncoder encoder, int pageSize, final int positionWindow, IPageConsumer consumer) {
+		this.encoder = encoder;
+		this.pageSize = Math.max(1, pageSize);
+		this.consumer = consumer;
+		this.positions = new LinkedHashMap<String, Integer>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+				return size() > positionWindow;
+			}
+		};
+
+		encoder.setUseContainment(false);
+		encoder.setIncludeNodeIDs(true);
+	}
+
+	/**
+	 * Encodes the model element into the current page, unless it is already in
+	 * it or it was sent recently enough to be referenced by position. Only new
+	 * elements count towards the size of the page.
+	 */
+	@Override
+	public void visit(ModelElementNode meNode) throws Exception {
+		if (encoder.isEncoded(meNode) || positions.containsKey(meNode.getNodeId())) {
+			return;
+		}
+		if (encoder.encode(meNode) != null && ++pendingElements >= pageSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Sends the elements encoded so far as a page, if there are any.
+	 */
+	public void flush() throws Exception {
+		if (pendingElements > 0) {
+			final List<ModelElement> page = encoder.getElementsPage(positions, nextPosition);
+			nextPosition += page.size();
+			pendingElements = 0;
+			consumer.accept(page);
+		}
+	}
+
+	/**
+	 * Returns the number of elements sent so far.
+	 */
+	public int getSentCount() {
+		return nextPosition;
+	}
+
+	/**
+	 * Sends the last page, if there are pending elements.
+	 */
+	@Override
+	public void close() throws Exception {
+		flush();
+	}
+
+}
@@ -16,8 +16,6 @@
  ******************************************************************************/
 package org.hawk.bpmn;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -35,6 +33,8 @@ import org.hawk.core.model.IHawkDataType;
 import org.hawk.core.model.IHawkObject;
 import org.hawk.core.model.IHawkReference;
 import org.hawk.core.model.IHawkStructuralFeature;
+import org.hawk.core.model.signature.ISignatureHasher;
+import org.hawk.core.model.signature.SignatureStrategies;
 
 public class BPMNObject implements IHawkObject {
 
@@ -188,23 +188,14 @@ public class BPMNObject implements IHawkObject {
 
 			} else {
 
-				MessageDigest md = null;
-
-				try {
-					md = MessageDigest.getInstance("SHA-1");
-				} catch (NoSuchAlgorithmException e) {
-					System.err
-							.println("signature() tried to create a SHA-1 digest but a NoSuchAlgorithmException was thrown, returning null");
-					return null;
-				}
-
-				md.update(getUri().getBytes());
-				md.update(getUriFragment().getBytes());
+				final ISignatureHasher hasher = SignatureStrategies.getCurrent().getHasher();
+				hasher.putString(getUri());
+				hasher.putString(getUriFragment());
 
 				IHawkClassifier type = getType();
 
-				md.update(type.getName().getBytes());
-				md.update(type.getPackageNSURI().getBytes());
+				hasher.putString(type.getName());
+				hasher.putString(type.getPackageNSURI());
 
 				if (type instanceof IHawkDataType) {
 
@@ -216,14 +207,13 @@ public class BPMNObject implements IHawkObject {
 							.getAllAttributes()) {
 						if (eAttribute.isDerived() || isSet(eAttribute)) {
 
-							md.update(eAttribute.getName().getBytes());
+							hasher.putString(eAttribute.getName());
 
 							if (!eAttribute.isDerived())
-								// XXX NOTE: using toString for hashcode of
-								// attribute values as primitives in java have
-								// different hashcodes each time, not fullproof
-								// true == "true" here
-								md.update(get(eAttribute).toString().getBytes());
+								// NOTE: values are fed through the hasher rather
+								// than through their hashcodes, as those are not
+								// stable across runs
+								hasher.putValue(get(eAttribute));
 							else {
 
 								// handle derived attributes for metamodel
@@ -237,16 +227,16 @@ public class BPMNObject implements IHawkObject {
 							.getAllReferences()) {
 						if (isSet(eRef)) {
 
-							md.update(eRef.getName().getBytes());
+							hasher.putString(eRef.getName());
 
 							Object destinationObjects = get(eRef, false);
 							if (destinationObjects instanceof Iterable<?>) {
 								for (IHawkObject o : ((Iterable<IHawkObject>) destinationObjects)) {
-									md.update(o.getUriFragment().getBytes());
+									hasher.putString(o.getUriFragment());
 								}
 							} else {
-								md.update(((IHawkObject) destinationObjects)
-										.getUriFragment().getBytes());
+								hasher.putString(((IHawkObject) destinationObjects)
+										.getUriFragment());
 							}
 						}
 					}
@@ -255,7 +245,7 @@ public class BPMNObject implements IHawkObject {
 							.println("warning emf object tried to create signature, but found type: "
 									+ type);
 				}
-				signature = md.digest();
+				signature = hasher.digest();
 			}
 		}
 		return signature;
@@ -17,6 +17,8 @@
 package org.hawk.bpmn.model;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import org.eclipse.emf.common.util.TreeIterator;
@@ -84,6 +86,44 @@ public class BPMNModelResource implements IHawkModelResource {
 
 	}
 
+	@Override
+	public Iterator<IHawkObject> getContentsCursor() {
+		if (allContents != null) {
+			return allContents.iterator();
+		}
+
+		// Walk the resource directly instead of populating allContents
+		final TreeIterator<EObject> it = EcoreUtil.getAllContents(res, false);
+		return new Iterator<IHawkObject>() {
+			EObject next = null;
+
+			@Override
+			public boolean hasNext() {
+				while (next == null && it.hasNext()) {
+					final EObject rawNext = it.next();
+					if (!rawNext.eIsProxy()) {
+						if (rawNext.eResource() == res) {
+							next = rawNext;
+						} else {
+							it.prune();
+						}
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public IHawkObject next() {
+				if (hasNext()) {
+					final EObject ret = next;
+					next = null;
+					return new BPMNObject(ret);
+				}
+				throw new NoSuchElementException();
+			}
+		};
+	}
+
 	public Resource getResource() {
 		return res;
 	}
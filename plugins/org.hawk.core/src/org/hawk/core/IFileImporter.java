@@ -17,6 +17,9 @@
 package org.hawk.core;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Interface for a component which imports files on demand from a predefined
@@ -36,4 +39,28 @@ public interface IFileImporter {
 	 *         read.
 	 */
 	File importFile(String path);
+
+	/**
+	 * Imports several files at once. The default implementation imports each
+	 * path separately through {@link #importFile(String)}.
+	 *
+	 * @return Map from each path to the file where its contents can be read
+	 *         from, or to <code>null</code> if it could not be imported.
+	 */
+	default Map<String, File> importFiles(Collection<String> paths) {
+		final Map<String, File> imported = new HashMap<>();
+		for (String path : paths) {
+			imported.put(path, importFile(path));
+		}
+		return imported;
+	}
+
+	/**
+	 * Returns <code>true</code> if {@link #importFiles(Collection)} can be
+	 * invoked from several threads at once. Returns <code>false</code> by
+	 * default.
+	 */
+	default boolean canImportConcurrently() {
+		return false;
+	}
 }
@@ -17,6 +17,7 @@
 package org.hawk.core;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -27,7 +28,9 @@ import java.util.concurrent.ScheduledFuture;
 import org.hawk.core.IStateListener.HawkState;
 import org.hawk.core.graph.IGraphChangeListener;
 import org.hawk.core.graph.IGraphDatabase;
+import org.hawk.core.model.signature.SignatureStrategies;
 import org.hawk.core.query.IQueryEngine;
+import org.hawk.core.query.QueryCacheStatistics;
 import org.hawk.core.runtime.CompositeGraphChangeListener;
 import org.hawk.core.runtime.CompositeStateListener;
 import org.hawk.core.util.IndexedAttributeParameters;
@@ -262,4 +265,42 @@ public interface IModelIndexer {
 	 * is not designed to be thread safe.
 	 */
 	<T> ScheduledFuture<T> scheduleTask(Callable<T> task, long delayMillis);
+
+	/**
+	 * Returns the statistics of the parsed query caches of all the known query
+	 * engines (see {@link IQueryEngine#getQueryCacheStatistics()}).
+	 */
+	default List<QueryCacheStatistics> getQueryCacheStatistics() {
+		final List<QueryCacheStatistics> stats = new ArrayList<>();
+		for (IQueryEngine engine : getKnownQueryLanguages().values()) {
+			stats.addAll(engine.getQueryCacheStatistics());
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns the name of the strategy used to compute the signatures of the
+	 * indexed model elements (see {@link SignatureStrategies}).
+	 */
+	default String getSignatureStrategy() {
+		return SignatureStrategies.LEGACY;
+	}
+
+	/**
+	 * Changes the strategy used to compute the signatures of the indexed model
+	 * elements. This should only be done before the first synchronisation, as
+	 * elements indexed with a different strategy will be considered to have
+	 * changed. If it is not called before {@link #setDB(IGraphDatabase, boolean)},
+	 * the strategy is restored from the saved metadata of the index (using
+	 * {@link SignatureStrategies#LEGACY} if none was recorded), and setDB fails
+	 * with an {@link IllegalStateException} if the recorded strategy is not
+	 * available. Indexers that do not compute signatures themselves (e.g.
+	 * remote ones) ignore this call.
+	 *
+	 * @throws IllegalArgumentException
+	 *             No strategy with that name is available.
+	 */
+	default void setSignatureStrategy(String name) {
+		// nothing to do by default
+	}
 }
@@ -56,6 +56,17 @@ public interface IModelResourceFactory extends IHawkPlugin {
 	 */
 	boolean canParse(File f);
 
+	/**
+	 * Returns <code>true</code> if {@link #parse(IFileImporter, File)} can be
+	 * invoked from several threads at once (e.g. during a pipelined
+	 * synchronisation). Factories that keep state in their fields while parsing
+	 * should keep the default of <code>false</code>, and Hawk will serialise
+	 * their calls.
+	 */
+	default boolean canParseConcurrently() {
+		return false;
+	}
+
 	/**
 	 * Reports which file extensions can be parsed by this factory.
 	 *
@@ -20,6 +20,8 @@ package org.hawk.core;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.hawk.core.IHawkPlugin.Category;
 import org.hawk.core.model.IHawkObject;
@@ -70,6 +72,38 @@ public interface IVcsManager extends IHawkPlugin {
 	 */
 	File importFile(String revision, String path, File optionalTemp);
 
+	/**
+	 * Bulk version of {@link #importFile(String, String, File)}, which places
+	 * the contents of several resources in local files at once. Implementations
+	 * backed by remote repositories should override this method to retrieve all
+	 * the paths in a single operation, rather than paying one round trip per
+	 * file. The default implementation imports each path separately.
+	 *
+	 * @param revision
+	 *            Identifier of the desired revision of the specified files.
+	 * @param pathToTemp
+	 *            Map from each path within the repository to the suggested
+	 *            temporary location for its contents.
+	 * @return Map from each path to the file that should be read in the end,
+	 *         or to <code>null</code> if it could not be found.
+	 */
+	default Map<String, File> importFiles(String revision, Map<String, File> pathToTemp) {
+		final Map<String, File> imported = new HashMap<>();
+		for (Map.Entry<String, File> entry : pathToTemp.entrySet()) {
+			imported.put(entry.getKey(), importFile(revision, entry.getKey(), entry.getValue()));
+		}
+		return imported;
+	}
+
+	/**
+	 * Returns <code>true</code> if {@link #importFiles(String, Map)} can be
+	 * invoked from several threads at once, allowing Hawk to import separate
+	 * batches of files concurrently. Returns <code>false</code> by default.
+	 */
+	default boolean canImportConcurrently() {
+		return false;
+	}
+
 	/**
 	 * Returns <code>true</code> if the manager is running correctly,
 	 * <code>false</code> otherwise.
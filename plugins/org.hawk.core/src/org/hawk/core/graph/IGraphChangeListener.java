@@ -86,6 +86,14 @@ public interface IGraphChangeListener extends IHawkPlugin {
 	 */
 	void metamodelAddition(IHawkPackage pkg, IGraphNode pkgNode);
 
+	/**
+	 * A metamodel is about to be removed from the graph, along with its types.
+	 * Does nothing by default.
+	 */
+	default void metamodelRemoval(String nsURI, IGraphNode pkgNode) {
+		// nothing to do
+	}
+
 	/**
 	 * A class has been added to the graph.
 	 */
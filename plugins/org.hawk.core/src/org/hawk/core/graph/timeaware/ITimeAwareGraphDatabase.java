@@ -16,7 +16,9 @@
  ******************************************************************************/
 package org.hawk.core.graph.timeaware;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
 
 import org.hawk.core.graph.IGraphDatabase;
 import org.hawk.core.graph.IGraphIterable;
@@ -39,22 +41,117 @@ public interface ITimeAwareGraphDatabase extends IGraphDatabase {
 	IGraphIterable<? extends ITimeAwareGraphNode> allNodes(String label, long time);
 
 	/**
-	 * Returns the currently active timepoint.
+	 * Scope where the current thread works at a certain timepoint, obtained
+	 * through {@link ITimeAwareGraphDatabase#atTime(long)}. Closing it restores
+	 * the previous timepoint of the thread.
+	 */
+	interface ITimeScope extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * Returns the currently active timepoint for the calling thread. Threads
+	 * start at the origin timepoint.
 	 */
 	long getTime();
 
 	/**
-	 * Changes the currently active timepoint. Nodes created after this
-	 * call will only be visible after this timepoint, until they are
-	 * invalidated. Changes to existing nodes will only be visible from
-	 * this point onwards, until they are overwritten down the timeline.
+	 * Changes the currently active timepoint for the calling thread. Nodes
+	 * created by this thread after this call will only be visible after this
+	 * timepoint, until they are invalidated. Changes to existing nodes will
+	 * only be visible from this point onwards, until they are overwritten down
+	 * the timeline.
 	 *
-	 * NOTE: it may be a good idea to use a synchronised block on a DB
-	 * while relying on a particular timepoint, to ensure that no other
-	 * caller will change it in the middle of an operation.
+	 * Other threads are not affected, so queries at different timepoints can
+	 * run concurrently with each other and with indexing. Consider using
+	 * {@link #atTime(long)} instead, so the previous timepoint is restored.
 	 */
 	void setTime(long time);
 
+	/**
+	 * Changes the currently active timepoint for the calling thread until the
+	 * returned scope is closed. Intended for try-with-resources blocks.
+	 */
+	default ITimeScope atTime(long time) {
+		final long previous = getTime();
+		setTime(time);
+		return () -> setTime(previous);
+	}
+
+	/**
+	 * Returns the lock that keeps the writing of new versions into the database
+	 * (write lock) apart from the queries over its history (read lock). Queries
+	 * may run concurrently with each other, but not in the middle of a commit
+	 * being written.
+	 *
+	 * While a thread only holds the read lock, its transactions are not
+	 * expected to change the database, and implementations may skip their
+	 * commits and rollbacks.
+	 */
+	ReadWriteLock getHistoryLock();
+
+	/**
+	 * Returns <code>true</code> if a query may spread its reads over several
+	 * threads, which do not hold the read lock of {@link #getHistoryLock()}
+	 * themselves but run within {@link #readingHistory()}. This requires that
+	 * the transactions of those threads have no side effects. Defaults to
+	 * <code>false</code>.
+	 */
+	default boolean supportsParallelReads() {
+		return false;
+	}
+
+	/**
+	 * Treats the transactions of the calling thread as if it held the read
+	 * lock of {@link #getHistoryLock()}, until the returned scope is closed.
+	 * Meant for worker threads reading on behalf of a thread which does hold
+	 * the read lock: taking the lock again from the workers could block them
+	 * behind a writer queued for the lock, which in turn waits for the thread
+	 * they work for. Does nothing by default.
+	 */
+	default ITimeScope readingHistory() {
+		return () -> {};
+	}
+
+	/**
+	 * Reclaims space used by redundant versions in the history (e.g. adjacent
+	 * versions with the same values in an index). Takes the write lock of
+	 * {@link #getHistoryLock()}, so it waits for running queries and commits
+	 * being written. Does nothing by default.
+	 */
+	default void compactHistory() throws Exception {
+		// nothing to do
+	}
+
+	/**
+	 * Returns the instants of each of the nodes between two points in time,
+	 * both included, from newest to oldest: the i-th array has the instants of
+	 * the i-th node. Implementations may retrieve the histories of all the
+	 * nodes at once, instead of one node at a time.
+	 */
+	default long[][] getInstantsBetween(List<? extends ITimeAwareGraphNode> nodes, long fromInclusive, long toInclusive) {
+		final long[][] instants = new long[nodes.size()][];
+		for (int i = 0; i < instants.length; i++) {
+			instants[i] = nodes.get(i).getInstantsBetweenArray(fromInclusive, toInclusive);
+		}
+		return instants;
+	}
+
+	/**
+	 * Returns all the instants of each of the nodes, from newest to oldest: the
+	 * i-th array has the instants of the i-th node.
+	 *
+	 * @see #getInstantsBetween(List, long, long)
+	 */
+	default long[][] getAllInstants(List<? extends ITimeAwareGraphNode> nodes) throws Exception {
+		final long[][] instants = new long[nodes.size()][];
+		for (int i = 0; i < instants.length; i++) {
+			instants[i] = nodes.get(i).getAllInstantsArray();
+		}
+		return instants;
+	}
+
 	@Override
 	ITimeAwareGraphNode createNode(Map<String, Object> props, String label);
 
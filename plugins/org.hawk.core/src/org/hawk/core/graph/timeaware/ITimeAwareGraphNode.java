@@ -16,7 +16,9 @@
  ******************************************************************************/
 package org.hawk.core.graph.timeaware;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.stream.Collectors;
 
 import org.hawk.core.graph.IGraphNode;
@@ -41,6 +43,14 @@ public interface ITimeAwareGraphNode extends IGraphNode {
 	 */
 	List<Long> getAllInstants() throws Exception;
 
+	/**
+	 * Variant of {@link #getAllInstants()} which returns the instants as a
+	 * primitive array, from newest to oldest.
+	 */
+	default long[] getAllInstantsArray() throws Exception {
+		return toArray(getAllInstants());
+	}
+
 	/**
 	 * Returns a list with all the distinct versions of the node over time.
 	 * Versions should be ordered from newest to oldest.
@@ -51,6 +61,31 @@ public interface ITimeAwareGraphNode extends IGraphNode {
 			.collect(Collectors.toList());
 	}
 
+	/**
+	 * Returns an iterator over all the distinct versions of the node over time,
+	 * from newest to oldest. Each version is only produced when requested, so
+	 * callers which stop early do not pay for the rest.
+	 */
+	default Iterator<ITimeAwareGraphNode> getVersionIterator() throws Exception {
+		final long[] instants = getAllInstantsArray();
+		return new Iterator<ITimeAwareGraphNode>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < instants.length;
+			}
+
+			@Override
+			public ITimeAwareGraphNode next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return travelInTime(instants[next++]);
+			}
+		};
+	}
+
 	/**
 	 * Returns the earliest time instant for this node.
 	 */
@@ -120,6 +155,14 @@ public interface ITimeAwareGraphNode extends IGraphNode {
 	 */
 	List<Long> getInstantsBetween(long fromInclusive, long toInclusive);
 
+	/**
+	 * Variant of {@link #getInstantsBetween(long, long)} which returns the
+	 * instants as a primitive array, from newest to oldest.
+	 */
+	default long[] getInstantsBetweenArray(long fromInclusive, long toInclusive) {
+		return toArray(getInstantsBetween(fromInclusive, toInclusive));
+	}
+
 	/**
 	 * Returns all versions between two instants, both included, from
 	 * newest to oldest.
@@ -162,4 +205,16 @@ public interface ITimeAwareGraphNode extends IGraphNode {
 				.collect(Collectors.toList());
 	}
 
+	/**
+	 * Unboxes a list of instants into a primitive array.
+	 */
+	static long[] toArray(List<Long> instants) {
+		final long[] result = new long[instants.size()];
+		int i = 0;
+		for (long instant : instants) {
+			result[i++] = instant;
+		}
+		return result;
+	}
+
 }
@@ -16,6 +16,7 @@
  ******************************************************************************/
 package org.hawk.core.model;
 
+import java.util.Iterator;
 import java.util.Set;
 
 public interface IHawkModelResource extends IHawkResource {
@@ -24,6 +25,18 @@ public interface IHawkModelResource extends IHawkResource {
 
 	Set<IHawkObject> getAllContentsSet();
 
+	/**
+	 * Returns a cursor which visits each element of this resource once. Unlike
+	 * {@link #getAllContents()}, implementations may produce the elements lazily
+	 * and forget them once visited, so callers must not expect to be able to
+	 * iterate through the resource a second time with the same cursor.
+	 *
+	 * The default implementation iterates over {@link #getAllContents()}.
+	 */
+	default Iterator<IHawkObject> getContentsCursor() {
+		return getAllContents().iterator();
+	}
+
 	/**
 	 * If true, model elements in this resource with globally unique fragments (
 	 * <code>IHawkObject.isFragmentUnique()</code>) are treated as singleton
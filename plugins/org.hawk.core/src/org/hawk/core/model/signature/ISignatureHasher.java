@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.model.signature;
+
+/**
+ * Incremental hasher used to compute the signature of a model element. Values
+ * are fed one at a time, and {@link #digest()} returns the resulting hash and
+ * leaves the hasher ready for the next element, so instances can be reused.
+ * Instances are not thread-safe: use
+ * {@link ISignatureStrategy#getHasher()} to obtain one for the current thread.
+ */
+public interface ISignatureHasher {
+
+	ISignatureHasher putString(String s);
+
+	ISignatureHasher putInt(int v);
+
+	ISignatureHasher putLong(long v);
+
+	ISignatureHasher putDouble(double v);
+
+	ISignatureHasher putBoolean(boolean v);
+
+	ISignatureHasher putBytes(byte[] bytes);
+
+	/**
+	 * Feeds the value of an attribute. Implementations should avoid going
+	 * through {@link Object#toString()} for primitive wrappers, strings and
+	 * collections of those, but may fall back to it for other values.
+	 */
+	ISignatureHasher putValue(Object value);
+
+	/**
+	 * Returns the hash of all the values fed so far, and resets this hasher.
+	 */
+	byte[] digest();
+
+	/**
+	 * Discards all the values fed so far.
+	 */
+	void reset();
+
+}
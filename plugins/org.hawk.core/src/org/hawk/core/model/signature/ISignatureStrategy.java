@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.model.signature;
+
+/**
+ * Algorithm used to compute the signatures of model elements. Signatures are
+ * stored in the graph and compared against on later synchronisations, so an
+ * index must keep using the same strategy throughout its lifetime.
+ */
+public interface ISignatureStrategy {
+
+	/**
+	 * Unique name of the strategy, as stored in the indexer metadata.
+	 */
+	String getName();
+
+	/**
+	 * Returns a hasher for the current thread, which may be reused by later
+	 * calls from the same thread.
+	 */
+	ISignatureHasher getHasher();
+
+}
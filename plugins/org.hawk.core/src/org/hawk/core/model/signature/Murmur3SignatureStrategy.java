@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.model.signature;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Signature strategy based on the 128-bit x64 variant of MurmurHash3. It is
+ * not a cryptographic hash, but signatures are only used to detect changes in
+ * model elements, and it is considerably cheaper than SHA-1. Values are fed
+ * directly in binary form (with a type tag and length prefixes, so different
+ * sequences of values do not produce the same input), without creating
+ * intermediate strings or byte arrays.
+ */
+public class Murmur3SignatureStrategy implements ISignatureStrategy {
+
+	public static final String NAME = "murmur3-128";
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_STRING = 1;
+	private static final byte TAG_INTEGRAL = 2;
+	private static final byte TAG_FLOATING = 3;
+	private static final byte TAG_BOOLEAN = 4;
+	private static final byte TAG_CHAR = 5;
+	private static final byte TAG_DATE = 6;
+	private static final byte TAG_SEQUENCE = 7;
+	private static final byte TAG_OTHER = 8;
+
+	static class Murmur3Hasher implements ISignatureHasher {
+		private static final long C1 = 0x87c37b91114253d5L;
+		private static final long C2 = 0x4cf5ad432745937fL;
+
+		private long h1, h2;
+		private long k1, k2;
+		private int blockLength;
+		private long length;
+
+		@Override
+		public ISignatureHasher putString(String s) {
+			final int len = s.length();
+			update(len, Integer.BYTES);
+
+			int i = 0;
+			for (; i + 4 <= len; i += 4) {
+				update(s.charAt(i)
+					| (long) s.charAt(i + 1) << 16
+					| (long) s.charAt(i + 2) << 32
+					| (long) s.charAt(i + 3) << 48, Long.BYTES);
+			}
+			for (; i < len; i++) {
+				update(s.charAt(i), Character.BYTES);
+			}
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putInt(int v) {
+			update(v & 0xFFFF_FFFFL, Integer.BYTES);
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putLong(long v) {
+			update(v, Long.BYTES);
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putDouble(double v) {
+			update(Double.doubleToLongBits(v), Long.BYTES);
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putBoolean(boolean v) {
+			update(v ? 1 : 0, 1);
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putBytes(byte[] bytes) {
+			update(bytes.length, Integer.BYTES);
+
+			int i = 0;
+			for (; i + 8 <= bytes.length; i += 8) {
+				long v = 0;
+				for (int j = 7; j >= 0; j--) {
+					v = v << 8 | (bytes[i + j] & 0xFFL);
+				}
+				update(v, Long.BYTES);
+			}
+			for (; i < bytes.length; i++) {
+				update(bytes[i] & 0xFFL, 1);
+			}
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putValue(Object value) {
+			if (value == null) {
+				update(TAG_NULL, 1);
+			} else if (value instanceof String) {
+				update(TAG_STRING, 1);
+				putString((String) value);
+			} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				update(TAG_INTEGRAL, 1);
+				putLong(((Number) value).longValue());
+			} else if (value instanceof Double || value instanceof Float) {
+				update(TAG_FLOATING, 1);
+				putDouble(((Number) value).doubleValue());
+			} else if (value instanceof Boolean) {
+				update(TAG_BOOLEAN, 1);
+				putBoolean((Boolean) value);
+			} else if (value instanceof Character) {
+				update(TAG_CHAR, 1);
+				update((Character) value, Character.BYTES);
+			} else if (value instanceof Date) {
+				update(TAG_DATE, 1);
+				putLong(((Date) value).getTime());
+			} else if (value instanceof Collection) {
+				final Collection<?> c = (Collection<?>) value;
+				update(TAG_SEQUENCE, 1);
+				putInt(c.size());
+				for (Object o : c) {
+					putValue(o);
+				}
+			} else if (value.getClass().isArray()) {
+				final int len = Array.getLength(value);
+				update(TAG_SEQUENCE, 1);
+				putInt(len);
+				for (int i = 0; i < len; i++) {
+					putValue(Array.get(value, i));
+				}
+			} else {
+				update(TAG_OTHER, 1);
+				putString(value.toString());
+			}
+			return this;
+		}
+
+		@Override
+		public byte[] digest() {
+			long t1 = k1, t2 = k2;
+			if (blockLength > 8) {
+				t2 *= C2; t2 = Long.rotateLeft(t2, 33); t2 *= C1; h2 ^= t2;
+			}
+			if (blockLength > 0) {
+				t1 *= C1; t1 = Long.rotateLeft(t1, 31); t1 *= C2; h1 ^= t1;
+			}
+
+			h1 ^= length;
+			h2 ^= length;
+			h1 += h2;
+			h2 += h1;
+			h1 = fmix64(h1);
+			h2 = fmix64(h2);
+			h1 += h2;
+			h2 += h1;
+
+			final byte[] result = new byte[16];
+			for (int i = 0; i < 8; i++) {
+				result[i] = (byte) (h1 >>> (8 * i));
+				result[i + 8] = (byte) (h2 >>> (8 * i));
+			}
+
+			reset();
+			return result;
+		}
+
+		@Override
+		public void reset() {
+			h1 = h2 = k1 = k2 = 0;
+			blockLength = 0;
+			length = 0;
+		}
+
+		/**
+		 * Appends the lowest <code>nBytes</code> bytes of <code>v</code> in
+		 * little-endian order, mixing in each 16-byte block as it fills up.
+		 */
+		private void update(long v, int nBytes) {
+			length += nBytes;
+			while (nBytes > 0) {
+				final int offset = blockLength & 7;
+				final int n = Math.min(8 - offset, nBytes);
+				final long part = n == 8 ? v : v & ((1L << (8 * n)) - 1);
+				if (blockLength < 8) {
+					k1 |= part << (8 * offset);
+				} else {
+					k2 |= part << (8 * offset);
+				}
+				v = n == 8 ? 0 : v >>> (8 * n);
+				nBytes -= n;
+				blockLength += n;
+
+				if (blockLength == 16) {
+					mixBlock();
+				}
+			}
+		}
+
+		private void mixBlock() {
+			k1 *= C1; k1 = Long.rotateLeft(k1, 31); k1 *= C2; h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27); h1 += h2; h1 = h1 * 5 + 0x52dce729;
+
+			k2 *= C2; k2 = Long.rotateLeft(k2, 33); k2 *= C1; h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31); h2 += h1; h2 = h2 * 5 + 0x38495ab5;
+
+			k1 = k2 = 0;
+			blockLength = 0;
+		}
+
+		private static long fmix64(long k) {
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb9fe1a85ec53L;
+			k ^= k >>> 33;
+			return k;
+		}
+	}
+
+	private final ThreadLocal<Murmur3Hasher> hashers = ThreadLocal.withInitial(Murmur3Hasher::new);
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public ISignatureHasher getHasher() {
+		final Murmur3Hasher hasher = hashers.get();
+		hasher.reset();
+		return hasher;
+	}
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.model.signature;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Original signature strategy, which hashes the platform encoding of the
+ * string representation of every value with SHA-1. It is kept so indexes
+ * created before signature strategies were introduced keep producing the same
+ * signatures.
+ */
+public class SHA1SignatureStrategy implements ISignatureStrategy {
+
+	public static final String NAME = "sha1";
+
+	private static class SHA1Hasher implements ISignatureHasher {
+		private final MessageDigest md;
+
+		public SHA1Hasher() {
+			try {
+				md = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException("SHA-1 is not available", e);
+			}
+		}
+
+		@Override
+		public ISignatureHasher putString(String s) {
+			md.update(s.getBytes());
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putInt(int v) {
+			return putString(Integer.toString(v));
+		}
+
+		@Override
+		public ISignatureHasher putLong(long v) {
+			return putString(Long.toString(v));
+		}
+
+		@Override
+		public ISignatureHasher putDouble(double v) {
+			return putString(Double.toString(v));
+		}
+
+		@Override
+		public ISignatureHasher putBoolean(boolean v) {
+			return putString(Boolean.toString(v));
+		}
+
+		@Override
+		public ISignatureHasher putBytes(byte[] bytes) {
+			md.update(bytes);
+			return this;
+		}
+
+		@Override
+		public ISignatureHasher putValue(Object value) {
+			// Same as the original implementation (including for collections)
+			return putString(value.toString());
+		}
+
+		@Override
+		public byte[] digest() {
+			return md.digest();
+		}
+
+		@Override
+		public void reset() {
+			md.reset();
+		}
+	}
+
+	private final ThreadLocal<SHA1Hasher> hashers = ThreadLocal.withInitial(SHA1Hasher::new);
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public ISignatureHasher getHasher() {
+		final SHA1Hasher hasher = hashers.get();
+		hasher.reset();
+		return hasher;
+	}
+
+}
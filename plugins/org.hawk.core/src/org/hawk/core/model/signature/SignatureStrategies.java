@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.model.signature;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the available signature strategies, which also keeps track of
+ * the strategy to be used by the model resources parsed and inserted within
+ * the current thread (and the threads it starts, such as parser threads).
+ */
+public final class SignatureStrategies {
+
+	/**
+	 * System property with the name of the strategy to be used by new indexes.
+	 */
+	public static final String DEFAULT_PROPERTY = "hawk.signatureStrategy";
+
+	/**
+	 * Strategy used by indexes which do not specify one in their metadata.
+	 */
+	public static final String LEGACY = SHA1SignatureStrategy.NAME;
+
+	/**
+	 * Strategy used by new indexes, unless {@link #DEFAULT_PROPERTY} is set.
+	 */
+	public static final String DEFAULT = Murmur3SignatureStrategy.NAME;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SignatureStrategies.class);
+	private static final Map<String, ISignatureStrategy> STRATEGIES = new ConcurrentHashMap<>();
+	private static final ThreadLocal<ISignatureStrategy> CURRENT = new InheritableThreadLocal<>();
+
+	static {
+		register(new SHA1SignatureStrategy());
+		register(new Murmur3SignatureStrategy());
+	}
+
+	private SignatureStrategies() {
+		// no instances
+	}
+
+	public static void register(ISignatureStrategy strategy) {
+		STRATEGIES.put(strategy.getName(), strategy);
+	}
+
+	public static Set<String> getNames() {
+		return Collections.unmodifiableSet(STRATEGIES.keySet());
+	}
+
+	/**
+	 * Returns the strategy with the specified name.
+	 *
+	 * @throws IllegalArgumentException
+	 *             No strategy has been registered with that name.
+	 */
+	public static ISignatureStrategy get(String name) {
+		final ISignatureStrategy strategy = STRATEGIES.get(name);
+		if (strategy == null) {
+			throw new IllegalArgumentException(
+				String.format("Unknown signature strategy '%s': available strategies are %s", name, getNames()));
+		}
+		return strategy;
+	}
+
+	/**
+	 * Returns the name of the strategy to be used by a new index.
+	 */
+	public static String getDefaultForNewIndexes() {
+		final String name = System.getProperty(DEFAULT_PROPERTY);
+		if (name == null) {
+			return DEFAULT;
+		} else if (!STRATEGIES.containsKey(name)) {
+			LOGGER.error("{} has invalid value '{}': falling back to {}", DEFAULT_PROPERTY, name, DEFAULT);
+			return DEFAULT;
+		}
+		return name;
+	}
+
+	/**
+	 * Returns the strategy for the current thread. Indexers set it while they
+	 * update their graphs, using the strategy recorded for their index.
+	 *
+	 * @throws IllegalStateException
+	 *             No strategy has been set for this thread: falling back to a
+	 *             default would produce signatures that may not match the
+	 *             stored ones.
+	 */
+	public static ISignatureStrategy getCurrent() {
+		final ISignatureStrategy strategy = CURRENT.get();
+		if (strategy == null) {
+			throw new IllegalStateException("No signature strategy has been set for this thread");
+		}
+		return strategy;
+	}
+
+	/**
+	 * Changes the strategy for the current thread.
+	 *
+	 * @param strategy
+	 *            New strategy, or <code>null</code> to go back to the default.
+	 * @return Strategy previously set for this thread, to be restored later
+	 *         with another call to this method.
+	 */
+	public static ISignatureStrategy setCurrent(ISignatureStrategy strategy) {
+		final ISignatureStrategy previous = CURRENT.get();
+		if (strategy == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(strategy);
+		}
+		return previous;
+	}
+
+}
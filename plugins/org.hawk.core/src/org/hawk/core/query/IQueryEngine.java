@@ -23,6 +23,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -116,6 +117,32 @@ public interface IQueryEngine extends IHawkPlugin {
 	 */
 	public static final String PROPERTY_CANCEL_CONSUMER = "EXEC_CANCEL_CONSUMER";
 
+	/**
+	 * If set, this key should be associated to an {@link IAccessListener} which
+	 * will be told about the graph nodes read by the query, for engines where
+	 * {@link #isAccessTrackingSupported()} is <code>true</code>. Besides the
+	 * properties read from model elements, the listener is told about the type
+	 * extents iterated over by the query (with
+	 * {@link #ACCESS_TYPE_EXTENT}) and any use of all the files or model
+	 * elements in scope (with {@link #ACCESS_ALL_CONTENTS}).
+	 */
+	public static final String PROPERTY_ACCESS_LISTENER = "ACCESS_LISTENER";
+
+	/**
+	 * Property reported to the {@link #PROPERTY_ACCESS_LISTENER} when the query
+	 * iterates over the instances of a type, or finds some of them through the
+	 * index of an indexed or derived attribute. The accessed object is the ID
+	 * of the type node.
+	 */
+	public static final String ACCESS_TYPE_EXTENT = "h_typeExtent";
+
+	/**
+	 * Property reported to the {@link #PROPERTY_ACCESS_LISTENER} when the query
+	 * iterates over all the files or model elements in scope. The accessed
+	 * object is the empty string.
+	 */
+	public static final String ACCESS_ALL_CONTENTS = "h_allContents";
+
 	IAccessListener calculateDerivedAttributes(IModelIndexer m,
 			Iterable<IGraphNode> nodes) throws InvalidQueryException,
 			QueryExecutionException;
@@ -171,6 +198,24 @@ public interface IQueryEngine extends IHawkPlugin {
 		return query(m, code.toString(), context);
 	}
 
+	/**
+	 * Returns statistics about the queries kept by this engine in its cache of
+	 * parsed queries, if it has one. By default, returns an empty list.
+	 */
+	default List<QueryCacheStatistics> getQueryCacheStatistics() {
+		return Collections.emptyList();
+	}
+
+	/**
+	 * Returns <code>true</code> if this engine reports to the
+	 * {@link #PROPERTY_ACCESS_LISTENER} every graph node and type extent that
+	 * could change the result of a query. By default, returns
+	 * <code>false</code>.
+	 */
+	default boolean isAccessTrackingSupported() {
+		return false;
+	}
+
 	@Override
 	default Category getCategory() {
 		return Category.QUERY_ENGINE;
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.query;
+
+/**
+ * Snapshot of the statistics kept by a query engine about a query in its cache
+ * of parsed queries.
+ */
+public class QueryCacheStatistics {
+
+	private final String language;
+	private final String query;
+	private final long hits, misses, totalParseNanos;
+
+	public QueryCacheStatistics(String language, String query, long hits, long misses, long totalParseNanos) {
+		this.language = language;
+		this.query = query;
+		this.hits = hits;
+		this.misses = misses;
+		this.totalParseNanos = totalParseNanos;
+	}
+
+	/**
+	 * Returns the type of the query engine that keeps the cache.
+	 */
+	public String getLanguage() {
+		return language;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the number of executions that reused an already parsed query.
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of executions that had to parse the query.
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	public double getHitRate() {
+		final long total = hits + misses;
+		return total == 0 ? 0 : hits / (double) total;
+	}
+
+	public long getTotalParseNanos() {
+		return totalParseNanos;
+	}
+
+	public double getAverageParseMillis() {
+		return misses == 0 ? 0 : totalParseNanos / (misses * 1_000_000.0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("QueryCacheStatistics [language=%s, hits=%d, misses=%d, avgParseMillis=%.3f, query=%s]",
+			language, hits, misses, getAverageParseMillis(), query);
+	}
+
+}
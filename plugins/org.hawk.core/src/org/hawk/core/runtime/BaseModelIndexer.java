@@ -22,19 +22,29 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Queue;
 import java.util.Set;
 import java.util.TimerTask;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -60,11 +70,14 @@ import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.model.IHawkMetaModelResource;
 import org.hawk.core.model.IHawkModelResource;
+import org.hawk.core.model.signature.ISignatureStrategy;
+import org.hawk.core.model.signature.SignatureStrategies;
 import org.hawk.core.query.IQueryEngine;
 import org.hawk.core.util.DerivedAttributeParameters;
 import org.hawk.core.util.FileOperations;
 import org.hawk.core.util.HawkProperties;
 import org.hawk.core.util.IndexedAttributeParameters;
+import org.hawk.core.util.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -83,44 +96,108 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	}
 
 	public static class DefaultFileImporter implements IFileImporter {
-		private final Map<String, File> cachedImports = new HashMap<>();
+		/*
+		 * We keep a future per path, so concurrent requests for the same path
+		 * (e.g. from several parser threads) wait for a single import. Futures
+		 * allow for caching paths that could not be imported, as well.
+		 */
+		private final ConcurrentMap<String, CompletableFuture<File>> cachedImports = new ConcurrentHashMap<>();
 		private final IVcsManager vcs;
 		private final String revision;
 		private final File tempDir;
-	
+		
 		public DefaultFileImporter(IVcsManager vcs, String revision, File tempDir) {
 			this.vcs = vcs;
 			this.revision = revision;
 			this.tempDir = tempDir;
 		}
-	
+		
 		@Override
 		public File importFile(String commitPath) {
+			return importFiles(Collections.singleton(commitPath)).get(commitPath);
+		}
+
+		@Override
+		public Map<String, File> importFiles(Collection<String> commitPaths) {
 			/*
 			 * We cache the results as some files may get imported repeatedly
 			 * (e.g. mmversion.dat for Modelio).
 			 */
-			if (!cachedImports.containsKey(commitPath)) {
-				String[] commitPathSplit = commitPath.split("/");
-	
-				// Resolves the commit path as a relative path from the
-				// temporary directory
-				File destination = tempDir;
-				if (commitPathSplit.length > 1) {
-					for (String pathComponent : commitPathSplit) {
-						destination = new File(destination, pathComponent);
-					}
-					destination.getParentFile().mkdirs();
+			final Map<String, CompletableFuture<File>> futures = new HashMap<>();
+			final Map<String, File> pendingDestinations = new HashMap<>();
+			for (String commitPath : commitPaths) {
+				final CompletableFuture<File> newFuture = new CompletableFuture<>();
+				final CompletableFuture<File> oldFuture = cachedImports.putIfAbsent(commitPath, newFuture);
+				if (oldFuture == null) {
+					futures.put(commitPath, newFuture);
+					pendingDestinations.put(commitPath, getDestination(commitPath));
 				} else {
-					destination = new File(destination, commitPath);
+					futures.put(commitPath, oldFuture);
 				}
-	
-				File result = vcs.importFile(revision, commitPath, destination);
-				cachedImports.put(commitPath, result);
-				return result;
+			}
+
+			if (!pendingDestinations.isEmpty()) {
+				try {
+					final Map<String, File> imported = importPending(pendingDestinations);
+					for (String commitPath : pendingDestinations.keySet()) {
+						futures.get(commitPath).complete(imported.get(commitPath));
+					}
+				} catch (Throwable ex) {
+					/*
+					 * Do not cache failed imports, so they can be retried. We
+					 * also catch errors, as otherwise other threads waiting on
+					 * these futures would block forever.
+					 */
+					for (String commitPath : pendingDestinations.keySet()) {
+						final CompletableFuture<File> future = futures.get(commitPath);
+						cachedImports.remove(commitPath, future);
+						future.completeExceptionally(ex);
+					}
+					throw ex;
+				}
+			}
+
+			final Map<String, File> results = new HashMap<>();
+			for (Entry<String, CompletableFuture<File>> entry : futures.entrySet()) {
+				results.put(entry.getKey(), entry.getValue().join());
+			}
+			return results;
+		}
+
+		@Override
+		public boolean canImportConcurrently() {
+			return vcs.canImportConcurrently();
+		}
+
+		private Map<String, File> importPending(Map<String, File> pendingDestinations) {
+			if (vcs.canImportConcurrently()) {
+				return vcs.importFiles(revision, pendingDestinations);
+			}
+
+			// Parser threads may still request files concurrently: serialize the imports
+			synchronized (this) {
+				return vcs.importFiles(revision, pendingDestinations);
+			}
+		}
+
+		/**
+		 * Resolves the commit path as a relative path from the temporary
+		 * directory, creating any intermediate folders.
+		 */
+		private File getDestination(String commitPath) {
+			final String[] commitPathSplit = commitPath.split("/");
+
+			File destination = tempDir;
+			if (commitPathSplit.length > 1) {
+				for (String pathComponent : commitPathSplit) {
+					destination = new File(destination, pathComponent);
+				}
+				destination.getParentFile().mkdirs();
 			} else {
-				return cachedImports.get(commitPath);
+				destination = new File(destination, commitPath);
 			}
+
+			return destination;
 		}
 	}
 
@@ -133,6 +210,35 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	public static final int DEFAULT_MAXDELAY = 1000 * 512;
 	public static final int DEFAULT_MINDELAY = 5000;
 
+	/**
+	 * Name of the system property with the number of threads that should parse
+	 * changed model files during a synchronisation. Values above 1 enable the
+	 * pipelined mode, where parsing overlaps with the writes to the graph.
+	 */
+	public static final String PARSER_THREADS_PROPERTY = "hawk.sync.parserThreads";
+	public static final int DEFAULT_PARSER_THREADS = 1;
+
+	/**
+	 * Name of the system property with the maximum number of model resources
+	 * that may be parsed ahead of the graph writer in pipelined mode. Higher
+	 * values can keep the parser threads busier, at the cost of more memory.
+	 */
+	public static final String PARSER_QUEUE_SIZE_PROPERTY = "hawk.sync.parserQueueSize";
+
+	/**
+	 * Name of the system property with the number of threads that should import
+	 * changed files from VCS managers which support concurrent imports (see
+	 * {@link IVcsManager#canImportConcurrently()}).
+	 */
+	public static final String IMPORT_THREADS_PROPERTY = "hawk.sync.importThreads";
+	public static final int DEFAULT_IMPORT_THREADS = 1;
+
+	/**
+	 * Number of paths requested at once from a VCS manager while importing
+	 * changed files.
+	 */
+	public static final int IMPORT_BATCH_SIZE = 50;
+
 	protected static final boolean IS_DERIVED = true;
 	protected static final boolean IS_INDEXED = false;
 
@@ -157,6 +263,20 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	protected Map<String, IQueryEngine> knownQueryLanguages = new ConcurrentHashMap<>();
 	protected IConsole console;
 
+	private int parserThreads = SystemProperties.getInt(PARSER_THREADS_PROPERTY, DEFAULT_PARSER_THREADS);
+	/*
+	 * Zero unless set through the system property or setParserQueueSize: the
+	 * pipeline then uses twice the number of parser threads at that point.
+	 */
+	private int parserQueueSize = SystemProperties.getInt(PARSER_QUEUE_SIZE_PROPERTY, 0, 1);
+	private int importThreads = SystemProperties.getInt(IMPORT_THREADS_PROPERTY, DEFAULT_IMPORT_THREADS);
+
+	/*
+	 * Null until chosen through setSignatureStrategy or restored from the saved
+	 * metadata in setDB: it is only resolved once per index.
+	 */
+	private ISignatureStrategy signatureStrategy;
+
 	private int maxDelay = DEFAULT_MAXDELAY;
 	private int minDelay = DEFAULT_MINDELAY;
 	private int currentDelay = minDelay;
@@ -263,6 +383,7 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	protected boolean synchronise() throws Exception {
 		listener.synchroniseStart();
 		stateListener.state(HawkState.UPDATING);
+		final ISignatureStrategy previousStrategy = SignatureStrategies.setCurrent(getResolvedSignatureStrategy());
 	
 		try {
 			long start = System.currentTimeMillis();
@@ -296,6 +417,7 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	
 			return allSync;
 		} finally {
+			SignatureStrategies.setCurrent(previousStrategy);
 			stateListener.info("Performing optional post-sync operations.");
 			stateListener.state(HawkState.RUNNING);
 			listener.synchroniseEnd();
@@ -322,27 +444,71 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	}
 
 	protected void importFiles(IFileImporter importer, final Set<VcsCommitItem> changedItems, final Map<String, File> pathToImported) {
-		int iImported = 0;
+		if (changedItems.isEmpty()) {
+			return;
+		}
+		final String location = changedItems.iterator().next().getCommit().getDelta().getManager().getLocation();
 
+		// Collect the paths that still need importing, in batches
+		final List<List<String>> batches = new ArrayList<>();
+		final Set<String> seenPaths = new HashSet<>();
+		List<String> currentBatch = new ArrayList<>(IMPORT_BATCH_SIZE);
 		for (VcsCommitItem s : changedItems) {
 			final String commitPath = s.getPath();
-	
+		
 			if (VERBOSE) {
 				console.println("-->" + commitPath + " HAS CHANGED (" + s.getChangeType()
 						+ "), PROPAGATING CHANGES");
 			}
-	
-			if (!pathToImported.containsKey(commitPath)) {
-				final File imported = importer.importFile(commitPath);
-				pathToImported.put(commitPath, imported);
+		
+			if (!pathToImported.containsKey(commitPath) && seenPaths.add(commitPath)) {
+				currentBatch.add(commitPath);
+				if (currentBatch.size() == IMPORT_BATCH_SIZE) {
+					batches.add(currentBatch);
+					currentBatch = new ArrayList<>(IMPORT_BATCH_SIZE);
+				}
 			}
+		}
+		if (!currentBatch.isEmpty()) {
+			batches.add(currentBatch);
+		}
 
-			++iImported;
-			if (iImported % 10 == 0) {
-				stateListener.info(String.format("Imported %d/%d files from %s",
-					iImported, changedItems.size(), s.getCommit().getDelta().getManager().getLocation()));
+		final int nThreads = importer.canImportConcurrently() ? Math.min(importThreads, batches.size()) : 1;
+		if (nThreads <= 1) {
+			for (List<String> batch : batches) {
+				pathToImported.putAll(importer.importFiles(batch));
+				reportImportProgress(pathToImported.size(), seenPaths.size(), location);
 			}
+			return;
 		}
+
+		// Only this thread updates pathToImported: workers just run the imports
+		final ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+		try {
+			final CompletionService<Map<String, File>> completion = new ExecutorCompletionService<>(executor);
+			for (List<String> batch : batches) {
+				completion.submit(() -> importer.importFiles(batch));
+			}
+			for (int i = 0; i < batches.size(); i++) {
+				pathToImported.putAll(completion.take().get());
+				reportImportProgress(pathToImported.size(), seenPaths.size(), location);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while importing files from " + location, e);
+		} catch (ExecutionException e) {
+			// Propagate as in the sequential case, rather than treating the files as missing
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Failed to import files from " + location, e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private void reportImportProgress(int imported, int total, String location) {
+		stateListener.info(String.format("Imported %d/%d files from %s", imported, total, location));
 	}
 
 	@Override
@@ -621,6 +787,7 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 			set.add(meta);
 		}
 		HawkProperties hp = new HawkProperties(graph.getType(), set, minDelay, maxDelay);
+		hp.setSignatureStrategy(getSignatureStrategy());
 	
 		Files.createDirectories(getParentFolder().toPath());
 		String out = stream.toXML(hp);
@@ -635,6 +802,10 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	@Override
 	public void setDB(IGraphDatabase db, boolean persist) {
 		graph = db;
+		if (signatureStrategy == null) {
+			signatureStrategy = loadSignatureStrategy();
+		}
+
 		try {
 			if (persist) {
 				saveIndexer();
@@ -1018,6 +1189,94 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 		maxDelay = max;
 	}
 
+	public int getParserThreads() {
+		return parserThreads;
+	}
+
+	/**
+	 * Changes the number of threads used to parse model files during
+	 * synchronisation. Values above 1 enable the pipelined mode.
+	 */
+	public void setParserThreads(int parserThreads) {
+		this.parserThreads = parserThreads;
+	}
+
+	public int getParserQueueSize() {
+		return parserQueueSize > 0 ? parserQueueSize : 2 * parserThreads;
+	}
+
+	/**
+	 * Changes the maximum number of model resources that may be parsed ahead of
+	 * the graph writer in pipelined mode. Values below 1 go back to the default,
+	 * which is twice the number of parser threads.
+	 */
+	public void setParserQueueSize(int parserQueueSize) {
+		this.parserQueueSize = parserQueueSize;
+	}
+
+	public int getImportThreads() {
+		return importThreads;
+	}
+
+	/**
+	 * Changes the number of threads used to import changed files from VCS
+	 * managers which support concurrent imports.
+	 */
+	public void setImportThreads(int importThreads) {
+		this.importThreads = importThreads;
+	}
+
+	@Override
+	public String getSignatureStrategy() {
+		return getResolvedSignatureStrategy().getName();
+	}
+
+	private ISignatureStrategy getResolvedSignatureStrategy() {
+		return signatureStrategy != null ? signatureStrategy : SignatureStrategies.get(SignatureStrategies.getDefaultForNewIndexes());
+	}
+
+	/**
+	 * Returns the signature strategy recorded in the saved metadata of this
+	 * indexer. Indexes saved before strategies were recorded keep using
+	 * {@link SignatureStrategies#LEGACY}, and new indexes use the default one.
+	 *
+	 * @throws IllegalStateException
+	 *             The metadata could not be read, or it names a strategy which
+	 *             is not available: any other strategy would produce
+	 *             signatures that do not match the stored ones.
+	 */
+	private ISignatureStrategy loadSignatureStrategy() {
+		final File fProps = new File(getParentFolder(), "properties.xml");
+		if (!fProps.exists()) {
+			return SignatureStrategies.get(SignatureStrategies.getDefaultForNewIndexes());
+		}
+
+		final HawkProperties hp;
+		try {
+			final XStream stream = new XStream(new DomDriver());
+			stream.processAnnotations(HawkProperties.class);
+			stream.setClassLoader(HawkProperties.class.getClassLoader());
+			hp = (HawkProperties) stream.fromXML(fProps);
+		} catch (Exception ex) {
+			throw new IllegalStateException("Could not read the signature strategy from " + fProps, ex);
+		}
+
+		final String stored = hp.getSignatureStrategy();
+		if (stored == null) {
+			return SignatureStrategies.get(SignatureStrategies.LEGACY);
+		}
+		try {
+			return SignatureStrategies.get(stored);
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalStateException("Index " + name + " uses a signature strategy which is not available", ex);
+		}
+	}
+
+	@Override
+	public void setSignatureStrategy(String name) {
+		this.signatureStrategy = SignatureStrategies.get(name);
+	}
+
 	@Override
 	public void waitFor(HawkState targetState) throws InterruptedException {
 		waitFor(targetState, 0);
@@ -1086,6 +1345,24 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 	protected boolean internalSynchronise(final String currentRevision, final IVcsManager m,
 			final IModelUpdater u, final Set<VcsCommitItem> deletedItems, final Set<VcsCommitItem> interestingfiles,
 			final String monitorTempDir) {
+		final Map<String, File> pathToImported = new HashMap<>();
+		final IFileImporter importer = new DefaultFileImporter(m, currentRevision, new File(monitorTempDir));
+		return internalSynchronise(m, u, deletedItems, interestingfiles, importer, pathToImported,
+			v -> parseResource(importer, pathToImported, v));
+	}
+
+	/**
+	 * Variant of
+	 * {@link #internalSynchronise(String, IVcsManager, IModelUpdater, Set, Set, String)}
+	 * for files which may have been imported and parsed in advance. Changed files
+	 * missing from <code>pathToImported</code> are imported through
+	 * <code>importer</code>, and the resources of changed files are obtained from
+	 * <code>resourceParser</code>.
+	 */
+	protected boolean internalSynchronise(final IVcsManager m, final IModelUpdater u,
+			final Set<VcsCommitItem> deletedItems, final Set<VcsCommitItem> interestingfiles,
+			final IFileImporter importer, final Map<String, File> pathToImported,
+			final PipelinedModelParser.IResourceParser resourceParser) {
 		boolean success = true;
 
 		// enters transaction mode!
@@ -1096,8 +1373,6 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 		currchangeditems = currchangeditems + totalFiles;
 
 		// create temp files with changed repos files
-		final Map<String, File> pathToImported = new HashMap<>();
-		final IFileImporter importer = new DefaultFileImporter(m, currentRevision, new File(monitorTempDir));
 		importFiles(importer, currReposChangedItems, pathToImported);
 
 		// delete all removed files
@@ -1113,52 +1388,52 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 		int totalProcessedFiles = 0, filesProcessedSinceLastPrint = 0;
 		long millisSinceLastPrint = millisSinceStart;
 
-		for (VcsCommitItem v : currReposChangedItems) {
-			try {
-				// Place before the actual update so we print the 0/X message as well
-				if (fileCountProgress && (totalProcessedFiles == 0 && filesProcessedSinceLastPrint == 0
-						|| filesProcessedSinceLastPrint == FILECOUNT_PROGRESS_THRESHOLD)) {
-					totalProcessedFiles += filesProcessedSinceLastPrint;
-
-					final long millisPrint = System.currentTimeMillis();
-					stateListener.info(String.format("Processed %d/%d files in repo %s (%s sec, %s sec total)",
-							totalProcessedFiles, totalFiles, m.getLocation(),
-							(millisPrint - millisSinceLastPrint) / 1000, (millisPrint - millisSinceStart) / 1000));
-
-					filesProcessedSinceLastPrint = 0;
-					millisSinceLastPrint = millisPrint;
-				}
-
-				IHawkModelResource r = null;
-				if (u.caresAboutResources()) {
-					final File file = pathToImported.get(v.getPath());
-					if (file == null || !file.exists()) {
-						console.printerrln("warning, cannot find file: " + file + ", ignoring changes");
-					} else {
-						IModelResourceFactory mrf = getModelParserFromFilename(file.getName().toLowerCase());
-						if (mrf.canParse(file)) {
-							r = mrf.parse(importer, file);
-						}
+		try (PipelinedModelParser parser = new PipelinedModelParser(currReposChangedItems,
+				v -> u.caresAboutResources() ? resourceParser.parse(v) : null,
+				parserThreads, getParserQueueSize())) {
+			while (parser.hasNext()) {
+				final PipelinedModelParser.ParsedItem parsed = parser.next();
+				final VcsCommitItem v = parsed.getItem();
+
+				try {
+					// Place before the actual update so we print the 0/X message as well
+					if (fileCountProgress && (totalProcessedFiles == 0 && filesProcessedSinceLastPrint == 0
+							|| filesProcessedSinceLastPrint == FILECOUNT_PROGRESS_THRESHOLD)) {
+						totalProcessedFiles += filesProcessedSinceLastPrint;
+
+						final long millisPrint = System.currentTimeMillis();
+						stateListener.info(String.format("Processed %d/%d files in repo %s (%s sec, %s sec total)",
+								totalProcessedFiles, totalFiles, m.getLocation(),
+								(millisPrint - millisSinceLastPrint) / 1000, (millisPrint - millisSinceStart) / 1000));
+
+						filesProcessedSinceLastPrint = 0;
+						millisSinceLastPrint = millisPrint;
 					}
-				}
-				success = u.updateStore(v, r) && success;
 
-				if (r != null) {
-					if (!isSyncMetricsEnabled) {
-						r.unload();
-					} else {
-						fileToResourceMap.put(v, r);
+					final IHawkModelResource r = parsed.getResource();
+					success = u.updateStore(v, r) && success;
+
+					if (r != null) {
+						if (!isSyncMetricsEnabled) {
+							r.unload();
+						} else {
+							fileToResourceMap.put(v, r);
+						}
+						loadedResources++;
 					}
-					loadedResources++;
-				}
 
-				filesProcessedSinceLastPrint++;
+					filesProcessedSinceLastPrint++;
 
-			} catch (Exception e) {
-				console.printerrln("updater: " + u + "failed to update store");
-				console.printerrln(e);
-				success = false;
+				} catch (Exception e) {
+					console.printerrln("updater: " + u + "failed to update store");
+					console.printerrln(e);
+					success = false;
+				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOGGER.error("Interrupted while waiting for parsed model resources", e);
+			success = false;
 		}
 
 		// Print the final message
@@ -1183,6 +1458,32 @@ public abstract class BaseModelIndexer implements IModelIndexer {
 		return success;
 	}
 
+	/**
+	 * Parses the model resource of a changed item which has already been
+	 * imported, returning <code>null</code> if the imported file is missing or
+	 * cannot be parsed. May be called concurrently from the parser threads
+	 * during a pipelined synchronisation: calls to factories which cannot parse
+	 * concurrently are serialised.
+	 */
+	protected IHawkModelResource parseResource(IFileImporter importer, Map<String, File> pathToImported, VcsCommitItem v) throws Exception {
+		final File file = pathToImported.get(v.getPath());
+		if (file == null || !file.exists()) {
+			console.printerrln("warning, cannot find file: " + file + ", ignoring changes");
+			return null;
+		}
+
+		final IModelResourceFactory mrf = getModelParserFromFilename(file.getName().toLowerCase());
+		if (!mrf.canParse(file)) {
+			return null;
+		} else if (mrf.canParseConcurrently()) {
+			return mrf.parse(importer, file);
+		} else {
+			synchronized (mrf) {
+				return mrf.parse(importer, file);
+			}
+		}
+	}
+
 	protected boolean synchroniseFiles(String revision, IVcsManager vcsManager, final Collection<VcsCommitItem> files) {
 		final Set<VcsCommitItem> deleteditems = new HashSet<VcsCommitItem>();
 		final Set<VcsCommitItem> interestingfiles = new HashSet<VcsCommitItem>();
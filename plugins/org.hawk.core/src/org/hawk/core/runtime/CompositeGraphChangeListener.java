@@ -118,6 +118,17 @@ public class CompositeGraphChangeListener extends LinkedHashSet<IGraphChangeList
 		}
 	}
 
+	@Override
+	public void metamodelRemoval(String nsURI, IGraphNode pkgNode) {
+		for (IGraphChangeListener l : this) {
+			try {
+				l.metamodelRemoval(nsURI, pkgNode);
+			} catch (Exception e) {
+				//
+			}
+		}
+	}
+
 	@Override
 	public void classAddition(IHawkClass cls, IGraphNode clsNode) {
 		for (IGraphChangeListener l : this) {
@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.runtime;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawk.core.VcsCommitItem;
+import org.hawk.core.model.IHawkModelResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses the model files of a sequence of changed items in a pool of
+ * background threads, and hands the resulting resources over in their original
+ * order to the single thread that writes them into the graph.
+ *
+ * Parsing runs ahead of the writer by at most <code>queueSize</code> items, so
+ * the number of parsed-but-unwritten resources held in memory stays bounded.
+ * With a single thread, items are parsed on demand from the calling thread, as
+ * in the original sequential synchronisation.
+ */
+public class PipelinedModelParser implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PipelinedModelParser.class);
+
+	/**
+	 * Parses the resource for a changed item. May return <code>null</code> if
+	 * the item does not need a resource or could not be found.
+	 */
+	@FunctionalInterface
+	public interface IResourceParser {
+		IHawkModelResource parse(VcsCommitItem item) throws Exception;
+	}
+
+	/**
+	 * Outcome of parsing a single changed item.
+	 */
+	public static class ParsedItem {
+		private final VcsCommitItem item;
+		private final IHawkModelResource resource;
+		private final Exception error;
+
+		private ParsedItem(VcsCommitItem item, IHawkModelResource resource, Exception error) {
+			this.item = item;
+			this.resource = resource;
+			this.error = error;
+		}
+
+		public VcsCommitItem getItem() {
+			return item;
+		}
+
+		/**
+		 * Returns the parsed resource, or rethrows the exception produced while
+		 * parsing it.
+		 */
+		public IHawkModelResource getResource() throws Exception {
+			if (error != null) {
+				throw error;
+			}
+			return resource;
+		}
+	}
+
+	private static final class ParserThreadFactory implements ThreadFactory {
+		private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+		private final int poolNumber = POOL_COUNTER.incrementAndGet();
+		private final AtomicInteger threadCounter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread t = new Thread(r, String.format("hawk-parser-%d-%d", poolNumber, threadCounter.incrementAndGet()));
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	private final Iterator<VcsCommitItem> items;
+	private final IResourceParser parser;
+	private final int queueSize;
+	private final ExecutorService executor;
+	private final Deque<Future<ParsedItem>> pending;
+
+	private long millisWaiting = 0;
+
+	/**
+	 * Creates a new pipeline and starts parsing the first items right away.
+	 *
+	 * @param items
+	 *            Changed items to be parsed, in the order in which they should
+	 *            be returned.
+	 * @param parser
+	 *            Function which parses the resource of a single item. It must
+	 *            be safe to call from several threads if <code>threads</code>
+	 *            is greater than 1.
+	 * @param threads
+	 *            Number of parser threads. Values of 1 or less parse items
+	 *            sequentially from the calling thread.
+	 * @param queueSize
+	 *            Maximum number of items that can be parsed ahead of the
+	 *            consumer.
+	 */
+	public PipelinedModelParser(Iterable<VcsCommitItem> items, IResourceParser parser, int threads, int queueSize) {
+		this.items = items.iterator();
+		this.parser = parser;
+		this.queueSize = Math.max(1, queueSize);
+
+		if (threads > 1) {
+			this.executor = Executors.newFixedThreadPool(threads, new ParserThreadFactory());
+			this.pending = new ArrayDeque<>(this.queueSize);
+			fill();
+		} else {
+			this.executor = null;
+			this.pending = null;
+		}
+	}
+
+	public boolean hasNext() {
+		if (executor == null) {
+			return items.hasNext();
+		} else {
+			return !pending.isEmpty();
+		}
+	}
+
+	/**
+	 * Returns the next item in the original order, blocking until it has been
+	 * parsed.
+	 */
+	public ParsedItem next() throws InterruptedException {
+		if (executor == null) {
+			return parse(items.next());
+		}
+
+		final Future<ParsedItem> next = pending.poll();
+		if (next == null) {
+			throw new NoSuchElementException();
+		}
+
+		final long start = System.currentTimeMillis();
+		try {
+			return next.get();
+		} catch (ExecutionException e) {
+			// parse() captures exceptions, so only errors should reach this point
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			millisWaiting += System.currentTimeMillis() - start;
+			fill();
+		}
+	}
+
+	/**
+	 * Returns the total time in milliseconds that the consumer has spent
+	 * waiting for parsed resources.
+	 */
+	public long getMillisWaiting() {
+		return millisWaiting;
+	}
+
+	/**
+	 * Stops the parser threads, discarding (and unloading) any resources that
+	 * were parsed but not consumed.
+	 */
+	@Override
+	public void close() {
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdownNow();
+		for (Future<ParsedItem> f : pending) {
+			if (!f.cancel(true) && !f.isCancelled()) {
+				try {
+					final ParsedItem unused = f.get();
+					if (unused.resource != null) {
+						unused.resource.unload();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} catch (ExecutionException e) {
+					LOGGER.debug("Discarded item failed to parse", e);
+				}
+			}
+		}
+		pending.clear();
+
+		LOGGER.debug("Parsing pipeline closed: writer waited {} ms for parsed resources", millisWaiting);
+	}
+
+	private void fill() {
+		while (pending.size() < queueSize && items.hasNext()) {
+			final VcsCommitItem item = items.next();
+			pending.add(executor.submit(() -> parse(item)));
+		}
+	}
+
+	private ParsedItem parse(VcsCommitItem item) {
+		try {
+			return new ParsedItem(item, parser.parse(item), null);
+		} catch (Exception ex) {
+			return new ParsedItem(item, null, ex);
+		}
+	}
+
+}
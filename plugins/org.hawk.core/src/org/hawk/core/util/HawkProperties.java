@@ -18,6 +18,7 @@ package org.hawk.core.util;
 
 import java.util.Collection;
 
+import org.hawk.core.model.signature.SignatureStrategies;
 import org.hawk.core.runtime.ModelIndexerImpl;
 
 import com.thoughtworks.xstream.annotations.XStreamAlias;
@@ -37,6 +38,13 @@ public class HawkProperties {
 	@XStreamAlias("maxDelay")
 	protected int maxDelay = ModelIndexerImpl.DEFAULT_MAXDELAY;
 
+	/**
+	 * Missing from indexes created before signature strategies were introduced,
+	 * which should keep using {@link SignatureStrategies#LEGACY}.
+	 */
+	@XStreamAlias("signatureStrategy")
+	protected String signatureStrategy;
+
 	public String getDbType() {
 		return dbType;
 	}
@@ -69,6 +77,14 @@ public class HawkProperties {
 		this.maxDelay = maxDelay;
 	}
 
+	public String getSignatureStrategy() {
+		return signatureStrategy;
+	}
+
+	public void setSignatureStrategy(String signatureStrategy) {
+		this.signatureStrategy = signatureStrategy;
+	}
+
 	public HawkProperties() {
 	}
 
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads numeric settings from system properties. Missing values fall back to
+ * the default silently, while invalid values (not a number, or under the
+ * minimum) are logged as errors before falling back to the default.
+ */
+public final class SystemProperties {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SystemProperties.class);
+
+	private SystemProperties() {
+		// only static methods
+	}
+
+	public static long getLong(String name, long defaultValue) {
+		return getLong(name, defaultValue, Long.MIN_VALUE);
+	}
+
+	public static long getLong(String name, long defaultValue, long minValue) {
+		return parseLong(name, System.getProperty(name), defaultValue, minValue);
+	}
+
+	public static int getInt(String name, int defaultValue) {
+		return getInt(name, defaultValue, Integer.MIN_VALUE);
+	}
+
+	public static int getInt(String name, int defaultValue, int minValue) {
+		return parseInt(name, System.getProperty(name), defaultValue, minValue);
+	}
+
+	public static double getDouble(String name, double defaultValue) {
+		final String sValue = System.getProperty(name);
+		if (sValue != null) {
+			try {
+				return Double.parseDouble(sValue);
+			} catch (NumberFormatException ex) {
+				logInvalid(name, sValue, defaultValue);
+			}
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Parses the value of a setting, which may have come from somewhere other
+	 * than a system property (e.g. a query context). <code>name</code> is only
+	 * used for logging.
+	 */
+	public static long parseLong(String name, String sValue, long defaultValue, long minValue) {
+		if (sValue != null) {
+			try {
+				final long value = Long.parseLong(sValue.trim());
+				if (value >= minValue) {
+					return value;
+				}
+			} catch (NumberFormatException ex) {
+				// fall through
+			}
+			logInvalid(name, sValue, defaultValue);
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * Integer version of {@link #parseLong(String, String, long, long)}.
+	 */
+	public static int parseInt(String name, String sValue, int defaultValue, int minValue) {
+		if (sValue != null) {
+			try {
+				final int value = Integer.parseInt(sValue.trim());
+				if (value >= minValue) {
+					return value;
+				}
+			} catch (NumberFormatException ex) {
+				// fall through
+			}
+			logInvalid(name, sValue, defaultValue);
+		}
+		return defaultValue;
+	}
+
+	private static void logInvalid(String name, String sValue, Object defaultValue) {
+		LOGGER.error("{} has invalid value '{}': falling back to {}", name, sValue, defaultValue);
+	}
+
+}
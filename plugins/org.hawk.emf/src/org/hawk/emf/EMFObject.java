@@ -17,8 +17,6 @@
  ******************************************************************************/
 package org.hawk.emf;
 
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -36,6 +34,8 @@ import org.hawk.core.model.IHawkDataType;
 import org.hawk.core.model.IHawkObject;
 import org.hawk.core.model.IHawkReference;
 import org.hawk.core.model.IHawkStructuralFeature;
+import org.hawk.core.model.signature.ISignatureHasher;
+import org.hawk.core.model.signature.SignatureStrategies;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -213,22 +213,14 @@ public class EMFObject implements IHawkObject {
 
 			} else {
 
-				MessageDigest md = null;
-
-				try {
-					md = MessageDigest.getInstance("SHA-1");
-				} catch (NoSuchAlgorithmException e) {
-					LOGGER.error("signature() tried to create a SHA-1 digest but a NoSuchAlgorithmException was thrown, returning null", e);
-					return null;
-				}
-
-				md.update(getUri().getBytes());
-				md.update(getUriFragment().getBytes());
+				final ISignatureHasher hasher = SignatureStrategies.getCurrent().getHasher();
+				hasher.putString(getUri());
+				hasher.putString(getUriFragment());
 
 				IHawkClassifier type = getType();
 
-				md.update(type.getName().getBytes());
-				md.update(type.getPackageNSURI().getBytes());
+				hasher.putString(type.getName());
+				hasher.putString(type.getPackageNSURI());
 
 				if (type instanceof IHawkDataType) {
 
@@ -240,14 +232,13 @@ public class EMFObject implements IHawkObject {
 							.getAllAttributes()) {
 						if (eAttribute.isDerived() || isSet(eAttribute)) {
 
-							md.update(eAttribute.getName().getBytes());
+							hasher.putString(eAttribute.getName());
 
 							if (!eAttribute.isDerived())
-								// NOTE: using toString for hashcode of
-								// attribute values as primitives in java have
-								// different hashcodes each time, not fullproof
-								// true == "true" here
-								md.update(get(eAttribute).toString().getBytes());
+								// NOTE: values are fed through the hasher rather
+								// than through their hashcodes, as those are not
+								// stable across runs
+								hasher.putValue(get(eAttribute));
 							else {
 
 								// handle derived attributes for metamodel
@@ -261,23 +252,23 @@ public class EMFObject implements IHawkObject {
 							.getAllReferences()) {
 						if (isSet(eRef)) {
 
-							md.update(eRef.getName().getBytes());
+							hasher.putString(eRef.getName());
 
 							Object destinationObjects = get(eRef, false);
 							if (destinationObjects instanceof Iterable<?>) {
 								for (IHawkObject o : ((Iterable<IHawkObject>) destinationObjects)) {
-									md.update(o.getUriFragment().getBytes());
+									hasher.putString(o.getUriFragment());
 								}
 							} else {
-								md.update(((IHawkObject) destinationObjects)
-										.getUriFragment().getBytes());
+								hasher.putString(((IHawkObject) destinationObjects)
+										.getUriFragment());
 							}
 						}
 					}
 				} else {
 					LOGGER.warn("Unknown type {} while creating signature", type);
 				}
-				signature = md.digest();
+				signature = hasher.digest();
 			}
 		}
 		return signature;
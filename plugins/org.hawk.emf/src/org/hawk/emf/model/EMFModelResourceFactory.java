@@ -140,6 +140,12 @@ public class EMFModelResourceFactory implements IModelResourceFactory {
 		return modelExtensions;
 	}
 
+	@Override
+	public boolean canParseConcurrently() {
+		// Each call uses its own resource set
+		return true;
+	}
+
 	@Override
 	public boolean canParse(File f) {
 		String[] split = f.getPath().split("\\.");
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.epsilon.emc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.epsilon.eol.IEolModule;
+import org.hawk.core.query.InvalidQueryException;
+import org.hawk.core.query.QueryCacheStatistics;
+import org.hawk.core.util.SystemProperties;
+
+/**
+ * LRU cache of parsed Epsilon modules, keyed by query text. Parsed modules keep
+ * their execution context, so they cannot be used by two queries at once: each
+ * query has a small pool of idle modules, which are taken by
+ * {@link #acquire(String, IQueryParser)} and handed back through
+ * {@link #release(String, IEolModule)} once the query has finished and the
+ * module has been given a fresh context.
+ */
+public class CompiledQueryCache {
+
+	/**
+	 * System property with the maximum number of distinct queries to be kept.
+	 * Setting it to 0 disables the cache.
+	 */
+	public static final String MAX_SIZE_PROPERTY = "hawk.eol.queryCacheSize";
+	public static final int DEFAULT_MAX_SIZE = 256;
+
+	/**
+	 * Maximum number of idle modules kept for the same query.
+	 */
+	private static final int MAX_IDLE_MODULES = 8;
+
+	@FunctionalInterface
+	public interface IQueryParser {
+		IEolModule parse(String query) throws InvalidQueryException;
+	}
+
+	private static class Entry {
+		final Deque<IEolModule> idle = new ArrayDeque<>();
+		long hits, misses, parseNanos;
+	}
+
+	private final String language;
+	private final Map<String, Entry> entries;
+
+	public CompiledQueryCache(String language) {
+		this(language, SystemProperties.getInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+	}
+
+	public CompiledQueryCache(String language, final int maxSize) {
+		this.language = language;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns an idle parsed module for the query, or parses a new one with
+	 * <code>parser</code> if there are none. Parsing is done outside the lock, so
+	 * slow parses do not block other queries. Queries are only added to the
+	 * cache once they have been parsed successfully, so invalid queries do not
+	 * push out valid ones.
+	 */
+	public IEolModule acquire(String query, IQueryParser parser) throws InvalidQueryException {
+		synchronized (this) {
+			final Entry entry = entries.get(query);
+			if (entry != null) {
+				final IEolModule module = entry.idle.pollFirst();
+				if (module != null) {
+					entry.hits++;
+					return module;
+				}
+			}
+		}
+
+		final long start = System.nanoTime();
+		final IEolModule module = parser.parse(query);
+		final long elapsed = System.nanoTime() - start;
+		synchronized (this) {
+			Entry entry = entries.get(query);
+			if (entry == null) {
+				entry = new Entry();
+				entries.put(query, entry);
+			}
+			entry.misses++;
+			entry.parseNanos += elapsed;
+		}
+		return module;
+	}
+
+	/**
+	 * Returns a module obtained from {@link #acquire(String, IQueryParser)} to the
+	 * pool for its query. The module must have been given a fresh context.
+	 */
+	public synchronized void release(String query, IEolModule module) {
+		final Entry entry = entries.get(query);
+		if (entry != null && entry.idle.size() < MAX_IDLE_MODULES) {
+			entry.idle.push(module);
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized List<QueryCacheStatistics> getStatistics() {
+		final List<QueryCacheStatistics> stats = new ArrayList<>(entries.size());
+		for (Map.Entry<String, Entry> e : entries.entrySet()) {
+			final Entry entry = e.getValue();
+			stats.add(new QueryCacheStatistics(language, e.getKey(), entry.hits, entry.misses, entry.parseNanos));
+		}
+		return stats;
+	}
+
+}
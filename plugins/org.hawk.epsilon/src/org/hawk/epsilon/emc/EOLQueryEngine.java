@@ -32,6 +32,7 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.eclipse.epsilon.common.parse.problem.ParseProblem;
 import org.eclipse.epsilon.eol.EolModule;
@@ -42,6 +43,7 @@ import org.eclipse.epsilon.eol.exceptions.EolUndefinedVariableException;
 import org.eclipse.epsilon.eol.exceptions.models.EolModelElementTypeNotFoundException;
 import org.eclipse.epsilon.eol.exceptions.models.EolModelLoadingException;
 import org.eclipse.epsilon.eol.exceptions.models.EolNotInstantiableModelElementTypeException;
+import org.eclipse.epsilon.eol.execute.context.IEolContext;
 import org.eclipse.epsilon.eol.execute.context.Variable;
 import org.eclipse.epsilon.eol.execute.control.DefaultExecutionController;
 import org.eclipse.epsilon.eol.execute.introspection.IPropertyGetter;
@@ -56,8 +58,10 @@ import org.hawk.core.graph.IGraphIterable;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphNodeIndex;
 import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.query.IAccessListener;
 import org.hawk.core.query.IQueryEngine;
 import org.hawk.core.query.InvalidQueryException;
+import org.hawk.core.query.QueryCacheStatistics;
 import org.hawk.core.query.QueryExecutionException;
 import org.hawk.core.util.Utils;
 import org.hawk.epsilon.emc.contextful.CEOLQueryEngine;
@@ -75,6 +79,7 @@ import org.hawk.graph.ModelElementNode;
 import org.hawk.graph.TypeNode;
 import org.hawk.graph.updater.DirtyDerivedFeaturesListener;
 import org.hawk.graph.updater.GraphModelInserter;
+import org.hawk.graph.updater.TypeCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -238,6 +243,9 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 
 	/** Do not use OptimisedCollection unless we can benefit from it. */
 	private boolean useOptimisableCollection;
+
+	/** Parsed queries, created on first use (only needed by the registered engine). */
+	private CompiledQueryCache queryCache;
 	
 	/**
 	 * Returns all of the contents of the database in the form of lightweight
@@ -248,6 +256,7 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		final IGraphIterable<? extends IGraphNode> iterableNodes = graph.allNodes(ModelElementNode.OBJECT_VERTEX_LABEL);
 		final Collection<GraphNodeWrapper> allContents = new IGraphIterableCollection(iterableNodes);
 		broadcastAllOfXAccess(allContents);
+		broadcastAllContentsAccess();
 		return allContents;
 	}
 
@@ -330,6 +339,8 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 					}
 				}
 
+				broadcastAllOfXAccess(results);
+				broadcastTypeExtentAccess(typeNodes.get(0));
 				return results;
 			}
 
@@ -348,6 +359,7 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		}
 
 		broadcastAllOfXAccess(nodes);
+		broadcastTypeExtentAccess(typeNode);
 		return nodes;
 	}
 
@@ -373,24 +385,8 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 			final String type = typeName.substring(idxColon + MMURI_TYPE_SEPARATOR.length()); 
 			return getTypeNodes(epackage, type);
 		} else {
-			final Iterator<? extends IGraphNode> packs = metamodeldictionary.query("id", "*").iterator();
-			final List<IGraphNode> candidates = new LinkedList<IGraphNode>();
-
-			while (packs.hasNext()) {
-				IGraphNode pack = packs.next();
-				for (IGraphEdge n : pack.getIncomingWithType("epackage")) {
-	
-					final IGraphNode othernode = n.getStartNode();
-					final Object id = othernode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY);
-					if (id.equals(typeName)) {
-						candidates.add(othernode);
-					}
-				}
-			}
-
-			if (candidates.size() == 1) {
-				return candidates;
-			} else if (candidates.size() > 1) {
+			final List<IGraphNode> candidates = new LinkedList<>(findTypeNodes(typeName, this::findCandidateTypeNodes));
+			if (candidates.size() > 1) {
 				// use default namespaces to limit types
 				for (Iterator<IGraphNode> it = candidates.iterator(); it.hasNext();) {
 					IGraphNode n = it.next();
@@ -399,26 +395,64 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 						it.remove();
 					}
 				}
-	
-				return candidates;
 			}
+			return candidates;
 		}
+	}
 
-		return Collections.emptyList();
+	/**
+	 * Looks up the type nodes for <code>key</code> in the type resolution cache
+	 * shared by all the engines of the indexer, falling back to
+	 * <code>finder</code> if there is no indexer.
+	 */
+	private List<IGraphNode> findTypeNodes(String key, Function<String, List<IGraphNode>> finder) {
+		if (indexer == null) {
+			return finder.apply(key);
+		}
+		return TypeResolutionCache.forIndexer(indexer).getTypeNodes(graph, key, finder);
 	}
 
+	/**
+	 * Returns all the type nodes with the specified name, regardless of the
+	 * default namespaces of this query.
+	 */
+	private List<IGraphNode> findCandidateTypeNodes(String typeName) {
+		final Iterator<? extends IGraphNode> packs = metamodeldictionary.query("id", "*").iterator();
+		final List<IGraphNode> candidates = new ArrayList<>();
+
+		while (packs.hasNext()) {
+			IGraphNode pack = packs.next();
+			for (IGraphEdge n : pack.getIncomingWithType("epackage")) {
+				final IGraphNode othernode = n.getStartNode();
+				final Object id = othernode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY);
+				if (id.equals(typeName)) {
+					candidates.add(othernode);
+				}
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Looks up a type node through the {@link TypeCache} shared with the
+	 * updaters and the other query engines of the same graph.
+	 */
 	protected List<IGraphNode> getTypeNodes(String mmURI, String type) {
-		Iterator<? extends IGraphNode> itPack = metamodeldictionary.get("id", mmURI).iterator();
-		if (!itPack.hasNext()) {
-			throw new NoSuchElementException("Could not find the metamodel node for " + mmURI);
+		final TypeCache typeCache = TypeCache.forGraph(graph);
+		Object id = typeCache.getTypeNodeId(graph, mmURI, type);
+		IGraphNode typeNode = id == null ? null : graph.getNodeById(id);
+		if (id != null && typeNode == null) {
+			// Type removed after it was cached
+			typeCache.invalidate(mmURI);
+			id = typeCache.getTypeNodeId(graph, mmURI, type);
+			typeNode = id == null ? null : graph.getNodeById(id);
 		}
 
-		IGraphNode pack = itPack.next();
-		for (IGraphEdge r : pack.getIncomingWithType("epackage")) {
-			IGraphNode othernode = r.getStartNode();
-			if (othernode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).equals(type)) {
-				return Collections.singletonList(othernode);
-			}
+		if (typeNode != null) {
+			return Collections.singletonList(typeNode);
+		} else if (!metamodeldictionary.get("id", mmURI).iterator().hasNext()) {
+			throw new NoSuchElementException("Could not find the metamodel node for " + mmURI);
 		}
 		return Collections.emptyList();
 	}
@@ -428,16 +462,37 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		 * TODO can optimise by not keeping all the nodes of type/kind but the
 		 * concept of type/kind and only update the attr if a new node is added
 		 * or one is removed.
+		 *
+		 * Listeners for the accesses of a query already get the type extent
+		 * (see broadcastTypeExtentAccess) or the use of all contents, and the
+		 * nodes whose properties are read: there is no need to walk the extent
+		 * for them.
 		 */
-		if (((GraphPropertyGetter) propertyGetter).getBroadcastStatus()) {
+		final GraphPropertyGetter pg = (GraphPropertyGetter) propertyGetter;
+		if (pg.getBroadcastStatus() && !pg.isTrackingQueryAccesses()) {
 			for (Object n : ret) {
-				final AccessListener accessListener = ((GraphPropertyGetter) propertyGetter).getAccessListener();
 				final String sID = ((GraphNodeWrapper) n).getId() + "";
-				accessListener.accessed(sID, "property_unused_type_or_kind");
+				pg.broadcastAccess(sID, "property_unused_type_or_kind");
 			}
 		}
 	}
 
+	/**
+	 * Tells the listener for the accesses of the current query (if any) that
+	 * the query iterated over the instances of a type.
+	 */
+	protected void broadcastTypeExtentAccess(IGraphNode typeNode) {
+		((GraphPropertyGetter) propertyGetter).broadcastQueryAccess(typeNode.getId() + "", IQueryEngine.ACCESS_TYPE_EXTENT);
+	}
+
+	/**
+	 * Tells the listener for the accesses of the current query (if any) that
+	 * the query used all the files or model elements in scope.
+	 */
+	protected void broadcastAllContentsAccess() {
+		((GraphPropertyGetter) propertyGetter).broadcastQueryAccess("", IQueryEngine.ACCESS_ALL_CONTENTS);
+	}
+
 	@Override
 	public Object getElementById(String id) {
 
@@ -650,6 +705,7 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		for (IGraphNode n : graph.allNodes(FileNode.FILE_NODE_LABEL)) {
 			allFNW.add(new FileNodeWrapper(new FileNode(n), this));
 		}
+		broadcastAllContentsAccess();
 		return allFNW;
 	}
 
@@ -825,9 +881,7 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 			throw new QueryExecutionException("Loading of EOLQueryEngine failed");
 		}
 
-		final IEolModule module = createModule();
-		parseQuery(query, context, q, module);
-		return q.runQuery(module);
+		return runCachedQuery(query, context, q);
 	}
 
 	protected Object contextfulQuery(IModelIndexer m, String query, Map<String, Object> context)
@@ -841,9 +895,69 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		}
 		LOGGER.debug("Graph path: {}", graph.getPath());
 
-		final IEolModule module = createModule();
-		parseQuery(query, context, q, module);
-		return q.runQuery(module);
+		return runCachedQuery(query, context, q);
+	}
+
+	/**
+	 * Runs the query on the <code>model</code>, reusing a previously parsed
+	 * module for the same query if available.
+	 */
+	protected Object runCachedQuery(String query, Map<String, Object> context, EOLQueryEngine model)
+			throws InvalidQueryException, QueryExecutionException {
+		final IEolModule module = acquireModule(query);
+		try {
+			bindQuery(context, model, module);
+			return model.runQuery(module);
+		} finally {
+			releaseModule(query, module);
+		}
+	}
+
+	/**
+	 * Returns a parsed module for the query with a fresh context, from the
+	 * cache of parsed queries if possible. It must be handed back through
+	 * {@link #releaseModule(String, IEolModule)} after running the query.
+	 */
+	protected IEolModule acquireModule(String query) throws InvalidQueryException {
+		return getQueryCache().acquire(query, (q) -> {
+			final IEolModule module = createModule();
+			parse(q, module);
+			return module;
+		});
+	}
+
+	/**
+	 * Gives the module a fresh context (so it does not keep the results of the
+	 * last query alive) and returns it to the cache of parsed queries.
+	 */
+	protected void releaseModule(String query, IEolModule module) {
+		if (module instanceof EolModule) {
+			try {
+				final IEolContext freshContext = createModule().getContext();
+				freshContext.setModule(module);
+				((EolModule) module).setContext(freshContext);
+				getQueryCache().release(query, module);
+			} catch (Exception ex) {
+				LOGGER.warn("Could not reset the context of a parsed query, discarding it", ex);
+			}
+		}
+	}
+
+	@Override
+	public List<QueryCacheStatistics> getQueryCacheStatistics() {
+		return getQueryCache().getStatistics();
+	}
+
+	@Override
+	public boolean isAccessTrackingSupported() {
+		return true;
+	}
+
+	protected synchronized CompiledQueryCache getQueryCache() {
+		if (queryCache == null) {
+			queryCache = new CompiledQueryCache(getType());
+		}
+		return queryCache;
 	}
 
 	// IQueryEngine part //////////////////////////////////////////////////////
@@ -857,6 +971,11 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 
 	protected void parseQuery(String query, Map<String, Object> context, final EOLQueryEngine model,
 			final IEolModule module) throws InvalidQueryException {
+		parse(query, module);
+		bindQuery(context, model, module);
+	}
+
+	protected void parse(String query, final IEolModule module) throws InvalidQueryException {
 		try {
 			module.parse(query);
 			if (!module.getParseProblems().isEmpty()) {
@@ -870,9 +989,19 @@ public class EOLQueryEngine extends AbstractHawkModel implements IQueryEngine {
 		} catch (Exception ex) {
 			throw new InvalidQueryException(ex);
 		}
+	}
 
+	/**
+	 * Sets up the context of a parsed module to run a query on the specified
+	 * model, with the arguments and cancellation callback in <code>context</code>.
+	 */
+	protected void bindQuery(Map<String, Object> context, final EOLQueryEngine model, final IEolModule module) {
 		module.getContext().getModelRepository().addModel(model);
 		addQueryArguments(context, module);
+		if (context != null && context.get(IQueryEngine.PROPERTY_ACCESS_LISTENER) instanceof IAccessListener) {
+			((GraphPropertyGetter) model.getPropertyGetter()).setQueryAccessListener(
+				(IAccessListener) context.get(IQueryEngine.PROPERTY_ACCESS_LISTENER));
+		}
 		if (context != null && context.containsKey(IQueryEngine.PROPERTY_CANCEL_CONSUMER)) {
 			@SuppressWarnings("unchecked")
 			final Consumer<Runnable> cancelProvider = (Consumer<Runnable>) context.get(IQueryEngine.PROPERTY_CANCEL_CONSUMER);
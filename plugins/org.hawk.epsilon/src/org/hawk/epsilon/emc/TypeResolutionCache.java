@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.epsilon.emc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+import org.hawk.core.IModelIndexer;
+import org.hawk.core.graph.IGraphDatabase;
+import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.model.IHawkClass;
+import org.hawk.core.model.IHawkPackage;
+import org.hawk.core.util.GraphChangeAdapter;
+import org.hawk.core.util.SystemProperties;
+
+/**
+ * Cache of the type nodes found for each type name used in a query, shared by
+ * all the query engines of an indexer (see {@link #forIndexer(IModelIndexer)}).
+ * Only the IDs of the nodes are kept, so cached results can be used from any
+ * transaction. Results which depend on the settings of a particular query
+ * (such as its default namespaces) should not be cached here. The cache
+ * listens to the graph changes of the indexer, and is cleared whenever a
+ * metamodel or type is added or removed.
+ *
+ * Names which did not match any type are cached as well, so the cache is
+ * bounded by evicting the least recently used names: otherwise, every
+ * misspelled name in a query would stay in it for as long as the indexer runs.
+ */
+public class TypeResolutionCache extends GraphChangeAdapter {
+
+	/**
+	 * System property with the maximum number of type names to be kept.
+	 */
+	public static final String MAX_SIZE_PROPERTY = "hawk.eol.typeResolutionCacheSize";
+	public static final int DEFAULT_MAX_SIZE = 4096;
+
+	private static final Map<IModelIndexer, TypeResolutionCache> SHARED = Collections.synchronizedMap(new WeakHashMap<>());
+
+	private final Map<String, List<Object>> typeNodeIds;
+
+	public TypeResolutionCache() {
+		this(SystemProperties.getInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE, 0));
+	}
+
+	public TypeResolutionCache(final int maxSize) {
+		this.typeNodeIds = Collections.synchronizedMap(new LinkedHashMap<String, List<Object>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, List<Object>> eldest) {
+				return size() > maxSize;
+			}
+		});
+	}
+
+	/**
+	 * Returns the cache shared by the query engines of the specified indexer,
+	 * registering it as a graph change listener the first time.
+	 */
+	public static TypeResolutionCache forIndexer(IModelIndexer indexer) {
+		return SHARED.computeIfAbsent(indexer, (idx) -> {
+			final TypeResolutionCache cache = new TypeResolutionCache();
+			idx.addGraphChangeListener(cache);
+			return cache;
+		});
+	}
+
+	/**
+	 * Returns the type nodes for the specified key (an unqualified type name:
+	 * qualified names are resolved through the TypeCache of the graph instead),
+	 * using <code>finder</code> to
+	 * locate them if they are not cached yet, or if any of the cached nodes no
+	 * longer exists.
+	 */
+	public List<IGraphNode> getTypeNodes(IGraphDatabase graph, String key, Function<String, List<IGraphNode>> finder) {
+		final List<Object> ids = typeNodeIds.get(key);
+		if (ids != null) {
+			final List<IGraphNode> nodes = new ArrayList<>(ids.size());
+			for (Object id : ids) {
+				final IGraphNode node = graph.getNodeById(id);
+				if (node == null) {
+					break;
+				}
+				nodes.add(node);
+			}
+			if (nodes.size() == ids.size()) {
+				return nodes;
+			}
+		}
+
+		final List<IGraphNode> nodes = finder.apply(key);
+		final List<Object> newIds = new ArrayList<>(nodes.size());
+		for (IGraphNode node : nodes) {
+			newIds.add(node.getId());
+		}
+		typeNodeIds.put(key, newIds);
+		return nodes;
+	}
+
+	public void clear() {
+		typeNodeIds.clear();
+	}
+
+	public int size() {
+		return typeNodeIds.size();
+	}
+
+	@Override
+	public String getName() {
+		return "Type resolution cache for Epsilon queries";
+	}
+
+	@Override
+	public void metamodelAddition(IHawkPackage pkg, IGraphNode pkgNode) {
+		clear();
+	}
+
+	@Override
+	public void metamodelRemoval(String nsURI, IGraphNode pkgNode) {
+		clear();
+	}
+
+	@Override
+	public void classAddition(IHawkClass cls, IGraphNode clsNode) {
+		clear();
+	}
+
+	@Override
+	public void changeFailure() {
+		// Types added within the failed change may have been rolled back
+		clear();
+	}
+
+}
@@ -198,6 +198,7 @@ public class CEOLQueryEngine extends EOLQueryEngine {
 	 */
 	@Override
 	public Collection<?> allContents() {
+		broadcastAllContentsAccess();
 		final Iterable<? extends IGraphNode> files = allFiles.apply(null);
 		if (!files.iterator().hasNext()) {
 			return Collections.emptyList();
@@ -237,6 +238,8 @@ public class CEOLQueryEngine extends EOLQueryEngine {
 	public Collection<Object> getAllOf(IGraphNode typeNode, final String typeorkind) {
 		Collection<Object> nodes = createAllOfCollection(typeNode);
 		allOf.addAllOf(typeNode, typeorkind, nodes);
+		broadcastAllOfXAccess(nodes);
+		broadcastTypeExtentAccess(typeNode);
 		return nodes;
 	}
 
@@ -246,6 +249,7 @@ public class CEOLQueryEngine extends EOLQueryEngine {
 		for (IGraphNode rawNode : allFiles.apply(null)) {
 			allFNW.add(new FileNodeWrapper(new FileNode(rawNode), this));
 		}
+		broadcastAllContentsAccess();
 		return allFNW;
 	}
 
@@ -13,34 +13,41 @@
  *
  * Contributors:
  *     Konstantinos Barmpis - initial API and implementation
- *     Antonio Garcia-Dominguez - improved error reporting
+ *     Antonio Garcia-Dominguez - improved error reporting, cost-based planning
  ******************************************************************************/
 package org.hawk.epsilon.emc.optimisation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.epsilon.eol.dom.AndOperatorExpression;
 import org.eclipse.epsilon.eol.dom.EqualsOperatorExpression;
 import org.eclipse.epsilon.eol.dom.Expression;
 import org.eclipse.epsilon.eol.dom.GreaterEqualOperatorExpression;
 import org.eclipse.epsilon.eol.dom.GreaterThanOperatorExpression;
-import org.eclipse.epsilon.eol.dom.ImpliesOperatorExpression;
 import org.eclipse.epsilon.eol.dom.LessEqualOperatorExpression;
 import org.eclipse.epsilon.eol.dom.LessThanOperatorExpression;
 import org.eclipse.epsilon.eol.dom.NameExpression;
 import org.eclipse.epsilon.eol.dom.NotEqualsOperatorExpression;
-import org.eclipse.epsilon.eol.dom.NotOperatorExpression;
+import org.eclipse.epsilon.eol.dom.OperationCallExpression;
 import org.eclipse.epsilon.eol.dom.OperatorExpression;
 import org.eclipse.epsilon.eol.dom.OrOperatorExpression;
 import org.eclipse.epsilon.eol.dom.PropertyCallExpression;
-import org.eclipse.epsilon.eol.dom.XorOperatorExpression;
 import org.eclipse.epsilon.eol.exceptions.EolRuntimeException;
 import org.eclipse.epsilon.eol.execute.context.IEolContext;
 import org.eclipse.epsilon.eol.execute.context.Variable;
+import org.eclipse.epsilon.eol.execute.introspection.IPropertyGetter;
 import org.eclipse.epsilon.eol.execute.operations.declarative.SelectOperation;
 import org.hawk.core.IModelIndexer;
 import org.hawk.core.graph.IGraphDatabase;
@@ -48,21 +55,46 @@ import org.hawk.core.graph.IGraphIterable;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphNodeIndex;
 import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.query.IQueryEngine;
 import org.hawk.core.util.Utils;
 import org.hawk.epsilon.emc.AbstractHawkModel;
 import org.hawk.epsilon.emc.EOLQueryEngine;
+import org.hawk.epsilon.emc.pgetters.GraphPropertyGetter;
 import org.hawk.epsilon.emc.wrappers.GraphNodeWrapper;
+import org.hawk.graph.Slot;
+import org.hawk.graph.TypeNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Select operation which uses the attribute indexes of the graph where
+ * possible. The condition is turned into a plan, where the conditions on
+ * indexed attributes that do not otherwise depend on the iterator (equality,
+ * ranges, <code>startsWith</code> prefixes and <code>includes</code> calls on
+ * collections of values) can report how many elements they match (from the
+ * index), and list them.
+ * Conjunctions start from their most selective indexed comparison, and narrow
+ * down its matches with the other conjuncts. If no index helps, the condition
+ * is evaluated on each element in a single pass, as in a regular select.
+ */
 public class OptimisableCollectionSelectOperation extends SelectOperation {
 
-	// XXX can also index subsets of X.all as the context is kept. but this may
-	// be counter-productive as you may end up doing a retain all on a list of a
-	// couple of elements into an indexed result of millions
+	/**
+	 * If an indexed conjunct matches more than this many times the current
+	 * candidates, it is cheaper to evaluate it on each candidate than to fetch
+	 * all its matches from the index and intersect them.
+	 */
+	private static final int PROBE_FACTOR = 4;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(OptimisableCollectionSelectOperation.class);
 
+	/**
+	 * Number of selects answered through attribute indexes instead of a scan,
+	 * across all queries. Mostly useful for checking plans from tests and
+	 * benchmarks, as each query runs on a new {@link EOLQueryEngine}.
+	 */
+	private static final AtomicLong INDEXED_SELECTS = new AtomicLong();
+
 	protected EOLQueryEngine model;
 	private IEolContext context;
 	private boolean returnOnFirstMatch;
@@ -71,334 +103,710 @@ public class OptimisableCollectionSelectOperation extends SelectOperation {
 	IGraphNode metaclass;
 	IGraphDatabase graph = null;
 
-	@Override
-	public Object execute(Object target, Variable iterator, Expression ast, IEolContext context,
-			boolean returnOnFirstMatch) throws EolRuntimeException {
+	/**
+	 * Plan for evaluating part of the condition of the select.
+	 */
+	private abstract class SelectPlan {
+		protected final Expression ast;
 
-		try {
+		SelectPlan(Expression ast) {
+			this.ast = ast;
+		}
 
-			this.context = context;
-			// cannot guarantee correctness if returnOnFirstMatch is used
-			this.returnOnFirstMatch = false;
-			this.iterator = iterator;
-			model = (EOLQueryEngine) ((OptimisableCollection) target).getModel();
+		/**
+		 * Returns <code>true</code> if the matches of this plan can be listed
+		 * through {@link #getMatches(Collection)} without evaluating the
+		 * condition on every element.
+		 */
+		abstract boolean isIndexed();
+
+		/**
+		 * Returns an upper bound for the number of matches of this plan, or
+		 * {@link Long#MAX_VALUE} if it is not indexed. Indexed plans only ask
+		 * the index for the number of hits, without iterating over them.
+		 */
+		abstract long getCardinality() throws Exception;
+
+		/**
+		 * Returns the matches of this plan within <code>target</code>. Only
+		 * valid if {@link #isIndexed()} is <code>true</code>. Hits are checked
+		 * against <code>target</code> as they are read from the index, so
+		 * passing the current candidates of a conjunction intersects them
+		 * without listing all the matches of this plan first.
+		 */
+		abstract Set<Object> getMatches(Set<Object> target) throws Exception;
+
+		/**
+		 * Returns the candidates that match this plan, by evaluating its
+		 * condition on each of them.
+		 */
+		Set<Object> filter(Set<Object> candidates) throws Exception {
+			return asSet(scan(candidates, ast));
+		}
+	}
 
-			graph = model.getBackend();
-			try (IGraphTransaction ignored = graph.beginTransaction()) {
-				metaclass = ((OptimisableCollection) target).type.getNode();
-				ignored.success();
-			}
+	/**
+	 * Condition that needs to be evaluated on each element.
+	 */
+	private class ScanPlan extends SelectPlan {
+		ScanPlan(Expression ast) {
+			super(ast);
+		}
 
-			return decomposeAST(target, ast);
-		} catch (Exception e) {
-			throw new EolRuntimeException("select(...) failed: " + e.getMessage(), ast);
+		@Override
+		boolean isIndexed() {
+			return false;
+		}
+
+		@Override
+		long getCardinality() {
+			return Long.MAX_VALUE;
+		}
+
+		@Override
+		Set<Object> getMatches(Set<Object> target) {
+			throw new IllegalStateException("Matches of a non-indexed condition cannot be listed");
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	protected Collection<Object> decomposeAST(Object target, Expression ast) throws Exception {
+	/**
+	 * Condition on an indexed attribute, which can be answered through one or
+	 * more lookups on its index.
+	 */
+	private abstract class IndexPlan extends SelectPlan {
+		protected final String indexName, attributeName;
+		private long cardinality = -1;
+
+		IndexPlan(Expression ast, String indexName, String attributeName) {
+			super(ast);
+			this.indexName = indexName;
+			this.attributeName = attributeName;
+		}
 
-		if (ast instanceof AndOperatorExpression) {
-			return and(target, (AndOperatorExpression) ast);
-		} else if (ast instanceof OrOperatorExpression) {
-			return or(target, (OrOperatorExpression) ast);
-		} else if (ast instanceof XorOperatorExpression) {
-			return xor(target, (XorOperatorExpression) ast);
-			// ( a or b ) and ( not(a and b) )
-			// a != b
-		} else if (ast instanceof ImpliesOperatorExpression) {
-			return implies(target, (ImpliesOperatorExpression) ast);
-			// not(a) or b
-			// not( a and not(b) )
-		} else if (ast instanceof NotOperatorExpression) {
-			return not(target, (NotOperatorExpression) ast);
-		} else if (isOptimisable(ast)) {
-			return optimisedExecution(target, ast);
-		} else {
-			// System.err.println("giving to super: "+ast.toStringTree());
-			Object ret = super.execute(target, iterator, (Expression) ast, context, returnOnFirstMatch);
-			// System.err.println("super returns: "+ret.getClass());
-			return (Collection<Object>) ret;
+		/**
+		 * Performs the lookups for this plan on the index. Must be called
+		 * within a transaction.
+		 */
+		protected abstract List<IGraphIterable<? extends IGraphNode>> lookup(IGraphNodeIndex index) throws EolRuntimeException;
+
+		@Override
+		boolean isIndexed() {
+			return true;
+		}
 
+		@Override
+		long getCardinality() throws Exception {
+			if (cardinality < 0) {
+				long total = 0;
+				try (IGraphTransaction tx = graph.beginTransaction()) {
+					for (IGraphIterable<? extends IGraphNode> hits : lookup(graph.getOrCreateNodeIndex(indexName))) {
+						total += hits.size();
+					}
+					tx.success();
+				}
+				cardinality = total;
+				LOGGER.debug("{} matches up to {} elements", this, cardinality);
+			}
+			return cardinality;
 		}
 
+		@Override
+		Set<Object> getMatches(Set<Object> target) throws Exception {
+			/*
+			 * The index only lists the current matches, without reading the
+			 * attribute from the other elements: the result depends on the
+			 * values of the attribute across the whole extent.
+			 */
+			final IPropertyGetter pg = model.getPropertyGetter();
+			if (pg instanceof GraphPropertyGetter) {
+				((GraphPropertyGetter) pg).broadcastQueryAccess(metaclass.getId() + "", IQueryEngine.ACCESS_TYPE_EXTENT);
+			}
+
+			final Set<Object> matches = new HashSet<>();
+			try (IGraphTransaction tx = graph.beginTransaction()) {
+				for (IGraphIterable<? extends IGraphNode> hits : lookup(graph.getOrCreateNodeIndex(indexName))) {
+					for (IGraphNode hit : hits) {
+						final GraphNodeWrapper wrapper = new GraphNodeWrapper(hit, model);
+						if (target.contains(wrapper)) {
+							matches.add(wrapper);
+						}
+					}
+				}
+				tx.success();
+			}
+			return matches;
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private Collection<Object> implies(Object target, ImpliesOperatorExpression ast) throws Exception {
-
-		final Expression lOperand = ast.getFirstOperand();
-		final Expression rOperand = ast.getSecondOperand();
-		final boolean lOptimisable = isOptimisable(lOperand);
-		final boolean rOptimisable = isOptimisable(rOperand);
-
-		final Set<Object> filter = new HashSet<Object>();
-		filter.addAll((Collection<Object>) target);
-
-		if (lOptimisable && rOptimisable) {
-			// not(a) or b
-			Collection<Object> aa = optimisedExecution(target, lOperand);
-			Collection<Object> bb = optimisedExecution(target, rOperand);
-
-			filter.removeAll(aa);
-			filter.addAll(bb);
-			return filter;
-		}
-		else if (lOptimisable) {
-			// not( a and not(b) )
-			final Collection<Object> lhsResult = optimisedExecution(target, lOperand);
-			lhsResult.removeAll((Collection<Object>) decomposeAST(lhsResult, rOperand));
-			filter.removeAll(lhsResult);
-			return filter;
-		}
-		else if (rOptimisable) {
-			// not( not(b) and a )
-			final Collection<Object> rhsResult = optimisedExecution(target, rOperand);
-			final Collection<Object> notb = new HashSet<Object>((Collection<Object>) target);
-			notb.removeAll(rhsResult);
-
-			filter.removeAll(decomposeAST(notb, lOperand));
-			return filter;
-		}
-		else {
-			// not(a) or b
-			final Collection<Object> aa = decomposeAST(target, lOperand);
-			final Collection<Object> bb = decomposeAST(target, rOperand);
-			filter.removeAll(aa);
-			filter.addAll(bb);
-			return filter;
+	/**
+	 * Equality against one value, or membership in a collection of values
+	 * (one lookup per value).
+	 */
+	private class ValuePlan extends IndexPlan {
+		private final Collection<Object> values;
+
+		ValuePlan(Expression ast, String indexName, String attributeName, Collection<Object> values) {
+			super(ast, indexName, attributeName);
+			this.values = values;
+		}
+
+		@Override
+		protected List<IGraphIterable<? extends IGraphNode>> lookup(IGraphNodeIndex index) {
+			final List<IGraphIterable<? extends IGraphNode>> results = new ArrayList<>(values.size());
+			for (Object value : values) {
+				if (value instanceof Integer) {
+					results.add(index.query(attributeName, (int) value, (int) value, true, true));
+				} else if (value instanceof Long) {
+					results.add(index.query(attributeName, (long) value, (long) value, true, true));
+				} else if (value instanceof Double) {
+					results.add(index.query(attributeName, (double) value, (double) value, true, true));
+				} else {
+					results.add(index.get(attributeName, value));
+				}
+			}
+			return results;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s in %s", attributeName, new Utils().toString(values));
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private Collection<Object> not(Object target, NotOperatorExpression ast) throws Exception {
-		final Set<Object> filter = new HashSet<Object>((Collection<Object>) target);
+	/**
+	 * String prefix, looked up with a trailing wildcard.
+	 */
+	private class PrefixPlan extends IndexPlan {
+		private final String prefix;
 
-		final Expression operand = ast.getFirstOperand();
-		if (isOptimisable(operand)) {
-			filter.removeAll(optimisedExecution(target, operand));
+		PrefixPlan(Expression ast, String indexName, String attributeName, String prefix) {
+			super(ast, indexName, attributeName);
+			this.prefix = prefix;
 		}
-		else {
-			filter.removeAll(decomposeAST(target, operand));
+
+		@Override
+		protected List<IGraphIterable<? extends IGraphNode>> lookup(IGraphNodeIndex index) {
+			return Collections.singletonList(index.query(attributeName, prefix + "*"));
 		}
 
-		return filter;
+		@Override
+		public String toString() {
+			return String.format("%s starts with '%s'", attributeName, prefix);
+		}
 	}
 
-	private Collection<Object> xor(Object target, XorOperatorExpression ast) throws Exception {
-		Collection<Object> filter = new HashSet<Object>();
-		Collection<Object> a = null;
-		Collection<Object> b = null;
+	/**
+	 * Numeric range, produced from one or more ordering comparisons on the same
+	 * attribute.
+	 */
+	private class RangePlan extends IndexPlan {
+		private final List<Expression> conditions;
+		private final Number from, to;
+		private final boolean fromInclusive, toInclusive;
+
+		RangePlan(List<Expression> conditions, String indexName, String attributeName,
+				Number from, boolean fromInclusive, Number to, boolean toInclusive) {
+			super(conditions.get(0), indexName, attributeName);
+			this.conditions = conditions;
+			this.from = from;
+			this.fromInclusive = fromInclusive;
+			this.to = to;
+			this.toInclusive = toInclusive;
+		}
 
-		final Expression lOperand = ast.getFirstOperand();
-		final Expression rOperand = ast.getSecondOperand();
-		if (isOptimisable(lOperand) && isOptimisable(rOperand)) {
-			a = optimisedExecution(target, lOperand);
-			b = optimisedExecution(target, rOperand);
-		} else {
-			a = decomposeAST(target, lOperand);
-			b = decomposeAST(target, rOperand);
+		/**
+		 * Returns a plan for the intersection of both ranges, or
+		 * <code>null</code> if they are not on the same attribute and type.
+		 */
+		RangePlan intersect(RangePlan other) {
+			if (!indexName.equals(other.indexName) || !attributeName.equals(other.attributeName)
+					|| from.getClass() != other.from.getClass()) {
+				return null;
+			}
+
+			final List<Expression> newConditions = new ArrayList<>(conditions);
+			newConditions.addAll(other.conditions);
+
+			final int cmpFrom = compare(from, other.from);
+			final Number newFrom = cmpFrom >= 0 ? from : other.from;
+			final boolean newFromInclusive = cmpFrom > 0 ? fromInclusive
+				: cmpFrom < 0 ? other.fromInclusive : fromInclusive && other.fromInclusive;
+
+			final int cmpTo = compare(to, other.to);
+			final Number newTo = cmpTo <= 0 ? to : other.to;
+			final boolean newToInclusive = cmpTo < 0 ? toInclusive
+				: cmpTo > 0 ? other.toInclusive : toInclusive && other.toInclusive;
+
+			return new RangePlan(newConditions, indexName, attributeName, newFrom, newFromInclusive, newTo, newToInclusive);
 		}
 
-		// a or b
-		filter.addAll(a);
-		filter.addAll(b);
+		@Override
+		protected List<IGraphIterable<? extends IGraphNode>> lookup(IGraphNodeIndex index) {
+			final int cmp = compare(from, to);
+			if (cmp > 0 || cmp == 0 && !(fromInclusive && toInclusive)) {
+				// e.g. "x > 5 and x < 3": avoid passing an empty range to the backend
+				return Collections.emptyList();
+			}
+			return Collections.singletonList(index.query(attributeName, from, to, fromInclusive, toInclusive));
+		}
 
-		// intersection of a and b
-		a.retainAll(b);
+		@Override
+		Set<Object> filter(Set<Object> candidates) throws Exception {
+			for (Expression condition : conditions) {
+				if (candidates.isEmpty()) {
+					break;
+				}
+				candidates = asSet(scan(candidates, condition));
+			}
+			return candidates;
+		}
 
-		// a xor b
-		filter.removeAll(a);
+		@Override
+		public String toString() {
+			return String.format("%s in %s%s, %s%s", attributeName,
+				fromInclusive ? "[" : "(", from, to, toInclusive ? "]" : ")");
+		}
 
-		return filter;
+		private int compare(Number a, Number b) {
+			if (a instanceof Double) {
+				return Double.compare(a.doubleValue(), b.doubleValue());
+			} else {
+				return Long.compare(a.longValue(), b.longValue());
+			}
+		}
 	}
 
-	private Collection<Object> or(Object target, OrOperatorExpression ast) throws Exception {
-		// System.err.println("anding:
-		// "+lOperand.toStringTree()+"\n"+rOperand.toStringTree());
+	/**
+	 * Conjunction: starts from its most selective indexed conjunct, if any.
+	 * Ranges on the same attribute are merged into a single lookup.
+	 */
+	private class AndPlan extends SelectPlan {
+		private final List<SelectPlan> conjuncts = new ArrayList<>();
 
-		final Expression lOperand = ast.getFirstOperand();
-		final Expression rOperand = ast.getSecondOperand();
-		final Collection<Object> filter = new HashSet<Object>();
+		AndPlan(Expression ast, List<SelectPlan> conjuncts) throws Exception {
+			super(ast);
 
-		if (isOptimisable(lOperand) && (isOptimisable(rOperand))) {
-			filter.addAll(optimisedExecution(target, lOperand));
-			filter.addAll(optimisedExecution(target, rOperand));
-		} else {
-			filter.addAll(decomposeAST(target, lOperand));
-			filter.addAll(decomposeAST(target, rOperand));
+			for (SelectPlan conjunct : conjuncts) {
+				if (!(conjunct instanceof RangePlan) || !mergeRange((RangePlan) conjunct)) {
+					this.conjuncts.add(conjunct);
+				}
+			}
+
+			// Stable sort: non-indexed conjuncts keep their original order
+			final Map<SelectPlan, Long> cardinalities = new IdentityHashMap<>();
+			for (SelectPlan conjunct : this.conjuncts) {
+				cardinalities.put(conjunct, conjunct.getCardinality());
+			}
+			this.conjuncts.sort(Comparator.comparingLong(cardinalities::get));
 		}
 
-		return filter;
-	}
+		private boolean mergeRange(RangePlan range) {
+			for (ListIterator<SelectPlan> it = conjuncts.listIterator(); it.hasNext(); ) {
+				final SelectPlan previous = it.next();
+				if (previous instanceof RangePlan) {
+					final RangePlan intersection = ((RangePlan) previous).intersect(range);
+					if (intersection != null) {
+						it.set(intersection);
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		boolean isIndexed() {
+			return conjuncts.get(0).isIndexed();
+		}
 
-	private Collection<Object> and(Object target, AndOperatorExpression ast) throws Exception {
+		@Override
+		long getCardinality() throws Exception {
+			return conjuncts.get(0).getCardinality();
+		}
 
-		// System.err.println("anding:
-		// "+lOperand.toStringTree()+"\n"+rOperand.toStringTree());
+		@Override
+		Set<Object> getMatches(Set<Object> target) throws Exception {
+			Set<Object> candidates = conjuncts.get(0).getMatches(target);
+			for (SelectPlan conjunct : conjuncts.subList(1, conjuncts.size())) {
+				if (candidates.isEmpty()) {
+					break;
+				} else if (conjunct.isIndexed() && conjunct.getCardinality() <= (long) PROBE_FACTOR * candidates.size()) {
+					// the candidates are a subset of the target: only keep the hits among them
+					candidates = conjunct.getMatches(candidates);
+				} else {
+					candidates = conjunct.filter(candidates);
+				}
+			}
+			return candidates;
+		}
+	}
 
-		final Expression lOperand = ast.getFirstOperand();
-		final Expression rOperand = ast.getSecondOperand();
-		final boolean lOptimisable = isOptimisable(lOperand);
-		final boolean rOptimisable = isOptimisable(rOperand);
+	/**
+	 * Disjunction: only indexed if all its disjuncts are.
+	 */
+	private class OrPlan extends SelectPlan {
+		private final List<SelectPlan> disjuncts;
 
-		final Collection<Object> filter = new HashSet<>();
-		if (lOptimisable && rOptimisable) {
-			filter.addAll(optimisedExecution(optimisedExecution(target, lOperand), rOperand));
-		} else if (lOptimisable) {
-			filter.addAll(decomposeAST(optimisedExecution(target, lOperand), rOperand));
-		} else if (rOptimisable) {
-			filter.addAll(decomposeAST(optimisedExecution(target, rOperand), lOperand));
-		} else {
-			filter.addAll(decomposeAST(decomposeAST(target, lOperand), rOperand));
-			// modifiedlist = (Collection<?>)
-			// super.execute(modifiedlist,iterator, ast, context,
-			// returnOnFirstMatch);
+		OrPlan(Expression ast, List<SelectPlan> disjuncts) {
+			super(ast);
+			this.disjuncts = disjuncts;
 		}
 
-		return filter;
+		@Override
+		boolean isIndexed() {
+			for (SelectPlan disjunct : disjuncts) {
+				if (!disjunct.isIndexed()) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		long getCardinality() throws Exception {
+			if (!isIndexed()) {
+				return Long.MAX_VALUE;
+			}
+
+			long total = 0;
+			for (SelectPlan disjunct : disjuncts) {
+				total += disjunct.getCardinality();
+			}
+			return total;
+		}
 
+		@Override
+		Set<Object> getMatches(Set<Object> target) throws Exception {
+			final Set<Object> matches = new HashSet<>();
+			for (SelectPlan disjunct : disjuncts) {
+				matches.addAll(disjunct.getMatches(target));
+			}
+			return matches;
+		}
 	}
 
+	@Override
 	@SuppressWarnings("unchecked")
-	private Collection<Object> optimisedExecution(Object target, Expression ast) throws EolRuntimeException {
-
-		// NOTE: this assumes that isOptimisable(ast) returned true
-		final OperatorExpression opExp = (OperatorExpression) ast;
-		final PropertyCallExpression lOperand = (PropertyCallExpression) opExp.getFirstOperand();
-		final String attributename = lOperand.getPropertyNameExpression().getName();
-		final String variableName = ((NameExpression) lOperand.getTargetExpression()).getName();
+	public Object execute(Object target, Variable iterator, Expression ast, IEolContext context,
+			boolean returnOnFirstMatch) throws EolRuntimeException {
 
-		final Expression valueAST = opExp.getSecondOperand();
-		Object attributevalue = null;
 		try {
-			attributevalue = context.getExecutorFactory().execute(valueAST, context);
+
+			this.context = context;
+			// cannot guarantee correctness if returnOnFirstMatch is used
+			this.returnOnFirstMatch = false;
+			this.iterator = iterator;
+			model = (EOLQueryEngine) ((OptimisableCollection) target).getModel();
+
+			graph = model.getBackend();
+			try (IGraphTransaction ignored = graph.beginTransaction()) {
+				metaclass = ((OptimisableCollection) target).type.getNode();
+				ignored.success();
+			}
+
+			final Set<Object> targetElements = (Set<Object>) target;
+			final SelectPlan plan = plan(ast);
+			if (plan.isIndexed() && plan.getCardinality() < targetElements.size()) {
+				INDEXED_SELECTS.incrementAndGet();
+				return plan.getMatches(targetElements);
+			} else {
+				return scan(targetElements, ast);
+			}
 		} catch (Exception e) {
-			// if the rhs is invalid or tries to use the iterator of the select
-			// (which is outside its scope) -- default to epsilon's select
-			LOGGER.warn("Warning: the RHS of the expression:\n{}"
-					+ "\ncannot be evaluated using database indexing,\nas the iterator variable of the current select operation ({}) "
-					+ "is not used in this process.\nDefaulting to Epsilon's select", ast, iterator.getName());
+			throw new EolRuntimeException("select(...) failed: " + e.getMessage(), ast);
 		}
+	}
 
-		String indexname;
-		if (attributevalue != null && (indexname = isIndexed(attributename)) != null) {
-			if (!(attributevalue instanceof Collection<?>)) {
-				attributevalue = AbstractHawkModel.toPrimitive(attributevalue);
-			} else {
-				Collection<?> cRet = (Collection<?>) attributevalue;
-				Object[] aRet = new Object[cRet.size()];
-				int count = 0;
-				for (Iterator<?> it = cRet.iterator(); it.hasNext();) {
-					aRet[count] = AbstractHawkModel.toPrimitive(it.next());
-					count++;
-				}
-				// flatten to allow comparison to index value (which cannot be
-				// multi-valued)
-				attributevalue = Arrays.toString(aRet);
+	/**
+	 * Returns the number of selects that have been answered through attribute
+	 * indexes rather than by evaluating their condition on every element.
+	 */
+	public static long getIndexedSelectCount() {
+		return INDEXED_SELECTS.get();
+	}
+
+	private SelectPlan plan(Expression ast) throws Exception {
+		if (ast instanceof AndOperatorExpression) {
+			final List<SelectPlan> conjuncts = new ArrayList<>();
+			for (Expression operand : flatten((OperatorExpression) ast, AndOperatorExpression.class, new ArrayList<>())) {
+				conjuncts.add(plan(operand));
+			}
+			return new AndPlan(ast, conjuncts);
+		} else if (ast instanceof OrOperatorExpression) {
+			final List<SelectPlan> disjuncts = new ArrayList<>();
+			for (Expression operand : flatten((OperatorExpression) ast, OrOperatorExpression.class, new ArrayList<>())) {
+				disjuncts.add(plan(operand));
+			}
+			return new OrPlan(ast, disjuncts);
+		} else if (isOptimisable(ast)) {
+			final SelectPlan indexPlan = planComparison((OperatorExpression) ast);
+			if (indexPlan != null) {
+				return indexPlan;
 			}
+		} else if (ast instanceof OperationCallExpression) {
+			final SelectPlan indexPlan = planOperationCall((OperationCallExpression) ast);
+			if (indexPlan != null) {
+				return indexPlan;
+			}
+		}
 
-			final Set<Object> result = new HashSet<Object>((Collection<Object>) target);
-			System.err.println(String.format("indexed ast found: %s.%s %s %s (type: %s)",
-					variableName, attributename, ast.getClass().getName(),
-					new Utils().toString(attributevalue),
-					attributevalue.getClass().getName()));
+		/*
+		 * Everything else (including not, xor and implies) is evaluated on
+		 * each element: complementing an index result would require a copy of
+		 * the whole target collection.
+		 */
+		return new ScanPlan(ast);
+	}
 
-			final Set<Object> filter = new HashSet<Object>();
+	private List<Expression> flatten(OperatorExpression ast, Class<? extends OperatorExpression> opClass, List<Expression> operands) {
+		for (Expression operand : Arrays.asList(ast.getFirstOperand(), ast.getSecondOperand())) {
+			if (opClass.isInstance(operand)) {
+				flatten((OperatorExpression) operand, opClass, operands);
+			} else {
+				operands.add(operand);
+			}
+		}
+		return operands;
+	}
 
-			// use index to query
-			try (IGraphTransaction ignored = graph.beginTransaction()) {
+	/**
+	 * Returns a plan which uses the index of the attribute being compared, or
+	 * <code>null</code> if the comparison cannot be answered from an index.
+	 */
+	private SelectPlan planComparison(OperatorExpression opExp) throws Exception {
+		// NOTE: this assumes that isOptimisable(ast) returned true
+		if (opExp instanceof NotEqualsOperatorExpression) {
+			return null;
+		}
 
-				IGraphNodeIndex index = graph.getOrCreateNodeIndex(indexname);
-
-				//
-				IGraphIterable<? extends IGraphNode> hits = null;
-
-				if (ast instanceof EqualsOperatorExpression && !(ast instanceof NotEqualsOperatorExpression)) {
-					if (attributevalue instanceof Integer)
-						hits = index.query(attributename, (int) attributevalue, (int) attributevalue, true, true);
-					else if (attributevalue instanceof Long)
-						hits = index.query(attributename, (long) attributevalue, (long) attributevalue, true, true);
-					else if (attributevalue instanceof Double)
-						hits = index.query(attributename, (double) attributevalue, (double) attributevalue, true, true);
-					else
-						hits = index.get(attributename, attributevalue);
-				} else if (ast instanceof GreaterEqualOperatorExpression) {
-					if (attributevalue instanceof Integer)
-						hits = index.query(attributename, (int) attributevalue, Integer.MAX_VALUE, true, true);
-					else if (attributevalue instanceof Long)
-						hits = index.query(attributename, (long) attributevalue, Long.MAX_VALUE, true, true);
-					else if (attributevalue instanceof Double)
-						hits = index.query(attributename, (double) attributevalue, Double.MAX_VALUE, true, true);
-					else
-						throw new EolRuntimeException(
-								">= used with a non numeric value (" + attributevalue.getClass() + ")");
-				} else if (ast instanceof GreaterThanOperatorExpression) {
-					if (attributevalue instanceof Integer)
-						hits = index.query(attributename, (int) attributevalue, Integer.MAX_VALUE, false, true);
-					else if (attributevalue instanceof Long)
-						hits = index.query(attributename, (long) attributevalue, Long.MAX_VALUE, false, true);
-					else if (attributevalue instanceof Double)
-						hits = index.query(attributename, (double) attributevalue, Double.MAX_VALUE, false, true);
-					else
-						throw new EolRuntimeException(
-								"> used with a non numeric value (" + attributevalue.getClass() + ")");
-				} else if (ast instanceof LessEqualOperatorExpression) {
-					if (attributevalue instanceof Integer)
-						hits = index.query(attributename, Integer.MIN_VALUE, (int) attributevalue, true, true);
-					else if (attributevalue instanceof Long)
-						hits = index.query(attributename, Long.MIN_VALUE, (long) attributevalue, true, true);
-					else if (attributevalue instanceof Double)
-						hits = index.query(attributename, Double.MIN_VALUE, (double) attributevalue, true, true);
-					else
-						throw new EolRuntimeException(
-								"<= used with a non numeric value (" + attributevalue.getClass() + ")");
-				} else if (ast instanceof LessThanOperatorExpression) {
-					if (attributevalue instanceof Integer)
-						hits = index.query(attributename, Integer.MIN_VALUE, (int) attributevalue, true, false);
-					else if (attributevalue instanceof Long)
-						hits = index.query(attributename, Long.MIN_VALUE, (long) attributevalue, true, false);
-					else if (attributevalue instanceof Double)
-						hits = index.query(attributename, Double.MIN_VALUE, (double) attributevalue, true, false);
-					else
-						throw new EolRuntimeException(
-								"< used with a non numeric value (" + attributevalue.getClass() + ")");
-				}
+		final String attributename = getIteratorAttribute(opExp.getFirstOperand());
+		final String indexname = isIndexed(attributename);
+		if (indexname == null) {
+			return null;
+		}
 
-				// modifiedlist.clear();
+		Object attributevalue = evaluate(opExp.getSecondOperand(), opExp);
+		if (attributevalue == null) {
+			return null;
+		} else if (!(attributevalue instanceof Collection<?>)) {
+			attributevalue = AbstractHawkModel.toPrimitive(attributevalue);
+		} else {
+			Collection<?> cRet = (Collection<?>) attributevalue;
+			Object[] aRet = new Object[cRet.size()];
+			int count = 0;
+			for (Iterator<?> it = cRet.iterator(); it.hasNext();) {
+				aRet[count] = AbstractHawkModel.toPrimitive(it.next());
+				count++;
+			}
+			// flatten to allow comparison to index value (which cannot be
+			// multi-valued)
+			attributevalue = Arrays.toString(aRet);
+		}
 
-				for (IGraphNode hit : hits) {
+		if (opExp instanceof EqualsOperatorExpression) {
+			return new ValuePlan(opExp, indexname, attributename, Collections.singletonList(attributevalue));
+		}
 
-					filter.add(new GraphNodeWrapper(hit, model));
+		if (attributevalue instanceof Float) {
+			// EOL real literals may be floats: go through their decimal form to keep "2.1" as 2.1
+			attributevalue = Double.valueOf(attributevalue.toString());
+		}
+		if (!(attributevalue instanceof Integer || attributevalue instanceof Long || attributevalue instanceof Double)) {
+			// ordering comparisons can only use the index with numbers
+			return null;
+		}
 
-					// ((OptimisableCollection) modifiedlist)
-					// .add(new NeoIdWrapperDebuggable(graph, hit
-					// .getId(), model));
+		final List<Expression> conditions = Collections.singletonList(opExp);
+		final boolean isLowerBound = opExp instanceof GreaterEqualOperatorExpression || opExp instanceof GreaterThanOperatorExpression;
+		boolean isInclusive = opExp instanceof GreaterEqualOperatorExpression || opExp instanceof LessEqualOperatorExpression;
+
+		/*
+		 * Integral and floating point values are indexed separately, so the
+		 * bound needs to have the type of the attribute rather than the type
+		 * of the value it is compared with (e.g. "x > 2.5" on an integer x
+		 * is looked up as "x >= 3").
+		 */
+		Class<?> attributeType = getNumericType(attributename);
+		if (attributeType == null) {
+			attributeType = attributevalue.getClass();
+		}
 
+		final Number min, max, value;
+		if (attributeType == Double.class) {
+			min = -Double.MAX_VALUE;
+			max = Double.MAX_VALUE;
+			value = ((Number) attributevalue).doubleValue();
+		} else {
+			final long lMin = attributeType == Integer.class ? Integer.MIN_VALUE : Long.MIN_VALUE;
+			final long lMax = attributeType == Integer.class ? Integer.MAX_VALUE : Long.MAX_VALUE;
+
+			long lValue;
+			if (attributevalue instanceof Double) {
+				final double dValue = (double) attributevalue;
+				if (Double.isNaN(dValue)) {
+					return null;
+				}
+				final double rounded = isLowerBound ? Math.ceil(dValue) : Math.floor(dValue);
+				isInclusive = isInclusive || rounded != dValue;
+				if (rounded < lMin || rounded > lMax) {
+					// Either all values or none are within the bound
+					final boolean isAll = isLowerBound == rounded < lMin;
+					lValue = isLowerBound == isAll ? lMin : lMax;
+					isInclusive = isAll;
+				} else {
+					lValue = (long) rounded;
 				}
+			} else {
+				lValue = ((Number) attributevalue).longValue();
+				if (lValue < lMin || lValue > lMax) {
+					final boolean isAll = isLowerBound == lValue < lMin;
+					lValue = isLowerBound == isAll ? lMin : lMax;
+					isInclusive = isAll;
+				}
+			}
 
-				ignored.success();
+			if (attributeType == Integer.class) {
+				min = (int) lMin;
+				max = (int) lMax;
+				value = (int) lValue;
+			} else {
+				min = lMin;
+				max = lMax;
+				value = lValue;
+			}
+		}
+
+		if (isLowerBound) {
+			return new RangePlan(conditions, indexname, attributename, value, isInclusive, max, true);
+		} else {
+			return new RangePlan(conditions, indexname, attributename, min, true, value, isInclusive);
+		}
+	}
+
+	/**
+	 * Returns the class used to index the values of the attribute, if it is
+	 * numeric ({@link Integer}, {@link Long} or {@link Double}), or
+	 * <code>null</code> otherwise.
+	 */
+	private Class<?> getNumericType(String attributename) {
+		try (IGraphTransaction tx = graph.beginTransaction()) {
+			final Slot slot = new TypeNode(metaclass).getSlot(attributename);
+			tx.success();
+			if (slot == null || slot.getType() == null) {
+				return null;
+			}
 
-			} catch (Exception e) {
-				throw new EolRuntimeException("select optimisation failed: " + e.getMessage(), ast);
+			switch (slot.getType()) {
+			case "java.lang.Byte":
+			case "java.lang.Short":
+			case "java.lang.Integer":
+				return Integer.class;
+			case "java.lang.Long":
+				return Long.class;
+			case "java.lang.Float":
+			case "java.lang.Double":
+				return Double.class;
+			default:
+				return null;
 			}
+		} catch (Exception e) {
+			LOGGER.warn("Could not find the type of " + attributename, e);
+			return null;
+		}
+	}
 
-			result.retainAll(filter);
-			return result;
-			// System.err.println(Arrays.toString(ret.toArray()));
-			// return ret;
+	/**
+	 * Returns a plan which uses an index for <code>it.attr.startsWith(prefix)</code>
+	 * or <code>values.includes(it.attr)</code>, or <code>null</code> if the call is
+	 * not one of those or cannot be answered from an index.
+	 */
+	private SelectPlan planOperationCall(OperationCallExpression opCall) throws Exception {
+		final String operationName = opCall.getNameExpression().getName();
+		final List<Expression> params = opCall.getParameterExpressions();
+		if (params.size() != 1) {
+			return null;
+		}
 
-		} else {
+		if ("startsWith".equals(operationName)) {
+			final String attributename = getIteratorAttribute(opCall.getTargetExpression());
+			final String indexname = isIndexed(attributename);
+			if (indexname == null) {
+				return null;
+			}
+
+			// wildcards within the prefix could not be told apart from ours
+			final Object prefix = evaluate(params.get(0), opCall);
+			if (prefix instanceof String && !((String) prefix).isEmpty() && ((String) prefix).indexOf('*') == -1) {
+				return new PrefixPlan(opCall, indexname, attributename, (String) prefix);
+			}
+		} else if ("includes".equals(operationName)) {
+			final String attributename = getIteratorAttribute(params.get(0));
+			final String indexname = isIndexed(attributename);
+			if (indexname == null) {
+				return null;
+			}
 
-			// System.err.println("giving to super: "+ast.toStringTree());
+			final Object rawValues = evaluate(opCall.getTargetExpression(), opCall);
+			if (rawValues instanceof Collection<?>) {
+				final Set<Object> values = new HashSet<>();
+				for (Object rawValue : (Collection<?>) rawValues) {
+					final Object value = AbstractHawkModel.toPrimitive(rawValue);
+					if (value == null || value instanceof Collection<?>) {
+						// nulls and multi-valued attributes are not indexed as such
+						return null;
+					}
+					values.add(value);
+				}
+				return new ValuePlan(opCall, indexname, attributename, values);
+			}
+		}
 
-			return (Collection<Object>) super.execute(target, iterator, (Expression) ast, context, returnOnFirstMatch);
+		return null;
+	}
 
-			// System.err.println("super returns: "+rett.getClass());
-			// return rett;
+	/**
+	 * Returns the name of the attribute if <code>exp</code> is of the form
+	 * <code>iterator.attribute</code>, or <code>null</code> otherwise.
+	 */
+	private String getIteratorAttribute(Expression exp) {
+		if (exp instanceof PropertyCallExpression) {
+			final PropertyCallExpression propCall = (PropertyCallExpression) exp;
+			if (propCall.getTargetExpression() instanceof NameExpression
+					&& iterator.getName().equals(((NameExpression) propCall.getTargetExpression()).getName())) {
+				return propCall.getPropertyNameExpression().getName();
+			}
+		}
+		return null;
+	}
 
+	/**
+	 * Evaluates a part of the condition that should not depend on the
+	 * iterator, returning <code>null</code> if that is not possible.
+	 */
+	private Object evaluate(Expression valueAST, Expression ast) {
+		try {
+			return context.getExecutorFactory().execute(valueAST, context);
+		} catch (Exception e) {
+			// if the rhs is invalid or tries to use the iterator of the select
+			// (which is outside its scope) -- default to epsilon's select
+			LOGGER.warn("Warning: the RHS of the expression:\n{}"
+					+ "\ncannot be evaluated using database indexing,\nas the iterator variable of the current select operation ({}) "
+					+ "is not used in this process.\nDefaulting to Epsilon's select", ast, iterator.getName());
+			return null;
 		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private Collection<Object> scan(Collection<Object> target, Expression ast) throws EolRuntimeException {
+		return (Collection<Object>) super.execute(target, iterator, ast, context, returnOnFirstMatch);
+	}
 
+	/**
+	 * Avoids copying the results of a regular select when they are already a
+	 * set, as is the case for the sets of elements we select from.
+	 */
+	private static Set<Object> asSet(Collection<Object> elements) {
+		return elements instanceof Set ? (Set<Object>) elements : new HashSet<>(elements);
 	}
 
 	private boolean isOptimisable(Expression ast) {
@@ -442,6 +850,10 @@ public class OptimisableCollectionSelectOperation extends SelectOperation {
 	}
 
 	private String isIndexed(String attributename) {
+		if (attributename == null) {
+			return null;
+		}
+
 		String result = null;
 
 		try (IGraphTransaction ignored = graph.beginTransaction()) {
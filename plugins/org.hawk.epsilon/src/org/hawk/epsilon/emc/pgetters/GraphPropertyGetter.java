@@ -36,6 +36,7 @@ import org.hawk.core.IModelIndexer;
 import org.hawk.core.graph.IGraphDatabase;
 import org.hawk.core.graph.IGraphEdge;
 import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.query.IAccessListener;
 import org.hawk.core.util.Utils;
 import org.hawk.epsilon.emc.EOLQueryEngine;
 import org.hawk.epsilon.emc.tracking.AccessListener;
@@ -80,6 +81,9 @@ public class GraphPropertyGetter extends AbstractPropertyGetter {
 	protected IGraphNode featureStartingNodeClassNode = null;
 	protected AccessListener accessListener = new AccessListener();
 
+	/** Listener for the accesses made by a query, if any: takes precedence over {@link #accessListener}. */
+	protected IAccessListener queryAccessListener;
+
 	// Cache: type node -> property name -> property type
 	protected Map<IGraphNode, Map<String, PropertyType>> propertyTypeCache = new HashMap<>();
 	protected Map<IGraphNode, Map<String, String[]>> propertyTypeFlagsCache = new HashMap<>();
@@ -359,7 +363,47 @@ public class GraphPropertyGetter extends AbstractPropertyGetter {
 	}
 
 	protected void broadcastAccess(Object object, String property) {
-		accessListener.accessed(((GraphNodeWrapper) object).getId() + "", property);
+		broadcastAccess(((GraphNodeWrapper) object).getId() + "", property);
+	}
+
+	/**
+	 * Reports an access to the listener for the accesses of the current query,
+	 * if any, or to the listener for derived attributes otherwise.
+	 */
+	public void broadcastAccess(String accessObject, String property) {
+		if (queryAccessListener != null) {
+			queryAccessListener.accessed(accessObject, property);
+		} else {
+			accessListener.accessed(accessObject, property);
+		}
+	}
+
+	/**
+	 * Reports an access which is only of interest to the listener for the
+	 * accesses of the current query (e.g. the use of a type extent).
+	 */
+	public void broadcastQueryAccess(String accessObject, String property) {
+		if (broadcastAccess && queryAccessListener != null) {
+			queryAccessListener.accessed(accessObject, property);
+		}
+	}
+
+	/**
+	 * Changes the listener for the accesses made by the current query. Setting
+	 * it to a non-<code>null</code> value enables access broadcasting.
+	 */
+	public void setQueryAccessListener(IAccessListener listener) {
+		queryAccessListener = listener;
+		broadcastAccess = listener != null;
+	}
+
+	/**
+	 * Returns <code>true</code> if accesses are being reported to the
+	 * listener for the accesses of the current query, rather than to the
+	 * listener for derived attributes.
+	 */
+	public boolean isTrackingQueryAccesses() {
+		return queryAccessListener != null;
 	}
 
 	public void setBroadcastAccess(boolean b) {
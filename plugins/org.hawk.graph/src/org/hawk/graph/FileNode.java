@@ -57,6 +57,16 @@ public class FileNode {
 	public static final String FILE_NODE_LABEL = "file";
 	public static final String PROP_REPOSITORY = "repository";
 
+	/**
+	 * Serialized {@link SignatureSummary} of the model elements in the file.
+	 */
+	public static final String PROP_SIGNATURE_SUMMARY = "h_signatureSummary";
+
+	/**
+	 * Root hash of the {@link SignatureSummary} of the model elements in the file.
+	 */
+	public static final String PROP_SIGNATURE_ROOT = "h_signatureRoot";
+
 	private final IGraphNode node;
 
 	public FileNode(IGraphNode node) {
@@ -75,6 +85,26 @@ public class FileNode {
 		return (String)node.getProperty(PROP_REPOSITORY);
 	}
 
+	/**
+	 * Returns the summary of the signatures of the model elements in this file,
+	 * or <code>null</code> if it has not been computed.
+	 */
+	public SignatureSummary getSignatureSummary() {
+		final Object summary = node.getProperty(PROP_SIGNATURE_SUMMARY);
+		if (summary instanceof byte[]) {
+			return SignatureSummary.fromByteArray((byte[]) summary);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the root hash of the summary of the signatures of the model
+	 * elements in this file, or <code>null</code> if it has not been computed.
+	 */
+	public byte[] getSignatureRootHash() {
+		return (byte[]) node.getProperty(PROP_SIGNATURE_ROOT);
+	}
+
 	/**
 	 * Returns all the {@link ModelElementNode}s representing model elements for
 	 * this file node. Tries to reuse the more efficient IGraphIterable 
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Merkle-style summary of the signatures of the model elements in a file.
+ * Elements are assigned to one of {@link #FINE_BUCKETS} buckets according to
+ * their URI fragment, and each bucket keeps the XOR of the hashes of its
+ * (fragment, signature) pairs, so the result does not depend on the order in
+ * which elements are added. The root hash is computed over all the buckets.
+ *
+ * Summaries are stored with fewer, coarser buckets for small files: a coarse
+ * bucket covers a contiguous range of fine buckets, and its hash is the XOR
+ * of theirs, so summaries with different granularities can still be compared.
+ */
+public class SignatureSummary {
+
+	public static final int FINE_BUCKET_BITS = 12;
+	public static final int FINE_BUCKETS = 1 << FINE_BUCKET_BITS;
+
+	private static final int ELEMENTS_PER_BUCKET = 64;
+	private static final String HASH_ALGORITHM = "SHA-1";
+	private static final int HASH_LENGTH = 20;
+
+	private final byte[][] buckets;
+	private final int bucketBits;
+	private int elementCount;
+	private MessageDigest digest;
+
+	/**
+	 * Creates an empty summary at the finest granularity, to be populated
+	 * through {@link #add(String, byte[])}.
+	 */
+	public SignatureSummary() {
+		this(FINE_BUCKET_BITS, 0);
+	}
+
+	private SignatureSummary(int bucketBits, int elementCount) {
+		this.bucketBits = bucketBits;
+		this.buckets = new byte[1 << bucketBits][HASH_LENGTH];
+		this.elementCount = elementCount;
+	}
+
+	/**
+	 * Returns the fine bucket (between 0 and {@link #FINE_BUCKETS} - 1) for the
+	 * model element with the specified URI fragment.
+	 */
+	public static int getFineBucket(String uriFragment) {
+		int h = uriFragment.hashCode();
+		h ^= h >>> 16;
+		return (h * 0x9E3779B1) >>> (Integer.SIZE - FINE_BUCKET_BITS);
+	}
+
+	/**
+	 * Reads back a summary produced by {@link #toByteArray()}.
+	 */
+	public static SignatureSummary fromByteArray(byte[] bytes) {
+		final ByteBuffer buf = ByteBuffer.wrap(bytes);
+		final int elementCount = buf.getInt();
+		final int nBuckets = buf.remaining() / HASH_LENGTH;
+		if (nBuckets == 0 || Integer.bitCount(nBuckets) != 1 || nBuckets > FINE_BUCKETS
+				|| buf.remaining() % HASH_LENGTH != 0) {
+			throw new IllegalArgumentException("Malformed signature summary of length " + bytes.length);
+		}
+
+		final SignatureSummary summary = new SignatureSummary(Integer.numberOfTrailingZeros(nBuckets), elementCount);
+		for (byte[] bucket : summary.buckets) {
+			buf.get(bucket);
+		}
+		return summary;
+	}
+
+	/**
+	 * Adds a model element to this summary.
+	 */
+	public void add(String uriFragment, byte[] signature) {
+		final MessageDigest md = getDigest();
+		md.update(uriFragment.getBytes(StandardCharsets.UTF_8));
+		if (signature != null) {
+			md.update(signature);
+		}
+
+		final byte[] bucket = buckets[getBucket(getFineBucket(uriFragment))];
+		final byte[] hash = md.digest();
+		for (int i = 0; i < HASH_LENGTH; i++) {
+			bucket[i] ^= hash[i];
+		}
+		elementCount++;
+	}
+
+	public int getElementCount() {
+		return elementCount;
+	}
+
+	public int getBucketCount() {
+		return buckets.length;
+	}
+
+	/**
+	 * Returns a copy of this summary merged down to the number of buckets
+	 * suggested by its element count, for storage.
+	 */
+	public SignatureSummary compact() {
+		final int targetBuckets = Math.max(1, Math.min(FINE_BUCKETS,
+			Integer.highestOneBit(Math.max(1, elementCount / ELEMENTS_PER_BUCKET))));
+		return fold(Integer.numberOfTrailingZeros(targetBuckets));
+	}
+
+	/**
+	 * Returns the hash over all the buckets of this summary. Two summaries of
+	 * the same contents will have the same root hash if they have the same
+	 * number of buckets.
+	 */
+	public byte[] getRootHash() {
+		final MessageDigest md = getDigest();
+		for (byte[] bucket : buckets) {
+			md.update(bucket);
+		}
+		return md.digest();
+	}
+
+	/**
+	 * Returns the fine buckets where this summary and the other summary differ.
+	 * Both summaries are compared at the coarsest of their granularities, so
+	 * every fine bucket within a differing coarse bucket is included.
+	 */
+	public BitSet getChangedFineBuckets(SignatureSummary other) {
+		final int commonBits = Math.min(bucketBits, other.bucketBits);
+		final SignatureSummary mine = fold(commonBits);
+		final SignatureSummary theirs = other.fold(commonBits);
+
+		final BitSet changed = new BitSet(FINE_BUCKETS);
+		final int fineBucketsPerBucket = 1 << (FINE_BUCKET_BITS - commonBits);
+		for (int i = 0; i < mine.buckets.length; i++) {
+			if (!Arrays.equals(mine.buckets[i], theirs.buckets[i])) {
+				changed.set(i * fineBucketsPerBucket, (i + 1) * fineBucketsPerBucket);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Serializes this summary, for storage as a node property.
+	 */
+	public byte[] toByteArray() {
+		final ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES + buckets.length * HASH_LENGTH);
+		buf.putInt(elementCount);
+		for (byte[] bucket : buckets) {
+			buf.put(bucket);
+		}
+		return buf.array();
+	}
+
+	private int getBucket(int fineBucket) {
+		return fineBucket >>> (FINE_BUCKET_BITS - bucketBits);
+	}
+
+	private SignatureSummary fold(int targetBits) {
+		if (targetBits == bucketBits) {
+			return this;
+		} else if (targetBits > bucketBits) {
+			throw new IllegalArgumentException("Cannot split buckets into finer ones");
+		}
+
+		final SignatureSummary folded = new SignatureSummary(targetBits, elementCount);
+		final int shift = bucketBits - targetBits;
+		for (int i = 0; i < buckets.length; i++) {
+			final byte[] target = folded.buckets[i >>> shift];
+			for (int j = 0; j < HASH_LENGTH; j++) {
+				target[j] ^= buckets[i][j];
+			}
+		}
+		return folded;
+	}
+
+	private MessageDigest getDigest() {
+		if (digest == null) {
+			try {
+				digest = MessageDigest.getInstance(HASH_ALGORITHM);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(HASH_ALGORITHM + " is not available", e);
+			}
+		}
+		return digest;
+	}
+
+}
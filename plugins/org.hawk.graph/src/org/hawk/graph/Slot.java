@@ -34,6 +34,18 @@ public class Slot {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(Slot.class);
 
+	/** Kind of slot (first entry of its metadata in the type node): attribute. */
+	public static final String KIND_ATTRIBUTE = "a";
+
+	/** Kind of slot (first entry of its metadata in the type node): reference. */
+	public static final String KIND_REFERENCE = "r";
+
+	/** Kind of slot (first entry of its metadata in the type node): reference that can also hold values. */
+	public static final String KIND_MIXED = "m";
+
+	/** Kind of slot (first entry of its metadata in the type node): derived attribute. */
+	public static final String KIND_DERIVED = "d";
+
 	private final TypeNode typeNode;
 	private final String propertyName, propertyType;
 	private final boolean isAttribute, isReference, isMixed, isDerived, isIndexed;
@@ -47,10 +59,10 @@ public class Slot {
 		this.propertyName = propertyName;
 
 		final String[] propertyMetadata = (String[]) typeNode.getNode().getProperty(propertyName);
-		this.isAttribute = "a".equals(propertyMetadata[0]);
-		this.isReference = "r".equals(propertyMetadata[0]);
-		this.isMixed = "m".equals(propertyMetadata[0]);
-		this.isDerived = "d".equals(propertyMetadata[0]);
+		this.isAttribute = KIND_ATTRIBUTE.equals(propertyMetadata[0]);
+		this.isReference = KIND_REFERENCE.equals(propertyMetadata[0]);
+		this.isMixed = KIND_MIXED.equals(propertyMetadata[0]);
+		this.isDerived = KIND_DERIVED.equals(propertyMetadata[0]);
 		this.isMany = "t".equals(propertyMetadata[1]);
 		this.isOrdered = "t".equals(propertyMetadata[2]);
 		this.isUnique = "t".equals(propertyMetadata[3]);
@@ -66,6 +78,16 @@ public class Slot {
 		}
 	}
 
+	/**
+	 * Returns <code>true</code> if the slot metadata stored in a type node
+	 * describes a slot whose values are stored as edges (references and mixed
+	 * slots).
+	 */
+	public static boolean isEdgeMetadata(String[] propertyMetadata) {
+		return propertyMetadata.length > 0
+			&& (KIND_REFERENCE.equals(propertyMetadata[0]) || KIND_MIXED.equals(propertyMetadata[0]));
+	}
+
 	/**
 	 * Returns the collection container that should be used for the value of
 	 * this slot.
@@ -30,6 +30,8 @@ import org.hawk.core.graph.IGraphNode;
  * updater.
  */
 public class TypeNode {
+	public static final String TYPE_VERTEX_LABEL = "eclass";
+
 	private final IGraphNode node;
 	private final String name; 
 
@@ -45,6 +45,8 @@ import org.hawk.core.model.IHawkReference;
 import org.hawk.core.runtime.CompositeGraphChangeListener;
 import org.hawk.graph.FileNode;
 import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.Slot;
+import org.hawk.graph.TypeNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -181,6 +183,7 @@ public class GraphMetaModelResourceInjector {
 
 		try (IGraphTransaction transaction = graph.beginTransaction()) {
 			LOGGER.info("Deleting nodes from metamodel: {}", epn.getProperty(IModelIndexer.IDENTIFIER_PROPERTY));
+			listener.metamodelRemoval(epn.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).toString(), epn);
 
 			HashSet<IGraphNode> metaModelElements = new HashSet<IGraphNode>();
 			HashSet<IGraphNode> modelElements = new HashSet<IGraphNode>();
@@ -249,7 +252,7 @@ public class GraphMetaModelResourceInjector {
 
 				LOGGER.info("Updating any relevant derived attributes...");
 				try {
-					new GraphModelInserter(hawk, () -> del, new TypeCache())
+					new GraphModelInserter(hawk, () -> del, TypeCache.forGraph(graph))
 							.updateDerivedAttributes(hawk.getDerivedAttributeExecutionEngine(), toBeUpdated);
 					toBeUpdated = new HashSet<>();
 				} catch (Exception e) {
@@ -410,7 +413,7 @@ public class GraphMetaModelResourceInjector {
 		Map<String, Object> map = new HashMap<>();
 		map.put(IModelIndexer.IDENTIFIER_PROPERTY, id);
 
-		IGraphNode node = graph.createNode(new HashMap<String, Object>(), "eclass");
+		IGraphNode node = graph.createNode(new HashMap<String, Object>(), TypeNode.TYPE_VERTEX_LABEL);
 		IGraphNode metamodelNode = ((IGraphIterable<IGraphNode>) epackagedictionary.get("id", eClass.getPackageNSURI())).getSingle();
 
 		graph.createRelationship(node, metamodelNode, "epackage");
@@ -484,7 +487,7 @@ public class GraphMetaModelResourceInjector {
 			}
 
 			String[] metadata = new String[6];
-			metadata[0] = "a";
+			metadata[0] = Slot.KIND_ATTRIBUTE;
 			metadata[1] = (e.isMany() ? "t" : "f");
 			metadata[2] = (e.isOrdered() ? "t" : "f");
 			metadata[3] = (e.isUnique() ? "t" : "f");
@@ -542,7 +545,7 @@ public class GraphMetaModelResourceInjector {
 			 * metamodel supports having a name being both a reference and
 			 * attribute (aka mixed mode)
 			 */
-			metadata[0] = map.containsKey(r.getName()) ? "m" : "r";
+			metadata[0] = map.containsKey(r.getName()) ? Slot.KIND_MIXED : Slot.KIND_REFERENCE;
 			metadata[1] = (r.isMany() ? "t" : "f");
 			metadata[2] = (r.isOrdered() ? "t" : "f");
 			metadata[3] = (r.isUnique() ? "t" : "f");
@@ -650,7 +653,7 @@ public class GraphMetaModelResourceInjector {
 					requiresPropagationToInstances = true;
 
 				String[] metadata = new String[7];
-				metadata[0] = "d";
+				metadata[0] = Slot.KIND_DERIVED;
 				metadata[1] = (isMany ? "t" : "f");
 				metadata[2] = (isOrdered ? "t" : "f");
 				metadata[3] = (isUnique ? "t" : "f");
@@ -733,7 +736,7 @@ public class GraphMetaModelResourceInjector {
 
 				if (metadata == null) {
 					LOGGER.error("attribute: {} in: {}#{} does not exist, aborting operation: addIndexedAttribute", attributename, metamodeluri, typename);
-				} else if (!metadata[0].equals("a")) {
+				} else if (!Slot.KIND_ATTRIBUTE.equals(metadata[0])) {
 					LOGGER.error("{}#{} is not an attribute, aborting operation: addIndexedAttribute", metamodeluri, typename);
 				} else {
 					if (typenode.getIncomingWithType(ModelElementNode.EDGE_LABEL_OFTYPE).iterator().hasNext()
@@ -864,7 +867,7 @@ public class GraphMetaModelResourceInjector {
 					LOGGER.error("attribute: {} in: {}::{} does not exist, aborting operation: removeIndexedAttribute",
 							attributename, metamodelUri, typename);
 					listener.changeFailure();
-				} else if (!metadata[0].equals("a")) {
+				} else if (!Slot.KIND_ATTRIBUTE.equals(metadata[0])) {
 					// System.err.println(Arrays.toString(metadata));
 					LOGGER.error("{}::{} is a reference not an attribute, aborting operation: removeIndexedAttribute",
 							metamodelUri, typename);
@@ -942,7 +945,7 @@ public class GraphMetaModelResourceInjector {
 				String[] metadata = (String[]) typenode.getProperty(attributeName);
 				if (metadata != null) {
 
-					if (metadata.length == 7 && metadata[0].equals("d")) {
+					if (metadata.length == 7 && Slot.KIND_DERIVED.equals(metadata[0])) {
 						LOGGER.info("derived attribute removed: {}::{}", metamodelUri, typeName);
 						IGraphNodeIndex derivedAccessDictionary = graph.getOrCreateNodeIndex(GraphModelInserter.DERIVED_ACCESS_IDXNAME);
 						IGraphNodeIndex derivedProxyDictionary = graph.getOrCreateNodeIndex("derivedproxydictionary");
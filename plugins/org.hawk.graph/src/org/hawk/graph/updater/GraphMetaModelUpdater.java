@@ -38,6 +38,8 @@ public class GraphMetaModelUpdater implements IMetaModelUpdater {
 			throw ex;
 		} catch (Exception ex) {
 			throw new FailedMetamodelRegistrationException(ex);
+		} finally {
+			TypeCache.forGraph(indexer.getGraph()).invalidateAll();
 		}
 	}
 
@@ -47,7 +49,12 @@ public class GraphMetaModelUpdater implements IMetaModelUpdater {
 				indexer,
 				(CompositeGraphChangeListener) indexer
 						.getCompositeGraphChangeListener());
-		return ret.removeMetamodels(mmuri);
+		try {
+			return ret.removeMetamodels(mmuri);
+		} finally {
+			// Dependent metamodels may have been removed as well
+			TypeCache.forGraph(indexer.getGraph()).invalidateAll();
+		}
 	}
 
 	@Override
@@ -56,10 +63,12 @@ public class GraphMetaModelUpdater implements IMetaModelUpdater {
 			boolean isOrdered, boolean isUnique, String derivationlanguage,
 			String derivationlogic, IModelIndexer indexer) {
 
-		return GraphMetaModelResourceInjector.addDerivedAttribute(metamodeluri,
+		final boolean added = GraphMetaModelResourceInjector.addDerivedAttribute(metamodeluri,
 				typename, attributename, isMany, isOrdered, isUnique,
 				attributetype, derivationlanguage, derivationlogic,
 				indexer.getGraph(), indexer.getCompositeGraphChangeListener());
+		TypeCache.forGraph(indexer.getGraph()).invalidate(metamodeluri);
+		return added;
 	}
 
 	@Override
@@ -70,9 +79,11 @@ public class GraphMetaModelUpdater implements IMetaModelUpdater {
 	@Override
 	public boolean addIndexedAttribute(String metamodeluri, String typename,
 			String attributename, IModelIndexer indexer) {
-		return GraphMetaModelResourceInjector.addIndexedAttribute(metamodeluri,
+		final boolean added = GraphMetaModelResourceInjector.addIndexedAttribute(metamodeluri,
 				typename, attributename, indexer.getGraph(),
 				indexer.getCompositeGraphChangeListener());
+		TypeCache.forGraph(indexer.getGraph()).invalidate(metamodeluri);
+		return added;
 	}
 
 	@Override
@@ -83,16 +94,20 @@ public class GraphMetaModelUpdater implements IMetaModelUpdater {
 	@Override
 	public boolean removeIndexedAttribute(String metamodelUri, String typename,
 			String attributename, IModelIndexer indexer) {
-		return GraphMetaModelResourceInjector.removeIndexedAttribute(
+		final boolean removed = GraphMetaModelResourceInjector.removeIndexedAttribute(
 				metamodelUri, typename, attributename, indexer.getGraph(),
 				indexer.getCompositeGraphChangeListener());
+		TypeCache.forGraph(indexer.getGraph()).invalidate(metamodelUri);
+		return removed;
 	}
 
 	@Override
 	public boolean removeDerivedAttribute(String metamodelUri, String typeName,
 			String attributeName, IModelIndexer indexer) {
-		return GraphMetaModelResourceInjector.removeDerivedAttribute(
+		final boolean removed = GraphMetaModelResourceInjector.removeDerivedAttribute(
 				metamodelUri, typeName, attributeName, indexer.getGraph(),
 				indexer.getCompositeGraphChangeListener());
+		TypeCache.forGraph(indexer.getGraph()).invalidate(metamodelUri);
+		return removed;
 	}
 }
@@ -30,6 +30,7 @@ import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.hawk.core.IModelIndexer;
@@ -43,16 +44,20 @@ import org.hawk.core.graph.IGraphIterable;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphNodeIndex;
 import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
 import org.hawk.core.model.IHawkAttribute;
 import org.hawk.core.model.IHawkClass;
 import org.hawk.core.model.IHawkClassifier;
 import org.hawk.core.model.IHawkModelResource;
 import org.hawk.core.model.IHawkObject;
 import org.hawk.core.model.IHawkReference;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.graph.FileNode;
 import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.SignatureSummary;
 import org.hawk.graph.Slot;
 import org.hawk.graph.TypeNode;
+import org.hawk.graph.updater.PendingReferenceTable.PendingReference;
 import org.hawk.graph.util.GraphUtil;
 import org.hawk.graph.util.Pair;
 import org.slf4j.Logger;
@@ -68,6 +73,41 @@ public class GraphModelBatchInjector {
 	public static final String PROXY_DICT_NAME = "proxydictionary";
 	public static final String DERIVED_PROXY_DICT_NAME = "derivedproxydictionary";
 
+	/**
+	 * Name of the node index which maps each model element to its fine bucket
+	 * in the {@link SignatureSummary} of its file. The key is the ID of the file
+	 * node, and the value is the bucket number.
+	 */
+	public static final String SIGNATURE_DICT_NAME = "signaturedictionary";
+
+	/**
+	 * Name of the system property which controls whether signature summaries
+	 * are kept for each file (<code>true</code> by default). These allow
+	 * incremental updates to only load the element nodes whose signatures may
+	 * have changed.
+	 */
+	public static final String SIGNATURE_SUMMARY_PROPERTY = "hawk.sync.signatureSummary";
+
+	/**
+	 * Name of the system property which enables single-pass insertion of new
+	 * files (<code>true</code> or <code>false</code>, which is the default). In
+	 * this mode, the elements of the resource are visited only once through
+	 * {@link IHawkModelResource#getContentsCursor()}, and the references to
+	 * elements that have not been inserted yet are kept in a side table which
+	 * is moved to disk when it grows too large. Likewise, only the most
+	 * recently used nodes of the inserted elements are kept in memory.
+	 */
+	public static final String STREAMING_PROPERTY = "hawk.sync.streamingInsert";
+
+	/**
+	 * Name of the system property with the maximum number of pending
+	 * references (and separately, of inserted nodes) to be kept in memory
+	 * during a single-pass insertion, before they are moved to disk.
+	 */
+	public static final String SPILL_THRESHOLD_PROPERTY = "hawk.sync.spillThreshold";
+
+	private static final int DEFAULT_SPILL_THRESHOLD = 100_000;
+
 	// integer array containing the current number of added elements:
 	// (element,((ofType)M->MM)reference,((ofKind)M->MM)reference,(unset(M->M))reference)
 	private int[] objectCount = { 0, 0, 0, 0 };
@@ -84,12 +124,13 @@ public class GraphModelBatchInjector {
 	/*
 	 * We don't keep the original objects, only the URIs. We split the URIs into path + fragment so
 	 * we can use -XX:+UseStringDeduplication (new in Java 8u20) to save memory, and the underlying
-	 * IGraphNodes only have identifiers (for further memory savings).
+	 * IGraphNodes only have identifiers (for further memory savings). Single-pass
+	 * insertions move new entries into an InsertedNodeTable right away.
 	 */
 	private final Map<Pair<String, String>, IGraphNode> hash = new HashMap<>();
 
 	IGraphNodeIndex fileDictionary, proxyDictionary, rootDictionary, fragmentIdx,
-			derivedProxyDictionary;
+			derivedProxyDictionary, signatureDictionary;
 
 	long startTime;
 
@@ -100,6 +141,9 @@ public class GraphModelBatchInjector {
 
 	private final TypeCache typeCache;
 
+	private final boolean indexSignatures;
+	private SignatureSummary signatureSummary;
+
 	private boolean successState = true;
 
 	private void refreshIndexes() throws Exception {
@@ -126,6 +170,9 @@ public class GraphModelBatchInjector {
 		rootDictionary = graph.getOrCreateNodeIndex(ROOT_DICT_NAME);
 		fragmentIdx = graph.getOrCreateNodeIndex(FRAGMENT_DICT_NAME);
 		derivedProxyDictionary = graph.getOrCreateNodeIndex(DERIVED_PROXY_DICT_NAME);
+		if (indexSignatures) {
+			signatureDictionary = graph.getOrCreateNodeIndex(SIGNATURE_DICT_NAME);
+		}
 	}
 
 	public GraphModelBatchInjector(IGraphDatabase g, TypeCache typeCache, VcsCommitItem s, IGraphChangeListener listener) throws Exception {
@@ -134,6 +181,7 @@ public class GraphModelBatchInjector {
 		this.commitItem = s;
 		this.listener = listener;
 		this.tempDirURI = new File(g.getTempDir()).toURI().toString();
+		this.indexSignatures = isSignatureSummaryEnabled(g);
 
 		refreshIndexes();
 	}
@@ -146,6 +194,7 @@ public class GraphModelBatchInjector {
 		this.commitItem = s;
 		this.listener = listener;
 		this.tempDirURI = new File(g.getTempDir()).toURI().toString();
+		this.indexSignatures = isSignatureSummaryEnabled(g);
 
 		startTime = System.nanoTime();
 		graph.enterBatchMode();
@@ -177,33 +226,19 @@ public class GraphModelBatchInjector {
 				}
 
 				try {
-
-					// add model elements
-					Iterable<IHawkObject> children = r.getAllContents();
-					startTime = System.nanoTime();
-					if (verbose) {
-						LOGGER.debug("Adding elements of file {}", s.getPath());
+					if (indexSignatures && !r.providesSingletonElements()) {
+						signatureSummary = new SignatureSummary();
 					}
 
-					int[] addedElements = parseResource(fileNode, ParseOptions.MODELELEMENTS, children, hawk, r.providesSingletonElements());
-					fragmentIdx.flush();
-					if (verbose) {
-						LOGGER.debug("{} NODES AND {} M->MM REFERENCES! (took ~{}sec)",
-							addedElements[0], addedElements[1], addedElements[2],
-							(System.nanoTime() - startTime) / 1_000_000_000
-						);
+					if (isStreamingEnabled()) {
+						insertStreaming(fileNode, r, hawk, verbose);
+					} else {
+						insertTwoPass(fileNode, r, hawk, verbose);
 					}
 
-					// add references
-					startTime = System.nanoTime();
-					if (verbose) {
-						LOGGER.debug("Adding edges of file {}", s.getPath());
-					}
-					addedElements = parseResource(fileNode, ParseOptions.MODELREFERENCES, children, hawk,
-							r.providesSingletonElements());
-					setUnset(getUnset() + addedElements[3]);
-					if (verbose) {
-						LOGGER.debug("{} REFERENCES! (took ~{} sec)", addedElements[0], (System.nanoTime() - startTime) / 1_000_000_000);
+					if (signatureSummary != null) {
+						saveSignatureSummary(fileNode, signatureSummary);
+						signatureSummary = null;
 					}
 
 					listener.changeSuccess();
@@ -237,6 +272,292 @@ public class GraphModelBatchInjector {
 		}
 	}
 
+	/**
+	 * Inserts the elements of the resource in one pass, and their references in
+	 * a second pass.
+	 */
+	private void insertTwoPass(IGraphNode fileNode, IHawkModelResource r, IModelIndexer hawk, boolean verbose) throws Exception {
+		// add model elements
+		Iterable<IHawkObject> children = r.getAllContents();
+		startTime = System.nanoTime();
+		if (verbose) {
+			LOGGER.debug("Adding elements of file {}", commitItem.getPath());
+		}
+
+		int[] addedElements = parseResource(fileNode, ParseOptions.MODELELEMENTS, children, hawk, r.providesSingletonElements());
+		fragmentIdx.flush();
+		if (verbose) {
+			LOGGER.debug("{} NODES AND {} M->MM REFERENCES! (took ~{}sec)",
+				addedElements[0], addedElements[1], addedElements[2],
+				(System.nanoTime() - startTime) / 1_000_000_000
+			);
+		}
+
+		// add references
+		startTime = System.nanoTime();
+		if (verbose) {
+			LOGGER.debug("Adding edges of file {}", commitItem.getPath());
+		}
+		addedElements = parseResource(fileNode, ParseOptions.MODELREFERENCES, children, hawk,
+				r.providesSingletonElements());
+		setUnset(getUnset() + addedElements[3]);
+		if (verbose) {
+			LOGGER.debug("{} REFERENCES! (took ~{} sec)", addedElements[0], (System.nanoTime() - startTime) / 1_000_000_000);
+		}
+	}
+
+	/**
+	 * Inserts the elements of the resource and their references in a single
+	 * pass. References to elements of the same resource which have not been
+	 * inserted yet are kept in a {@link PendingReferenceTable}, and are created
+	 * as soon as their target is inserted, or after the pass if they had to be
+	 * moved to disk. The nodes of the inserted elements are kept in an
+	 * {@link InsertedNodeTable}, which moves the least recently used ones to
+	 * disk: references to those are resolved after the pass as well. Memory use
+	 * is therefore bounded by the spill threshold rather than by the size of
+	 * the resource, and resources with a lazy
+	 * {@link IHawkModelResource#getContentsCursor()} do not need to produce
+	 * their elements twice.
+	 */
+	private void insertStreaming(IGraphNode fileNode, IHawkModelResource r, IModelIndexer hawk, boolean verbose) throws Exception {
+		graph.enterBatchMode();
+		refreshIndexes();
+
+		final boolean resourceCanProvideSingletons = r.providesSingletonElements();
+		final String fileID = fileNode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY) + "";
+		if (verbose) {
+			LOGGER.debug("Adding elements and edges of file {} in a single pass", commitItem.getPath());
+		}
+
+		startTime = System.nanoTime();
+		long init = startTime;
+		int lastprint = 0, nodeCount = 0, edgeCount = 0, unsetCount = 0;
+
+		final int spillThreshold = SystemProperties.getInt(SPILL_THRESHOLD_PROPERTY, DEFAULT_SPILL_THRESHOLD);
+		final File tempDir = new File(graph.getTempDir());
+		try (PendingReferenceTable pending = new PendingReferenceTable(tempDir, spillThreshold, this::getProxyURI);
+			 InsertedNodeTable inserted = new InsertedNodeTable(tempDir, spillThreshold)) {
+
+			for (Iterator<IHawkObject> itContents = r.getContentsCursor(); itContents.hasNext(); ) {
+				final IHawkObject child = itContents.next();
+				final String childURI = child.getUri();
+				addEObject(fileNode, child, resourceCanProvideSingletons);
+
+				/*
+				 * addEObject only adds new nodes to the hash: reused singletons
+				 * are left out, as in the two-pass mode. We move the new node
+				 * to the bounded table, so the hash does not grow.
+				 */
+				final IGraphNode childNode = hash.remove(splitURI(childURI));
+				if (childNode != null) {
+					inserted.put(childURI, childNode);
+				}
+
+				// Resolve the references that were waiting for this element
+				for (PendingReference ref : pending.removeByTarget(childURI)) {
+					if (resolvePendingReference(ref, childNode)) {
+						edgeCount++;
+					}
+				}
+
+				if (childNode != null) {
+					nodeCount++;
+
+					final String childID = childNode.getId().toString();
+					for (final IHawkReference eReference : ((IHawkClass) child.getType()).getAllReferences()) {
+						if (!child.isSet(eReference)) {
+							unsetCount++;
+							continue;
+						}
+
+						final Object destinationObject = child.get(eReference, false);
+						final Iterable<?> destinations = destinationObject instanceof Iterable<?>
+							? (Iterable<?>) destinationObject
+							: Collections.singleton(destinationObject);
+
+						for (Object destination : destinations) {
+							final IHawkObject destinationHawkObject = (IHawkObject) destination;
+							final String edgeLabel = eReference.getName();
+							if (destinationHawkObject.isInDifferentResourceThan(child)) {
+								addProxyRef(childNode, destinationHawkObject, edgeLabel,
+									eReference.isContainment(), eReference.isContainer());
+								continue;
+							}
+
+							final IGraphNode destinationNode = inserted.get(destinationHawkObject.getUri());
+							if (destinationNode != null) {
+								createEdge(childNode, destinationNode, edgeLabel,
+									eReference.isContainment(), eReference.isContainer());
+								edgeCount++;
+							} else {
+								// Either not inserted yet, or moved to disk
+								pending.add(new PendingReference(childID, destinationHawkObject, edgeLabel,
+									eReference.isContainment(), eReference.isContainer()));
+							}
+						}
+					}
+				}
+
+				if (lastprint < nodeCount - 50000) {
+					lastprint = nodeCount;
+
+					final String out = String.format("Adding nodes and references: %d %d (%d pending, %d spilled, %d nodes on disk) %d sec (%d sec total) to %s",
+						nodeCount, edgeCount, pending.getInMemoryCount(), pending.getSpilledCount(), inserted.getEvictedCount(),
+						(System.nanoTime() - init) / 1_000_000_000, (System.nanoTime() - startTime) / 1_000_000_000,
+						fileID);
+
+					hawk.getCompositeStateListener().info(out);
+					init = System.nanoTime();
+				}
+			}
+			fragmentIdx.flush();
+
+			/*
+			 * Whatever is left was moved to disk, points to a node that was
+			 * moved to disk, or never showed up in the resource. References to
+			 * nodes on disk are grouped in chunks of up to spillThreshold
+			 * references, and each chunk is resolved with one scan of the nodes
+			 * on disk.
+			 */
+			final int[] resolved = { 0 };
+			final Map<String, List<PendingReference>> chunk = new HashMap<>();
+			final int[] chunkSize = { 0 };
+			pending.drain((ref) -> {
+				final IGraphNode destination = inserted.get(ref.getTargetURI());
+				if (destination != null || inserted.getEvictedCount() == 0) {
+					if (resolvePendingReference(ref, destination)) {
+						resolved[0]++;
+					}
+				} else {
+					chunk.computeIfAbsent(ref.getTargetURI(), (k) -> new ArrayList<>(1)).add(ref);
+					if (++chunkSize[0] >= spillThreshold) {
+						resolved[0] += resolveAgainstEvicted(inserted, chunk);
+						chunkSize[0] = 0;
+					}
+				}
+			});
+			resolved[0] += resolveAgainstEvicted(inserted, chunk);
+			edgeCount += resolved[0];
+
+			setUnset(getUnset() + unsetCount);
+			if (verbose) {
+				LOGGER.debug("{} NODES AND {} REFERENCES ({} references and {} nodes moved to disk)! (took ~{} sec)",
+					nodeCount, edgeCount, pending.getSpilledCount(), inserted.getEvictedCount(),
+					(System.nanoTime() - startTime) / 1_000_000_000);
+			}
+		}
+	}
+
+	/**
+	 * Resolves a chunk of pending references (indexed by target URI) with one
+	 * scan over the nodes moved to disk by the {@link InsertedNodeTable}, and
+	 * empties the chunk. References whose target is not found are handled as
+	 * proxies.
+	 *
+	 * @return Number of edges created.
+	 */
+	private int resolveAgainstEvicted(InsertedNodeTable inserted, Map<String, List<PendingReference>> chunk) throws Exception {
+		if (chunk.isEmpty()) {
+			return 0;
+		}
+
+		final int[] resolved = { 0 };
+		inserted.forEachEvicted((uri, nodeID) -> {
+			final List<PendingReference> refs = chunk.remove(uri);
+			if (refs != null) {
+				final IGraphNode destination = graph.getNodeById(nodeID);
+				for (PendingReference ref : refs) {
+					if (resolvePendingReference(ref, destination)) {
+						resolved[0]++;
+					}
+				}
+			}
+		});
+
+		for (List<PendingReference> refs : chunk.values()) {
+			for (PendingReference ref : refs) {
+				resolvePendingReference(ref, null);
+			}
+		}
+		chunk.clear();
+
+		return resolved[0];
+	}
+
+	/**
+	 * Creates the edge for a reference which had been waiting for its target.
+	 * If the target is not in the graph as part of this file (
+	 * <code>destination</code> is <code>null</code>), it is handled like any
+	 * other proxy.
+	 *
+	 * @return <code>true</code> if an edge was created, <code>false</code>
+	 *         otherwise.
+	 */
+	private boolean resolvePendingReference(PendingReference ref, IGraphNode destination) {
+		final IGraphNode source = graph.getNodeById(ref.getSourceID());
+		if (source == null) {
+			LOGGER.warn("source node {} of pending reference {} not found", ref.getSourceID(), ref.getEdgeLabel());
+			return false;
+		} else if (destination != null) {
+			createEdge(source, destination, ref.getEdgeLabel(), ref.isContainment(), ref.isContainer());
+			return true;
+		} else if (ref.getTarget() != null) {
+			addProxyRef(source, ref.getTarget(), ref.getEdgeLabel(), ref.isContainment(), ref.isContainer());
+		} else {
+			addProxyRef(source, ref.getProxyURI(), ref.getEdgeLabel(), ref.isContainment(), ref.isContainer());
+		}
+		return false;
+	}
+
+	private void createEdge(IGraphNode source, IGraphNode destination, String edgeLabel, boolean isContainment,
+			boolean isContainer) {
+		final Map<String, Object> props = new HashMap<String, Object>();
+		if (isContainment)
+			props.put(ModelElementNode.EDGE_PROPERTY_CONTAINMENT, "true");
+		if (isContainer)
+			props.put(ModelElementNode.EDGE_PROPERTY_CONTAINER, "true");
+
+		createReference(edgeLabel, source, destination, props, false);
+	}
+
+	/**
+	 * Returns <code>true</code> if signature summaries should be kept for the
+	 * files in this graph. Time-aware graphs are excluded, as their updates
+	 * always go through every version of every element anyway.
+	 */
+	public static boolean isSignatureSummaryEnabled(IGraphDatabase graph) {
+		if (graph instanceof ITimeAwareGraphDatabase) {
+			return false;
+		}
+
+		final String sEnabled = System.getProperty(SIGNATURE_SUMMARY_PROPERTY);
+		return sEnabled == null || Boolean.valueOf(sEnabled);
+	}
+
+	/**
+	 * Stores the signature summary of a file in its node, merging its buckets
+	 * down to a size suitable for the number of elements.
+	 */
+	static void saveSignatureSummary(IGraphNode fileNode, SignatureSummary summary) {
+		final SignatureSummary compacted = summary.compact();
+		fileNode.setProperty(FileNode.PROP_SIGNATURE_SUMMARY, compacted.toByteArray());
+		fileNode.setProperty(FileNode.PROP_SIGNATURE_ROOT, compacted.getRootHash());
+	}
+
+	/**
+	 * Removes the signature summary of a file, if it has one.
+	 */
+	static void removeSignatureSummary(IGraphNode fileNode) {
+		if (fileNode.getProperty(FileNode.PROP_SIGNATURE_SUMMARY) != null) {
+			fileNode.removeProperty(FileNode.PROP_SIGNATURE_SUMMARY);
+			fileNode.removeProperty(FileNode.PROP_SIGNATURE_ROOT);
+		}
+	}
+
+	private static boolean isStreamingEnabled() {
+		return Boolean.valueOf(System.getProperty(STREAMING_PROPERTY));
+	}
+
 	private IGraphNode addFileNode(VcsCommitItem s, IGraphChangeListener listener) {
 		IGraphNode fileNode;
 		Map<String, Object> mapForFileNode = new HashMap<>();
@@ -357,8 +678,9 @@ public class GraphModelBatchInjector {
 		final String eObjectId = getEObjectId(eObject);
 
 		final Map<String, Object> nodeMap = new HashMap<>();
+		final byte[] signature = eObject.signature();
 		nodeMap.put(IModelIndexer.IDENTIFIER_PROPERTY, eObjectId);
-		nodeMap.put(IModelIndexer.SIGNATURE_PROPERTY, eObject.signature());
+		nodeMap.put(IModelIndexer.SIGNATURE_PROPERTY, signature);
 		classifyAttributes(eObject, normalAttributes, indexedAttributes);
 		for (IHawkAttribute a1 : normalAttributes) {
 			final Object value1 = eObject.get(a1);
@@ -370,6 +692,9 @@ public class GraphModelBatchInjector {
 			if (eObject.isFragmentUnique()) {
 				fragmentIdx.add(node, "id", eObject.getUriFragment());
 			}
+			if (signatureSummary != null) {
+				signatureSummary.add(eObjectId, signature);
+			}
 
 			// propagate changes to listeners
 			listener.modelElementAddition(commitItem, eObject, node, false);
@@ -561,6 +886,11 @@ public class GraphModelBatchInjector {
 				createReference(ModelElementNode.EDGE_LABEL_OFKIND, node, eClass, emptyMap, true);
 				if (originatingFile != null) {
 					createReference(ModelElementNode.EDGE_LABEL_FILE, node, originatingFile, emptyMap, true);
+
+					if (indexSignatures && !resourceCanProvideSingletons) {
+						signatureDictionary.add(node, originatingFile.getId().toString(),
+							SignatureSummary.getFineBucket(eObject.getUriFragment()));
+					}
 				}
 				objectCount[1]++;
 
@@ -669,13 +999,15 @@ public class GraphModelBatchInjector {
 	 * 
 	 * @param source
 	 * @param addedNodesHash
+	 * @param existingNodes
+	 *            Function which finds the existing node for a URI fragment.
 	 * 
 	 * @param eObject
 	 * @return
 	 * @throws Exception
 	 */
 	protected boolean addEReferences(IGraphNode fileNode, IGraphNode node, IHawkObject source,
-			Map<String, IGraphNode> addedNodesHash, Map<String, IGraphNode> nodes) throws Exception {
+			Map<String, IGraphNode> addedNodesHash, Function<String, IGraphNode> existingNodes) throws Exception {
 
 		refreshIndexes();
 
@@ -698,7 +1030,7 @@ public class GraphModelBatchInjector {
 								IGraphNode dest = null;
 								dest = addedNodesHash.get(destinationHawkObject.getUriFragment());
 								if (dest == null)
-									dest = nodes.get(destinationHawkObject.getUriFragment());
+									dest = existingNodes.apply(destinationHawkObject.getUriFragment());
 
 								Map<String, Object> props = new HashMap<String, Object>();
 								if (eReference.isContainment()) {
@@ -721,7 +1053,7 @@ public class GraphModelBatchInjector {
 						if (!destinationHawkObject.isInDifferentResourceThan(source)) {
 							IGraphNode dest = addedNodesHash.get(destinationHawkObject.getUriFragment());
 							if (dest == null)
-								dest = nodes.get(destinationHawkObject.getUriFragment());
+								dest = existingNodes.apply(destinationHawkObject.getUriFragment());
 
 							Map<String, Object> props = new HashMap<String, Object>();
 
@@ -812,36 +1144,51 @@ public class GraphModelBatchInjector {
 
 	private boolean addProxyRef(IGraphNode node, IHawkObject destinationObject, String edgelabel, boolean isContainment,
 			boolean isContainer) {
-
 		try {
-			final String uri = destinationObject.getUri();
+			return addProxyRef(node, getProxyURI(destinationObject), edgelabel, isContainment, isContainer);
+		} catch (Exception e) {
+			LOGGER.error("proxydictionary error", e);
+			return false;
+		}
+	}
 
-			String relativeObjectURI = uri;
-			if (destinationObject.isFragmentUnique()) {
-				/*
-				 * In this scenario, we don't care about the file anymore: we
-				 * need to flag it properly for the later resolution.
-				 */
-				relativeObjectURI = GraphModelUpdater.PROXY_FILE_WILDCARD + "#"
-						+ relativeObjectURI.substring(relativeObjectURI.indexOf("#") + 1);
-			} else if (!destinationObject.URIIsRelative()) {
-				/*
-				 * This is an absolute file-based path: strip out the prefix, which
-				 * may be the temporary import directory or a VCS-specific prefix.
-				 */
-				if (relativeObjectURI.startsWith(tempDirURI)) {
-					relativeObjectURI = relativeObjectURI.substring(tempDirURI.length());
-				} else {
-					final IVcsManager vcs = commitItem.getCommit().getDelta().getManager();
-					relativeObjectURI = vcs.getRepositoryPath(relativeObjectURI);
-				}
+	/**
+	 * Returns the full URI (including the repository URL) that a proxy
+	 * reference to the specified object should use.
+	 */
+	private String getProxyURI(IHawkObject destinationObject) {
+		final String uri = destinationObject.getUri();
+
+		String relativeObjectURI = uri;
+		if (destinationObject.isFragmentUnique()) {
+			/*
+			 * In this scenario, we don't care about the file anymore: we
+			 * need to flag it properly for the later resolution.
+			 */
+			relativeObjectURI = GraphModelUpdater.PROXY_FILE_WILDCARD + "#"
+					+ relativeObjectURI.substring(relativeObjectURI.indexOf("#") + 1);
+		} else if (!destinationObject.URIIsRelative()) {
+			/*
+			 * This is an absolute file-based path: strip out the prefix, which
+			 * may be the temporary import directory or a VCS-specific prefix.
+			 */
+			if (relativeObjectURI.startsWith(tempDirURI)) {
+				relativeObjectURI = relativeObjectURI.substring(tempDirURI.length());
+			} else {
+				final IVcsManager vcs = commitItem.getCommit().getDelta().getManager();
+				relativeObjectURI = vcs.getRepositoryPath(relativeObjectURI);
 			}
+		}
 
-			final String relativeObjectFileURI =
-				relativeObjectURI.substring(0, relativeObjectURI.indexOf("#"));
+		return repoURL + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + relativeObjectURI;
+	}
+
+	private boolean addProxyRef(IGraphNode node, String fullObjectURI, String edgelabel, boolean isContainment,
+			boolean isContainer) {
 
-			final String fullObjectURI = repoURL + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + relativeObjectURI;
-			final String fullObjectFileURI = repoURL + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + relativeObjectFileURI;
+		try {
+			final String repoPrefix = repoURL + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR;
+			final String fullObjectFileURI = fullObjectURI.substring(0, fullObjectURI.indexOf("#", repoPrefix.length()));
 
 			Object proxies = node.getProperty(GraphModelUpdater.PROXY_REFERENCE_PREFIX + fullObjectFileURI);
 			proxies = new Utils().addToElementProxies((String[]) proxies, fullObjectURI, edgelabel, isContainment, isContainer);
@@ -21,6 +21,7 @@ import java.lang.reflect.Array;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -49,12 +50,16 @@ import org.hawk.core.model.IHawkClass;
 import org.hawk.core.model.IHawkModelResource;
 import org.hawk.core.model.IHawkObject;
 import org.hawk.core.model.IHawkReference;
+import org.hawk.core.model.signature.ISignatureStrategy;
+import org.hawk.core.model.signature.SignatureStrategies;
 import org.hawk.core.query.IAccess;
 import org.hawk.core.query.IAccessListener;
 import org.hawk.core.query.IQueryEngine;
 import org.hawk.core.query.InvalidQueryException;
 import org.hawk.core.query.QueryExecutionException;
+import org.hawk.graph.FileNode;
 import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.SignatureSummary;
 import org.hawk.graph.updater.proxies.ProxyReferenceList;
 import org.hawk.graph.updater.proxies.ProxyReferenceList.ProxyReference;
 import org.hawk.graph.updater.proxies.ProxyReferenceTarget;
@@ -135,7 +140,11 @@ public class GraphModelInserter {
 	private IHawkModelResource resource;
 	private Map<String, IHawkObject> updated = new HashMap<>();
 	private Map<String, IHawkObject> added = new HashMap<>();
-	private Map<String, IHawkObject> unchanged = new HashMap<>();
+	/*
+	 * Unchanged elements are only checked by URI fragment, so we do not keep
+	 * their objects around.
+	 */
+	private Set<String> unchanged = new HashSet<>();
 	private Map<String, IHawkObject> retyped = new HashMap<>();
 
 	private IModelIndexer indexer;
@@ -145,6 +154,17 @@ public class GraphModelInserter {
 
 	private Map<String, IGraphNode> nodes = new HashMap<>();
 	private TypeCache typeCache;
+
+	/*
+	 * Signature summary of the resource being inserted, and fine buckets whose
+	 * elements were loaded into nodes (null if all were loaded). Nodes outside
+	 * those buckets are looked up on demand, and kept in otherNodes.
+	 */
+	private SignatureSummary currentSummary;
+	private BitSet loadedBuckets;
+	private String fileKey;
+	private final Map<String, IGraphNode> otherNodes = new HashMap<>();
+	private int loadedNodeCount;
 	private Supplier<DeletionUtils> deletionUtils;
 
 	public GraphModelInserter(IModelIndexer hawk, Supplier<DeletionUtils> deletionUtils, TypeCache typeCache) {
@@ -154,7 +174,30 @@ public class GraphModelInserter {
 		this.deletionUtils = deletionUtils;
 	}
 
+	/**
+	 * Returns the number of existing model element nodes that were loaded from
+	 * the graph to compute the delta in the last call to
+	 * {@link #run(IHawkModelResource, VcsCommitItem, boolean)}.
+	 */
+	public int getLoadedNodeCount() {
+		return loadedNodeCount;
+	}
+
 	public boolean run(IHawkModelResource res, VcsCommitItem s, final boolean verbose) throws Exception {
+		/*
+		 * Signatures have to match the ones already stored in this index, even if
+		 * we were not called from a synchronisation of the indexer.
+		 */
+		final ISignatureStrategy previousStrategy = SignatureStrategies.setCurrent(
+			SignatureStrategies.get(indexer.getSignatureStrategy()));
+		try {
+			return update(res, s, verbose);
+		} finally {
+			SignatureStrategies.setCurrent(previousStrategy);
+		}
+	}
+
+	private boolean update(IHawkModelResource res, VcsCommitItem s, final boolean verbose) throws Exception {
 		if (verbose) {
 			indexer.getCompositeStateListener().info("Calculating model delta for file: " + s.getPath() + "...");
 		}
@@ -233,7 +276,7 @@ public class GraphModelInserter {
 
 			// references of added object and tracking of changes
 			for (IGraphNode node : addedNodes.keySet()) {
-				inj.addEReferences(fileNode, node, addedNodes.get(node), addedNodesHash, nodes);
+				inj.addEReferences(fileNode, node, addedNodes.get(node), addedNodesHash, this::getExistingNode);
 			}
 
 			// delete obsolete nodes and change attributes
@@ -241,7 +284,7 @@ public class GraphModelInserter {
 
 				IGraphNode node = nodes.get(s);
 
-				if (unchanged.containsKey(node.getProperty(IModelIndexer.IDENTIFIER_PROPERTY))) {
+				if (unchanged.contains(node.getProperty(IModelIndexer.IDENTIFIER_PROPERTY))) {
 					// do nothing as node is identical to current model element
 				} else if (updated.containsKey(node.getProperty(IModelIndexer.IDENTIFIER_PROPERTY))) {
 					// remove all old proxies of this node to other nodes (as
@@ -318,6 +361,9 @@ public class GraphModelInserter {
 							if (dest == null) {
 								dest = addedNodesHash.get(s);
 							}
+							if (dest == null) {
+								dest = getExistingNode(s);
+							}
 
 							if (dest == null)
 								dest = addedNodesHash.get(s);
@@ -358,6 +404,11 @@ public class GraphModelInserter {
 			} // for (String o)
 
 			fileNode.setProperty("revision", commitItem.getCommit().getRevision());
+			if (currentSummary != null) {
+				GraphModelBatchInjector.saveSignatureSummary(fileNode, currentSummary);
+			} else {
+				GraphModelBatchInjector.removeSignatureSummary(fileNode);
+			}
 			t.success();
 			listener.changeSuccess();
 			return true;
@@ -616,6 +667,10 @@ public class GraphModelInserter {
 					t.success();
 				}
 			}
+
+			// The batch injector works from the resource: drop the delta before reinserting
+			clearDelta();
+
 			graph.enterBatchMode();
 			new GraphModelBatchInjector(indexer, deletionUtils, typeCache, commitItem, resource, listener, verbose);
 			listener.changeSuccess();
@@ -630,6 +685,47 @@ public class GraphModelInserter {
 		}
 	}
 
+	private void clearDelta() {
+		updated.clear();
+		added.clear();
+		unchanged.clear();
+		retyped.clear();
+		nodes.clear();
+		otherNodes.clear();
+	}
+
+	/**
+	 * Returns the existing node in the file for the specified URI fragment,
+	 * looking it up through the signature index if its bucket was not loaded
+	 * while computing the delta.
+	 */
+	private IGraphNode getExistingNode(String uriFragment) {
+		IGraphNode node = nodes.get(uriFragment);
+		if (node != null || loadedBuckets == null) {
+			return node;
+		}
+
+		final int bucket = SignatureSummary.getFineBucket(uriFragment);
+		if (loadedBuckets.get(bucket)) {
+			// We loaded this bucket and the element was not there
+			return null;
+		}
+
+		node = otherNodes.get(uriFragment);
+		if (node == null) {
+			final IGraphNodeIndex signatureIdx = graph.getOrCreateNodeIndex(GraphModelBatchInjector.SIGNATURE_DICT_NAME);
+			for (IGraphNode n : signatureIdx.get(fileKey, bucket)) {
+				final String id = n.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).toString();
+				otherNodes.put(id, n);
+				if (uriFragment.equals(id)) {
+					node = n;
+				}
+			}
+		}
+
+		return node;
+	}
+
 	private double calculateModelDeltaRatio(boolean verbose) throws Exception {
 		if (verbose) {
 			LOGGER.info("calculateModelDeltaSize() called");
@@ -650,24 +746,85 @@ public class GraphModelInserter {
 		try (IGraphTransaction t = graph.beginTransaction()) {
 			final Map<String, byte[]> signatures = new HashMap<>();
 
-			// Get existing nodes from the store (and their signatures)
-			for (IGraphEdge e : fileNode.getIncomingWithType(ModelElementNode.EDGE_LABEL_FILE)) {
-				IGraphNode n = e.getStartNode();
-				nodes.put(n.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).toString(), n);
+			final boolean useSummary = GraphModelBatchInjector.isSignatureSummaryEnabled(graph)
+				&& !resource.providesSingletonElements();
+			final SignatureSummary storedSummary = useSummary ? new FileNode(fileNode).getSignatureSummary() : null;
+			currentSummary = useSummary ? new SignatureSummary() : null;
+			loadedBuckets = null;
+			fileKey = fileNode.getId().toString();
+
+			final int totalNodes;
+			final Map<String, byte[]> resourceSignatures = new HashMap<>();
+			if (storedSummary != null) {
+				/*
+				 * Only load the nodes in the buckets whose summary has changed: all
+				 * others must be identical to the elements in the resource. We keep
+				 * the signatures, so they are not computed again below.
+				 */
+				for (Iterator<IHawkObject> itContents = resource.getContentsCursor(); itContents.hasNext(); ) {
+					final IHawkObject o = itContents.next();
+					final byte[] signature = o.signature();
+					resourceSignatures.put(o.getUriFragment(), signature);
+					currentSummary.add(o.getUriFragment(), signature);
+				}
+				loadedBuckets = storedSummary.getChangedFineBuckets(currentSummary);
+				totalNodes = storedSummary.getElementCount();
+				if (verbose) {
+					LOGGER.info("Signature summary: {} of {} buckets changed",
+						loadedBuckets.cardinality(), SignatureSummary.FINE_BUCKETS);
+				}
 
-				signatures.put((String) n.getProperty(IModelIndexer.IDENTIFIER_PROPERTY),
-						(byte[]) n.getProperty(IModelIndexer.SIGNATURE_PROPERTY));
+				final IGraphNodeIndex signatureIdx = graph.getOrCreateNodeIndex(GraphModelBatchInjector.SIGNATURE_DICT_NAME);
+				for (int from = loadedBuckets.nextSetBit(0); from >= 0; from = loadedBuckets.nextSetBit(from)) {
+					final int to = loadedBuckets.nextClearBit(from);
+					for (IGraphNode n : signatureIdx.query(fileKey, from, to, true, false)) {
+						final String id = n.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).toString();
+						nodes.put(id, n);
+						signatures.put(id, (byte[]) n.getProperty(IModelIndexer.SIGNATURE_PROPERTY));
+					}
+					from = to;
+				}
+			} else {
+				// Get existing nodes from the store (and their signatures)
+				final IGraphNodeIndex signatureIdx = useSummary
+					? graph.getOrCreateNodeIndex(GraphModelBatchInjector.SIGNATURE_DICT_NAME) : null;
+				for (IGraphEdge e : fileNode.getIncomingWithType(ModelElementNode.EDGE_LABEL_FILE)) {
+					IGraphNode n = e.getStartNode();
+					final String id = n.getProperty(IModelIndexer.IDENTIFIER_PROPERTY).toString();
+					nodes.put(id, n);
+					signatures.put(id, (byte[]) n.getProperty(IModelIndexer.SIGNATURE_PROPERTY));
+
+					if (signatureIdx != null) {
+						// File indexed before summaries were enabled: index its nodes now
+						signatureIdx.add(n, fileKey, SignatureSummary.getFineBucket(id));
+					}
+				}
+				totalNodes = nodes.size();
 			}
 			if (verbose) {
 				LOGGER.info("File contains: {} ({}) nodes in store", nodes.size(), signatures.size());
 			}
+			loadedNodeCount = nodes.size();
 
 			// Get the model elements from the resource and use signatures and URI
-			for (IHawkObject o : resource.getAllContents()) {
+			for (Iterator<IHawkObject> itContents = resource.getContentsCursor(); itContents.hasNext(); ) {
+				final IHawkObject o = itContents.next();
 				final String uriFragment = o.getUriFragment();
+				if (loadedBuckets != null && !loadedBuckets.get(SignatureSummary.getFineBucket(uriFragment))) {
+					continue;
+				}
+
+				byte[] signature = resourceSignatures.remove(uriFragment);
+				if (signature == null) {
+					signature = o.signature();
+				}
+				if (storedSummary == null && currentSummary != null) {
+					currentSummary.add(uriFragment, signature);
+				}
+
 				byte[] hash = signatures.get(uriFragment);
 				if (hash != null) {
-					if (!Arrays.equals(hash, o.signature())) {
+					if (!Arrays.equals(hash, signature)) {
 						final String actualType = o.getType().getName();
 
 						final IGraphNode node = nodes.get(uriFragment);
@@ -685,7 +842,7 @@ public class GraphModelInserter {
 							this.retyped.put(uriFragment, o);
 						}
 					} else {
-						this.unchanged.put(uriFragment, o);
+						this.unchanged.add(uriFragment);
 					}
 				} else {
 					this.added.put(uriFragment, o);
@@ -698,7 +855,7 @@ public class GraphModelInserter {
 			final int updatedn = updated.size();
 			final int deletedn = nodes.size() - unchanged.size() - updatedn - retypedn;
 
-			final double ratio = (addedn + retypedn + updatedn + deletedn) / ((double) nodes.size());
+			final double ratio = (addedn + retypedn + updatedn + deletedn) / ((double) totalNodes);
 			if (verbose) {
 				LOGGER.info("Update contains | a:{} u:{} d:{} ratio: {}",
 					(addedn + retypedn), updatedn, deletedn, ratio);
@@ -52,7 +52,6 @@ public class GraphModelUpdater implements IModelUpdater {
 
 	protected IModelIndexer indexer;
 	protected IConsole console;
-	protected TypeCache typeCache = new TypeCache();
 	private boolean isActive = false;
 	protected Set<IGraphNode> toBeUpdated = new HashSet<>();
 
@@ -173,8 +172,8 @@ public class GraphModelUpdater implements IModelUpdater {
 		console.println((end - start) / 1000 + "s" + (end - start) % 1000
 				+ "ms [proxy update]");
 
-		// Clear the type cache by creating a new one and letting the old one be GC'ed
-		typeCache = new TypeCache();
+		// Keep the known types for the next sync, but not their nodes
+		getTypeCache().releaseNodes();
 	}
 
 	public boolean isActive() {
@@ -348,7 +347,11 @@ public class GraphModelUpdater implements IModelUpdater {
 	}
 
 	public GraphModelInserter createInserter() {
-		return new GraphModelInserter(indexer, this::createDeletionUtils, typeCache);
+		return new GraphModelInserter(indexer, this::createDeletionUtils, getTypeCache());
+	}
+
+	protected TypeCache getTypeCache() {
+		return TypeCache.forGraph(indexer.getGraph());
 	}
 
 	protected DeletionUtils createDeletionUtils() {
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.graph.updater;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hawk.core.graph.IGraphNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Map from the URIs of the elements inserted so far during a single-pass
+ * insertion to their graph nodes. Only the most recently used entries are kept
+ * in memory: the least recently used ones are moved to a temporary file as
+ * node identifiers once there are too many, and can only be visited in bulk
+ * through {@link #forEachEvicted(IEvictedNodeConsumer)}.
+ */
+class InsertedNodeTable implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(InsertedNodeTable.class);
+
+	@FunctionalInterface
+	interface IEvictedNodeConsumer {
+		void accept(String uri, String nodeID) throws Exception;
+	}
+
+	private final File tempDir;
+	private final int capacity;
+
+	// Access order, so frequently referenced elements (e.g. containers) stay in memory
+	private final LinkedHashMap<String, IGraphNode> recent = new LinkedHashMap<>(16, 0.75f, true);
+
+	private File evictionFile;
+	private DataOutputStream evictionStream;
+	private long evicted = 0;
+
+	/**
+	 * Creates a new table.
+	 *
+	 * @param tempDir
+	 *            Folder where the eviction file should be created, if needed.
+	 * @param capacity
+	 *            Maximum number of entries to be kept in memory.
+	 */
+	InsertedNodeTable(File tempDir, int capacity) {
+		this.tempDir = tempDir;
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 * Records the node created for an element, moving the least recently used
+	 * entry to disk if the table is full.
+	 */
+	void put(String uri, IGraphNode node) throws IOException {
+		recent.put(uri, node);
+		if (recent.size() > capacity) {
+			final Iterator<Map.Entry<String, IGraphNode>> itEldest = recent.entrySet().iterator();
+			final Map.Entry<String, IGraphNode> eldest = itEldest.next();
+			itEldest.remove();
+			evict(eldest.getKey(), eldest.getValue());
+		}
+	}
+
+	/**
+	 * Returns the node of the element with the specified URI, if it has been
+	 * inserted and is still in memory, or <code>null</code> otherwise.
+	 */
+	IGraphNode get(String uri) {
+		return recent.get(uri);
+	}
+
+	/**
+	 * Passes the URIs and node identifiers of all the entries that were moved
+	 * to disk to the consumer. Can be called several times, but no more
+	 * entries should be added after the first call.
+	 */
+	void forEachEvicted(IEvictedNodeConsumer consumer) throws Exception {
+		if (evictionStream == null) {
+			return;
+		}
+		evictionStream.flush();
+
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(evictionFile)))) {
+			for (long i = 0; i < evicted; i++) {
+				final String uri = is.readUTF();
+				final String nodeID = is.readUTF();
+				consumer.accept(uri, nodeID);
+			}
+		} catch (EOFException ex) {
+			throw new IOException("Eviction file " + evictionFile + " is truncated", ex);
+		}
+	}
+
+	/**
+	 * Returns the number of entries that have been moved to disk so far.
+	 */
+	long getEvictedCount() {
+		return evicted;
+	}
+
+	/**
+	 * Returns the number of entries currently held in memory.
+	 */
+	int getInMemoryCount() {
+		return recent.size();
+	}
+
+	@Override
+	public void close() {
+		if (evictionStream != null) {
+			try {
+				evictionStream.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close eviction file " + evictionFile, e);
+			}
+			evictionStream = null;
+		}
+		if (evictionFile != null) {
+			if (!evictionFile.delete() && evictionFile.exists()) {
+				LOGGER.warn("Could not delete eviction file {}", evictionFile);
+			}
+			evictionFile = null;
+		}
+		recent.clear();
+	}
+
+	private void evict(String uri, IGraphNode node) throws IOException {
+		if (evictionStream == null) {
+			evictionFile = File.createTempFile("hawk-nodes", ".bin", tempDir);
+			evictionStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(evictionFile)));
+			LOGGER.debug("Moving inserted nodes to {}", evictionFile);
+		}
+
+		evictionStream.writeUTF(uri);
+		evictionStream.writeUTF(node.getId().toString());
+		evicted++;
+	}
+
+}
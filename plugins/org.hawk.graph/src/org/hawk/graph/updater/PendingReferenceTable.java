@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.graph.updater;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.hawk.core.model.IHawkObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Side table for the references within a file whose target has not been
+ * inserted yet during a single-pass insertion. References are kept in memory
+ * (indexed by target, so they can be resolved as soon as their target appears)
+ * until there are too many of them, at which point they are moved to a
+ * temporary file and resolved after the pass.
+ */
+class PendingReferenceTable implements AutoCloseable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PendingReferenceTable.class);
+
+	/**
+	 * Reference from an inserted element to an element that had not been
+	 * inserted yet.
+	 */
+	static class PendingReference {
+		private static final int FLAG_CONTAINMENT = 1;
+		private static final int FLAG_CONTAINER = 2;
+
+		/*
+		 * We keep the identifier of the source node rather than its URI, so
+		 * the source does not need to stay in the map of inserted elements.
+		 */
+		private final String sourceID, targetURI, edgeLabel;
+		private final boolean isContainment, isContainer;
+
+		/*
+		 * In memory we keep the target object, in case it has to become a proxy
+		 * reference. Once spilled, we only keep the URI that the proxy would use.
+		 */
+		private final IHawkObject target;
+		private final String proxyURI;
+
+		PendingReference(String sourceID, IHawkObject target, String edgeLabel, boolean isContainment, boolean isContainer) {
+			this(sourceID, target.getUri(), target, null, edgeLabel, isContainment, isContainer);
+		}
+
+		private PendingReference(String sourceID, String targetURI, IHawkObject target, String proxyURI,
+				String edgeLabel, boolean isContainment, boolean isContainer) {
+			this.sourceID = sourceID;
+			this.targetURI = targetURI;
+			this.target = target;
+			this.proxyURI = proxyURI;
+			this.edgeLabel = edgeLabel;
+			this.isContainment = isContainment;
+			this.isContainer = isContainer;
+		}
+
+		/**
+		 * Returns the identifier of the graph node of the source element.
+		 */
+		public String getSourceID() {
+			return sourceID;
+		}
+
+		public String getTargetURI() {
+			return targetURI;
+		}
+
+		public String getEdgeLabel() {
+			return edgeLabel;
+		}
+
+		public boolean isContainment() {
+			return isContainment;
+		}
+
+		public boolean isContainer() {
+			return isContainer;
+		}
+
+		/**
+		 * Returns the target object, or <code>null</code> if this reference was
+		 * read back from disk.
+		 */
+		public IHawkObject getTarget() {
+			return target;
+		}
+
+		/**
+		 * Returns the URI to be used for a proxy reference to the target, if
+		 * this reference was read back from disk.
+		 */
+		public String getProxyURI() {
+			return proxyURI;
+		}
+
+		private void write(DataOutputStream os, Function<IHawkObject, String> proxyURIs) throws IOException {
+			os.writeUTF(sourceID);
+			os.writeUTF(targetURI);
+			os.writeUTF(target != null ? proxyURIs.apply(target) : proxyURI);
+			os.writeUTF(edgeLabel);
+			os.writeByte((isContainment ? FLAG_CONTAINMENT : 0) | (isContainer ? FLAG_CONTAINER : 0));
+		}
+
+		private static PendingReference read(DataInputStream is) throws IOException {
+			final String sourceID = is.readUTF();
+			final String targetURI = is.readUTF();
+			final String proxyURI = is.readUTF();
+			final String edgeLabel = is.readUTF();
+			final int flags = is.readByte();
+			return new PendingReference(sourceID, targetURI, null, proxyURI, edgeLabel,
+				(flags & FLAG_CONTAINMENT) != 0, (flags & FLAG_CONTAINER) != 0);
+		}
+	}
+
+	@FunctionalInterface
+	interface IPendingReferenceConsumer {
+		void accept(PendingReference ref) throws Exception;
+	}
+
+	private final File tempDir;
+	private final int spillThreshold;
+	private final Function<IHawkObject, String> proxyURIs;
+	private final Map<String, List<PendingReference>> byTarget = new HashMap<>();
+	private int inMemory = 0;
+
+	private File spillFile;
+	private DataOutputStream spillStream;
+	private long spilled = 0;
+
+	/**
+	 * Creates a new table.
+	 *
+	 * @param tempDir
+	 *            Folder where the spill file should be created, if needed.
+	 * @param spillThreshold
+	 *            Maximum number of pending references to be kept in memory.
+	 * @param proxyURIs
+	 *            Function which computes the proxy URI for a target object, to
+	 *            be stored alongside each spilled reference.
+	 */
+	PendingReferenceTable(File tempDir, int spillThreshold, Function<IHawkObject, String> proxyURIs) {
+		this.tempDir = tempDir;
+		this.spillThreshold = Math.max(1, spillThreshold);
+		this.proxyURIs = proxyURIs;
+	}
+
+	/**
+	 * Records a reference to an element that has not been inserted yet.
+	 */
+	void add(PendingReference ref) throws IOException {
+		byTarget.computeIfAbsent(ref.getTargetURI(), (k) -> new ArrayList<>(1)).add(ref);
+		if (++inMemory > spillThreshold) {
+			spill();
+		}
+	}
+
+	/**
+	 * Removes and returns the in-memory references whose target has the
+	 * specified URI. Spilled references are only returned by
+	 * {@link #drain(IPendingReferenceConsumer)}.
+	 */
+	List<PendingReference> removeByTarget(String targetURI) {
+		final List<PendingReference> refs = byTarget.remove(targetURI);
+		if (refs == null) {
+			return Collections.emptyList();
+		}
+		inMemory -= refs.size();
+		return refs;
+	}
+
+	/**
+	 * Passes all remaining references (in memory and spilled) to the consumer,
+	 * and empties the table.
+	 */
+	void drain(IPendingReferenceConsumer consumer) throws Exception {
+		for (List<PendingReference> refs : byTarget.values()) {
+			for (PendingReference ref : refs) {
+				consumer.accept(ref);
+			}
+		}
+		byTarget.clear();
+		inMemory = 0;
+
+		if (spillStream != null) {
+			spillStream.close();
+			spillStream = null;
+
+			try (DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)))) {
+				for (long i = 0; i < spilled; i++) {
+					consumer.accept(PendingReference.read(is));
+				}
+			} catch (EOFException ex) {
+				throw new IOException("Spill file " + spillFile + " is truncated", ex);
+			}
+			deleteSpillFile();
+		}
+	}
+
+	/**
+	 * Returns the number of references that have been moved to disk so far.
+	 */
+	long getSpilledCount() {
+		return spilled;
+	}
+
+	/**
+	 * Returns the number of references currently held in memory.
+	 */
+	int getInMemoryCount() {
+		return inMemory;
+	}
+
+	@Override
+	public void close() {
+		if (spillStream != null) {
+			try {
+				spillStream.close();
+			} catch (IOException e) {
+				LOGGER.warn("Could not close spill file " + spillFile, e);
+			}
+			spillStream = null;
+		}
+		deleteSpillFile();
+		byTarget.clear();
+		inMemory = 0;
+	}
+
+	private void spill() throws IOException {
+		if (spillStream == null) {
+			spillFile = File.createTempFile("hawk-refs", ".bin", tempDir);
+			spillStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+			LOGGER.debug("Spilling pending references to {}", spillFile);
+		}
+
+		for (List<PendingReference> refs : byTarget.values()) {
+			for (PendingReference ref : refs) {
+				ref.write(spillStream, proxyURIs);
+				spilled++;
+			}
+		}
+		byTarget.clear();
+		inMemory = 0;
+	}
+
+	private void deleteSpillFile() {
+		if (spillFile != null) {
+			if (!spillFile.delete() && spillFile.exists()) {
+				LOGGER.warn("Could not delete spill file {}", spillFile);
+			}
+			spillFile = null;
+		}
+	}
+
+}
@@ -16,84 +16,324 @@
  ******************************************************************************/
 package org.hawk.graph.updater;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.hawk.core.IModelIndexer;
 import org.hawk.core.graph.IGraphDatabase;
+import org.hawk.core.graph.IGraphDatabase.Mode;
 import org.hawk.core.graph.IGraphEdge;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.model.IHawkClass;
 import org.hawk.core.model.IHawkClassifier;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.graph.Slot;
 import org.hawk.graph.TypeNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Cache that can be shared across multiple {@link GraphModelBatchInjector}
- * classes to avoid retrieving the same type node again and again. Designed to
- * be simply GC'ed during the {@link GraphModelUpdater#updateProxies()} stage.
+ * Cache of type nodes, keyed by metamodel URI and type name, which is shared
+ * by everything that works on the graph of an indexer (the updaters, the
+ * deletion utilities and the query engines: see
+ * {@link #forIndexer(IModelIndexer)}) and kept across synchronisations.
+ *
+ * The first lookup of a type in a metamodel visits the metamodel node once and
+ * records the IDs of all its types. Node handles and slots are only reused
+ * within a session of the updater: {@link #releaseNodes()} (called at the end
+ * of every synchronisation) and changes in the mode of the graph force them to
+ * be retrieved again by ID. Query engines only use the IDs, through
+ * {@link #getTypeNodeId(IGraphDatabase, String, String)}. The cache must be
+ * invalidated whenever metamodels change, which is done by the
+ * {@link GraphMetaModelUpdater}.
+ *
+ * All methods are thread-safe, and lookups do not take any locks. The cache is
+ * bounded by evicting the least recently used types once it grows beyond its
+ * maximum size.
  */
 public class TypeCache {
 
+	/**
+	 * System property with the maximum number of types to be kept in the cache.
+	 */
+	public static final String MAX_SIZE_PROPERTY = "hawk.typeCache.maxSize";
+	public static final int DEFAULT_MAX_SIZE = 50_000;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(TypeCache.class);
+	private static final Map<IGraphDatabase, TypeCache> SHARED = Collections.synchronizedMap(new WeakHashMap<>());
+
+	/**
+	 * Node handle and slots of a type, which are only valid within a session.
+	 */
+	private static class SessionNode {
+		final long session;
+		final IGraphNode node;
+		volatile Map<String, Slot> slots;
+
+		SessionNode(long session, IGraphNode node) {
+			this.session = session;
+			this.node = node;
+		}
+	}
+
+	private static class Entry {
+		final Object nodeId;
+		volatile SessionNode current;
+		volatile long lastAccess;
+
+		Entry(Object nodeId) {
+			this.nodeId = nodeId;
+		}
+	}
+
+	private static class EvictionCandidate {
+		final String key;
+		final Entry entry;
+		final long lastAccess;
+
+		EvictionCandidate(String key, Entry entry) {
+			this.key = key;
+			this.entry = entry;
+			this.lastAccess = entry.lastAccess;
+		}
+	}
+
+	private final int maxSize;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong session = new AtomicLong();
+	private final AtomicLong accessClock = new AtomicLong();
+	private final LongAdder hits = new LongAdder(), misses = new LongAdder();
+	private final Object evictionLock = new Object();
+	private volatile Mode lastMode;
+
+	/**
+	 * Returns the cache shared by all users of the specified graph.
+	 */
+	public static TypeCache forGraph(IGraphDatabase graph) {
+		return SHARED.computeIfAbsent(graph, (g) -> new TypeCache());
+	}
 
-	private Map<IHawkClass, IGraphNode> hashedEClasses = new HashMap<>();
-	private Map<IGraphNode, Map<String, Slot>> hashedEClassSlots = new HashMap<>();
+	/**
+	 * Returns the cache shared by all users of the graph of the specified
+	 * indexer.
+	 */
+	public static TypeCache forIndexer(IModelIndexer indexer) {
+		return forGraph(indexer.getGraph());
+	}
+
+	public TypeCache() {
+		this(SystemProperties.getInt(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+	}
+
+	public TypeCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
 
 	public IGraphNode getEClassNode(IGraphDatabase graph, IHawkClassifier e) throws Exception {
-		IHawkClass eClass = null;
+		return getSessionNode(graph, e).node;
+	}
+
+	public Map<String, Slot> getEClassNodeSlots(IGraphDatabase graph, IHawkClassifier e) throws Exception {
+		final SessionNode sn = getSessionNode(graph, e);
+
+		// Computing the slots more than once in a race is harmless
+		Map<String, Slot> slots = sn.slots;
+		if (slots == null) {
+			slots = new TypeNode(sn.node).getSlots();
+			sn.slots = slots;
+		}
+		return slots;
+	}
 
-		if (e instanceof IHawkClass)
-			eClass = ((IHawkClass) e);
-		else
-			System.err.println("getEClassNode called on a non-class classifier:\n" + e);
+	/**
+	 * Returns the ID of the node of the specified type, or <code>null</code> if
+	 * the metamodel or the type are not in the graph. This method does not
+	 * reuse node handles, so it can be called from any transaction.
+	 */
+	public Object getTypeNodeId(IGraphDatabase graph, String packageNSURI, String typeName) {
+		final Entry entry = getEntry(graph, packageNSURI, typeName, false);
+		return entry == null ? null : entry.nodeId;
+	}
 
-		IGraphNode classnode = hashedEClasses.get(eClass);
+	/**
+	 * Forgets the node handles and slots obtained so far, keeping only the IDs
+	 * of the type nodes. Should be called once the nodes may no longer be valid
+	 * (e.g. at the end of a synchronisation).
+	 */
+	public void releaseNodes() {
+		session.incrementAndGet();
+		for (Entry entry : entries.values()) {
+			entry.current = null;
+		}
+		LOGGER.debug("Released type nodes: {} types cached, {} hits, {} misses", entries.size(), hits.sum(), misses.sum());
+	}
+
+	/**
+	 * Forgets all the types in the metamodel with the specified URI.
+	 */
+	public void invalidate(String nsURI) {
+		final String prefix = nsURI + "##";
+		entries.keySet().removeIf((k) -> k.startsWith(prefix));
+	}
+
+	/**
+	 * Forgets all the types in the cache.
+	 */
+	public void invalidateAll() {
+		entries.clear();
+	}
 
-		if (classnode == null) {
-			final String packageNSURI = eClass.getPackageNSURI();
-			IGraphNode ePackageNode = null;
-			try {
-				ePackageNode = graph.getMetamodelIndex().get("id", packageNSURI).getSingle();
-			} catch (NoSuchElementException ex) {
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private SessionNode getSessionNode(IGraphDatabase graph, IHawkClassifier e) throws Exception {
+		if (!(e instanceof IHawkClass)) {
+			throw new IllegalArgumentException("getEClassNode called on a non-class classifier: " + e);
+		}
+		final IHawkClass eClass = (IHawkClass) e;
+
+		final Mode mode = graph.currentMode();
+		if (lastMode != mode) {
+			// Nodes obtained in one mode cannot be used in the other
+			if (lastMode != null) {
+				releaseNodes();
+			}
+			lastMode = mode;
+		}
+
+		final String packageNSURI = eClass.getPackageNSURI();
+		final Entry entry = getEntry(graph, packageNSURI, eClass.getName(), true);
+		if (entry == null) {
+			throw new Exception(String.format(
+				"eClass: %s (%s) does not have a Node associated with it in the store, please make sure the metamodel %s has been inserted",
+				eClass.getName(), eClass.getUri(), packageNSURI));
+		}
+
+		final long currentSession = session.get();
+		SessionNode sn = entry.current;
+		if (sn == null || sn.session != currentSession) {
+			final IGraphNode node = graph.getNodeById(entry.nodeId);
+			if (node == null) {
+				invalidate(packageNSURI);
 				throw new Exception(String.format(
-						"Metamodel %s does not have a Node associated with it in the store, please make sure it has been inserted",
-						packageNSURI));
-			} catch (Exception e2) {
-				LOGGER.error("Error while finding metamodel node", e2);
+					"Type node for eClass %s (%s) is no longer in the store", eClass.getName(), eClass.getUri()));
 			}
+			sn = new SessionNode(currentSession, node);
+			entry.current = sn;
+		}
 
-			for (IGraphEdge r : ePackageNode.getEdges()) {
-				final IGraphNode otherNode = r.getStartNode();
-				if (otherNode.equals(ePackageNode)) {
-					continue;
-				}
+		return sn;
+	}
 
-				final Object id = otherNode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY);
-				if (id.equals(eClass.getName())) {
-					classnode = otherNode;
-					break;
-				}
+	/**
+	 * Returns the entry for a type, recording the types of its metamodel if it
+	 * is not cached yet. Returns <code>null</code> if the metamodel is not in
+	 * the graph or does not have the type.
+	 */
+	private Entry getEntry(IGraphDatabase graph, String packageNSURI, String typeName, boolean keepNodes) {
+		final String key = getKey(packageNSURI, typeName);
+		Entry entry = entries.get(key);
+		if (entry != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+			entry = loadPackage(graph, packageNSURI, keepNodes).get(key);
+			if (entry == null) {
+				return null;
 			}
+		}
 
-			if (classnode != null) {
-				hashedEClasses.put(eClass, classnode);
-			} else {
-				throw new Exception(String.format(
-						"eClass: %s (%s) does not have a Node associated with it in the store, please make sure the metamodel %s has been inserted",
-						eClass.getName(), eClass.getUri(), packageNSURI));
+		entry.lastAccess = accessClock.incrementAndGet();
+		return entry;
+	}
+
+	/**
+	 * Records the IDs of all the types in a metamodel, returning the new entries
+	 * by key (some of them might have already been evicted from the cache). If
+	 * <code>keepNodes</code> is <code>true</code>, the node handles are kept
+	 * for the current session.
+	 */
+	private Map<String, Entry> loadPackage(IGraphDatabase graph, final String packageNSURI, boolean keepNodes) {
+		final IGraphNode ePackageNode;
+		try {
+			ePackageNode = graph.getMetamodelIndex().get("id", packageNSURI).getSingle();
+		} catch (NoSuchElementException ex) {
+			return Collections.emptyMap();
+		}
+
+		final long currentSession = session.get();
+		final long loadTime = accessClock.incrementAndGet();
+		final Map<String, Entry> loaded = new HashMap<>();
+		for (IGraphEdge r : ePackageNode.getEdges()) {
+			final IGraphNode otherNode = r.getStartNode();
+			if (otherNode.equals(ePackageNode)) {
+				continue;
 			}
 
-			hashedEClassSlots.put(classnode, new TypeNode(classnode).getSlots());
+			final Object id = otherNode.getProperty(IModelIndexer.IDENTIFIER_PROPERTY);
+			if (id != null) {
+				final Entry entry = new Entry(otherNode.getId());
+				if (keepNodes) {
+					entry.current = new SessionNode(currentSession, otherNode);
+				}
+				entry.lastAccess = loadTime;
+				loaded.put(getKey(packageNSURI, id.toString()), entry);
+			}
 		}
 
-		return classnode;
+		if (loaded.size() > maxSize) {
+			LOGGER.warn("Metamodel {} has {} types, more than the {} allowed by {}", packageNSURI, loaded.size(), maxSize, MAX_SIZE_PROPERTY);
+		}
+		entries.putAll(loaded);
+		if (entries.size() > maxSize) {
+			evict();
+		}
+		return loaded;
 	}
 
-	public Map<String, Slot> getEClassNodeSlots(IGraphDatabase graph, IHawkClassifier e) throws Exception {
-		return hashedEClassSlots.get(getEClassNode(graph, e));
+	/**
+	 * Evicts the least recently used entries, leaving some room so we do not
+	 * have to evict again on every new metamodel.
+	 */
+	private void evict() {
+		synchronized (evictionLock) {
+			final int toEvict = entries.size() - (maxSize - maxSize / 10);
+			if (entries.size() <= maxSize || toEvict <= 0) {
+				return;
+			}
+
+			// Snapshot the access times, as they may change while sorting
+			final List<EvictionCandidate> candidates = new ArrayList<>(entries.size());
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				candidates.add(new EvictionCandidate(e.getKey(), e.getValue()));
+			}
+			candidates.sort(Comparator.comparingLong((EvictionCandidate c) -> c.lastAccess));
+			for (EvictionCandidate c : candidates.subList(0, Math.min(toEvict, candidates.size()))) {
+				entries.remove(c.key, c.entry);
+			}
+		}
+	}
+
+	private static String getKey(String packageNSURI, String typeName) {
+		return packageNSURI + "##" + typeName;
 	}
 }
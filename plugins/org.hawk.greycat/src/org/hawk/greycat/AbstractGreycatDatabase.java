@@ -26,11 +26,19 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.IntStream;
 
 import org.hawk.core.IConsole;
@@ -41,8 +49,11 @@ import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphNodeIndex;
 import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNodeIndex;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.greycat.GreycatNode.NodeReader;
+import org.hawk.greycat.lucene.CompactionReport;
 import org.hawk.greycat.lucene.GreycatLuceneIndexer;
 import org.hawk.greycat.lucene.GreycatLuceneIndexer.GreycatLuceneNodeIndex;
 import org.slf4j.Logger;
@@ -50,15 +61,23 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Iterators;
 
 import greycat.Callback;
+import greycat.Constants;
 import greycat.Graph;
 import greycat.Node;
 import greycat.NodeIndex;
 import greycat.Type;
+import greycat.plugin.NodeState;
+import greycat.struct.DoubleArray;
+import greycat.struct.IntArray;
+import greycat.struct.LongArray;
+import greycat.struct.Relation;
+import greycat.struct.StringArray;
 
 /**
  * Base version of the Greycat support in Hawk, which can use any of the
@@ -112,12 +131,70 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 
 	protected static final class NodeCacheWrapper {
 		public final Node node;
+
+		/** Estimated size of the node when it was loaded, used as its weight in the cache. */
+		public final int weight;
 	
-		/** This node is currently in use - do not allow the cache to free it upon LRU removal. */
-		public boolean inUse = false;
+		/**
+		 * Number of {@link GreycatNode}s currently using this node. The cache
+		 * only frees the node on LRU removal once this drops to zero.
+		 */
+		private final AtomicInteger pins = new AtomicInteger();
+
+		/** Guarded by <code>this</code>. */
+		private boolean evicted = false, freed = false;
 	
 		public NodeCacheWrapper(Node n) {
 			this.node = n;
+			this.weight = n == null ? 1 : (int) Math.min(Integer.MAX_VALUE, estimateSize(n));
+		}
+
+		/**
+		 * Marks the node as in use. Returns <code>false</code> if the node was
+		 * already freed after being evicted: the caller should look it up again.
+		 */
+		public synchronized boolean pin() {
+			if (freed) {
+				return false;
+			}
+			pins.incrementAndGet();
+			return true;
+		}
+
+		/**
+		 * Releases one use of the node. If it was the last one and the node
+		 * was evicted in the meantime, the node is freed.
+		 */
+		public void unpin() {
+			if (pins.decrementAndGet() == 0) {
+				synchronized (this) {
+					if (evicted) {
+						freeIfUnpinned();
+					}
+				}
+			}
+		}
+
+		public boolean isPinned() {
+			return pins.get() > 0;
+		}
+
+		/**
+		 * Called when the cache drops this node: frees it now if it is not in
+		 * use, or otherwise when its last user unpins it.
+		 */
+		synchronized void evict() {
+			evicted = true;
+			freeIfUnpinned();
+		}
+
+		private void freeIfUnpinned() {
+			if (!freed && pins.get() == 0) {
+				freed = true;
+				if (node != null) {
+					node.free();
+				}
+			}
 		}
 	}
 
@@ -134,9 +211,43 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 	 */
 	protected static final String NODE_LABEL_IDX = "h_nodeLabel";
 	/**
-	 * In batch mode, we save every time we reach an X number of dirty nodes.
+	 * Name of the system property with the maximum total estimated size (in
+	 * bytes) of the nodes kept in the node cache.
+	 */
+	public static final String CACHE_MAX_WEIGHT_PROPERTY = "hawk.greycat.cacheMaxWeight";
+	public static final long DEFAULT_CACHE_MAX_WEIGHT = 4L * 1024 * 1024;
+
+	/**
+	 * Name of the system property with the estimated size (in bytes) of the
+	 * nodes modified since the last save, above which batch mode will save.
 	 */
-	protected static final int SAVE_EVERY = 10_000;
+	public static final String SAVE_DIRTY_BYTES_PROPERTY = "hawk.greycat.saveDirtyBytes";
+	public static final long DEFAULT_SAVE_DIRTY_BYTES = 16L * 1024 * 1024;
+
+	/**
+	 * Name of the system property with the number of nodes modified since the
+	 * last save, above which batch mode will save regardless of their size.
+	 * Dirty nodes cannot be freed until they are saved, so this keeps many
+	 * small nodes from exhausting the Greycat memory space. Each node takes
+	 * up several chunks, and the LevelDB and RocksDB backends give Greycat
+	 * 1,000,000 chunks: the default keeps the old <code>SAVE_EVERY</code>
+	 * value, which pins a few tens of thousands of chunks at most. Raise it
+	 * only together with the memory size of the backend.
+	 */
+	public static final String SAVE_DIRTY_NODES_PROPERTY = "hawk.greycat.saveDirtyNodes";
+	public static final long DEFAULT_SAVE_DIRTY_NODES = 10_000;
+
+	/**
+	 * Estimated fixed cost of a node and of each of its attributes, in bytes.
+	 */
+	private static final int NODE_OVERHEAD = 64, ATTRIBUTE_OVERHEAD = 16;
+
+	/**
+	 * Maximum number of nodes whose histories are looked up at once in
+	 * {@link #getInstantsBetween(List, long, long)}.
+	 */
+	private static final int HISTORY_BATCH_SIZE = 1_000;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(AbstractGreycatDatabase.class);
 	private Cache<NodeKey, NodeCacheWrapper> nodeCache;
 	protected File storageFolder;
@@ -145,19 +256,41 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 	private Graph graph;
 	private NodeIndex nodeLabelIndex;
 	private NodeIndex softDeleteIndex;
-	private Mode mode = Mode.TX_MODE;
+	private volatile Mode mode = Mode.TX_MODE;
 	protected GreycatLuceneIndexer luceneIndexer;
 	/**
 	 * Keeps nodes modified so far, so we can free them after we save.
 	 */
-	private Set<GreycatNode> currentDirtyNodes = new HashSet<>();
+	private Set<GreycatNode> currentDirtyNodes = ConcurrentHashMap.newKeySet();
+	/**
+	 * Estimated size of the nodes modified so far, so batch mode can save
+	 * before they take up too much memory.
+	 */
+	private final AtomicLong currentDirtyBytes = new AtomicLong();
+	private volatile long saveDirtyBytes = SystemProperties.getLong(SAVE_DIRTY_BYTES_PROPERTY, DEFAULT_SAVE_DIRTY_BYTES);
+	private volatile long saveDirtyNodes = SystemProperties.getLong(SAVE_DIRTY_NODES_PROPERTY, DEFAULT_SAVE_DIRTY_NODES);
+	private long cacheMaxWeight = SystemProperties.getLong(CACHE_MAX_WEIGHT_PROPERTY, DEFAULT_CACHE_MAX_WEIGHT);
 	/**
 	 * Keeps nodes opened right now, so we can avoid doing a periodic
 	 * save in the middle of some modifications.
 	 */
-	private Set<GreycatNode> currentOpenNodes = new HashSet<>();
-	private long world = 0;
-	private long time = 0;
+	private Set<GreycatNode> currentOpenNodes = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * World and time used by each thread, so queries at different timepoints
+	 * can run concurrently with each other and with indexing.
+	 */
+	private static final class Timepoint {
+		long world, time;
+	}
+	private final ThreadLocal<Timepoint> timepoint = ThreadLocal.withInitial(Timepoint::new);
+
+	/**
+	 * Number of {@link #readingHistory()} scopes open in the calling thread.
+	 */
+	private final ThreadLocal<Integer> historyReaders = ThreadLocal.withInitial(() -> 0);
+
+	private final ReentrantReadWriteLock historyLock = new ReentrantReadWriteLock();
 
 	private static void deleteRecursively(File f) throws IOException {
 		if (!f.exists()) return;
@@ -179,21 +312,60 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 	}
 
 	public long getWorld() {
-		return world;
+		return timepoint.get().world;
 	}
 
+	/**
+	 * Changes the world used by the calling thread.
+	 */
 	public void setWorld(long world) {
-		this.world = world;
+		timepoint.get().world = world;
 	}
 
 	@Override
 	public long getTime() {
-		return time;
+		return timepoint.get().time;
+	}
+
+	@Override
+	public ReadWriteLock getHistoryLock() {
+		return historyLock;
+	}
+
+	/**
+	 * Returns <code>true</code> if the calling thread holds the read lock of
+	 * the history but not its write lock, i.e. it is only running queries. Its
+	 * transactions should not save or reconnect the database, as that would
+	 * affect the other threads reading from it.
+	 */
+	protected boolean isOnlyReadingHistory() {
+		if (historyLock.isWriteLockedByCurrentThread()) {
+			return false;
+		}
+		return historyLock.getReadHoldCount() > 0 || historyReaders.get() > 0;
+	}
+
+	@Override
+	public ITimeScope readingHistory() {
+		final int previous = historyReaders.get();
+		historyReaders.set(previous + 1);
+		return () -> historyReaders.set(previous);
+	}
+
+	/**
+	 * Transactions only read from the database while the history is being
+	 * read (see {@link #isOnlyReadingHistory()}), nodes are shared through
+	 * the node cache with reference-counted pins, and the timepoint is kept
+	 * per thread.
+	 */
+	@Override
+	public boolean supportsParallelReads() {
+		return true;
 	}
 
 	@Override
 	public void setTime(long time) {
-		this.time = time;
+		timepoint.get().time = time;
 	}
 
 	@Override
@@ -314,7 +486,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 
 	@Override
 	public IGraphIterable<GreycatNode> allNodes(String label) {
-		return allNodes(label, this.time);
+		return allNodes(label, getTime());
 	}
 
 	@Override
@@ -335,6 +507,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 		 * TODO: switch to 'virtual label node' + edges, which would be
 		 * properly time-aware.
 		 */
+		final long world = getWorld();
 		return new IGraphIterable<GreycatNode>() {
 			@Override
 			public Iterator<GreycatNode> iterator() {
@@ -370,7 +543,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 
 	@Override
 	public GreycatNode createNode(Map<String, Object> props, String label) {
-		final Node node = graph.newNode(world, time);
+		final Node node = graph.newNode(getWorld(), getTime());
 		node.set(NODE_LABEL_IDX, Type.STRING, label);
 		nodeLabelIndex.update(node);
 	
@@ -382,15 +555,231 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 		return n;
 	}
 
+	@Override
+	public long[][] getInstantsBetween(List<? extends ITimeAwareGraphNode> nodes, long fromInclusive, long toInclusive) {
+		final long[][] instants = new long[nodes.size()][];
+
+		// Consecutive Greycat nodes from the same world and time are looked up together
+		int start = 0;
+		while (start < nodes.size()) {
+			final ITimeAwareGraphNode first = nodes.get(start);
+			if (!(first instanceof GreycatNode)) {
+				instants[start] = first.getInstantsBetweenArray(fromInclusive, toInclusive);
+				start++;
+				continue;
+			}
+
+			final GreycatNode gnFirst = (GreycatNode) first;
+			int end = start + 1;
+			while (end < nodes.size() && end - start < HISTORY_BATCH_SIZE && nodes.get(end) instanceof GreycatNode) {
+				final GreycatNode gn = (GreycatNode) nodes.get(end);
+				if (gn.getWorld() != gnFirst.getWorld() || gn.getTime() != gnFirst.getTime()) {
+					break;
+				}
+				end++;
+			}
+
+			getInstantsBetween(gnFirst.getWorld(), gnFirst.getTime(), nodes.subList(start, end), fromInclusive, toInclusive, instants, start);
+			start = end;
+		}
+
+		return instants;
+	}
+
+	@Override
+	public long[][] getAllInstants(List<? extends ITimeAwareGraphNode> nodes) {
+		return getInstantsBetween(nodes, Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME);
+	}
+
+	/**
+	 * Looks up a batch of Greycat nodes from the same world and time with a
+	 * single request, and requests all their timepoints before waiting for
+	 * any of them. Results are placed from <code>offset</code> onwards.
+	 */
+	private void getInstantsBetween(long world, long time, List<? extends ITimeAwareGraphNode> batch,
+			long fromInclusive, long toInclusive, long[][] instants, int offset) {
+		final long[] ids = new long[batch.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = ((GreycatNode) batch.get(i)).getId();
+		}
+
+		final CompletableFuture<Node[]> lookup = new CompletableFuture<>();
+		graph.lookupAll(world, time, ids, (nodes) -> lookup.complete(nodes));
+		final Node[] rawNodes = lookup.join();
+		try {
+			final CountDownLatch pending = new CountDownLatch(rawNodes.length);
+			for (int i = 0; i < rawNodes.length; i++) {
+				final int position = offset + i;
+				if (rawNodes[i] == null) {
+					instants[position] = new long[0];
+					pending.countDown();
+				} else {
+					rawNodes[i].timepoints(fromInclusive, GreycatNode.getTimepointsEnd(toInclusive), (value) -> {
+						instants[position] = value;
+						pending.countDown();
+					});
+				}
+			}
+			pending.await();
+		} catch (InterruptedException e) {
+			LOGGER.error(e.getMessage(), e);
+			Thread.currentThread().interrupt();
+			for (int i = offset; i < offset + rawNodes.length; i++) {
+				if (instants[i] == null) {
+					instants[i] = new long[0];
+				}
+			}
+		} finally {
+			for (Node n : rawNodes) {
+				if (n != null) {
+					n.free();
+				}
+			}
+		}
+	}
+
 	/**
 	 * Marks a certain node as being dirty: on batch mode, a periodic save will be
-	 * triggered when the set of dirty nodes reaches {@link #SAVE_EVERY} and there
-	 * are no opened nodes.
+	 * triggered when the dirty nodes exceed {@link #getSaveDirtyBytes()} bytes
+	 * or {@link #getSaveDirtyNodes()} nodes and there are no opened nodes.
 	 */
 	protected void markDirty(GreycatNode n) {
 		currentDirtyNodes.add(n);
 	}
 
+	/**
+	 * Changes the estimated size of the nodes modified since the last save.
+	 */
+	protected void addDirtyBytes(long delta) {
+		currentDirtyBytes.addAndGet(delta);
+	}
+
+	/**
+	 * Returns the estimated size of the nodes modified since the last save.
+	 */
+	public long getDirtyBytes() {
+		return currentDirtyBytes.get();
+	}
+
+	/**
+	 * Returns the number of nodes modified since the last save.
+	 */
+	public int getDirtyNodeCount() {
+		return currentDirtyNodes.size();
+	}
+
+	/**
+	 * Returns the estimated size of the dirty nodes above which batch mode
+	 * saves. Defaults to the value of {@link #SAVE_DIRTY_BYTES_PROPERTY}.
+	 */
+	public long getSaveDirtyBytes() {
+		return saveDirtyBytes;
+	}
+
+	/**
+	 * Changes the estimated size of the dirty nodes above which batch mode
+	 * saves.
+	 */
+	public void setSaveDirtyBytes(long saveDirtyBytes) {
+		this.saveDirtyBytes = saveDirtyBytes;
+	}
+
+	/**
+	 * Returns the number of dirty nodes above which batch mode saves. Defaults
+	 * to the value of {@link #SAVE_DIRTY_NODES_PROPERTY}.
+	 */
+	public long getSaveDirtyNodes() {
+		return saveDirtyNodes;
+	}
+
+	/**
+	 * Changes the number of dirty nodes above which batch mode saves. This
+	 * replaces the old fixed <code>SAVE_EVERY</code> threshold.
+	 */
+	public void setSaveDirtyNodes(long saveDirtyNodes) {
+		this.saveDirtyNodes = saveDirtyNodes;
+	}
+
+	/**
+	 * Returns the maximum total estimated size of the nodes in the node cache.
+	 * Defaults to the value of {@link #CACHE_MAX_WEIGHT_PROPERTY}.
+	 */
+	public long getNodeCacheMaxWeight() {
+		return cacheMaxWeight;
+	}
+
+	/**
+	 * Changes the maximum total estimated size of the nodes in the node cache.
+	 * Only takes effect on the next (re)connection to the database.
+	 */
+	public void setNodeCacheMaxWeight(long cacheMaxWeight) {
+		this.cacheMaxWeight = cacheMaxWeight;
+	}
+
+	/**
+	 * Returns the total estimated size of the nodes currently in the node
+	 * cache.
+	 */
+	public long getNodeCacheWeight() {
+		if (nodeCache == null) {
+			return 0;
+		}
+		return nodeCache.asMap().values().stream().mapToLong(w -> w.weight).sum();
+	}
+
+	/**
+	 * Returns the statistics of the node cache since the last connection.
+	 */
+	public CacheStats getNodeCacheStats() {
+		return nodeCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : nodeCache.stats();
+	}
+
+	/**
+	 * Returns the number of cached nodes which are currently in use, and will
+	 * not be freed if they are evicted.
+	 */
+	public long getPinnedNodeCount() {
+		if (nodeCache == null) {
+			return 0;
+		}
+		return nodeCache.asMap().values().stream().filter(NodeCacheWrapper::isPinned).count();
+	}
+
+	/**
+	 * Returns a rough estimate of the memory used by a node, in bytes, based on
+	 * the number and size of its attributes and relationships. This runs on
+	 * every load into the node cache, so it only looks at the sizes of the
+	 * attributes and never copies their values: string arrays are estimated
+	 * from their number of elements.
+	 */
+	protected static long estimateSize(Node n) {
+		final NodeState state = n.graph().resolver().resolveState(n);
+		if (state == null) {
+			return NODE_OVERHEAD;
+		}
+
+		final long[] size = { NODE_OVERHEAD };
+		state.each((attributeKey, elemType, elem) -> {
+			size[0] += ATTRIBUTE_OVERHEAD;
+			if (elem instanceof Relation) {
+				size[0] += Long.BYTES * ((Relation) elem).size();
+			} else if (elem instanceof LongArray) {
+				size[0] += Long.BYTES * ((LongArray) elem).size();
+			} else if (elem instanceof DoubleArray) {
+				size[0] += Double.BYTES * ((DoubleArray) elem).size();
+			} else if (elem instanceof IntArray) {
+				size[0] += Integer.BYTES * ((IntArray) elem).size();
+			} else if (elem instanceof StringArray) {
+				size[0] += (long) ATTRIBUTE_OVERHEAD * ((StringArray) elem).size();
+			} else if (elem instanceof String) {
+				size[0] += Character.BYTES * ((String) elem).length();
+			} else {
+				size[0] += Long.BYTES;
+			}
+		});
+		return size[0];
+	}
+
 	/**
 	 * Marks a certain node as being currently opened: a periodic save should not be
 	 * triggered until all currently opened nodes are closed.
@@ -405,7 +794,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 	 */
 	protected void markClosed(GreycatNode n) {
 		if (currentOpenNodes.remove(n) && currentOpenNodes.isEmpty()) {
-			if (mode == Mode.NO_TX_MODE && currentDirtyNodes.size() > SAVE_EVERY) {
+			if (mode == Mode.NO_TX_MODE && (currentDirtyBytes.get() > saveDirtyBytes || currentDirtyNodes.size() > saveDirtyNodes)) {
 				save();
 			}
 		}
@@ -436,7 +825,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 				} else {
 					result.complete(saved);
 				}
-			}, world, time);
+			}, getWorld(), getTime());
 		});
 		result.join();
 	
@@ -446,6 +835,13 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 			nodeCache.invalidate(new NodeKey(dirtyNode));
 		}
 		currentDirtyNodes.clear();
+		currentDirtyBytes.set(0);
+
+		if (LOGGER.isDebugEnabled()) {
+			final CacheStats stats = nodeCache.stats();
+			LOGGER.debug("Saved: node cache has {} entries ({} pinned), {} hits, {} misses, {} evictions",
+				nodeCache.size(), getPinnedNodeCount(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+		}
 	
 		// useful for finding GreyCat Node leaks
 		//System.out.println("-- SAVED: available is " + graph.space().available());
@@ -474,7 +870,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 			id = Long.valueOf((String) id);
 		}
 	
-		return new GreycatNode(this, world, time, (long)id);
+		return new GreycatNode(this, getWorld(), getTime(), (long)id);
 	}
 
 	@Override
@@ -552,15 +948,16 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 	}
 
 	protected void connect(CompletableFuture<Boolean> cConnected) {
+		this.currentDirtyBytes.set(0);
+
 		this.nodeCache = CacheBuilder.newBuilder()
-			.maximumSize(1_000)
+			.maximumWeight(cacheMaxWeight)
+			.weigher((NodeKey key, NodeCacheWrapper wrapper) -> wrapper.weight)
+			.recordStats()
 			.removalListener(new RemovalListener<NodeKey, NodeCacheWrapper>() {
 				@Override
 				public void onRemoval(RemovalNotification<NodeKey, NodeCacheWrapper> notification) {
-					final NodeCacheWrapper wrapper = notification.getValue();
-					if (!wrapper.inUse && wrapper.node != null) {
-						wrapper.node.free();
-					}
+					notification.getValue().evict();
 				}
 			})
 			.build();
@@ -568,6 +965,7 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 		this.graph = createGraph();
 	
 		exitBatchMode();
+		final long world = getWorld();
 		graph.connect((connected) -> {
 			if (connected) {
 				graph.declareIndex(world, NODE_LABEL_IDX, nodeIndex -> {
@@ -628,6 +1026,27 @@ public abstract class AbstractGreycatDatabase implements ITimeAwareGraphDatabase
 		}
 	}
 
+	/**
+	 * Merges the adjacent versions of each node with the same values in the
+	 * Lucene index. This should only be invoked while no transaction is open.
+	 * Holds the write lock of the history while compacting, so queries do not
+	 * read the index while its documents are being rewritten.
+	 */
+	public CompactionReport compactLuceneIndex() throws IOException {
+		final Lock writeLock = historyLock.writeLock();
+		writeLock.lock();
+		try {
+			return luceneIndexer.compact();
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void compactHistory() throws IOException {
+		compactLuceneIndex();
+	}
+
 	protected void commitLuceneIndex() {
 		try {
 			luceneIndexer.commit();
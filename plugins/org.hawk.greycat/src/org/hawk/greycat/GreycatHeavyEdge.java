@@ -130,7 +130,7 @@ public class GreycatHeavyEdge implements IGraphEdge {
 			GreycatNode.removeIncoming(type, rEnd, rEdge);
 
 			final Node edgeNode = rEdge.get();
-			if (edgeNode.timeDephasing() > 0 || node.getAllVersions().size() > 1) {
+			if (edgeNode.timeDephasing() > 0 || node.getAllInstantsArray().length > 1) {
 				/* There is more than one instant for this edge: end it in the previous timepoint. */
 				node.travelInTime(node.getTime() - 1).end();
 			} else {
@@ -18,7 +18,6 @@ package org.hawk.greycat;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -110,6 +109,10 @@ public class GreycatNode implements ITimeAwareGraphNode {
 		private NodeCacheWrapper _cacheWrapper = null;
 		private boolean _isDirty = false;
 
+		/** Size of the node the last time we estimated it after a change. */
+		private long _dirtySize = 0;
+		private boolean _needsEstimate = false;
+
 		public LazyNode(Graph graph, Node node) {
 			this._graph = graph;
 			this._node = node;
@@ -119,8 +122,10 @@ public class GreycatNode implements ITimeAwareGraphNode {
 			if (db.getGraph() == _graph && _node != null) {
 				return _node;
 			} else {
-				_cacheWrapper = db.lookup(world, time, id);
-				_cacheWrapper.inUse = true;
+				unpin();
+				do {
+					_cacheWrapper = db.lookup(world, time, id);
+				} while (!_cacheWrapper.pin());
 				if (_cacheWrapper.node == null) {
 					LOGGER.warn("Could not reload node {}:{}:{}", world, time, id);
 				}
@@ -132,22 +137,51 @@ public class GreycatNode implements ITimeAwareGraphNode {
 
 		public void markDirty() {
 			this._isDirty = true;
+			this._needsEstimate = true;
 			db.markDirty(GreycatNode.this);
 		}
 
+		/**
+		 * Reports to the database how much the estimated size of this node has
+		 * changed since it was last modified, so batch mode can save based on
+		 * the amount of dirty data.
+		 */
+		public void updateDirtySize() {
+			if (_needsEstimate && _node != null) {
+				_needsEstimate = false;
+				final long newSize = AbstractGreycatDatabase.estimateSize(_node);
+				db.addDirtyBytes(newSize - _dirtySize);
+				_dirtySize = newSize;
+			}
+		}
+
 		public void release() {
 			if (_cacheWrapper != null && !_isDirty) {
 				// Get it from the cache next time
 				_node = null;
-				_cacheWrapper.inUse = false;
+				unpin();
+			}
+		}
+
+		private void unpin() {
+			if (_cacheWrapper != null) {
+				_cacheWrapper.unpin();
+				_cacheWrapper = null;
 			}
 		}
 
 		public void free() {
 			if (_node != null) {
-				_node.free();
+				if (_cacheWrapper != null) {
+					// Shared through the node cache: freed once evicted and unused
+					unpin();
+				} else {
+					_node.free();
+				}
 				_node = null;
 				_isDirty = false;
+				_dirtySize = 0;
+				_needsEstimate = false;
 			}
 		}
 	}
@@ -178,6 +212,7 @@ public class GreycatNode implements ITimeAwareGraphNode {
 		@Override
 		public void close() {
 			if (--nestingLevel <= 0) {
+				nodeProvider.updateDirtySize();
 				db.markClosed(GreycatNode.this);
 				nodeProvider.release();
 			}
@@ -886,35 +921,47 @@ public class GreycatNode implements ITimeAwareGraphNode {
 
 	@Override
 	public List<Long> getInstantsBetween(long fromInclusive, long toInclusive) {
+		final long[] rawInstants = getInstantsBetweenArray(fromInclusive, toInclusive);
+		final List<Long> instants = new ArrayList<>(rawInstants.length);
+		for (long instant : rawInstants) {
+			instants.add(instant);
+		}
+		return instants;
+	}
+
+	@Override
+	public long[] getInstantsBetweenArray(long fromInclusive, long toInclusive) {
 		try (NodeReader rn = getNodeReader()) {
 			final Node n = rn.get();
 
 			CompletableFuture<long[]> result = new CompletableFuture<>();
-
-			/*
-			 * FIXME Greycat says that in timepoints(...), both ends are inclusive, but our
-			 * unit tests say otherwise. This is a temporal fix, with some caution around
-			 * overflow.
-			 */
-			n.timepoints(fromInclusive, toInclusive < Constants.END_OF_TIME ? toInclusive + 1 : toInclusive, (value) -> {
+			n.timepoints(fromInclusive, getTimepointsEnd(toInclusive), (value) -> {
 				result.complete(value);
 			});
-
-			List<Long> instants = new ArrayList<>();
-			for (long instant : result.get()) {
-				instants.add(instant);
-			}
-			return instants;
+			return result.get();
 		} catch (InterruptedException e) {
 			LOGGER.error(e.getMessage(), e);
 			Thread.currentThread().interrupt();
-			return Collections.emptyList();
+			return new long[0];
 		} catch (ExecutionException e) {
 			LOGGER.error(e.getMessage(), e);
-			return Collections.emptyList();
+			return new long[0];
 		}
 	}
 
+	/**
+	 * Returns the upper bound to be passed to {@link Node#timepoints} to obtain
+	 * the instants up to <code>toInclusive</code>.
+	 */
+	static long getTimepointsEnd(long toInclusive) {
+		/*
+		 * FIXME Greycat says that in timepoints(...), both ends are inclusive, but our
+		 * unit tests say otherwise. This is a temporal fix, with some caution around
+		 * overflow.
+		 */
+		return toInclusive < Constants.END_OF_TIME ? toInclusive + 1 : toInclusive;
+	}
+
 	@Override
 	public long getEarliestInstant() throws Exception {
 		try (NodeReader rn = getNodeReader()) {
@@ -990,4 +1037,9 @@ public class GreycatNode implements ITimeAwareGraphNode {
 		return getInstantsBetween(Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME);
 	}
 
+	@Override
+	public long[] getAllInstantsArray() throws Exception {
+		return getInstantsBetweenArray(Constants.BEGINNING_OF_TIME, Constants.END_OF_TIME);
+	}
+
 }
@@ -28,13 +28,18 @@ public class GreycatTransaction implements IGraphTransaction {
 
 	@Override
 	public void success() {
-		db.commitLuceneIndex();
-		db.save();
+		if (!db.isOnlyReadingHistory()) {
+			db.commitLuceneIndex();
+			db.save();
+		}
 	}
 
 	@Override
 	public void failure() {
-		db.reconnect();
+		// A failed query has nothing to roll back
+		if (!db.isOnlyReadingHistory()) {
+			db.reconnect();
+		}
 	}
 
 	@Override
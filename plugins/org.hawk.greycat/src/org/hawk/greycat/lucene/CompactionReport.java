@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.greycat.lucene;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Results of a {@link GreycatLuceneIndexer#compact()} run.
+ */
+public class CompactionReport {
+
+	private final int documentsBefore, documentsAfter;
+	private final long mergedVersions;
+	private final int sampledNodes;
+	private final long probeNanosBefore, probeNanosAfter;
+
+	public CompactionReport(int documentsBefore, int documentsAfter, long mergedVersions,
+			int sampledNodes, long probeNanosBefore, long probeNanosAfter) {
+		this.documentsBefore = documentsBefore;
+		this.documentsAfter = documentsAfter;
+		this.mergedVersions = mergedVersions;
+		this.sampledNodes = sampledNodes;
+		this.probeNanosBefore = probeNanosBefore;
+		this.probeNanosAfter = probeNanosAfter;
+	}
+
+	/**
+	 * Returns the number of live documents in the index before compaction.
+	 */
+	public int getDocumentsBefore() {
+		return documentsBefore;
+	}
+
+	/**
+	 * Returns the number of live documents in the index after compaction.
+	 */
+	public int getDocumentsAfter() {
+		return documentsAfter;
+	}
+
+	/**
+	 * Returns the number of node versions which were merged into the one before.
+	 */
+	public long getMergedVersions() {
+		return mergedVersions;
+	}
+
+	/**
+	 * Returns the number of nodes whose histories were queried to measure the
+	 * query latency.
+	 */
+	public int getSampledNodes() {
+		return sampledNodes;
+	}
+
+	/**
+	 * Returns the total time taken to query the histories of the sampled
+	 * nodes before compaction, in microseconds.
+	 */
+	public long getProbeMicrosBefore() {
+		return TimeUnit.NANOSECONDS.toMicros(probeNanosBefore);
+	}
+
+	/**
+	 * Returns the total time taken to query the histories of the sampled
+	 * nodes after compaction, in microseconds.
+	 */
+	public long getProbeMicrosAfter() {
+		return TimeUnit.NANOSECONDS.toMicros(probeNanosAfter);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"CompactionReport [documents=%d -> %d, mergedVersions=%d, historyQueries(%d nodes)=%d us -> %d us]",
+			documentsBefore, documentsAfter, mergedVersions, sampledNodes,
+			getProbeMicrosBefore(), getProbeMicrosAfter());
+	}
+
+}
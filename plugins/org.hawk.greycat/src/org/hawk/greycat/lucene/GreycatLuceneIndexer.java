@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -28,6 +29,8 @@ import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.DoublePoint;
@@ -36,6 +39,7 @@ import org.apache.lucene.document.LongPoint;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
@@ -49,7 +53,6 @@ import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
-import org.apache.lucene.search.SortedNumericSortField;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TotalHitCountCollector;
@@ -80,8 +83,10 @@ import com.google.common.cache.CacheBuilder;
  * requested, the various operations since the previous soft commit will be undone in
  * reverse order in-memory.</p>
  *
- * <p>We have a background thread that will do a real commit if the rollback log is
- * empty. There is also an explicit commit when this indexer shuts down.</p>
+ * <p>We have a background thread that will do a real commit every so often. There is
+ * also an explicit commit when this indexer shuts down. Searches use pooled searchers,
+ * which are refreshed in the background and upon soft commits (see {@link SoftTxLucene}).
+ * Query and update timings are kept for each index (see {@link #getTimings()}).</p>
  *
  * <p>TODO: add support for multiple worlds to this index. This may require keeping track
  * of how worlds branch off from each other.</p>
@@ -113,6 +118,12 @@ public class GreycatLuceneIndexer {
 	 */
 	private static final String VALIDTO_FIELD = "h_to";
 
+	/** Number of documents to be read at once during compaction. */
+	private static final int COMPACTION_PAGE_SIZE = 1_000;
+
+	/** Number of nodes whose histories are queried before and after compaction. */
+	private static final int COMPACTION_SAMPLE_SIZE = 100;
+
 	protected class MatchExistsCollector extends SimpleCollector {
 		private boolean matchFound = false;
 
@@ -167,14 +178,17 @@ public class GreycatLuceneIndexer {
 	protected final class LuceneGraphIterable implements IGraphIterable<GreycatNode> {
 		private final Query query;
 		private final Long timepoint;
+		private final IndexTimings timings;
 
-		protected LuceneGraphIterable(Query query, Long timepoint) {
+		protected LuceneGraphIterable(Query query, Long timepoint, IndexTimings timings) {
 			this.query = query;
 			this.timepoint = timepoint;
+			this.timings = timings;
 		}
 
 		@Override
 		public Iterator<GreycatNode> iterator() {
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 				final NodeListCollector lc = new NodeListCollector(searcher, timepoint);
@@ -183,11 +197,14 @@ public class GreycatLuceneIndexer {
 			} catch (IOException e) {
 				LOGGER.error("Failed to obtain result", e);
 				return Collections.emptyIterator();
+			} finally {
+				timings.recordQuery(startNanos);
 			}
 		}
 
 		@Override
 		public int size() {
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 				final TotalHitCountCollector collector = new TotalHitCountCollector();
@@ -196,11 +213,14 @@ public class GreycatLuceneIndexer {
 			} catch (IOException e) {
 				LOGGER.error("Failed to obtain size", e);
 				return 0;
+			} finally {
+				timings.recordQuery(startNanos);
 			}
 		}
 
 		@Override
 		public GreycatNode getSingle() {
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 				TopDocs results = searcher.search(query, 1);
@@ -215,6 +235,8 @@ public class GreycatLuceneIndexer {
 				}
 			} catch (IOException e) {
 				LOGGER.error("Failed to obtain single result", e);
+			} finally {
+				timings.recordQuery(startNanos);
 			}
 
 			throw new NoSuchElementException();
@@ -236,6 +258,8 @@ public class GreycatLuceneIndexer {
 		 */
 		private final Long timepoint;
 
+		private final IndexTimings indexTimings;
+
 		private static final String NODE_DOCTYPE = "node";
 		
 		public GreycatLuceneNodeIndex(String name) {
@@ -245,10 +269,12 @@ public class GreycatLuceneIndexer {
 		public GreycatLuceneNodeIndex(String name, Long timepoint) {
 			this.name = name;
 			this.timepoint = timepoint;
+			this.indexTimings = getTimings(name);
 		}
 
 		@Override
 		public void remove(IGraphNode n, String key, Object value) {
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 				final GreycatNode gn = (GreycatNode) n;
@@ -282,6 +308,8 @@ public class GreycatLuceneIndexer {
 
 			} catch (IOException e) {
 				LOGGER.error("Could not remove node from index", e);
+			} finally {
+				indexTimings.recordUpdate(startNanos);
 			}
 		}
 
@@ -381,6 +409,7 @@ public class GreycatLuceneIndexer {
 
 		@Override
 		public void remove(IGraphNode n) {
+			final long startNanos = System.nanoTime();
 			try {
 				final GreycatNode gn = (GreycatNode) n;
 
@@ -398,6 +427,8 @@ public class GreycatLuceneIndexer {
 				invalidateAtTimepoint(gn, queryToInvalidate);
 			} catch (IOException e) {
 				LOGGER.error(String.format("Could not remove node with id %d from index %s", n.getId(), name), e);
+			} finally {
+				indexTimings.recordUpdate(startNanos);
 			}
 		}
 
@@ -418,7 +449,7 @@ public class GreycatLuceneIndexer {
 					.add(findValidDocumentsAtTimepoint(getTimepoint()), Occur.FILTER)
 					.build();
 
-				return new LuceneGraphIterable(query, timepoint);
+				return new LuceneGraphIterable(query, timepoint, indexTimings);
 		}
 
 		@Override
@@ -457,7 +488,7 @@ public class GreycatLuceneIndexer {
 			}
 			final Query query = builder.build();
 
-			return new LuceneGraphIterable(query, timepoint);
+			return new LuceneGraphIterable(query, timepoint, indexTimings);
 		}
 
 		@Override
@@ -472,7 +503,7 @@ public class GreycatLuceneIndexer {
 				.add(valueQuery, Occur.FILTER)
 				.add(findValidDocumentsAtTimepoint(getTimepoint()), Occur.FILTER)
 				.build();
-			return new LuceneGraphIterable(query, timepoint);
+			return new LuceneGraphIterable(query, timepoint, indexTimings);
 		}
 
 		@Override
@@ -483,6 +514,7 @@ public class GreycatLuceneIndexer {
 				.add(LongPoint.newExactQuery(NODEID_FIELD, (long) gn.getId()), Occur.FILTER)
 				.build();
 
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 
@@ -510,6 +542,8 @@ public class GreycatLuceneIndexer {
 			} catch (IOException e) {
 				LOGGER.error("Failed to obtain result", e);
 				return Collections.emptyList();
+			} finally {
+				indexTimings.recordQuery(startNanos);
 			}
 		}
 
@@ -519,30 +553,39 @@ public class GreycatLuceneIndexer {
 			final Query query = getIndexQueryBuilder()
 				.add(valueQuery, Occur.FILTER)
 				.add(LongPoint.newExactQuery(NODEID_FIELD, (long) gn.getId()), Occur.FILTER)
-				.add(LongPoint.newRangeQuery(VALIDFROM_FIELD, gn.getTime(), Long.MAX_VALUE), Occur.FILTER)
+				.add(LongPoint.newRangeQuery(VALIDTO_FIELD, gn.getTime(), Long.MAX_VALUE), Occur.FILTER)
 				.build();
 
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 
-				final Sort sort = new Sort(new SortedNumericSortField(VALIDFROM_FIELD, SortField.Type.LONG));
-				final ScoreDoc[] hits = searcher.search(query, 1, sort).scoreDocs;
-				if (hits.length == 0) {
-					return null;
-				}
+				/*
+				 * Intervals may have started before the current timepoint (e.g. after
+				 * compaction), so we clip them and go through them from earliest to latest
+				 * until we find one with versions of the node.
+				 */
+				final IntervalCollector<Long> fc = new IntervalCollector<>(
+					searcher, VALIDFROM_FIELD, VALIDTO_FIELD, f -> f.numericValue().longValue()
+				);
+				searcher.search(query, fc);
 
-				final Document doc = searcher.doc(hits[0].doc);
-				final long from = doc.getField(VALIDFROM_FIELD).numericValue().longValue();
-				final long to = doc.getField(VALIDTO_FIELD).numericValue().longValue();
-				final List<Long> versions = gn.getInstantsBetween(from, to);
-				if (versions.isEmpty()) {
-					return null;
+				final List<Interval<Long>> intervals = fc.getValues();
+				Collections.sort(intervals, (a, b) -> Long.compare(a.getFrom(), b.getFrom()));
+				for (Interval<Long> interval : intervals) {
+					final long from = Math.max(interval.getFrom(), gn.getTime());
+					final List<Long> versions = gn.getInstantsBetween(from, interval.getTo());
+					if (!versions.isEmpty()) {
+						return versions.get(versions.size() - 1);
+					}
 				}
 
-				return versions.get(versions.size() - 1);
+				return null;
 			} catch (IOException e) {
 				LOGGER.error("Failed to obtain result", e);
 				return null;
+			} finally {
+				indexTimings.recordQuery(startNanos);
 			}
 		}
 
@@ -589,6 +632,7 @@ public class GreycatLuceneIndexer {
 			}
 			final GreycatNode gn = (GreycatNode)n;
 
+			final long startNanos = System.nanoTime();
 			try (SearcherCloseable sc = lucene.getSearcher()) {
 				final IndexSearcher searcher = sc.get();
 
@@ -616,6 +660,8 @@ public class GreycatLuceneIndexer {
 				}
 			} catch (IOException e) {
 				LOGGER.error(e.getMessage(), e);
+			} finally {
+				indexTimings.recordUpdate(startNanos);
 			}
 		}
 
@@ -753,6 +799,7 @@ public class GreycatLuceneIndexer {
 	private final Cache<String, GreycatLuceneNodeIndex> nodeIndexCache =
 		CacheBuilder.newBuilder().maximumSize(100).build();
 	private final SoftTxLucene lucene;
+	private final ConcurrentMap<String, IndexTimings> timings = new ConcurrentHashMap<>();
 
 	public GreycatLuceneIndexer(AbstractGreycatDatabase db, File dir) throws IOException {
 		this.database = db;
@@ -782,6 +829,17 @@ public class GreycatLuceneIndexer {
 		});
 	}
 
+	/**
+	 * Returns the timings accumulated so far for each node index, by name.
+	 */
+	public Map<String, IndexTimings> getTimings() {
+		return Collections.unmodifiableMap(timings);
+	}
+
+	protected IndexTimings getTimings(String indexName) {
+		return timings.computeIfAbsent(indexName, (k) -> new IndexTimings());
+	}
+
 	public Set<String> getIndexNames() {
 		try (SearcherCloseable sc = lucene.getSearcher()) {
 			final IndexSearcher searcher = sc.get();
@@ -840,10 +898,166 @@ public class GreycatLuceneIndexer {
 		}
 	}
 
+	/**
+	 * Compacts the index, merging adjacent versions of a node in the same index
+	 * which have the same values into a single document, and then rewriting the
+	 * segments to expunge the merged documents. This is done outside the soft
+	 * transactions: it should be invoked while no changes are pending.
+	 *
+	 * @return Document counts and latency of a sample of history queries, before
+	 *         and after the compaction.
+	 * @throws IOException
+	 *             Failed to read or write the index.
+	 */
+	public CompactionReport compact() throws IOException {
+		final Query nodeDocsQuery = new TermQuery(new Term(DOCTYPE_FIELD, GreycatLuceneNodeIndex.NODE_DOCTYPE));
+		final List<Long> sampleIds = new ArrayList<>();
+		final int documentsBefore;
+		try (SearcherCloseable sc = lucene.getSearcher()) {
+			final IndexSearcher searcher = sc.get();
+			documentsBefore = searcher.getIndexReader().numDocs();
+			for (ScoreDoc sd : searcher.search(nodeDocsQuery, COMPACTION_SAMPLE_SIZE).scoreDocs) {
+				sampleIds.add(searcher.doc(sd.doc).getField(NODEID_FIELD).numericValue().longValue());
+			}
+		}
+		final long probeNanosBefore = probeHistories(sampleIds);
+
+		final long[] merged = { 0 };
+		lucene.maintain(writer -> {
+			try (SearcherCloseable sc = lucene.getSearcher()) {
+				final IndexSearcher searcher = sc.get();
+				final Sort sort = new Sort(
+					new SortField(NODEID_FIELD, SortField.Type.LONG),
+					new SortField(VALIDFROM_FIELD, SortField.Type.LONG));
+
+				// Versions of the current node being merged, by index
+				final Map<String, MergeRun> runs = new HashMap<>();
+				long currentNodeId = -1;
+
+				ScoreDoc after = null;
+				ScoreDoc[] page;
+				do {
+					page = after == null
+						? searcher.search(nodeDocsQuery, COMPACTION_PAGE_SIZE, sort).scoreDocs
+						: searcher.searchAfter(after, nodeDocsQuery, COMPACTION_PAGE_SIZE, sort).scoreDocs;
+
+					for (ScoreDoc sd : page) {
+						final Document doc = searcher.doc(sd.doc);
+						final long nodeId = doc.getField(NODEID_FIELD).numericValue().longValue();
+						if (nodeId != currentNodeId) {
+							for (MergeRun run : runs.values()) {
+								run.flush(writer);
+							}
+							runs.clear();
+							currentNodeId = nodeId;
+						}
+
+						final String index = doc.get(INDEX_FIELD);
+						final MergeRun run = runs.get(index);
+						if (run != null && run.canAppend(doc)) {
+							run.append(doc, writer);
+							merged[0]++;
+						} else {
+							if (run != null) {
+								run.flush(writer);
+							}
+							runs.put(index, new MergeRun(doc));
+						}
+					}
+					if (page.length > 0) {
+						after = page[page.length - 1];
+					}
+				} while (page.length == COMPACTION_PAGE_SIZE);
+
+				for (MergeRun run : runs.values()) {
+					run.flush(writer);
+				}
+			}
+		});
+
+		final int documentsAfter;
+		try (SearcherCloseable sc = lucene.getSearcher()) {
+			documentsAfter = sc.get().getIndexReader().numDocs();
+		}
+		final long probeNanosAfter = probeHistories(sampleIds);
+
+		final CompactionReport report = new CompactionReport(documentsBefore, documentsAfter, merged[0],
+			sampleIds.size(), probeNanosBefore, probeNanosAfter);
+		LOGGER.info("Compacted Lucene index: {}", report);
+		return report;
+	}
+
+	/**
+	 * Sequence of adjacent versions of a node in an index, with the same values.
+	 */
+	private static final class MergeRun {
+		private final Document first;
+		private final Map<String, List<String>> values;
+		private long validTo;
+
+		public MergeRun(Document first) {
+			this.first = first;
+			this.values = getAttributeValues(first);
+			this.validTo = first.getField(VALIDTO_FIELD).numericValue().longValue();
+		}
+
+		public boolean canAppend(Document next) {
+			final long nextFrom = next.getField(VALIDFROM_FIELD).numericValue().longValue();
+			return validTo != Long.MAX_VALUE && validTo + 1 == nextFrom
+				&& values.equals(getAttributeValues(next));
+		}
+
+		public void append(Document next, IndexWriter writer) throws IOException {
+			validTo = next.getField(VALIDTO_FIELD).numericValue().longValue();
+			writer.deleteDocuments(new Term(UUID_FIELD, next.get(UUID_FIELD)));
+		}
+
+		public void flush(IndexWriter writer) throws IOException {
+			if (validTo != first.getField(VALIDTO_FIELD).numericValue().longValue()) {
+				final Document merged = copy(first);
+				replaceRawField(merged, VALIDTO_FIELD, validTo);
+				writer.updateDocument(new Term(UUID_FIELD, first.get(UUID_FIELD)), merged);
+			}
+		}
+
+		private static Map<String, List<String>> getAttributeValues(Document doc) {
+			final Map<String, List<String>> values = new HashMap<>();
+			for (IndexableField f : doc.getFields()) {
+				if (f.name().startsWith(ATTRIBUTE_PREFIX)) {
+					final String value = f.numericValue() == null ? f.stringValue() : f.numericValue().toString();
+					values.computeIfAbsent(f.name(), (k) -> new ArrayList<>()).add(value);
+				}
+			}
+			for (List<String> l : values.values()) {
+				Collections.sort(l);
+			}
+			return values;
+		}
+	}
+
+	/**
+	 * Runs the same query as {@link GreycatLuceneNodeIndex#getVersions} (without
+	 * the value filter) for each of the specified nodes, and returns the time taken.
+	 */
+	private long probeHistories(List<Long> nodeIds) throws IOException {
+		final long startNanos = System.nanoTime();
+		try (SearcherCloseable sc = lucene.getSearcher()) {
+			final IndexSearcher searcher = sc.get();
+			for (long nodeId : nodeIds) {
+				final IntervalCollector<Long> fc = new IntervalCollector<>(
+					searcher, VALIDFROM_FIELD, VALIDTO_FIELD, f -> f.numericValue().longValue()
+				);
+				searcher.search(LongPoint.newExactQuery(NODEID_FIELD, nodeId), fc);
+				fc.getValues();
+			}
+		}
+		return System.nanoTime() - startNanos;
+	}
+
 	/**
 	 * Commits all changes to the index. This is a soft-commit: real Lucene
-	 * commits are only done periodically in the background, when the rollback
-	 * log is empty.
+	 * commits are only done periodically in the background. In near-real-time
+	 * mode, this also makes the changes visible to searches from other threads.
 	 * 
 	 * @throws IOException
 	 *             Failed to commit the changes.
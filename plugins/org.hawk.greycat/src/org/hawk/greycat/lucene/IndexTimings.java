@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.greycat.lucene;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulated timings of the queries and updates on a node index. Safe to use
+ * from multiple threads.
+ */
+public class IndexTimings {
+
+	private final LongAdder queries = new LongAdder();
+	private final LongAdder queryNanos = new LongAdder();
+	private final LongAdder updates = new LongAdder();
+	private final LongAdder updateNanos = new LongAdder();
+
+	/**
+	 * Records a query which started at the specified {@link System#nanoTime()}.
+	 */
+	public void recordQuery(long startNanos) {
+		queries.increment();
+		queryNanos.add(System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Records an update which started at the specified {@link System#nanoTime()}.
+	 */
+	public void recordUpdate(long startNanos) {
+		updates.increment();
+		updateNanos.add(System.nanoTime() - startNanos);
+	}
+
+	public long getQueryCount() {
+		return queries.sum();
+	}
+
+	public long getQueryMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(queryNanos.sum());
+	}
+
+	public long getUpdateCount() {
+		return updates.sum();
+	}
+
+	public long getUpdateMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(updateNanos.sum());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("IndexTimings [queries=%d (%d ms), updates=%d (%d ms)]",
+			getQueryCount(), getQueryMillis(), getUpdateCount(), getUpdateMillis());
+	}
+
+}
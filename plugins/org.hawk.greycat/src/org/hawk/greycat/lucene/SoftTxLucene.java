@@ -29,39 +29,100 @@ import java.util.stream.Collectors;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
-import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ReferenceManager.RefreshListener;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
+import org.hawk.core.util.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Implements "soft" transactions within Lucene. This class is NOT thread-safe: only one
- * thread is assumed to be accessing this Lucene index at a time.
+ * <p>Implements "soft" transactions within Lucene. Changes are only expected to
+ * come from one thread at a time, but searches may come from any thread.</p>
+ *
+ * <p>In near-real-time mode (the default), writes do not refresh the searchers:
+ * the pooled searchers are refreshed periodically in the background and upon
+ * soft commits or rollbacks. A thread that has written to the index will always
+ * see its own changes, as its next search will wait for a refresh if needed.
+ * Otherwise, the searchers are refreshed after every change.</p>
  */
 final class SoftTxLucene {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SoftTxLucene.class);
 
+	/**
+	 * Name of the system property which enables or disables the near-real-time
+	 * search mode (<code>true</code> by default).
+	 */
+	public static final String NRT_PROPERTY = "hawk.greycat.lucene.nrt";
+
+	/**
+	 * Name of the system property with the milliseconds between background
+	 * refreshes of the searchers, in near-real-time mode.
+	 */
+	public static final String REFRESH_MILLIS_PROPERTY = "hawk.greycat.lucene.refreshMillis";
+	public static final long DEFAULT_REFRESH_MILLIS = 1_000;
+
+	/**
+	 * Name of the system property with the seconds between background commits of
+	 * the index to disk.
+	 */
+	public static final String COMMIT_SECONDS_PROPERTY = "hawk.greycat.lucene.commitSeconds";
+	public static final long DEFAULT_COMMIT_SECONDS = 30;
+
+	/**
+	 * Name of the system property with the MB of documents to be buffered in
+	 * memory before flushing a new segment.
+	 */
+	public static final String RAM_BUFFER_MB_PROPERTY = "hawk.greycat.lucene.ramBufferMB";
+
+	/**
+	 * Name of the system property with the number of segments allowed per tier
+	 * before they are merged. Lower values result in more merging and faster
+	 * searches.
+	 */
+	public static final String SEGMENTS_PER_TIER_PROPERTY = "hawk.greycat.lucene.segmentsPerTier";
+	public static final double DEFAULT_SEGMENTS_PER_TIER = 10;
+
 	private final Directory storage;
 	private final Analyzer analyzer;
 	private final IndexWriter writer;
 
 	private interface IUndoable {
-		void doWork() throws IOException;
+		/**
+		 * Performs the change, and returns the sequence number of the last
+		 * operation done on the writer.
+		 */
+		long doWork() throws IOException;
 		void undoWork() throws IOException;
 	}
 
+	/**
+	 * Change to be done directly on the index, outside the soft transactions.
+	 */
+	@FunctionalInterface
+	interface IMaintenanceTask {
+		void run(IndexWriter writer) throws IOException;
+	}
+
 	private final List<IUndoable> rollbackLog = new LinkedList<>();
 	private final ScheduledExecutorService executor;
 	private final SearcherManager searchManager;
+	private final boolean nearRealTime;
+
+	/** Sequence number of the last change done by each thread. */
+	private final ThreadLocal<long[]> lastWriteSeqNo = ThreadLocal.withInitial(() -> new long[] { -1 });
+
+	/** All changes up to this sequence number are visible to the searchers. */
+	private volatile long refreshedSeqNo = -1;
 
 	public class SearcherCloseable implements Closeable {
 		private IndexSearcher searcher;
@@ -90,24 +151,67 @@ final class SoftTxLucene {
 	public SoftTxLucene(File dir) throws IOException {
 		this.storage = new MMapDirectory(dir.toPath());
 		this.analyzer = new CaseInsensitiveWhitespaceAnalyzer();
-		this.writer = new IndexWriter(storage, new IndexWriterConfig(analyzer));
-		final DirectoryReader reader = DirectoryReader.open(writer);
+		this.nearRealTime = !"false".equals(System.getProperty(NRT_PROPERTY));
+
+		final TieredMergePolicy mergePolicy = new TieredMergePolicy();
+		mergePolicy.setSegmentsPerTier(SystemProperties.getDouble(SEGMENTS_PER_TIER_PROPERTY, DEFAULT_SEGMENTS_PER_TIER));
+		final IndexWriterConfig config = new IndexWriterConfig(analyzer)
+			.setMergePolicy(mergePolicy)
+			.setRAMBufferSizeMB(SystemProperties.getDouble(RAM_BUFFER_MB_PROPERTY, IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB));
+		this.writer = new IndexWriter(storage, config);
+
 		this.searchManager = new SearcherManager(writer, true, false, null);
-		
-		this.executor = Executors.newScheduledThreadPool(1);
+		searchManager.addListener(new RefreshListener() {
+			private long startSeqNo;
+
+			@Override
+			public void beforeRefresh() throws IOException {
+				startSeqNo = writer.getMaxCompletedSequenceNumber();
+			}
+
+			@Override
+			public void afterRefresh(boolean didRefresh) throws IOException {
+				// Even if nothing changed, the searcher is current as of startSeqNo
+				refreshedSeqNo = Math.max(refreshedSeqNo, startSeqNo);
+			}
+		});
+
+		this.executor = Executors.newScheduledThreadPool(2);
+		final long commitSeconds = SystemProperties.getLong(COMMIT_SECONDS_PROPERTY, DEFAULT_COMMIT_SECONDS);
 		executor.scheduleWithFixedDelay(() -> {
 			synchronized (rollbackLog) {
 				try {
-					writer.commit();
-					refreshReader();
+					if (writer.hasUncommittedChanges()) {
+						final long startMillis = System.currentTimeMillis();
+						writer.commit();
+						LOGGER.debug("Committed Lucene at {} in {} ms", storage, System.currentTimeMillis() - startMillis);
+					}
 				} catch (IOException e) {
 					LOGGER.error("Periodic commit of Lucene at " + storage + " failed", e);
 				}
 			}
-		}, 30, 30, TimeUnit.SECONDS); 
+		}, commitSeconds, commitSeconds, TimeUnit.SECONDS);
+
+		if (nearRealTime) {
+			final long refreshMillis = SystemProperties.getLong(REFRESH_MILLIS_PROPERTY, DEFAULT_REFRESH_MILLIS);
+			executor.scheduleWithFixedDelay(() -> {
+				try {
+					searchManager.maybeRefresh();
+				} catch (IOException e) {
+					LOGGER.error("Periodic refresh of Lucene at " + storage + " failed", e);
+				}
+			}, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+		}
 	}
 
+	/**
+	 * Returns a pooled searcher, which will include all the changes done so far
+	 * by the current thread.
+	 */
 	public SearcherCloseable getSearcher() throws IOException {
+		if (lastWriteSeqNo.get()[0] > refreshedSeqNo) {
+			searchManager.maybeRefreshBlocking();
+		}
 		return new SearcherCloseable();
 	}
 
@@ -124,11 +228,16 @@ final class SoftTxLucene {
 		}
 	}
 
+	public boolean isNearRealTime() {
+		return nearRealTime;
+	}
+
 	public void shutdown() {
 		try {
 			executor.shutdown();
 			executor.awaitTermination(300, TimeUnit.SECONDS);
 
+			searchManager.close();
 			writer.close();
 			storage.close();
 		} catch (IOException e) {
@@ -138,10 +247,36 @@ final class SoftTxLucene {
 		}
 	}
 
-	public void commit() {
+	public void commit() throws IOException {
 		synchronized (rollbackLog) {
 			rollbackLog.clear();
 		}
+		if (nearRealTime) {
+			// Make the newly committed changes visible to other threads
+			searchManager.maybeRefreshBlocking();
+		}
+	}
+
+	/**
+	 * Runs a task which changes the index directly, then rewrites the segments
+	 * with deleted documents and commits. This cannot be undone through
+	 * {@link #rollback()}, so it can only be used while there are no pending
+	 * changes in the current soft transaction.
+	 *
+	 * @throws IllegalStateException
+	 *             There are pending changes in the current soft transaction.
+	 */
+	public void maintain(IMaintenanceTask task) throws IOException {
+		synchronized (rollbackLog) {
+			if (!rollbackLog.isEmpty()) {
+				throw new IllegalStateException("Cannot run maintenance tasks while there are uncommitted changes");
+			}
+
+			task.run(writer);
+			writer.forceMergeDeletes();
+			writer.commit();
+		}
+		searchManager.maybeRefreshBlocking();
 	}
 
 	public void rollback() throws IOException {
@@ -150,7 +285,7 @@ final class SoftTxLucene {
 				itUndoable.previous().undoWork();
 			}
 			rollbackLog.clear();
-			refreshReader();
+			searchManager.maybeRefreshBlocking();
 		}
 	}
 
@@ -162,10 +297,9 @@ final class SoftTxLucene {
 			private Document prevDocument = null;
 
 			@Override
-			public void doWork() throws IOException {
+			public long doWork() throws IOException {
 				prevDocument = GreycatLuceneIndexer.copy(oldDocument);
-				writer.updateDocument(term, newDocument);
-				refreshReader();
+				return writer.updateDocument(term, newDocument);
 			}
 
 			@Override
@@ -187,10 +321,9 @@ final class SoftTxLucene {
 			private Document oldDocument = null;
 
 			@Override
-			public void doWork() throws IOException {
+			public long doWork() throws IOException {
 				oldDocument = GreycatLuceneIndexer.copy(getDocument(term));
-				writer.deleteDocuments(term);
-				refreshReader();
+				return writer.deleteDocuments(term);
 			}
 
 			@Override
@@ -210,12 +343,12 @@ final class SoftTxLucene {
 			private List<Document> oldDocuments;
 
 			@Override
-			public void doWork() throws IOException {
-				try (SearcherCloseable sc = new SearcherCloseable()) {
+			public long doWork() throws IOException {
+				try (SearcherCloseable sc = getSearcher()) {
 					final ListCollector lc = new ListCollector(sc.get());
 					sc.get().search(query, lc);
 					oldDocuments = lc.getDocuments().stream().map(d -> GreycatLuceneIndexer.copy(d)).collect(Collectors.toList());
-					writer.deleteDocuments(query);
+					return writer.deleteDocuments(query);
 				}
 			}
 
@@ -229,7 +362,7 @@ final class SoftTxLucene {
 	}
 
 	private Document getDocument(Term term) throws IOException {
-		try (SearcherCloseable sc = new SearcherCloseable()) {
+		try (SearcherCloseable sc = getSearcher()) {
 			final IndexSearcher searcher = sc.get();
 			final TopDocs topDocs = searcher.search(new TermQuery(term), 1);
 			if (topDocs.totalHits > 0) {
@@ -241,8 +374,11 @@ final class SoftTxLucene {
 
 	private void doWork(IUndoable iUndoable) throws IOException {
 		synchronized (rollbackLog) {
-			iUndoable.doWork();
+			lastWriteSeqNo.get()[0] = iUndoable.doWork();
 			rollbackLog.add(iUndoable);
 		}
+		if (!nearRealTime) {
+			refreshReader();
+		}
 	}
 }
\ No newline at end of file
@@ -409,7 +409,10 @@ public class Neo4JDatabase implements IGraphDatabase {
 		else if (id instanceof Integer)
 			numericid = ((Integer) id).longValue();
 
-		if (numericid != -1) {
+		if (numericid != -1 && graph == null) {
+			// in batch mode: nodes are only identifiers
+			return batch.nodeExists(numericid) ? new Neo4JNode(numericid, this) : null;
+		} else if (numericid != -1) {
 			try {
 				Node n = graph.getNodeById(numericid);
 				return new Neo4JNode(n, this);
@@ -23,13 +23,17 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.pool2.BasePooledObjectFactory;
 import org.apache.commons.pool2.PooledObject;
@@ -41,7 +45,11 @@ import org.hawk.core.graph.IGraphDatabase;
 import org.hawk.core.graph.IGraphEdge;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphNodeIndex;
+import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.TypeNode;
+import org.hawk.orientdb.cache.ORecordCacheBounded;
 import org.hawk.orientdb.cache.ORecordCacheGuava;
+import org.hawk.orientdb.cache.RecordCacheStatistics;
 import org.hawk.orientdb.indexes.OrientNodeIndex;
 import org.hawk.orientdb.indexes.OrientNodeIndex.PostponedIndexAdd;
 import org.hawk.orientdb.util.OrientClusterDocumentIterable;
@@ -60,6 +68,7 @@ import com.orientechnologies.orient.core.intent.OIntentMassiveInsert;
 import com.orientechnologies.orient.core.intent.OIntentMassiveRead;
 import com.orientechnologies.orient.core.metadata.schema.OClass;
 import com.orientechnologies.orient.core.metadata.schema.OSchemaProxy;
+import com.orientechnologies.orient.core.metadata.schema.OType;
 import com.orientechnologies.orient.core.record.impl.ODocument;
 import com.orientechnologies.orient.core.sql.OCommandSQL;
 import com.orientechnologies.orient.core.storage.OStorage;
@@ -83,6 +92,7 @@ public class OrientDatabase implements IGraphDatabase {
 		public void destroyObject(PooledObject<ODatabaseDocumentTx> pooled) throws Exception {
 			final ODatabaseDocumentTx db = pooled.getObject();
 			allConns.remove(db);
+			connEpochs.remove(db);
 			db.activateOnCurrentThread();
 			db.close();
 		}
@@ -110,6 +120,7 @@ public class OrientDatabase implements IGraphDatabase {
 			}
 			db.declareIntent(currentMode == Mode.NO_TX_MODE ? new OIntentMassiveInsert() : new OIntentMassiveRead());
 			allConns.add(db);
+			connEpochs.put(db, cacheEpoch.get());
 			return db;
 		}
 
@@ -168,8 +179,32 @@ public class OrientDatabase implements IGraphDatabase {
 
 	private Mode currentMode;
 
-	private Map<String, OrientNode> dirtyNodes = new HashMap<>(SIZE_THRESHOLD);
-	private Map<String, OrientEdge> dirtyEdges = new HashMap<>(SIZE_THRESHOLD);
+	/*
+	 * Every marking puts a new DirtyMark, so saveDirty only drops the entries
+	 * that were not marked again while they were being saved.
+	 */
+	private static final class DirtyMark<T> {
+		final T record;
+
+		DirtyMark(T record) {
+			this.record = record;
+		}
+	}
+
+	private final Map<String, DirtyMark<OrientNode>> dirtyNodes = new ConcurrentHashMap<>();
+	private final Map<String, DirtyMark<OrientEdge>> dirtyEdges = new ConcurrentHashMap<>();
+
+	/*
+	 * Saving dirty records bumps the cache epoch: connections compare it with
+	 * the epoch their local cache was last validated at when they are next used
+	 * (see getGraphNoCreate), instead of being invalidated all at once.
+	 */
+	private final AtomicLong cacheEpoch = new AtomicLong();
+	private final Map<ODatabaseDocumentTx, Long> connEpochs = new ConcurrentHashMap<>();
+
+	// Edge list fields known to exist in the schema ("class#field"), and those to be declared on V_eobject
+	private final Set<String> knownEdgeProperties = ConcurrentHashMap.newKeySet();
+	private final Set<String> pendingEdgeProperties = ConcurrentHashMap.newKeySet();
 
 	// Currently held database connection in this thread (may be released)
 	private final ThreadLocal<ODatabaseDocumentTx> dbConn = new ThreadLocal<>();
@@ -177,7 +212,7 @@ public class OrientDatabase implements IGraphDatabase {
 	// Database connection pool (to limit memory usage by concurrent threads)
 	// - semaphore blocks threads until connections are released
 	// - the pool is a simple concurrent queue
-	// - allConns keeps a list of all the connections available, e.g. for global shutdown/cache invalidation
+	// - allConns keeps a list of all the connections available, e.g. for global shutdown
 	// - system property allows for limiting the number of connections per Orient backend (default is processors*2)
 	private GenericObjectPool<ODatabaseDocumentTx> pool;
 	private final Set<ODatabaseDocumentTx> allConns = Collections.newSetFromMap(
@@ -194,11 +229,16 @@ public class OrientDatabase implements IGraphDatabase {
 		OGlobalConfiguration.OBJECT_SAVE_ONLY_DIRTY.setValue(true);
 		OGlobalConfiguration.SBTREE_MAX_KEY_SIZE.setValue(102_400);
 
-		// Add a Guava-based Orient cache as default unless user specified something else
+		/*
+		 * Add a Guava-based Orient cache as default unless user specified
+		 * something else. The size-bounded cache can be selected through
+		 * -Dstorage.cache.local.impl=org.hawk.orientdb.cache.ORecordCacheBounded.
+		 */
 		@SuppressWarnings("unchecked")
 		OConfigurableStatefulFactory<String, ORecordCache> factory =
 			(OConfigurableStatefulFactory<String, ORecordCache>) Orient.instance().getLocalRecordCache();
 		factory.register(ORecordCacheGuava.class.getName(), ORecordCacheGuava.class);
+		factory.register(ORecordCacheBounded.class.getName(), ORecordCacheBounded.class);
 		if (System.getProperty(OGlobalConfiguration.CACHE_LOCAL_IMPL.getKey()) == null) {
 			OGlobalConfiguration.CACHE_LOCAL_IMPL.setValue(ORecordCacheGuava.class.getName());
 		}
@@ -271,6 +311,8 @@ public class OrientDatabase implements IGraphDatabase {
 		ODatabaseDocumentTx db = getGraphNoCreate();
 		if (delete) {
 			discardDirty();
+			knownEdgeProperties.clear();
+			pendingEdgeProperties.clear();
 		} else {
 			saveDirty();
 		}
@@ -348,6 +390,7 @@ public class OrientDatabase implements IGraphDatabase {
 			saveDirty();
 			db.commit();
 		}
+		declarePendingEdgeProperties();
 
 		currentMode = Mode.NO_TX_MODE;
 	}
@@ -366,29 +409,47 @@ public class OrientDatabase implements IGraphDatabase {
 	}
 
 	public void saveDirty() {
-		final boolean hadDirty = !dirtyNodes.isEmpty() || !dirtyEdges.isEmpty();
-		for (Iterator<OrientNode> itNode = dirtyNodes.values().iterator(); itNode.hasNext();) {
-			OrientNode on = itNode.next();
-			on.save();
-			itNode.remove();
+		final List<Entry<String, DirtyMark<OrientNode>>> nodes = sortedById(dirtyNodes);
+		final List<Entry<String, DirtyMark<OrientEdge>>> edges = sortedById(dirtyEdges);
+		if (nodes.isEmpty() && edges.isEmpty()) {
+			return;
+		}
+
+		for (Entry<String, DirtyMark<OrientNode>> entry : nodes) {
+			entry.getValue().record.save();
+			dirtyNodes.remove(entry.getKey(), entry.getValue());
 		}
-		for (Iterator<OrientEdge> itEdge = dirtyEdges.values().iterator(); itEdge.hasNext();) {
-			OrientEdge oe = itEdge.next();
-			oe.save();
-			itEdge.remove();
+		for (Entry<String, DirtyMark<OrientEdge>> entry : edges) {
+			entry.getValue().record.save();
+			dirtyEdges.remove(entry.getKey(), entry.getValue());
 		}
 
-		if (hadDirty) {
-			// We changed the database permanently - invalidate all the other caches
-			for (ODatabaseDocumentTx conn : allConns) {
-				conn.activateOnCurrentThread();
-				conn.getLocalCache().invalidate();
-			}
-			ODatabaseDocumentTx conn = dbConn.get();
-			if (conn != null) {
-				conn.activateOnCurrentThread();
+		/*
+		 * We changed the database permanently: the other connections will
+		 * invalidate their local caches the next time they are used. Our own
+		 * cache already has the latest version of the records we saved.
+		 */
+		final long epoch = cacheEpoch.incrementAndGet();
+		final ODatabaseDocumentTx conn = dbConn.get();
+		if (conn != null) {
+			connEpochs.put(conn, epoch);
+		}
+	}
+
+	/**
+	 * Returns a snapshot of the entries in the dirty map, sorted by record ID,
+	 * so records are written cluster by cluster and in position order.
+	 */
+	private static <T> List<Entry<String, T>> sortedById(Map<String, T> dirty) {
+		final List<Entry<String, T>> entries = new ArrayList<>(dirty.entrySet());
+		if (entries.size() > 1) {
+			final Map<String, ORID> ids = new HashMap<>(entries.size());
+			for (Entry<String, T> entry : entries) {
+				ids.put(entry.getKey(), new ORecordId(entry.getKey()));
 			}
+			entries.sort((a, b) -> ids.get(a.getKey()).compareTo(ids.get(b.getKey())));
 		}
+		return entries;
 	}
 
 	@Override
@@ -477,8 +538,8 @@ public class OrientDatabase implements IGraphDatabase {
 		ensureClassExists(edgeTypeName);
 
 		IGraphEdge newEdge = OrientEdge.create(this, oStart, oEnd, type, edgeTypeName, props);
-		dirtyNodes.put(oStart.getId().toString(), oStart);
-		dirtyNodes.put(oEnd.getId().toString(), oEnd);
+		dirtyNodes.put(oStart.getId().toString(), new DirtyMark<>(oStart));
+		dirtyNodes.put(oEnd.getId().toString(), new DirtyMark<>(oEnd));
 		saveIfBig();
 
 		return newEdge;
@@ -495,6 +556,14 @@ public class OrientDatabase implements IGraphDatabase {
 		return OrientNameCleaner.escapeClass(VERTEX_TYPE_PREFIX + label);
 	}
 
+	/**
+	 * Returns <code>true</code> if the OrientDB class is the one used for the
+	 * type nodes of the graph.
+	 */
+	public boolean isTypeVertexClass(String className) {
+		return getVertexTypeName(TypeNode.TYPE_VERTEX_LABEL).equals(className);
+	}
+
 	private String getEdgeTypeName(String label) {
 		// We don't need edge classes, as there is no allEdges(...) method:
 		// this reduces the amount of times we may need to switch back to
@@ -529,18 +598,33 @@ public class OrientDatabase implements IGraphDatabase {
 		if (conn != null) {
 			conn.activateOnCurrentThread();
 			if (!conn.isClosed()) {
-				return conn;
+				return validateCache(conn);
 			}
 		}
 
 		try {
-			return pool.borrowObject();
+			return validateCache(pool.borrowObject());
 		} catch (Exception e) {
 			LOGGER.error("Error opening connection to Orient", e);
 			return null;
 		}
 	}
 
+	/**
+	 * Invalidates the local cache of the connection (which must be active in
+	 * the current thread) if records have been saved since it was last
+	 * validated.
+	 */
+	private ODatabaseDocumentTx validateCache(ODatabaseDocumentTx conn) {
+		final long epoch = cacheEpoch.get();
+		final Long connEpoch = connEpochs.get(conn);
+		if (connEpoch == null || connEpoch != epoch) {
+			conn.getLocalCache().invalidate();
+			connEpochs.put(conn, epoch);
+		}
+		return conn;
+	}
+
 	@Override
 	public OrientNode getNodeById(Object id) {
 		if (id instanceof String) {
@@ -548,7 +632,8 @@ public class OrientDatabase implements IGraphDatabase {
 		}
 
 		String sID = id instanceof ODocument ? ((ODocument)id).getIdentity().toString() : id.toString();
-		OrientNode result = dirtyNodes.get(sID);
+		final DirtyMark<OrientNode> mark = dirtyNodes.get(sID);
+		OrientNode result = mark == null ? null : mark.record;
 
 		if (result == null) {
 			if (id instanceof ODocument) {
@@ -574,9 +659,9 @@ public class OrientDatabase implements IGraphDatabase {
 		}
 
 		String sID = id instanceof ODocument ? ((ODocument)id).getIdentity().toString() : id.toString();
-		OrientEdge dirtyEdge = dirtyEdges.get(sID);
+		final DirtyMark<OrientEdge> dirtyEdge = dirtyEdges.get(sID);
 		if (dirtyEdge != null) {
-			return dirtyEdge;
+			return dirtyEdge.record;
 		} else if (id instanceof ODocument) {
 			return new OrientEdge((ODocument)id, this);
 		} else {
@@ -669,8 +754,8 @@ public class OrientDatabase implements IGraphDatabase {
 
 	public void markNodeAsDirty(OrientNode orientNode) {
 		final ORID id = orientNode.getId();
-		dirtyNodes.put(id.toString(), orientNode);
-		deleteFromAllCaches(id);
+		dirtyNodes.put(id.toString(), new DirtyMark<>(orientNode));
+		deleteFromCache(id);
 		saveIfBig();
 	}
 
@@ -680,8 +765,8 @@ public class OrientDatabase implements IGraphDatabase {
 
 	public void markEdgeAsDirty(OrientEdge orientEdge) {
 		final ORID id = orientEdge.getId();
-		dirtyEdges.put(id.toString(), orientEdge);
-		deleteFromAllCaches(id);
+		dirtyEdges.put(id.toString(), new DirtyMark<>(orientEdge));
+		deleteFromCache(id);
 		saveIfBig();
 	}
 
@@ -694,17 +779,70 @@ public class OrientDatabase implements IGraphDatabase {
 		dirtyEdges.clear();
 	}
 
-	protected void deleteFromAllCaches(final ORID id) {
-		for (ODatabaseDocumentTx conn : allConns) {
-			conn.activateOnCurrentThread();
+	/**
+	 * Removes a record from the local cache of the connection in this thread.
+	 * The caches of the other connections will be invalidated once the record
+	 * is saved (see {@link #saveDirty()}).
+	 */
+	protected void deleteFromCache(final ORID id) {
+		final ODatabaseDocumentTx conn = dbConn.get();
+		if (conn != null) {
 			conn.getLocalCache().deleteRecord(id);
 		}
 	}
 
+	/**
+	 * Ensures that the edge list field exists in the class as a link bag,
+	 * checking the schema only the first time the field is seen. Must be
+	 * called outside of a transaction.
+	 */
+	void ensureEdgeProperty(OClass oClass, String fldName) {
+		final String key = oClass.getName() + "#" + fldName;
+		if (!knownEdgeProperties.contains(key)) {
+			if (!oClass.existsProperty(fldName)) {
+				oClass.createProperty(fldName, OType.LINKBAG, (OType) null, true);
+			}
+			knownEdgeProperties.add(key);
+		}
+	}
+
+	/**
+	 * Records that model elements may have edges with the specified label, so
+	 * their edge list fields will be declared in the schema upon entering batch
+	 * mode, rather than while edges are being created.
+	 */
+	void addPendingEdgeProperties(String edgeLabel) {
+		pendingEdgeProperties.add(OrientNode.getOutgoingFieldName(edgeLabel));
+		pendingEdgeProperties.add(OrientNode.getIncomingFieldName(edgeLabel));
+	}
+
+	private void declarePendingEdgeProperties() {
+		if (pendingEdgeProperties.isEmpty()) {
+			return;
+		}
+
+		final String className = getVertexTypeName(ModelElementNode.OBJECT_VERTEX_LABEL);
+		ensureClassExists(className);
+		final OClass oClass = getGraph().getMetadata().getSchema().getClass(className);
+		for (Iterator<String> itField = pendingEdgeProperties.iterator(); itField.hasNext();) {
+			ensureEdgeProperty(oClass, itField.next());
+			itField.remove();
+		}
+	}
+
 	public IConsole getConsole() {
 		return console;
 	}
 
+	/**
+	 * Returns the statistics of the bounded record caches, aggregated over all
+	 * the OrientDB databases in this JVM. These are only updated if the local
+	 * cache implementation has been set to {@link ORecordCacheBounded}.
+	 */
+	public RecordCacheStatistics getRecordCacheStatistics() {
+		return RecordCacheStatistics.getInstance();
+	}
+
 	public void addPostponedIndex(OrientNodeIndex orientNodeIndex) {
 		postponedIndexes.add(orientNodeIndex);
 	}
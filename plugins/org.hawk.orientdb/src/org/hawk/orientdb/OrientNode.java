@@ -32,6 +32,7 @@ import org.hawk.core.graph.IGraphDatabase;
 import org.hawk.core.graph.IGraphEdge;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.Slot;
 import org.hawk.orientdb.util.OrientNameCleaner;
 
 import com.orientechnologies.common.collection.OCollection;
@@ -73,6 +74,16 @@ public class OrientNode implements IGraphNode {
 
 	private enum Direction { IN, OUT, BOTH };
 
+	/** Returns the name of the field with the outgoing edges with a certain label. */
+	static String getOutgoingFieldName(String edgeLabel) {
+		return PREFIX_OUTGOING + OrientNameCleaner.escapeToField(edgeLabel);
+	}
+
+	/** Returns the name of the field with the incoming edges with a certain label. */
+	static String getIncomingFieldName(String edgeLabel) {
+		return OrientNameCleaner.escapeToField(PREFIX_INCOMING + edgeLabel);
+	}
+
 	/** Database that contains this node. */
 	private final OrientDatabase graph;
 
@@ -226,6 +237,11 @@ public class OrientNode implements IGraphNode {
 			} catch (IllegalArgumentException ex) {
 				changedVertex.field(PREFIX_PROPERTY + OrientNameCleaner.escapeToField(name), value);
 			}
+			if (value instanceof String[] && graph.isTypeVertexClass(changedVertex.getClassName())
+					&& Slot.isEdgeMetadata((String[]) value)) {
+				// Reference in a type node: declare its edge lists before the next batch
+				graph.addPendingEdgeProperties(name);
+			}
 			graph.markNodeAsDirty(this);
 		}
 	}
@@ -429,7 +445,7 @@ public class OrientNode implements IGraphNode {
 	}
 
 	public void addOutgoing(ODocument newEdge, String edgeLabel) {
-		addToList(newEdge, PREFIX_OUTGOING + OrientNameCleaner.escapeToField(edgeLabel));
+		addToList(newEdge, getOutgoingFieldName(edgeLabel));
 		graph.markNodeAsDirty(this);
 	}
 
@@ -442,21 +458,17 @@ public class OrientNode implements IGraphNode {
 
 		// Create property if needed
 		if (out == null && !graph.getGraph().getTransaction().isActive()) {
-			final OClass oClass = changedVertex.getSchemaClass();
-			if (!oClass.existsProperty(fldName)) {
-				/*
-				 * Incoming edges do not have any specific orderings, so they
-				 * can all be ridbags.
-				 *
-				 * On the other hand, outgoing edges that weren't created
-				 * already in OrientDatabase#registerNodeClass are from the
-				 * inner workings of Hawk itself, and therefore don't really
-				 * require any explicit ordering. This is the case for file,
-				 * ofKind, and ofType.
-				 */
-
-				oClass.createProperty(fldName, OType.LINKBAG, (OType)null, true);
-			}
+			/*
+			 * Incoming edges do not have any specific orderings, so they
+			 * can all be ridbags.
+			 *
+			 * On the other hand, outgoing edges that weren't created
+			 * already in OrientDatabase#registerNodeClass are from the
+			 * inner workings of Hawk itself, and therefore don't really
+			 * require any explicit ordering. This is the case for file,
+			 * ofKind, and ofType.
+			 */
+			graph.ensureEdgeProperty(changedVertex.getSchemaClass(), fldName);
 		}
 
 		// Set initial value
@@ -481,7 +493,7 @@ public class OrientNode implements IGraphNode {
 	}
 
 	public void addIncoming(ODocument newEdge, String edgeLabel) {
-		addToList(newEdge, OrientNameCleaner.escapeToField(PREFIX_INCOMING + edgeLabel));
+		addToList(newEdge, getIncomingFieldName(edgeLabel));
 	}
 
 	public void removeOutgoing(ODocument orientEdge, String edgeLabel) {
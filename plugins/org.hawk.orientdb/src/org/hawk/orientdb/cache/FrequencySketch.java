@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.orientdb.cache;
+
+/**
+ * Count-min sketch with 4-bit counters, used to estimate how often keys have
+ * been accessed recently (as in the TinyLFU admission policy). All counters
+ * are halved once a certain number of increments have been recorded, so old
+ * accesses lose weight over time.
+ *
+ * This class is not thread-safe: callers must synchronise access to it.
+ */
+class FrequencySketch {
+
+	private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+	private static final int MAX_COUNT = 15;
+	private static final long[] SEEDS = {
+		0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+	};
+
+	private final long[] table;
+	private final int tableMask;
+	private final int sampleSize;
+	private int additions;
+
+	/**
+	 * Creates a new sketch.
+	 *
+	 * @param expectedEntries
+	 *            Approximate number of distinct keys that will be tracked at
+	 *            once (e.g. the maximum number of entries in the cache).
+	 */
+	FrequencySketch(int expectedEntries) {
+		final int size = Math.max(16, Integer.highestOneBit(Math.max(1, expectedEntries) - 1) << 1);
+		this.table = new long[size];
+		this.tableMask = size - 1;
+		this.sampleSize = 10 * size;
+	}
+
+	/**
+	 * Returns the estimated number of recent accesses to the key, between 0
+	 * and 15.
+	 */
+	int frequency(Object key) {
+		final int hash = spread(key.hashCode());
+		int freq = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			final int count = (int) ((table[indexOf(hash, i)] >>> offsetOf(hash, i)) & MAX_COUNT);
+			freq = Math.min(freq, count);
+		}
+		return freq;
+	}
+
+	/**
+	 * Records an access to the key.
+	 */
+	void increment(Object key) {
+		final int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			added |= incrementAt(indexOf(hash, i), offsetOf(hash, i));
+		}
+
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	private boolean incrementAt(int index, int offset) {
+		final long mask = (long) MAX_COUNT << offset;
+		if ((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions >>>= 1;
+	}
+
+	private int indexOf(int hash, int i) {
+		long h = (hash + SEEDS[i]) * SEEDS[i];
+		h += h >>> 32;
+		return (int) h & tableMask;
+	}
+
+	/**
+	 * Each row uses its own quarter of the 16 counters in a table slot.
+	 */
+	private static int offsetOf(int hash, int i) {
+		return ((i << 2) + ((hash >>> (i << 3)) & 3)) << 2;
+	}
+
+	private static int spread(int x) {
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		x = ((x >>> 16) ^ x) * 0x45d9f3b;
+		return (x >>> 16) ^ x;
+	}
+
+}
@@ -0,0 +1,299 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.orientdb.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.hawk.core.util.SystemProperties;
+
+import com.orientechnologies.orient.core.cache.ORecordCache;
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.record.ORecord;
+
+/**
+ * Record cache with an explicit maximum weight, as an alternative to
+ * {@link ORecordCacheGuava} (whose soft values are only cleared under memory
+ * pressure, causing long GC pauses). The weight of a record is estimated from
+ * its serialized size.
+ *
+ * Records are evicted in least recently used order, but a new record is only
+ * admitted if it has been requested more often recently than the record it
+ * would replace (following the TinyLFU policy), so scans over many records do
+ * not flush out the frequently used ones. Optionally, the weight of the
+ * records of each cluster can be limited as well.
+ *
+ * OrientDB creates one local cache per connection: the limits apply to each
+ * cache separately, and {@link RecordCacheStatistics} aggregates them.
+ */
+public class ORecordCacheBounded implements ORecordCache {
+
+	/** Maximum estimated size in bytes of the records in each cache. */
+	public static final String MAX_WEIGHT_PROPERTY = "hawk.orient.recordCache.maxWeight";
+	public static final long DEFAULT_MAX_WEIGHT = 16L * 1024 * 1024;
+
+	/**
+	 * Maximum estimated size in bytes of the records of a single cluster in
+	 * each cache (0 means no per-cluster limit).
+	 */
+	public static final String MAX_CLUSTER_WEIGHT_PROPERTY = "hawk.orient.recordCache.maxClusterWeight";
+	public static final long DEFAULT_MAX_CLUSTER_WEIGHT = 0;
+
+	private static final int ENTRY_OVERHEAD = 96;
+	private static final int EXPECTED_RECORD_WEIGHT = 512;
+	private static final int MAX_SKETCH_ENTRIES = 1 << 20;
+
+	private static final class CacheEntry {
+		private final ORecord record;
+		private final int clusterId;
+		private final int weight;
+
+		CacheEntry(ORecord record, int clusterId, int weight) {
+			this.record = record;
+			this.clusterId = clusterId;
+			this.weight = weight;
+		}
+	}
+
+	private static final class ClusterSegment {
+		private final LinkedHashMap<ORID, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+		private long weight;
+	}
+
+	private final long maxWeight;
+	private final long maxClusterWeight;
+	private final RecordCacheStatistics stats = RecordCacheStatistics.getInstance();
+	private final FrequencySketch sketch;
+
+	/*
+	 * Both maps are in access order, so the least recently used entry is always
+	 * first. Keys are copies of the record IDs: the identity of a record is
+	 * changed in place when it is first saved.
+	 */
+	private final LinkedHashMap<ORID, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<Integer, ClusterSegment> clusters = new HashMap<>();
+	private long weight;
+
+	private volatile boolean enabled = true;
+
+	/**
+	 * Creates a cache with the limits set through the
+	 * {@link #MAX_WEIGHT_PROPERTY} and {@link #MAX_CLUSTER_WEIGHT_PROPERTY}
+	 * system properties. This is the constructor used by OrientDB.
+	 */
+	public ORecordCacheBounded() {
+		this(SystemProperties.getLong(MAX_WEIGHT_PROPERTY, DEFAULT_MAX_WEIGHT),
+			SystemProperties.getLong(MAX_CLUSTER_WEIGHT_PROPERTY, DEFAULT_MAX_CLUSTER_WEIGHT));
+	}
+
+	public ORecordCacheBounded(long maxWeight, long maxClusterWeight) {
+		this.maxWeight = maxWeight;
+		this.maxClusterWeight = maxClusterWeight;
+		this.sketch = new FrequencySketch((int) Math.min(MAX_SKETCH_ENTRIES, maxWeight / EXPECTED_RECORD_WEIGHT));
+	}
+
+	@Override
+	public synchronized ORecord get(final ORID rid) {
+		if (!isEnabled())
+			return null;
+
+		sketch.increment(rid);
+		final CacheEntry entry = entries.get(rid);
+		if (entry == null) {
+			stats.recordMiss();
+			return null;
+		}
+
+		if (maxClusterWeight > 0) {
+			// Update the access order within the cluster as well
+			clusters.get(entry.clusterId).entries.get(rid);
+		}
+		stats.recordHit();
+		return entry.record;
+	}
+
+	@Override
+	public synchronized ORecord put(final ORecord record) {
+		if (!isEnabled())
+			return null;
+
+		final ORID rid = record.getIdentity().copy();
+		final CacheEntry newEntry = new CacheEntry(record, rid.getClusterId(), weigh(record));
+		final CacheEntry oldEntry = entries.get(rid);
+		if (oldEntry != null) {
+			unlink(rid, oldEntry);
+		} else {
+			// Records may be loaded without a previous get (e.g. from queries)
+			sketch.increment(rid);
+			if (!admit(rid, newEntry)) {
+				stats.recordRejection();
+				return null;
+			}
+		}
+
+		link(rid, newEntry);
+		evictAsNeeded(newEntry.clusterId);
+		return oldEntry == null ? null : oldEntry.record;
+	}
+
+	@Override
+	public synchronized ORecord remove(final ORID rid) {
+		if (!isEnabled())
+			return null;
+
+		final CacheEntry entry = entries.get(rid);
+		if (entry == null) {
+			return null;
+		}
+		unlink(rid, entry);
+		return entry.record;
+	}
+
+	@Override
+	public void shutdown() {
+		clear();
+	}
+
+	@Override
+	public synchronized void clear() {
+		stats.addEntries(-entries.size(), -weight);
+		entries.clear();
+		clusters.clear();
+		weight = 0;
+	}
+
+	@Override
+	public void startup() {
+		// nothing to do
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public boolean enable() {
+		final boolean oldValue = enabled;
+		enabled = true;
+		return oldValue != true;
+	}
+
+	@Override
+	public boolean disable() {
+		final boolean oldValue = enabled;
+		enabled = false;
+		return oldValue != false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized Collection<ORID> keys() {
+		return new ArrayList<>(entries.keySet());
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the records in this cache.
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns <code>true</code> if the record fits within the limits, and
+	 * either it can be added without evicting anything or it is requested
+	 * more often than the first record that would be evicted.
+	 */
+	private boolean admit(ORID rid, CacheEntry candidate) {
+		if (candidate.weight > maxWeight || maxClusterWeight > 0 && candidate.weight > maxClusterWeight) {
+			return false;
+		}
+
+		ORID victim = null;
+		if (maxClusterWeight > 0) {
+			final ClusterSegment segment = clusters.get(candidate.clusterId);
+			if (segment != null && segment.weight + candidate.weight > maxClusterWeight) {
+				victim = segment.entries.keySet().iterator().next();
+			}
+		}
+		if (victim == null && weight + candidate.weight > maxWeight) {
+			victim = entries.keySet().iterator().next();
+		}
+
+		return victim == null || sketch.frequency(rid) > sketch.frequency(victim);
+	}
+
+	private void evictAsNeeded(int clusterId) {
+		if (maxClusterWeight > 0) {
+			final ClusterSegment segment = clusters.get(clusterId);
+			while (segment.weight > maxClusterWeight) {
+				evictFirst(segment.entries);
+			}
+		}
+		while (weight > maxWeight) {
+			evictFirst(entries);
+		}
+	}
+
+	private void evictFirst(Map<ORID, CacheEntry> map) {
+		final Map.Entry<ORID, CacheEntry> first = map.entrySet().iterator().next();
+		unlink(first.getKey(), first.getValue());
+		stats.recordEviction();
+	}
+
+	private void link(ORID rid, CacheEntry entry) {
+		entries.put(rid, entry);
+		if (maxClusterWeight > 0) {
+			ClusterSegment segment = clusters.get(entry.clusterId);
+			if (segment == null) {
+				segment = new ClusterSegment();
+				clusters.put(entry.clusterId, segment);
+			}
+			segment.entries.put(rid, entry);
+			segment.weight += entry.weight;
+		}
+		weight += entry.weight;
+		stats.addEntries(1, entry.weight);
+	}
+
+	private void unlink(ORID rid, CacheEntry entry) {
+		entries.remove(rid);
+		if (maxClusterWeight > 0) {
+			final ClusterSegment segment = clusters.get(entry.clusterId);
+			if (segment != null) {
+				segment.entries.remove(rid);
+				segment.weight -= entry.weight;
+				if (segment.entries.isEmpty()) {
+					clusters.remove(entry.clusterId);
+				}
+			}
+		}
+		weight -= entry.weight;
+		stats.addEntries(-1, -entry.weight);
+	}
+
+	private static int weigh(ORecord record) {
+		return ENTRY_OVERHEAD + Math.max(0, record.getSize());
+	}
+}
@@ -0,0 +1,161 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.orientdb.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Statistics aggregated over all the {@link ORecordCacheBounded} instances in
+ * this JVM (OrientDB creates one local cache per connection). They are
+ * available through JMX under {@link #OBJECT_NAME}, so they can be read from
+ * a running Hawk server with any JMX client.
+ */
+public final class RecordCacheStatistics implements RecordCacheStatisticsMBean {
+
+	public static final String OBJECT_NAME = "org.hawk.orientdb:type=RecordCache";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RecordCacheStatistics.class);
+	private static final RecordCacheStatistics INSTANCE = new RecordCacheStatistics();
+
+	static {
+		try {
+			final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			final ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(INSTANCE, name);
+			}
+		} catch (JMException | SecurityException e) {
+			LOGGER.warn("Could not register the record cache statistics with JMX", e);
+		}
+	}
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	private final LongAdder entries = new LongAdder();
+	private final LongAdder weight = new LongAdder();
+
+	private RecordCacheStatistics() {
+		// use getInstance()
+	}
+
+	public static RecordCacheStatistics getInstance() {
+		return INSTANCE;
+	}
+
+	void recordHit() {
+		hits.increment();
+	}
+
+	void recordMiss() {
+		misses.increment();
+	}
+
+	void recordEviction() {
+		evictions.increment();
+	}
+
+	void recordRejection() {
+		rejections.increment();
+	}
+
+	void addEntries(long delta, long deltaWeight) {
+		entries.add(delta);
+		weight.add(deltaWeight);
+	}
+
+	@Override
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	@Override
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	@Override
+	public double getHitRate() {
+		final long h = hits.sum();
+		final long total = h + misses.sum();
+		return total == 0 ? 0 : h / (double) total;
+	}
+
+	/**
+	 * Returns the number of records removed to keep the caches within their
+	 * maximum weight.
+	 */
+	@Override
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of records that were not cached, as they were
+	 * accessed less frequently than the records they would have replaced.
+	 */
+	@Override
+	public long getRejectionCount() {
+		return rejections.sum();
+	}
+
+	/**
+	 * Returns the number of records currently held across all caches.
+	 */
+	@Override
+	public long getEntryCount() {
+		return entries.sum();
+	}
+
+	/**
+	 * Returns the estimated size in bytes of the records currently held across
+	 * all caches.
+	 */
+	@Override
+	public long getWeight() {
+		return weight.sum();
+	}
+
+	/**
+	 * Resets the hit, miss, eviction and rejection counters.
+	 */
+	@Override
+	public void reset() {
+		hits.reset();
+		misses.reset();
+		evictions.reset();
+		rejections.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+			"RecordCacheStatistics [hits=%d, misses=%d, hitRate=%.3f, evictions=%d, rejections=%d, entries=%d, weight=%d]",
+			getHitCount(), getMissCount(), getHitRate(), getEvictionCount(), getRejectionCount(),
+			getEntryCount(), getWeight());
+	}
+
+}
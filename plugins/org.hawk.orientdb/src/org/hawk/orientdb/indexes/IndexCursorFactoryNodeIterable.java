@@ -43,14 +43,7 @@ final class IndexCursorFactoryNodeIterable<T> implements IGraphIterable<T> {
 		return new Iterator<T>(){
 			@Override
 			public boolean hasNext() {
-				try {
-					return results != null && results.hasNext();
-				} catch (ArrayIndexOutOfBoundsException|NoSuchElementException ex) {
-					// BUG in OrientDB: hasNext throws exceptions when there are no results
-					// 2.0.x - (see LuceneResultSet.java:248 - it uses array[array.length-1]
-					// 2.2.x - throws NoSuchElementException instead
-					return false;
-				}
+				return safeHasNext(results);
 			}
 
 			@Override
@@ -70,10 +63,11 @@ final class IndexCursorFactoryNodeIterable<T> implements IGraphIterable<T> {
 
 	@Override
 	public int size() {
-		final Iterator<T> it = iterator();
+		// Only count the identities in the index: there is no need to load the nodes
+		final Iterator<OIdentifiable> results = factory.query();
 		int count = 0;
-		while (it.hasNext()) {
-			it.next();
+		while (safeHasNext(results)) {
+			results.next();
 			count++;
 		}
 		return count;
@@ -83,4 +77,15 @@ final class IndexCursorFactoryNodeIterable<T> implements IGraphIterable<T> {
 	public T getSingle() {
 		return iterator().next();
 	}
+
+	private static boolean safeHasNext(final Iterator<OIdentifiable> results) {
+		try {
+			return results != null && results.hasNext();
+		} catch (ArrayIndexOutOfBoundsException|NoSuchElementException ex) {
+			// BUG in OrientDB: hasNext throws exceptions when there are no results
+			// 2.0.x - (see LuceneResultSet.java:248 - it uses array[array.length-1]
+			// 2.2.x - throws NoSuchElementException instead
+			return false;
+		}
+	}
 }
\ No newline at end of file
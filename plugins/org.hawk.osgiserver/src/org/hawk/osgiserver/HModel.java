@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
 import java.util.function.Consumer;
 
 import org.eclipse.core.runtime.CoreException;
@@ -53,6 +54,7 @@ import org.hawk.core.util.HawkProperties;
 import org.hawk.core.util.HawksConfig;
 import org.hawk.core.util.IndexedAttributeParameters;
 import org.hawk.core.util.SLF4JConsole;
+import org.hawk.core.util.SystemProperties;
 import org.osgi.service.prefs.BackingStoreException;
 
 import com.thoughtworks.xstream.XStream;
@@ -61,6 +63,35 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
 public class HModel implements IStateListener {
 	public static String DEFAULT_INFO = "Sleeping...";
 
+	/**
+	 * System property with the default maximum number of queries that can
+	 * run at once on each instance. If unset, it is the number of available
+	 * processors.
+	 */
+	public static final String MAX_CONCURRENT_QUERIES_PROPERTY = "hawk.server.maxConcurrentQueries";
+
+	/**
+	 * Permission to run a query on an instance, obtained through
+	 * {@link HModel#acquireQuerySlot()}. Closing it lets the next waiting query
+	 * run.
+	 */
+	public static final class QuerySlot implements AutoCloseable {
+		private final Semaphore semaphore;
+		private boolean released = false;
+
+		private QuerySlot(Semaphore semaphore) {
+			this.semaphore = semaphore;
+		}
+
+		@Override
+		public synchronized void close() {
+			if (!released) {
+				released = true;
+				semaphore.release();
+			}
+		}
+	}
+
 	private String info = DEFAULT_INFO;
 	private HawkState status;
 
@@ -239,6 +270,11 @@ public class HModel implements IStateListener {
 	private final HManager manager;
 	private final String hawkLocation;
 
+	// Fair, so waiting queries obtain their slots in arrival order
+	private volatile int queryConcurrency = SystemProperties.getInt(
+		MAX_CONCURRENT_QUERIES_PROPERTY, Runtime.getRuntime().availableProcessors(), 1);
+	private volatile Semaphore querySlots = new Semaphore(queryConcurrency, true);
+
 	/**
 	 * Constructor for loading existing local Hawk instances and
 	 * creating/loading custom {@link IHawk} implementations.
@@ -542,6 +578,45 @@ public class HModel implements IStateListener {
 		return manager;
 	}
 
+	/**
+	 * Waits until fewer than {@link #getQueryConcurrency()} queries are running
+	 * on this instance, in arrival order, and returns the slot which must be
+	 * closed after running the query.
+	 *
+	 * @throws InterruptedException
+	 *             The thread was interrupted while waiting (e.g. the query was
+	 *             cancelled).
+	 */
+	public QuerySlot acquireQuerySlot() throws InterruptedException {
+		final Semaphore semaphore = querySlots;
+		semaphore.acquire();
+		return new QuerySlot(semaphore);
+	}
+
+	public int getQueryConcurrency() {
+		return queryConcurrency;
+	}
+
+	/**
+	 * Changes the maximum number of queries that can run at once on this
+	 * instance. Queries which were already running do not count towards the
+	 * new limit.
+	 */
+	public synchronized void setQueryConcurrency(int maxQueries) {
+		if (maxQueries < 1) {
+			throw new IllegalArgumentException("At least one query must be allowed to run, got " + maxQueries);
+		}
+		this.queryConcurrency = maxQueries;
+		this.querySlots = new Semaphore(maxQueries, true);
+	}
+
+	/**
+	 * Returns the approximate number of queries waiting for a slot.
+	 */
+	public int getWaitingQueryCount() {
+		return querySlots.getQueueLength();
+	}
+
 	public void registerMeta(File... f) throws Exception {
 		hawk.getModelIndexer().registerMetamodels(f);
 	}
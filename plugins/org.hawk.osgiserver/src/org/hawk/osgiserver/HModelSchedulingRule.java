@@ -16,29 +16,138 @@
  ******************************************************************************/
 package org.hawk.osgiserver;
 
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 
 /**
- * Job scheduling rule that prevents two jobs from running at once on the same
- * Hawk HModel.
+ * Job scheduling rule that controls which jobs can run at once on the same
+ * Hawk HModel. Exclusive rules (e.g. for jobs that change the index) conflict
+ * with any other rule on the same HModel, whereas shared rules (e.g. for
+ * read-only queries) only conflict with exclusive rules.
+ *
+ * Synchronisation is not scheduled through these rules: the indexer runs it in
+ * its own update thread, and shared jobs rely on the transactions of the
+ * backend to be isolated from it.
+ *
+ * An exclusive job only starts once no shared job is running on the HModel.
+ * So that a steady stream of queries cannot delay it indefinitely, shared
+ * rules also conflict with each other while an exclusive job is waiting on
+ * the same HModel: new shared jobs wait until the running ones finish and the
+ * exclusive job has run.
  */
 public class HModelSchedulingRule implements ISchedulingRule {
+	/**
+	 * Exclusive jobs which have been scheduled but have not started running
+	 * yet, by HModel.
+	 */
+	private static final Map<HModel, Set<Job>> WAITING_EXCLUSIVE = new ConcurrentHashMap<>();
+
+	static {
+		Job.getJobManager().addJobChangeListener(new JobChangeAdapter() {
+			@Override
+			public void scheduled(IJobChangeEvent event) {
+				final HModelSchedulingRule rule = getRule(event);
+				if (rule != null && !rule.shared) {
+					WAITING_EXCLUSIVE.computeIfAbsent(rule.hawkModel, m -> ConcurrentHashMap.newKeySet()).add(event.getJob());
+				}
+			}
+
+			@Override
+			public void running(IJobChangeEvent event) {
+				stopWaiting(event);
+			}
+
+			@Override
+			public void done(IJobChangeEvent event) {
+				// Also reported for waiting jobs which are cancelled
+				stopWaiting(event);
+			}
+
+			private void stopWaiting(IJobChangeEvent event) {
+				final HModelSchedulingRule rule = getRule(event);
+				if (rule != null && !rule.shared) {
+					WAITING_EXCLUSIVE.computeIfPresent(rule.hawkModel, (m, jobs) -> {
+						jobs.remove(event.getJob());
+						return jobs.isEmpty() ? null : jobs;
+					});
+				}
+			}
+
+			private HModelSchedulingRule getRule(IJobChangeEvent event) {
+				final ISchedulingRule rule = event.getJob().getRule();
+				return rule instanceof HModelSchedulingRule ? (HModelSchedulingRule) rule : null;
+			}
+		});
+	}
+
 	private final HModel hawkModel;
+	private final boolean shared;
 
+	/**
+	 * Creates an exclusive rule for the HModel.
+	 */
 	public HModelSchedulingRule(HModel hawkModel) {
+		this(hawkModel, false);
+	}
+
+	public HModelSchedulingRule(HModel hawkModel, boolean shared) {
 		this.hawkModel = hawkModel;
+		this.shared = shared;
+	}
+
+	/**
+	 * Returns a rule for a job that only reads from the HModel.
+	 */
+	public static HModelSchedulingRule shared(HModel hawkModel) {
+		return new HModelSchedulingRule(hawkModel, true);
+	}
+
+	/**
+	 * Returns a rule for a job that changes the HModel.
+	 */
+	public static HModelSchedulingRule exclusive(HModel hawkModel) {
+		return new HModelSchedulingRule(hawkModel, false);
+	}
+
+	public boolean isShared() {
+		return shared;
 	}
 
 	@Override
 	public boolean isConflicting(ISchedulingRule rule) {
 		if (rule instanceof HModelSchedulingRule) {
-			return ((HModelSchedulingRule)rule).hawkModel == this.hawkModel;
+			// Rules must conflict with themselves, even if shared
+			final HModelSchedulingRule other = (HModelSchedulingRule) rule;
+			if (other == this) {
+				return true;
+			} else if (other.hawkModel != this.hawkModel) {
+				return false;
+			} else if (!other.shared || !this.shared) {
+				return true;
+			}
+
+			// Hold back new shared jobs while an exclusive job waits for the running ones
+			return hasWaitingExclusiveJobs(hawkModel);
 		}
 		return false;
 	}
 
+	/**
+	 * Returns <code>true</code> if an exclusive job has been scheduled on the
+	 * HModel, and has not started running yet.
+	 */
+	public static boolean hasWaitingExclusiveJobs(HModel hawkModel) {
+		return WAITING_EXCLUSIVE.containsKey(hawkModel);
+	}
+
 	@Override
 	public boolean contains(ISchedulingRule rule) {
 		return rule == this;
 	}
-}
\ No newline at end of file
+}
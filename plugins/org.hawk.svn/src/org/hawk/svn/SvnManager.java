@@ -22,10 +22,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.hawk.core.IConsole;
 import org.hawk.core.ICredentialsStore;
@@ -36,6 +39,7 @@ import org.hawk.core.VcsChangeType;
 import org.hawk.core.VcsCommit;
 import org.hawk.core.VcsCommitItem;
 import org.hawk.core.VcsRepositoryDelta;
+import org.tmatesoft.svn.core.SVNErrorCode;
 import org.tmatesoft.svn.core.SVNException;
 import org.tmatesoft.svn.core.SVNLogEntry;
 import org.tmatesoft.svn.core.SVNLogEntryPath;
@@ -57,6 +61,12 @@ public class SvnManager implements IVcsManager {
 
 	private SVNRepository svnRepository;
 
+	/*
+	 * Idle sessions for importFiles: each batch takes one out while it runs,
+	 * as SVNRepository instances cannot be shared across threads.
+	 */
+	private final Queue<SVNRepository> importSessions = new ConcurrentLinkedQueue<>();
+
 	/*
 	 * TODO we can't blacklist .zip as we need support for zipped Modelio
 	 * projects - should we use a different extension (".mzip", perhaps?),or a
@@ -216,7 +226,7 @@ public class SvnManager implements IVcsManager {
 	}
 
 	@Override
-	public File importFile(String revision, String path, File temp) {
+	public synchronized File importFile(String revision, String path, File temp) {
 		final SVNRepository svnRepository = getSVNRepository();
 		final long rev = revision == null ? SVNRevision.HEAD.getNumber() : Long.valueOf(revision);
 
@@ -240,6 +250,71 @@ public class SvnManager implements IVcsManager {
 		}
 	}
 
+	/**
+	 * Retrieves all the files in a single pass over a session taken from a
+	 * pool of import sessions, so several batches can be imported concurrently
+	 * without sharing the connection used by
+	 * {@link #importFile(String, String, File)}, and without reconnecting for
+	 * every batch. Missing paths are detected from the error reported by the
+	 * server, rather than with a separate <code>checkPath</code> round trip per
+	 * file. Temporary files are removed for any path that could not be
+	 * imported, and for the whole batch if the import is aborted.
+	 */
+	@Override
+	public Map<String, File> importFiles(String revision, Map<String, File> pathToTemp) {
+		final SVNRepository session = acquireImportSession();
+		final long rev = revision == null ? SVNRevision.HEAD.getNumber() : Long.valueOf(revision);
+
+		final Map<String, File> imported = new HashMap<>();
+		boolean completed = false;
+		try {
+			for (Map.Entry<String, File> entry : pathToTemp.entrySet()) {
+				final String path = entry.getKey();
+				final File temp = entry.getValue();
+
+				try (FileOutputStream fOS = new FileOutputStream(temp)) {
+					session.getFile(path, rev, new SVNProperties(), fOS);
+					imported.put(path, temp);
+				} catch (SVNException e) {
+					if (e.getErrorMessage().getErrorCode() != SVNErrorCode.FS_NOT_FOUND) {
+						console.printerrln(e);
+					}
+					temp.delete();
+					imported.put(path, null);
+				} catch (Exception e) {
+					console.printerrln(e);
+					temp.delete();
+					imported.put(path, null);
+				}
+			}
+			completed = true;
+		} finally {
+			if (completed) {
+				importSessions.offer(session);
+			} else {
+				session.closeSession();
+				for (File temp : pathToTemp.values()) {
+					temp.delete();
+				}
+			}
+		}
+
+		return imported;
+	}
+
+	private SVNRepository acquireImportSession() {
+		final SVNRepository session = importSessions.poll();
+		if (session != null) {
+			return session;
+		}
+		return SvnUtil.connectToSVNInstance(repositoryURL, username, password);
+	}
+
+	@Override
+	public boolean canImportConcurrently() {
+		return true;
+	}
+
 	@Override
 	public boolean isActive() {
 		return isActive;
@@ -247,6 +322,11 @@ public class SvnManager implements IVcsManager {
 
 	@Override
 	public void shutdown() {
+		SVNRepository session;
+		while ((session = importSessions.poll()) != null) {
+			session.closeSession();
+		}
+
 		repositoryURL = null;
 		console = null;
 	}
@@ -18,15 +18,37 @@ package org.hawk.timeaware.graph;
 
 import java.io.File;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 import org.hawk.core.IConsole;
 import org.hawk.core.ICredentialsStore;
+import org.hawk.core.IFileImporter;
+import org.hawk.core.IModelUpdater;
 import org.hawk.core.IVcsManager;
 import org.hawk.core.VcsCommit;
+import org.hawk.core.VcsCommitItem;
 import org.hawk.core.VcsRepositoryDelta;
 import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase.ITimeScope;
+import org.hawk.core.model.IHawkModelResource;
 import org.hawk.core.runtime.BaseModelIndexer;
+import org.hawk.core.util.FileOperations;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.timeaware.graph.VCSManagerIndex.RepositoryNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,15 +57,164 @@ import org.slf4j.LoggerFactory;
  * Indexes all revisions of the models in the repository. Requires using
  * backends and locations that can handle full history (currently Greycat +
  * SVN).
+ *
+ * Commits are written into the graph strictly in order, but the changed files
+ * of the next few commits are imported and parsed in the background while the
+ * current one is being written (see {@link #COMMIT_LOOKAHEAD_PROPERTY}). The
+ * last indexed revision is recorded after each commit is written, so an
+ * interrupted synchronisation resumes from the first commit that was not
+ * written: any work done ahead of it is simply discarded.
  */
 public class TimeAwareIndexer extends BaseModelIndexer {
 
+	/**
+	 * Name of the system property with the maximum number of commits whose files
+	 * may be imported and parsed ahead of the commit being written into the
+	 * graph. Values of 0 or less prepare each commit right before writing it.
+	 */
+	public static final String COMMIT_LOOKAHEAD_PROPERTY = "hawk.timeaware.commitLookahead";
+	public static final int DEFAULT_COMMIT_LOOKAHEAD = 2;
+
+	/**
+	 * Name of the system property with the number of commits to be written
+	 * into the graph between compactions of its history (see
+	 * {@link ITimeAwareGraphDatabase#compactHistory()}). Compaction happens at
+	 * the end of the synchronisation which reaches this number. Values of 0 or
+	 * less disable it.
+	 */
+	public static final String COMPACTION_INTERVAL_PROPERTY = "hawk.timeaware.compactionInterval";
+	public static final int DEFAULT_COMPACTION_INTERVAL = 1_000;
+
+	/**
+	 * Number of commits between progress reports.
+	 */
+	private static final int PROGRESS_COMMITS = 100;
+
+	private static final String LOOKAHEAD_FOLDER = "commits";
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(TimeAwareIndexer.class);
 
+	/**
+	 * Changed files of a commit, imported (and possibly parsed) ahead of being
+	 * written into the graph.
+	 */
+	private class PreparedCommit {
+		private final VcsCommit commit;
+		private final File tempDir;
+		private final IFileImporter importer;
+		private final Set<VcsCommitItem> deletedItems = new HashSet<>();
+		private final Set<VcsCommitItem> interestingItems = new HashSet<>();
+		private final Map<String, File> pathToImported = new HashMap<>();
+
+		/*
+		 * Only the first updater which asks for the resource of an item uses the
+		 * one parsed in advance (the updater unloads it afterwards). Empty values
+		 * are items which did not produce a resource.
+		 */
+		private final Map<VcsCommitItem, Optional<IHawkModelResource>> resources = new ConcurrentHashMap<>();
+
+		public PreparedCommit(VcsCommit commit, File tempDir) {
+			this.commit = commit;
+			this.tempDir = tempDir;
+			this.importer = new DefaultFileImporter(commit.getDelta().getManager(), commit.getRevision(), tempDir);
+		}
+
+		public long getEpochMillis() {
+			// Commits might be only milliseconds apart in automated processes
+			final Instant instant = commit.getJavaDate().toInstant();
+			return instant.getEpochSecond() * 1000 + instant.getNano() / 1_000_000;
+		}
+
+		public void prepare(boolean parse) {
+			tempDir.mkdirs();
+			inspectChanges(commit.getItems(), deletedItems, interestingItems);
+
+			try {
+				importFiles(importer, interestingItems, pathToImported);
+			} catch (RuntimeException ex) {
+				// The writer will retry the missing imports and report any errors
+				LOGGER.warn("Could not import files ahead for revision " + commit.getRevision(), ex);
+				return;
+			}
+
+			if (parse) {
+				for (VcsCommitItem item : interestingItems) {
+					try {
+						resources.put(item, Optional.ofNullable(parseResource(importer, pathToImported, item)));
+					} catch (Exception ex) {
+						// The writer will parse it again and report the error
+						LOGGER.debug("Could not parse ahead " + item.getPath(), ex);
+					}
+				}
+			}
+		}
+
+		public IHawkModelResource takeResource(VcsCommitItem item) throws Exception {
+			final Optional<IHawkModelResource> parsed = resources.remove(item);
+			if (parsed != null) {
+				return parsed.orElse(null);
+			}
+			return parseResource(importer, pathToImported, item);
+		}
+
+		public boolean write(IVcsManager vcsManager) {
+			deletedFiles = deletedFiles + deletedItems.size();
+			interestingFiles = interestingFiles + interestingItems.size();
+
+			boolean updatersOK = true;
+			for (IModelUpdater updater : getModelUpdaters()) {
+				updatersOK = updatersOK && internalSynchronise(vcsManager, updater, deletedItems, interestingItems,
+					importer, pathToImported, this::takeResource);
+			}
+			return updatersOK;
+		}
+
+		public void discard() {
+			for (Optional<IHawkModelResource> r : resources.values()) {
+				r.ifPresent(IHawkModelResource::unload);
+			}
+			resources.clear();
+
+			if (!FileOperations.deleteFiles(tempDir, true)) {
+				console.printerrln("error in deleting temporary local vcs files");
+			}
+		}
+	}
+
+	private int commitLookahead = SystemProperties.getInt(COMMIT_LOOKAHEAD_PROPERTY, DEFAULT_COMMIT_LOOKAHEAD);
+	private int compactionInterval = SystemProperties.getInt(COMPACTION_INTERVAL_PROPERTY, DEFAULT_COMPACTION_INTERVAL);
+
+	/** Commits written since the history was last compacted. */
+	private int commitsSinceCompaction = 0;
+
 	public TimeAwareIndexer(String name, File parentFolder, ICredentialsStore credStore, IConsole c) {
 		super(name, parentFolder, credStore, c);
 	}
 
+	public int getCommitLookahead() {
+		return commitLookahead;
+	}
+
+	/**
+	 * Changes the maximum number of commits that may be imported and parsed ahead
+	 * of the commit being written into the graph.
+	 */
+	public void setCommitLookahead(int commitLookahead) {
+		this.commitLookahead = commitLookahead;
+	}
+
+	public int getCompactionInterval() {
+		return compactionInterval;
+	}
+
+	/**
+	 * Changes the number of commits written between compactions of the
+	 * history. Values of 0 or less disable compaction.
+	 */
+	public void setCompactionInterval(int compactionInterval) {
+		this.compactionInterval = compactionInterval;
+	}
+
 	@Override
 	protected void resetRepository(String repoURL) {
 		// nothing to do - we keep track of repository information in the graph
@@ -72,47 +243,167 @@ public class TimeAwareIndexer extends BaseModelIndexer {
 				latestUpdateFoundChanges = true;
 
 				VcsRepositoryDelta delta = vcsManager.getDelta(lastRev, currentRevision);
-				for (VcsCommit commit : delta.getCommits()) {
-					// Commits might be only milliseconds apart in automated processes
-					final Instant instant = commit.getJavaDate().toInstant();
-					final long epochMillis = instant.getEpochSecond() * 1000 + instant.getNano() / 1_000_000;
+				success = synchroniseCommits(taGraph, vcsManager, delta.getCommits());
+
+				// The indexed repo might have commits in other paths - mark the last revision as done as well so
+				// we do not keep trying to index again and again.
+				final Lock writeLock = taGraph.getHistoryLock().writeLock();
+				writeLock.lock();
+				try (ITimeScope scope = taGraph.atTime(0)) {
+					setLastIndexedRevision(vcsManager, currentRevision);
+				} finally {
+					writeLock.unlock();
+				}
+
+				compactIfDue(taGraph);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Failed to synchronise repository " + vcsManager.getLocation(), e);
+			return false;
+		}
+
+		return success;
+	}
+
+	/**
+	 * Compacts the history of the graph if at least
+	 * {@link #getCompactionInterval()} commits have been written since the
+	 * last compaction. Failures are logged, but do not fail the
+	 * synchronisation: the history is still valid, just larger.
+	 */
+	protected void compactIfDue(ITimeAwareGraphDatabase taGraph) {
+		if (compactionInterval <= 0 || commitsSinceCompaction < compactionInterval) {
+			return;
+		}
+
+		try {
+			taGraph.compactHistory();
+			console.println(String.format("Compacted history after %d commits", commitsSinceCompaction));
+			commitsSinceCompaction = 0;
+		} catch (Exception e) {
+			LOGGER.error("Failed to compact the history of the graph", e);
+		}
+	}
+
+	/**
+	 * Writes the commits into the graph in order, preparing up to
+	 * {@link #getCommitLookahead()} commits ahead in a background thread. If
+	 * the VCS cannot import files from several threads at once (see
+	 * {@link IVcsManager#canImportConcurrently()}), each commit is prepared
+	 * right before writing it instead.
+	 */
+	protected boolean synchroniseCommits(ITimeAwareGraphDatabase taGraph, IVcsManager vcsManager, List<VcsCommit> commits) throws Exception {
+		// Remove anything left behind by an interrupted synchronisation
+		final File lookaheadFolder = new File(graph.getTempDir(), LOOKAHEAD_FOLDER);
+		FileOperations.deleteFiles(lookaheadFolder, true);
+
+		// Commits are imported ahead while the writer may be importing the files it still needs
+		final int lookahead = vcsManager.canImportConcurrently() ? Math.max(0, commitLookahead) : 0;
+		final boolean parseAhead = getModelUpdaters().stream().anyMatch(IModelUpdater::caresAboutResources);
+		final ExecutorService preparer = lookahead > 0 ? Executors.newSingleThreadExecutor() : null;
+		final Deque<Future<PreparedCommit>> pending = new ArrayDeque<>();
+
+		final long millisStart = System.currentTimeMillis();
+		long millisLastReport = millisStart;
+		int nLastReport = 0;
+		boolean success = true;
+		int nSubmitted = 0;
+		try {
+			for (int i = 0; i < commits.size(); i++) {
+				// Keep the current commit and up to 'lookahead' commits after it in preparation
+				while (nSubmitted < commits.size() && nSubmitted <= i + lookahead) {
+					final PreparedCommit prepared = new PreparedCommit(commits.get(nSubmitted), new File(lookaheadFolder, "" + nSubmitted));
+					nSubmitted++;
+					if (preparer == null) {
+						prepared.prepare(parseAhead);
+						pending.add(CompletableFuture.completedFuture(prepared));
+					} else {
+						pending.add(preparer.submit(() -> {
+							prepared.prepare(parseAhead);
+							return prepared;
+						}));
+					}
+				}
+
+				final PreparedCommit prepared = waitFor(pending.removeFirst());
 
-					// Do not allow anyone else to change the time while we are manipulating the graph
-					synchronized(taGraph) {
-						taGraph.setTime(epochMillis);
+				/*
+				 * Queries only run between commits: the timepoint only applies to this thread,
+				 * but their transactions would otherwise save or roll back a half-written commit.
+				 */
+				final Lock writeLock = taGraph.getHistoryLock().writeLock();
+				writeLock.lock();
+				try {
+					final VcsCommit commit = prepared.commit;
+					final long epochMillis = prepared.getEpochMillis();
 
+					try (ITimeScope scope = taGraph.atTime(epochMillis)) {
 						/*
 						 * TODO: allow for fixing unresolved proxies in previous versions? Might make
 						 * sense if we forgot to add a metamodel in a previous version.
 						 */
-						success = success && synchroniseFiles(commit.getRevision(), vcsManager, commit.getItems());
+						success = success && prepared.write(vcsManager);
 						console.println(String.format("Index revision %s (timepoint %d) of %s",
 							commit.getRevision(), epochMillis, commit.getDelta().getManager().getLocation()));
+					}
 
-						taGraph.setTime(0);
+					try (ITimeScope scope = taGraph.atTime(0)) {
 						setLastIndexedRevision(vcsManager, commit.getRevision());
 					}
+					commitsSinceCompaction++;
+				} finally {
+					writeLock.unlock();
+					prepared.discard();
 				}
 
-				// The indexed repo might have commits in other paths - mark the last revision as done as well so
-				// we do not keep trying to index again and again.
-				synchronized (taGraph) {
-					taGraph.setTime(0);
-					setLastIndexedRevision(vcsManager, currentRevision);
+				final int nWritten = i + 1;
+				if (nWritten % PROGRESS_COMMITS == 0 || nWritten == commits.size()) {
+					final long millisNow = System.currentTimeMillis();
+					final String progress = String.format(
+						"Indexed %d/%d commits of %s (%.2f commits/s recently, %.2f commits/s overall)",
+						nWritten, commits.size(), vcsManager.getLocation(),
+						getRate(nWritten - nLastReport, millisNow - millisLastReport),
+						getRate(nWritten, millisNow - millisStart));
+					stateListener.info(progress);
+					LOGGER.info(progress);
+					millisLastReport = millisNow;
+					nLastReport = nWritten;
 				}
 			}
-		} catch (Exception e) {
-			LOGGER.error("Failed to synchronise repository " + vcsManager.getLocation(), e);
-			return false;
 		} finally {
-			synchronized (taGraph) {
-				taGraph.setTime(0);
+			if (preparer != null) {
+				preparer.shutdownNow();
+			}
+			for (Future<PreparedCommit> f : pending) {
+				if (!f.cancel(true)) {
+					try {
+						f.get().discard();
+					} catch (Exception ex) {
+						LOGGER.debug("Commit prepared ahead could not be discarded", ex);
+					}
+				}
 			}
+			FileOperations.deleteFiles(lookaheadFolder, true);
 		}
 
 		return success;
 	}
 
+	private static PreparedCommit waitFor(Future<PreparedCommit> f) throws Exception {
+		try {
+			return f.get();
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof Exception) {
+				throw (Exception) ex.getCause();
+			}
+			throw ex;
+		}
+	}
+
+	private static double getRate(int nCommits, long millis) {
+		return millis > 0 ? nCommits * 1000.0 / millis : 0;
+	}
+
 	protected String getLastIndexedRevision(IVcsManager vcsManager) throws Exception {
 		String lastRev;
 		try (IGraphTransaction tx = graph.beginTransaction()) {
@@ -72,7 +72,7 @@ public class TimeAwareModelUpdater extends GraphModelUpdater {
 
 	@Override
 	public GraphModelInserter createInserter() {
-		return new GraphModelInserter(indexer, this::createDeletionUtils, typeCache) {
+		return new GraphModelInserter(indexer, this::createDeletionUtils, getTypeCache()) {
 			@Override
 			protected double calculateModelDeltaRatio(IGraphNode fileNode, boolean verbose) throws Exception {
 				super.calculateModelDeltaRatio(fileNode, verbose);
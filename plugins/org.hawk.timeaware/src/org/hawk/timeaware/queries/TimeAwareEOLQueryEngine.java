@@ -23,6 +23,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Function;
 
 import org.eclipse.epsilon.eol.IEolModule;
@@ -36,6 +37,7 @@ import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNodeIndex;
+import org.hawk.core.query.IAccess;
 import org.hawk.core.query.InvalidQueryException;
 import org.hawk.core.query.QueryExecutionException;
 import org.hawk.epsilon.emc.EOLQueryEngine;
@@ -204,6 +206,29 @@ public class TimeAwareEOLQueryEngine extends EOLQueryEngine {
 	@Override
 	public Object query(IModelIndexer m, String query, Map<String, Object> context)
 			throws InvalidQueryException, QueryExecutionException {
+		if (!(m.getGraph() instanceof ITimeAwareGraphDatabase)) {
+			return query(m, query, context, null);
+		}
+
+		// Do not read the history while a commit is being written into it
+		final Lock readLock = ((ITimeAwareGraphDatabase) m.getGraph()).getHistoryLock().readLock();
+		readLock.lock();
+		try {
+			return query(m, query, context, null);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Variant of {@link #query(IModelIndexer, String, Map)} which also collects
+	 * the IDs of the nodes read by the query (model elements and the type nodes
+	 * whose instances were listed), using the same access tracking as derived
+	 * attributes. If <code>accessedNodeIds</code> is <code>null</code>, accesses
+	 * are not tracked.
+	 */
+	public Object query(IModelIndexer m, String query, Map<String, Object> context, Set<String> accessedNodeIds)
+			throws InvalidQueryException, QueryExecutionException {
 		final HawkState currentState = m.getCompositeStateListener().getCurrentState();
 		if (currentState != HawkState.RUNNING) {
 			throw new QueryExecutionException(
@@ -232,14 +257,29 @@ public class TimeAwareEOLQueryEngine extends EOLQueryEngine {
 			throw new QueryExecutionException("Loading of EOLQueryEngine failed");
 		}
 
-		final IEolModule module = createModule();
-		module.getContext().setOperationFactory(new TimeAwareEOLOperationFactory(q));
+		// Cached modules are handed out with a fresh context
+		final IEolModule module = acquireModule(query);
+		try {
+			module.getContext().setOperationFactory(new TimeAwareEOLOperationFactory(q));
+
+			final OperationContributorRegistry opcRegistry = module.getContext().getOperationContributorRegistry();
+			opcRegistry.add(new TimeAwareNodeHistoryOperationContributor(q));
+			opcRegistry.add(new TypeHistoryOperationContributor(q));
+			bindQuery(context, q, module);
+			if (accessedNodeIds == null) {
+				return q.runQuery(module);
+			}
 
-		final OperationContributorRegistry opcRegistry = module.getContext().getOperationContributorRegistry();
-		opcRegistry.add(new TimeAwareNodeHistoryOperationContributor(q));
-		opcRegistry.add(new TypeHistoryOperationContributor(q));
-		parseQuery(query, context, q, module);
-		return q.runQuery(module);
+			final GraphPropertyGetter pg = (GraphPropertyGetter) q.getPropertyGetter();
+			pg.setBroadcastAccess(true);
+			final Object result = q.runQuery(module);
+			for (IAccess access : pg.getAccessListener().getAccesses()) {
+				accessedNodeIds.add(access.getAccessObjectID());
+			}
+			return result;
+		} finally {
+			releaseModule(query, module);
+		}
 	}
 
 	@Override
@@ -247,10 +287,23 @@ public class TimeAwareEOLQueryEngine extends EOLQueryEngine {
 		return "Time Aware " + super.getHumanReadableName();
 	}
 
+	@Override
+	public boolean isAccessTrackingSupported() {
+		// Queries can reach into the history of the nodes, which is not tracked
+		return false;
+	}
+
 	@Override
 	public Collection<Object> getAllOf(IGraphNode typeNode, String typeorkind) {
 		final Collection<Object> nodes = createAllOfCollection(typeNode);
 		allOf.addAllOf(typeNode, typeorkind, nodes);
+
+		// Instances being created or deleted produce new versions of the type node
+		final GraphPropertyGetter pg = (GraphPropertyGetter) getPropertyGetter();
+		if (pg.getBroadcastStatus()) {
+			pg.getAccessListener().accessed(typeNode.getId() + "", "property_unused_type_or_kind");
+		}
+
 		return nodes;
 	}
 
@@ -16,25 +16,40 @@
  ******************************************************************************/
 package org.hawk.timeaware.queries;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 
 import org.hawk.core.IModelIndexer;
 import org.hawk.core.IStateListener.HawkState;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase.ITimeScope;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
 import org.hawk.core.query.IAccessListener;
 import org.hawk.core.query.IQueryEngine;
 import org.hawk.core.query.InvalidQueryException;
 import org.hawk.core.query.QueryExecutionException;
-import org.hawk.epsilon.emc.EOLQueryEngine;
+import org.hawk.core.util.SystemProperties;
 import org.hawk.graph.GraphWrapper;
 import org.hawk.graph.MetamodelNode;
 import org.hawk.graph.TypeNode;
@@ -51,9 +66,18 @@ import org.slf4j.LoggerFactory;
  * mostly to allow old (not time-aware) queries to be evaluated over the history
  * of a model.
  *
- * Since this query engine manipulates the shared state of the graph (the
- * current time), we cannot have two timeline queries happen at the same time.
- * Synchronisation is used to enforce this.
+ * Since the current time of the backend is kept per thread, instants can be
+ * evaluated in parallel on a fork/join pool (see {@link #PARALLELISM_PROPERTY}
+ * and {@link #PROPERTY_PARALLELISM}), if the backend supports parallel reads
+ * (see {@link ITimeAwareGraphDatabase#supportsParallelReads()}). The workers
+ * read within {@link ITimeAwareGraphDatabase#readingHistory()}, under the read
+ * lock of the history held by the calling thread. Otherwise, instants are
+ * evaluated one at a time. The parsed query is reused across
+ * instants, and results are reported in order of instant.
+ *
+ * In incremental mode (see {@link #PROPERTY_INCREMENTAL}), the nodes read by
+ * the query are tracked, and its result is reused across consecutive instants
+ * if none of those nodes changed in between.
  *
  * TODO: right now we can only find points when type nodes changed (instances
  * were created or deleted). We should take advantage of repository nodes
@@ -61,16 +85,122 @@ import org.slf4j.LoggerFactory;
  *
  * TODO: refactor temporal quantifiers / scoping so they are part of the regular
  * time-aware Java API and not just part of the time-aware EOL query engine.
- *
- * TODO: have engine keep its own time, rather than relying on the time set on
- * the backend.
  */
 public class TimelineEOLQueryEngine implements IQueryEngine {
 
+	/**
+	 * System property with the default number of instants to be evaluated at
+	 * the same time. Defaults to the number of available processors.
+	 */
+	public static final String PARALLELISM_PROPERTY = "hawk.timeline.parallelism";
+
+	/**
+	 * Context key with the number of instants to be evaluated at the same time
+	 * for this query, overriding {@link #PARALLELISM_PROPERTY}. Values lower
+	 * than 2 evaluate instants one at a time in the calling thread, as do
+	 * backends which do not support parallel reads.
+	 */
+	public static final String PROPERTY_PARALLELISM = "TIMELINE_PARALLELISM";
+
+	/**
+	 * Context key which, if set to <code>true</code>, only re-runs the query at
+	 * instants where some of the nodes it read at the last evaluated instant have
+	 * changed. Instants are evaluated one at a time in the calling thread, and
+	 * results are only reused if they are made up of primitive values, strings
+	 * and collections of those.
+	 *
+	 * This mode is meant for queries which only navigate the current version of
+	 * the model from the instances of its types: reads which are not tracked
+	 * (e.g. <code>Model.allContents</code>, file scopes, or time-aware
+	 * properties and operations) can result in stale values being reused.
+	 */
+	public static final String PROPERTY_INCREMENTAL = "TIMELINE_INCREMENTAL";
+
+	/**
+	 * Receives the result of the query at each instant, in order of instant.
+	 */
+	@FunctionalInterface
+	public interface IInstantResultConsumer {
+		/**
+		 * Returns <code>true</code> if the evaluation should continue with the
+		 * next instant, or <code>false</code> to stop it.
+		 */
+		boolean accept(long instant, Object result);
+	}
+
+	/**
+	 * Cancellation callback for the whole timeline, which terminates all the
+	 * per-instant queries currently running.
+	 */
+	private static class TimelineCancellation implements Runnable {
+		private final Set<Runnable> running = ConcurrentHashMap.newKeySet();
+		private volatile boolean cancelled;
+
+		@Override
+		public void run() {
+			cancelled = true;
+			for (Runnable r : running) {
+				r.run();
+			}
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		public void register(Runnable r) {
+			running.add(r);
+			if (cancelled) {
+				r.run();
+			}
+		}
+
+		public void unregister(Runnable r) {
+			running.remove(r);
+		}
+	}
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(TimelineEOLQueryEngine.class);
 
+	/**
+	 * Engine for the individual instants: it is thread-safe, and keeps the
+	 * parsed queries so they can be reused across instants and timelines.
+	 */
+	private final TimeAwareEOLQueryEngine instantEngine = new TimeAwareEOLQueryEngine();
+
+	/**
+	 * Number of instants where the query was run, where a previous result was
+	 * reused instead (in incremental mode), and where the query was run on a
+	 * worker thread.
+	 */
+	private final LongAdder evaluatedInstants = new LongAdder(), reusedInstants = new LongAdder(),
+		parallelInstants = new LongAdder();
+
 	private String defaultNamespaces;
 
+	/**
+	 * Returns the number of instants where the query was run by this engine.
+	 */
+	public long getEvaluatedInstantCount() {
+		return evaluatedInstants.sum();
+	}
+
+	/**
+	 * Returns the number of instants where this engine reported the result
+	 * computed for a previous instant, rather than running the query again.
+	 */
+	public long getReusedInstantCount() {
+		return reusedInstants.sum();
+	}
+
+	/**
+	 * Returns the number of instants where the query was run by this engine
+	 * on a worker thread, rather than in the thread which requested it.
+	 */
+	public long getParallelInstantCount() {
+		return parallelInstants.sum();
+	}
+
 	@Override
 	public IAccessListener calculateDerivedAttributes(IModelIndexer m, Iterable<IGraphNode> nodes)
 			throws InvalidQueryException, QueryExecutionException {
@@ -79,7 +209,7 @@ public class TimelineEOLQueryEngine implements IQueryEngine {
 
 	@Override
 	public List<String> validate(String derivationlogic) {
-		return new TimeAwareEOLQueryEngine().validate(derivationlogic);
+		return instantEngine.validate(derivationlogic);
 	}
 
 	@Override
@@ -90,6 +220,22 @@ public class TimelineEOLQueryEngine implements IQueryEngine {
 	@Override
 	public Object query(IModelIndexer m, String query, Map<String, Object> context)
 			throws InvalidQueryException, QueryExecutionException
+	{
+		final List<Object> results = new ArrayList<>();
+		query(m, query, context, (instant, result) -> {
+			results.add(Arrays.asList(instant, result));
+			return true;
+		});
+		return results;
+	}
+
+	/**
+	 * Evaluates the query at every instant in the history of the index, passing
+	 * each result to <code>consumer</code> in order of instant as soon as it and
+	 * the results of all previous instants are available.
+	 */
+	public void query(IModelIndexer m, String query, Map<String, Object> context, IInstantResultConsumer consumer)
+			throws InvalidQueryException, QueryExecutionException
 	{
 		final HawkState currentState = m.getCompositeStateListener().getCurrentState();
 		if (currentState != HawkState.RUNNING) {
@@ -102,56 +248,278 @@ public class TimelineEOLQueryEngine implements IQueryEngine {
 		}
 		final ITimeAwareGraphDatabase taDB = (ITimeAwareGraphDatabase) m.getGraph();
 
-		if (defaultNamespaces != null) {
-			if (context == null) {
-				context = new HashMap<>();
+		final Map<String, Object> instantContext = context == null ? new HashMap<>() : new HashMap<>(context);
+		if (defaultNamespaces != null && !instantContext.containsKey(PROPERTY_DEFAULTNAMESPACES)) {
+			instantContext.put(PROPERTY_DEFAULTNAMESPACES, defaultNamespaces);
+		}
+		int parallelism = getParallelism(instantContext.remove(PROPERTY_PARALLELISM));
+		if (parallelism > 1 && !taDB.supportsParallelReads()) {
+			LOGGER.debug("{} does not support parallel reads: evaluating instants one at a time", taDB.getClass().getSimpleName());
+			parallelism = 1;
+		}
+		final Object incremental = instantContext.remove(PROPERTY_INCREMENTAL);
+
+		/*
+		 * The caller gets a single callback for the whole timeline, rather than
+		 * one per instant: the per-instant callbacks are tracked here instead.
+		 */
+		final TimelineCancellation cancellation = new TimelineCancellation();
+		@SuppressWarnings("unchecked")
+		final Consumer<Runnable> cancelProvider = (Consumer<Runnable>) instantContext.remove(PROPERTY_CANCEL_CONSUMER);
+		if (cancelProvider != null) {
+			cancelProvider.accept(cancellation);
+		}
+
+		// Do not read the history while a commit is being written into it
+		final Lock readLock = taDB.getHistoryLock().readLock();
+		readLock.lock();
+		try {
+			queryInstants(m, taDB, query, instantContext, parallelism, incremental, cancellation, consumer);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	private void queryInstants(IModelIndexer m, ITimeAwareGraphDatabase taDB, String query, Map<String, Object> instantContext,
+			int parallelism, Object incremental, TimelineCancellation cancellation, IInstantResultConsumer consumer)
+			throws InvalidQueryException, QueryExecutionException {
+		final List<Long> instants = new ArrayList<>(getInstants(taDB));
+		if (incremental != null && Boolean.parseBoolean(incremental.toString())) {
+			queryIncrementally(m, taDB, instants, query, instantContext, cancellation, consumer);
+			return;
+		} else if (parallelism < 2) {
+			for (int i = 0; i < instants.size(); i++) {
+				final long instant = instants.get(i);
+				final Object result = queryAt(m, taDB, instant, query, instantContext, cancellation, null);
+				if (!report(consumer, cancellation, i, instants.size(), instant, result)) {
+					break;
+				}
+			}
+			return;
+		}
+
+		// Only a few instants are evaluated ahead of the next one to be reported
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			final Deque<ForkJoinTask<Object>> pending = new ArrayDeque<>();
+			int nSubmitted = 0;
+			for (int i = 0; i < instants.size(); i++) {
+				while (nSubmitted < instants.size() && pending.size() < 2 * parallelism) {
+					final long instant = instants.get(nSubmitted++);
+					pending.add(pool.submit(() -> {
+						// This thread holds the read lock for the workers
+						try (ITimeScope reading = taDB.readingHistory()) {
+							parallelInstants.increment();
+							return queryAt(m, taDB, instant, query, instantContext, cancellation, null);
+						}
+					}));
+				}
+
+				final Object result = join(pending.removeFirst(), cancellation);
+				if (!report(consumer, cancellation, i, instants.size(), instants.get(i), result)) {
+					// Stop the instants that were evaluated ahead
+					cancellation.run();
+					break;
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Evaluates the query at each instant in order, reusing the last result while
+	 * none of the nodes read to compute it have changed.
+	 */
+	private void queryIncrementally(IModelIndexer m, ITimeAwareGraphDatabase taDB, List<Long> instants,
+			String query, Map<String, Object> instantContext, TimelineCancellation cancellation,
+			IInstantResultConsumer consumer) throws InvalidQueryException, QueryExecutionException {
+		Set<String> accessedNodeIds = null;
+		long lastEvaluated = 0;
+		Object lastResult = null;
+
+		int nReused = 0;
+		for (int i = 0; i < instants.size(); i++) {
+			final long instant = instants.get(i);
+
+			if (accessedNodeIds != null && !anyChanged(taDB, accessedNodeIds, lastEvaluated, instant)) {
+				nReused++;
+				reusedInstants.increment();
+			} else {
+				final Set<String> newAccessedNodeIds = new HashSet<>();
+				lastResult = queryAt(m, taDB, instant, query, instantContext, cancellation, newAccessedNodeIds);
+				lastEvaluated = instant;
+				accessedNodeIds = isReusable(lastResult) ? newAccessedNodeIds : null;
 			}
-			if (!context.containsKey(PROPERTY_DEFAULTNAMESPACES)) {
-				context.put(PROPERTY_DEFAULTNAMESPACES, defaultNamespaces);
+
+			if (!report(consumer, cancellation, i, instants.size(), instant, lastResult)) {
+				break;
 			}
 		}
 
-		// Collect all relevant instants from the various type nodes
+		LOGGER.debug("Reused results at {}/{} instants", nReused, instants.size());
+	}
+
+	/**
+	 * Returns <code>true</code> if any of the nodes has a version after
+	 * <code>fromExclusive</code> and up to <code>toInclusive</code>, or is not
+	 * alive at <code>toInclusive</code>.
+	 */
+	private boolean anyChanged(ITimeAwareGraphDatabase taDB, Set<String> nodeIds, long fromExclusive, long toInclusive)
+			throws QueryExecutionException {
+		try (ITimeScope scope = taDB.atTime(toInclusive); IGraphTransaction tx = taDB.beginTransaction()) {
+			final List<ITimeAwareGraphNode> nodes = new ArrayList<>(nodeIds.size());
+			boolean changed = false;
+			for (Iterator<String> itId = nodeIds.iterator(); itId.hasNext() && !changed; ) {
+				final IGraphNode node = taDB.getNodeById(itId.next());
+				if (node instanceof ITimeAwareGraphNode && ((ITimeAwareGraphNode) node).isAlive()) {
+					nodes.add((ITimeAwareGraphNode) node);
+				} else {
+					changed = true;
+				}
+			}
+
+			if (!changed) {
+				for (long[] newInstants : taDB.getInstantsBetween(nodes, fromExclusive + 1, toInclusive)) {
+					if (newInstants.length > 0) {
+						changed = true;
+						break;
+					}
+				}
+			}
+			tx.success();
+			return changed;
+		} catch (Exception e) {
+			throw new QueryExecutionException(e);
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the result does not refer to any node at a
+	 * specific point in time, so it can be reported for other instants.
+	 */
+	private static boolean isReusable(Object result) {
+		if (result == null || result instanceof String || result instanceof Number
+				|| result instanceof Boolean || result instanceof Character) {
+			return true;
+		} else if (result instanceof Collection) {
+			for (Object e : (Collection<?>) result) {
+				if (!isReusable(e)) {
+					return false;
+				}
+			}
+			return true;
+		} else if (result instanceof Map) {
+			for (Entry<?, ?> e : ((Map<?, ?>) result).entrySet()) {
+				if (!isReusable(e.getKey()) || !isReusable(e.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Collects all relevant instants from the various type nodes.
+	 */
+	private Set<Long> getInstants(final ITimeAwareGraphDatabase taDB) throws QueryExecutionException {
 		final Set<Long> instants = new TreeSet<>();
 		try (IGraphTransaction tx = taDB.beginTransaction()) {
+			final List<ITimeAwareGraphNode> typeNodes = new ArrayList<>();
 			GraphWrapper gW = new GraphWrapper(taDB);
 			for (MetamodelNode mm : gW.getMetamodelNodes()) {
 				for (TypeNode tn : mm.getTypes()) {
-					ITimeAwareGraphNode taTypeNode = (ITimeAwareGraphNode) tn.getNode();
-					instants.addAll(taTypeNode.getAllInstants());
+					typeNodes.add((ITimeAwareGraphNode) tn.getNode());
+				}
+			}
+
+			for (long[] typeInstants : taDB.getAllInstants(typeNodes)) {
+				for (long instant : typeInstants) {
+					instants.add(instant);
 				}
 			}
 			tx.success();
 		} catch (Exception e) {
 			throw new QueryExecutionException(e);
 		}
+		return instants;
+	}
 
-		// Compute query for each and every instant
-		final List<Object> results = new ArrayList<>();
-		try {
-			int executed = 0;
-			for (long instant : instants) {
-				if (executed % 10 == 0) {
-					LOGGER.info("Ran {}/{} instants", executed, instants.size());
-				}
-				executed++;
+	/**
+	 * Runs the query at a specific instant. The timepoint only applies to the
+	 * current thread. If <code>accessedNodeIds</code> is not <code>null</code>,
+	 * the IDs of the nodes read by the query are added to it.
+	 */
+	private Object queryAt(IModelIndexer m, ITimeAwareGraphDatabase taDB, long instant, String query,
+			Map<String, Object> baseContext, TimelineCancellation cancellation, Set<String> accessedNodeIds)
+			throws InvalidQueryException, QueryExecutionException {
+		if (cancellation.isCancelled()) {
+			throw new QueryExecutionException("Timeline query was cancelled");
+		}
 
-				// Do not allow two timeline queries to take place concurrently
-				synchronized (taDB) {
-					taDB.setTime(instant);
+		final AtomicReference<Runnable> cancelInstant = new AtomicReference<>();
+		final Map<String, Object> context = new HashMap<>(baseContext);
+		context.put(PROPERTY_CANCEL_CONSUMER, (Consumer<Runnable>) (r) -> {
+			cancelInstant.set(r);
+			cancellation.register(r);
+		});
 
-					final EOLQueryEngine q = new TimeAwareEOLQueryEngine();
-					final Object result = q.query(m, query, context);
-					results.add(Arrays.asList(instant, result));
-				}
-			}
+		evaluatedInstants.increment();
+		try (ITimeScope scope = taDB.atTime(instant)) {
+			return instantEngine.query(m, query, context, accessedNodeIds);
 		} finally {
-			synchronized (taDB) {
-				taDB.setTime(0L);
+			if (cancelInstant.get() != null) {
+				cancellation.unregister(cancelInstant.get());
 			}
 		}
+	}
 
-		return results;
+	/**
+	 * Waits for the result of an instant. If it failed, the rest of the timeline
+	 * is stopped and the failure is propagated.
+	 */
+	private Object join(ForkJoinTask<Object> task, TimelineCancellation cancellation)
+			throws InvalidQueryException, QueryExecutionException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancellation.run();
+			throw new QueryExecutionException(e);
+		} catch (ExecutionException e) {
+			final boolean wasCancelled = cancellation.isCancelled();
+			cancellation.run();
+			if (wasCancelled) {
+				throw new QueryExecutionException("Timeline query was cancelled");
+			} else if (e.getCause() instanceof InvalidQueryException) {
+				throw (InvalidQueryException) e.getCause();
+			} else if (e.getCause() instanceof QueryExecutionException) {
+				throw (QueryExecutionException) e.getCause();
+			}
+			throw new QueryExecutionException(e.getCause());
+		}
+	}
+
+	private boolean report(IInstantResultConsumer consumer, TimelineCancellation cancellation, int index,
+			int nInstants, long instant, Object result) throws QueryExecutionException {
+		if (cancellation.isCancelled()) {
+			throw new QueryExecutionException("Timeline query was cancelled");
+		}
+		if (index % 10 == 0) {
+			LOGGER.info("Ran {}/{} instants", index, nInstants);
+		}
+		return consumer.accept(instant, result);
+	}
+
+	private static int getParallelism(Object contextValue) {
+		final int defaultValue = Runtime.getRuntime().availableProcessors();
+		if (contextValue instanceof Number) {
+			return ((Number) contextValue).intValue();
+		}
+
+		final String sValue = contextValue != null ? contextValue.toString() : System.getProperty(PARALLELISM_PROPERTY);
+		return SystemProperties.parseInt(PARALLELISM_PROPERTY, sValue, defaultValue, Integer.MIN_VALUE);
 	}
 
 	@Override
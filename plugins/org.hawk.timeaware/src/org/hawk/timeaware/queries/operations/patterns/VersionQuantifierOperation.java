@@ -16,7 +16,7 @@
  ******************************************************************************/
 package org.hawk.timeaware.queries.operations.patterns;
 
-import java.util.List;
+import java.util.Iterator;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -47,10 +47,12 @@ public class VersionQuantifierOperation extends TimeAwareNodeFirstOrderOperation
 	protected Object execute(Variable iterator, Expression expression, IEolContext context,
 			Function<ITimeAwareGraphNode, Object> versionWrapper, ITimeAwareGraphNode taNode) throws EolInternalException {
 		try {
-			final List<ITimeAwareGraphNode> versions = taNode.getAllVersions();
+			// Versions are produced lazily, as we may stop at the first decisive one
+			final Iterator<ITimeAwareGraphNode> itVersions = taNode.getVersionIterator();
 			final FrameStack scope = context.getFrameStack();
 
-			for (ITimeAwareGraphNode version : versions) {
+			while (itVersions.hasNext()) {
+				final ITimeAwareGraphNode version = itVersions.next();
 				Object listItem = versionWrapper.apply(version);
 
 				if (iterator.getType()==null || iterator.getType().isKind(listItem)){
@@ -17,7 +17,9 @@
 package org.hawk.timeaware.queries.operations.scopes;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
 import org.slf4j.Logger;
@@ -164,6 +166,27 @@ public class WhenNodeWrapper extends AbstractTimeAwareNodeWrapper {
 		return taNodes;
 	}
 
+	@Override
+	public Iterator<ITimeAwareGraphNode> getVersionIterator() {
+		return new Iterator<ITimeAwareGraphNode>() {
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < matchingVersions.size();
+			}
+
+			@Override
+			public ITimeAwareGraphNode next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final ITimeAwareGraphNode version = original.travelInTime(matchingVersions.get(next));
+				return new WhenNodeWrapper(version, matchingVersions, next++);
+			}
+		};
+	}
+
 	@Override
 	public ITimeAwareGraphNode getEarliest() throws Exception {
 		final ITimeAwareGraphNode version = original.travelInTime(getEarliestInstant());
@@ -53,6 +53,12 @@ public class UMLModelResourceFactory implements IModelResourceFactory {
 		// nothing to do for now
 	}
 
+	@Override
+	public boolean canParseConcurrently() {
+		// Each call uses its own resource set
+		return true;
+	}
+
 	@Override
 	public boolean canParse(File f) {
 		return f.getName().toLowerCase().endsWith(".uml");
@@ -26,6 +26,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
 import org.hawk.core.graph.IGraphEdge;
@@ -447,6 +450,42 @@ public class GraphPopulationTest extends TemporaryDatabaseTest {
 		}
 	}
 
+	@Test
+	public void savedChangesVisibleToOtherThreads() throws Exception {
+		final IGraphNode n;
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			n = db.createNode(Collections.singletonMap("x", 1), "eobject");
+			tx.success();
+		}
+
+		/*
+		 * The reader always runs in the same thread, so it may keep reusing a
+		 * connection with a local cache that has the old version of the node.
+		 */
+		final Object nodeId = n.getId();
+		final Callable<Object> readX = () -> {
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				final Object value = db.getNodeById(nodeId).getProperty("x");
+				tx.success();
+				return value;
+			}
+		};
+
+		final ExecutorService reader = Executors.newSingleThreadExecutor();
+		try {
+			assertEquals(1, reader.submit(readX).get());
+
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				db.getNodeById(nodeId).setProperty("x", 2);
+				tx.success();
+			}
+			assertEquals("Reader should see the saved change, not its cached version",
+				2, reader.submit(readX).get());
+		} finally {
+			reader.shutdown();
+		}
+	}
+
 	private <T> int size(Iterable<T> it) {
 		Iterator<T> iterator = it.iterator();
 		int count = 0;
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.emf.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hawk.core.model.IHawkAttribute;
+import org.hawk.core.model.IHawkClass;
+import org.hawk.core.model.IHawkModelResource;
+import org.hawk.core.model.IHawkObject;
+import org.hawk.core.model.IHawkReference;
+import org.hawk.core.model.signature.Murmur3SignatureStrategy;
+import org.hawk.core.model.signature.SHA1SignatureStrategy;
+import org.hawk.core.model.signature.SignatureStrategies;
+import org.hawk.emf.model.EMFModelResourceFactory;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests for the computation of signatures in {@link org.hawk.emf.EMFObject}
+ * with the different signature strategies.
+ */
+public class EMFObjectSignatureTest {
+
+	private static final File MODEL = new File("resources/JDTAST.ecore");
+
+	@After
+	public void resetStrategy() {
+		SignatureStrategies.setCurrent(null);
+	}
+
+	@Test
+	public void sha1MatchesOriginalSignatures() throws Exception {
+		SignatureStrategies.setCurrent(SignatureStrategies.get(SHA1SignatureStrategy.NAME));
+		for (IHawkObject o : parse().getAllContents()) {
+			assertEquals(20, o.signature().length);
+			assertArrayEquals(o.getUriFragment(), originalSignature(o), o.signature());
+		}
+	}
+
+	@Test
+	public void murmur3SignaturesAreStable() throws Exception {
+		SignatureStrategies.setCurrent(SignatureStrategies.get(Murmur3SignatureStrategy.NAME));
+
+		final List<byte[]> first = signatures(parse());
+		final List<byte[]> second = signatures(parse());
+		assertEquals(first.size(), second.size());
+
+		final Set<String> distinct = new HashSet<>();
+		for (int i = 0; i < first.size(); i++) {
+			assertEquals(16, first.get(i).length);
+			assertArrayEquals(first.get(i), second.get(i));
+			distinct.add(toHex(first.get(i)));
+		}
+		assertEquals("Every element should have a different signature", first.size(), distinct.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void noStrategyFails() throws Exception {
+		parse().getAllContents().iterator().next().signature();
+	}
+
+	private IHawkModelResource parse() {
+		final EMFModelResourceFactory factory = new EMFModelResourceFactory();
+		factory.getModelExtensions().add(".ecore");
+		return factory.parse(null, MODEL);
+	}
+
+	private List<byte[]> signatures(IHawkModelResource resource) {
+		final List<byte[]> signatures = new ArrayList<>();
+		for (IHawkObject o : resource.getAllContents()) {
+			signatures.add(o.signature());
+		}
+		return signatures;
+	}
+
+	private String toHex(byte[] bytes) {
+		final StringBuilder sb = new StringBuilder();
+		for (byte b : bytes) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Signature algorithm used before signature strategies were introduced.
+	 */
+	@SuppressWarnings("unchecked")
+	private byte[] originalSignature(IHawkObject o) throws Exception {
+		final MessageDigest md = MessageDigest.getInstance("SHA-1");
+		md.update(o.getUri().getBytes());
+		md.update(o.getUriFragment().getBytes());
+		md.update(o.getType().getName().getBytes());
+		md.update(o.getType().getPackageNSURI().getBytes());
+
+		final IHawkClass type = (IHawkClass) o.getType();
+		for (IHawkAttribute attr : type.getAllAttributes()) {
+			if (attr.isDerived() || o.isSet(attr)) {
+				md.update(attr.getName().getBytes());
+				if (!attr.isDerived()) {
+					md.update(o.get(attr).toString().getBytes());
+				}
+			}
+		}
+		for (IHawkReference ref : type.getAllReferences()) {
+			if (o.isSet(ref)) {
+				md.update(ref.getName().getBytes());
+				final Object targets = o.get(ref, false);
+				if (targets instanceof Iterable<?>) {
+					for (IHawkObject target : (Iterable<IHawkObject>) targets) {
+						md.update(target.getUriFragment().getBytes());
+					}
+				} else {
+					md.update(((IHawkObject) targets).getUriFragment().getBytes());
+				}
+			}
+		}
+		return md.digest();
+	}
+
+}
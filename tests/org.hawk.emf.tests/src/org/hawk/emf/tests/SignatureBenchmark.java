@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.emf.tests;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawk.core.model.IHawkModelResource;
+import org.hawk.core.model.IHawkObject;
+import org.hawk.core.model.signature.SignatureStrategies;
+import org.hawk.emf.model.EMFModelResourceFactory;
+
+/**
+ * Simple benchmark for the computation of signatures of EMF model elements
+ * with each of the available signature strategies. Takes the model files to be
+ * used as arguments (by default, the JDTAST metamodel in the test resources).
+ * Signatures are cached by each element, so every iteration parses the files
+ * again and only the time spent in {@link IHawkObject#signature()} is measured.
+ */
+public class SignatureBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws Exception {
+		final List<File> files = new ArrayList<>();
+		if (args.length == 0) {
+			files.add(new File("resources/JDTAST.ecore"));
+		} else {
+			for (String arg : args) {
+				files.add(new File(arg));
+			}
+		}
+
+		final EMFModelResourceFactory factory = new EMFModelResourceFactory();
+		for (File f : files) {
+			final String name = f.getName();
+			factory.getModelExtensions().add(name.substring(name.lastIndexOf('.')));
+		}
+
+		for (String strategy : SignatureStrategies.getNames()) {
+			SignatureStrategies.setCurrent(SignatureStrategies.get(strategy));
+			for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+				run(factory, files);
+			}
+
+			long totalNanos = 0, elements = 0;
+			for (int i = 0; i < ITERATIONS; i++) {
+				final long[] result = run(factory, files);
+				totalNanos += result[0];
+				elements += result[1];
+			}
+			System.out.println(String.format("%s: %.1f ns/element (%d elements, %d iterations)",
+				strategy, totalNanos / (double) elements, elements / ITERATIONS, ITERATIONS));
+		}
+		SignatureStrategies.setCurrent(null);
+	}
+
+	private static long[] run(EMFModelResourceFactory factory, List<File> files) {
+		long nanos = 0, elements = 0;
+		for (File f : files) {
+			final IHawkModelResource resource = factory.parse(null, f);
+			final List<IHawkObject> contents = new ArrayList<>();
+			for (IHawkObject o : resource.getAllContents()) {
+				contents.add(o);
+			}
+
+			final long start = System.nanoTime();
+			for (IHawkObject o : contents) {
+				o.signature();
+			}
+			nanos += System.nanoTime() - start;
+			elements += contents.size();
+			resource.unload();
+		}
+		return new long[] { nanos, elements };
+	}
+
+}
@@ -19,10 +19,15 @@ package org.hawk.integration.tests;
 import org.hawk.backend.tests.BackendTestSuite;
 import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
 import org.hawk.integration.tests.bpmn.ModelVersioningTest;
+import org.hawk.integration.tests.emf.CompiledQueryCacheTest;
 import org.hawk.integration.tests.emf.DerivedFeatureTest;
 import org.hawk.integration.tests.emf.DerivedFromMetaPropertiesTest;
+import org.hawk.integration.tests.emf.IndexedSelectTest;
 import org.hawk.integration.tests.emf.MetamodelQueryTest;
+import org.hawk.integration.tests.emf.PipelinedSyncTest;
 import org.hawk.integration.tests.emf.ScopedQueryTest;
+import org.hawk.integration.tests.emf.SignatureStrategyRestoreTest;
+import org.hawk.integration.tests.emf.StreamingInsertTest;
 import org.hawk.integration.tests.emf.SubtreeContextTest;
 import org.hawk.integration.tests.emf.CountInstancesTest;
 import org.hawk.integration.tests.emf.TreeUpdateTest;
@@ -40,15 +45,20 @@ import com.github.peterwippermann.junit4.parameterizedsuite.ParameterizedSuite;
 
 @RunWith(ParameterizedSuite.class)
 @SuiteClasses({
+	CompiledQueryCacheTest.class,
 	CountInstancesTest.class,
 	DerivedFeatureTest.class,
 	DerivedFromMetaPropertiesTest.class,
+	IndexedSelectTest.class,
 	ManifestIndexQueryTest.class,
 	MetamodelQueryTest.class,
 	ModelioProxyResolutionTest.class,
 	ModelioMetamodelPopulationTest.class,
 	ModelVersioningTest.class,
+	PipelinedSyncTest.class,
 	ScopedQueryTest.class,
+	SignatureStrategyRestoreTest.class,
+	StreamingInsertTest.class,
 	SubtreeContextTest.class,
 	TreeUpdateTest.class,
 	UMLIndexingTest.class,
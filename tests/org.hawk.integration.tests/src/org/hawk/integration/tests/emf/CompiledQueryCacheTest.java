@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.integration.tests.emf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.hawk.backend.tests.BackendTestSuite;
+import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.core.query.IQueryEngine;
+import org.hawk.core.query.InvalidQueryException;
+import org.hawk.core.query.QueryCacheStatistics;
+import org.hawk.graph.syncValidationListener.SyncValidationListener;
+import org.hawk.integration.tests.ModelIndexingTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Checks that queries run with previously parsed modules produce the same
+ * results as freshly parsed ones, and that the cache statistics are reported.
+ */
+public class CompiledQueryCacheTest extends ModelIndexingTest {
+
+	@Rule
+	public GraphChangeListenerRule<SyncValidationListener> syncValidation
+		= new GraphChangeListenerRule<>(new SyncValidationListener());
+
+	@Parameters(name = "{0}")
+	public static Iterable<Object[]> params() {
+		return BackendTestSuite.caseParams();
+	}
+
+	public CompiledQueryCacheTest(IGraphDatabaseFactory dbf) {
+		super(dbf, new EMFModelSupportFactory());
+	}
+
+	@Test
+	public void reuseWithArguments() throws Throwable {
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/Tree.ecore"));
+		requestFolderIndex(new File("resources/models/tree"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+
+				final String query = "return childCount(label); "
+					+ "operation childCount(l) { return Tree.all.selectOne(t|t.label=l).children.size; }";
+				assertEquals(1, eol(query, arguments("t3")));
+				assertEquals(0, eol(query, arguments("t9000")));
+				assertEquals(1, eol(query, arguments("t3")));
+
+				final QueryCacheStatistics stats = getStatistics(query);
+				assertEquals(1, stats.getMisses());
+				assertEquals(2, stats.getHits());
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void invalidQueriesNotCached() throws Throwable {
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/Tree.ecore"));
+		requestFolderIndex(new File("resources/models/tree"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				final String query = "return Tree.all.size(;";
+				for (int i = 0; i < 2; i++) {
+					try {
+						eol(query);
+						fail("The query should not have parsed");
+					} catch (InvalidQueryException ex) {
+						// expected
+					}
+				}
+
+				for (QueryCacheStatistics stats : indexer.getQueryCacheStatistics()) {
+					assertFalse("Invalid queries should not be cached", stats.getQuery().equals(query));
+				}
+				return null;
+			}
+		});
+	}
+
+	private Map<String, Object> arguments(String label) {
+		return Collections.singletonMap(IQueryEngine.PROPERTY_ARGUMENTS,
+			Collections.singletonMap("label", label));
+	}
+
+	private QueryCacheStatistics getStatistics(String query) {
+		for (QueryCacheStatistics stats : indexer.getQueryCacheStatistics()) {
+			if (stats.getQuery().equals(query)) {
+				return stats;
+			}
+		}
+		throw new AssertionError("No statistics for " + query);
+	}
+
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.integration.tests.emf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
+import org.hawk.backend.tests.BackendTestSuite;
+import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.epsilon.emc.optimisation.OptimisableCollectionSelectOperation;
+import org.hawk.graph.syncValidationListener.SyncValidationListener;
+import org.hawk.integration.tests.ModelIndexingTest;
+import org.hawk.integration.tests.mm.Tree.Tree;
+import org.hawk.integration.tests.mm.Tree.TreeFactory;
+import org.hawk.integration.tests.mm.Tree.TreePackage;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runners.Parameterized.Parameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the time needed to run EOL selects over indexed attributes through
+ * the range, prefix and multi-value index lookups chosen by
+ * {@link OptimisableCollectionSelectOperation}, against the same selects
+ * evaluated on every element. Checks that both find the same elements and
+ * that the indexed selects did not fall back to a scan, and logs the timings.
+ * This is not part of the integration test suite, as it takes a while to set
+ * up: run it directly when needed.
+ */
+public class IndexLookupBenchmark extends ModelIndexingTest {
+
+	// Outside org.hawk, so LogbackOnlyErrorsRule does not silence the timings
+	private static final Logger LOGGER = LoggerFactory.getLogger("benchmarks." + IndexLookupBenchmark.class.getSimpleName());
+
+	private static final int ELEMENTS = 20_000;
+	private static final int ITERATIONS = 5;
+	private static final String XREFS_URI = "http://github.com/mondo-hawk/testing/xrefs";
+
+	@Rule
+	public TemporaryFolder modelFolder = new TemporaryFolder();
+
+	@Rule
+	public GraphChangeListenerRule<SyncValidationListener> syncValidation
+		= new GraphChangeListenerRule<>(new SyncValidationListener());
+
+	@Parameters(name = "{0}")
+	public static Iterable<Object[]> params() {
+		return BackendTestSuite.caseParams();
+	}
+
+	public IndexLookupBenchmark(IGraphDatabaseFactory dbf) {
+		super(dbf, new EMFModelSupportFactory());
+	}
+
+	@Before
+	public void populate() throws Throwable {
+		final File xrefsMetamodel = new File("resources/metamodels/crossrefs.ecore");
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/Tree.ecore"),
+			xrefsMetamodel);
+		indexer.addIndexedAttribute(TreePackage.eNS_URI, "Tree", "label");
+		indexer.addIndexedAttribute(XREFS_URI, "Element", "id");
+
+		final ResourceSetImpl rs = new ResourceSetImpl();
+		rs.getResourceFactoryRegistry().getExtensionToFactoryMap().put("*", new XMIResourceFactoryImpl());
+		rs.getPackageRegistry().put(TreePackage.eNS_URI, TreePackage.eINSTANCE);
+
+		final Resource rXrefs = rs.getResource(URI.createFileURI(xrefsMetamodel.getAbsolutePath()), true);
+		final EPackage xrefs = (EPackage) rXrefs.getContents().get(0);
+		rs.getPackageRegistry().put(xrefs.getNsURI(), xrefs);
+		rs.getResources().remove(rXrefs);
+
+		// One tree with ELEMENTS labelled children, for the string lookups
+		final Tree root = TreeFactory.eINSTANCE.createTree();
+		root.setLabel("root");
+		for (int i = 0; i < ELEMENTS; i++) {
+			final Tree child = TreeFactory.eINSTANCE.createTree();
+			child.setLabel(String.format("t%05d", i));
+			root.getChildren().add(child);
+		}
+		save(rs, "tree.xmi", root);
+
+		// One model with ELEMENTS numbered elements, for the range lookups
+		final EClass cModel = (EClass) xrefs.getEClassifier("Model");
+		final EClass cElement = (EClass) xrefs.getEClassifier("Element");
+		final EObject model = EcoreUtil.create(cModel);
+		@SuppressWarnings("unchecked")
+		final EList<EObject> elements = (EList<EObject>) model.eGet(cModel.getEStructuralFeature("elements"));
+		for (int i = 0; i < ELEMENTS; i++) {
+			final EObject element = EcoreUtil.create(cElement);
+			element.eSet(cElement.getEStructuralFeature("id"), i);
+			elements.add(element);
+		}
+		save(rs, "elements.xmi", model);
+
+		requestFolderIndex(modelFolder.getRoot());
+		waitForSync(() -> {
+			assertEquals(0, syncValidation.getListener().getTotalErrors());
+			return null;
+		});
+	}
+
+	@Test
+	public void range() throws Throwable {
+		compare("range", "Element", "e", "e.id >= 100 and e.id < 300", "e.id", 200);
+	}
+
+	@Test
+	public void prefix() throws Throwable {
+		compare("prefix", "Tree", "t", "t.label.startsWith('t012')", "t.label", 100);
+	}
+
+	@Test
+	public void includes() throws Throwable {
+		compare("includes", "Tree", "t", "Set{'t00001', 't10000', 't19999', 'missing'}.includes(t.label)", "t.label", 3);
+	}
+
+	private void compare(String name, String type, String var, String condition, String key, int expectedMatches) throws Throwable {
+		/*
+		 * asSequence turns the collection of instances into a regular EOL
+		 * sequence, so its select evaluates the condition on every element.
+		 */
+		final String indexedQuery = String.format("return %s.all.select(%s|%s).collect(%s|%s).asSet;",
+			type, var, condition, var, key);
+		final String scanQuery = String.format("return %s.all.asSequence.select(%s|%s).collect(%s|%s).asSet;",
+			type, var, condition, var, key);
+
+		long scanNanos = 0, indexNanos = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			final Collection<?> scanned = (Collection<?>) eol(scanQuery);
+			scanNanos += System.nanoTime() - start;
+
+			final long indexedBefore = OptimisableCollectionSelectOperation.getIndexedSelectCount();
+			start = System.nanoTime();
+			final Collection<?> looked = (Collection<?>) eol(indexedQuery);
+			indexNanos += System.nanoTime() - start;
+
+			assertEquals("The select should have been answered through the index",
+				indexedBefore + 1, OptimisableCollectionSelectOperation.getIndexedSelectCount());
+			assertEquals(expectedMatches, scanned.size());
+			assertEquals(scanned, looked);
+		}
+
+		LOGGER.info("{} ({}): {} matches, scan {} ms, index {} ms", name, testName.getMethodName(),
+			expectedMatches,
+			String.format("%.2f", scanNanos / 1e6 / ITERATIONS),
+			String.format("%.2f", indexNanos / 1e6 / ITERATIONS));
+	}
+
+	private void save(ResourceSetImpl rs, String filename, EObject root) throws Exception {
+		final Resource r = rs.createResource(URI.createFileURI(new File(modelFolder.getRoot(), filename).getAbsolutePath()));
+		r.getContents().add(root);
+		r.save(null);
+	}
+
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.integration.tests.emf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+
+import org.hawk.backend.tests.BackendTestSuite;
+import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.epsilon.emc.optimisation.OptimisableCollectionSelectOperation;
+import org.hawk.graph.syncValidationListener.SyncValidationListener;
+import org.hawk.integration.tests.ModelIndexingTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Checks that selects over indexed attributes produce the same results as
+ * regular selects, regardless of the plan chosen for their conditions. The
+ * numeric ranges also check that their selects were answered through the
+ * index, rather than falling back to evaluating them on every element.
+ */
+public class IndexedSelectTest extends ModelIndexingTest {
+
+	@Rule
+	public GraphChangeListenerRule<SyncValidationListener> syncValidation
+		= new GraphChangeListenerRule<>(new SyncValidationListener());
+
+	@Parameters(name = "{0}")
+	public static Iterable<Object[]> params() {
+		return BackendTestSuite.caseParams();
+	}
+
+	public IndexedSelectTest(IGraphDatabaseFactory dbf) {
+		super(dbf, new EMFModelSupportFactory());
+	}
+
+	@Test
+	public void indexedLabel() throws Throwable {
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/Tree.ecore"));
+		indexer.addIndexedAttribute("Tree", "Tree", "label");
+		requestFolderIndex(new File("resources/models/tree"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+
+				assertEquals(labels("t3"), select("t.label = 't3'"));
+				assertEquals(labels("t3"), select("t.label = 't3' and t.children.size > 0"));
+				assertEquals(labels("t9000"), select("t.children.isEmpty() and t.label = 't9000'"));
+				assertEquals(labels(), select("t.label = 't3' and t.label = 't9000'"));
+				assertEquals(labels("t3", "t9000"), select("t.label = 't3' or t.label = 't9000'"));
+				assertEquals(labels("t3", "t9000"), select("t.label = 't3' or t.children.isEmpty()"));
+				assertEquals(labels("t9000"), select("not (t.label = 't3')"));
+				assertEquals(labels("t9000"), select("t.label <> 't3'"));
+				assertEquals(labels(), select("t.label = 'missing'"));
+
+				assertEquals(labels("t9000"), select("t.label.startsWith('t9')"));
+				assertEquals(labels("t3"), select("t.label.startsWith('t3') and t.children.size > 0"));
+				assertEquals(labels(), select("t.label.startsWith('x')"));
+				assertEquals(labels("t3"), select("Set{'t3', 'missing'}.includes(t.label)"));
+				assertEquals(labels("t3", "t9000"), select("Sequence{'t9000', 't3'}.includes(t.label)"));
+				assertEquals(labels(), select("Set{}.includes(t.label)"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void indexedRanges() throws Throwable {
+		final String nsURI = "http://github.com/mondo-hawk/testing/numbers";
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/numbers.ecore"));
+		indexer.addIndexedAttribute(nsURI, "Measure", "count");
+		indexer.addIndexedAttribute(nsURI, "Measure", "size");
+		indexer.addIndexedAttribute(nsURI, "Measure", "weight");
+
+		// Measure i has count i, size 10*i and weight i+0.5, for i in [0, 20)
+		requestFolderIndex(new File("resources/models/numbers"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+
+				// int attribute, int bounds
+				assertEquals(counts(5, 6, 7), rangeSelect("m.count >= 5 and m.count < 8"));
+				assertEquals(counts(6, 7, 8), rangeSelect("m.count > 5 and m.count <= 8"));
+				assertEquals(counts(18, 19), rangeSelect("m.count > 17"));
+				assertEquals(counts(0, 1), rangeSelect("m.count <= 1"));
+				assertEquals(counts(), rangeSelect("m.count < 0"));
+				assertEquals(counts(), rangeSelect("m.count > 5 and m.count < 3"));
+				assertEquals(counts(4), rangeSelect("m.count >= 4 and m.count <= 4"));
+				assertEquals(counts(), rangeSelect("m.count > 4 and m.count <= 4"));
+
+				// int attribute, double bounds
+				assertEquals(counts(17, 18, 19), rangeSelect("m.count > 16.5"));
+				assertEquals(counts(17, 18, 19), rangeSelect("m.count >= 17.0"));
+				assertEquals(counts(18, 19), rangeSelect("m.count > 17.0"));
+				assertEquals(counts(0, 1, 2), rangeSelect("m.count < 2.5"));
+				assertEquals(counts(0, 1, 2), rangeSelect("m.count <= 2.0"));
+				assertEquals(counts(0, 1), rangeSelect("m.count < 2.0"));
+				assertEquals(counts(3, 4), rangeSelect("m.count > 2.5 and m.count < 5"));
+
+				// long attribute
+				assertEquals(counts(5, 6, 7), rangeSelect("m.size >= 50 and m.size < 80"));
+				assertEquals(counts(6, 7, 8), rangeSelect("m.size > 50 and m.size <= 80"));
+				assertEquals(counts(19), rangeSelect("m.size > 185.5"));
+				assertEquals(counts(0, 1), rangeSelect("m.size <= 19.9"));
+
+				// double attribute, double and int bounds
+				assertEquals(counts(18, 19), rangeSelect("m.weight > 17.5"));
+				assertEquals(counts(17, 18, 19), rangeSelect("m.weight >= 17.5"));
+				assertEquals(counts(0, 1), rangeSelect("m.weight < 2"));
+				assertEquals(counts(0, 1), rangeSelect("m.weight <= 1.5"));
+				assertEquals(counts(3, 4), rangeSelect("m.weight > 3 and m.weight < 5"));
+
+				// ranges on different attributes are combined
+				assertEquals(counts(5, 6), rangeSelect("m.count >= 5 and m.weight < 7 and m.size > 20"));
+				return null;
+			}
+		});
+	}
+
+	private Object rangeSelect(String condition) throws Exception {
+		final long indexedBefore = OptimisableCollectionSelectOperation.getIndexedSelectCount();
+		final Object result = eol(String.format("return Measure.all.select(m|%s).collect(m|m.count).asSet;", condition));
+		assertEquals("'" + condition + "' should have been answered through the index",
+			indexedBefore + 1, OptimisableCollectionSelectOperation.getIndexedSelectCount());
+		return result;
+	}
+
+	private HashSet<Integer> counts(Integer... counts) {
+		return new HashSet<>(Arrays.asList(counts));
+	}
+
+	private Object select(String condition) throws Exception {
+		return eol(String.format("return Tree.all.select(t|%s).collect(t|t.label).asSet;", condition));
+	}
+
+	private HashSet<String> labels(String... labels) {
+		return new HashSet<>(Arrays.asList(labels));
+	}
+}
@@ -18,15 +18,18 @@ package org.hawk.integration.tests.emf;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 
 import org.hawk.backend.tests.BackendTestSuite;
 import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
 import org.hawk.core.query.InvalidQueryException;
 import org.hawk.core.query.QueryExecutionException;
+import org.hawk.epsilon.emc.TypeResolutionCache;
 import org.hawk.graph.syncValidationListener.SyncValidationListener;
 import org.hawk.integration.tests.ModelIndexingTest;
 import org.junit.Before;
@@ -73,6 +76,26 @@ public class MetamodelQueryTest extends ModelIndexingTest {
 		assertEquals(21, eolmm(JDTAST_CORE, ".types.size"));
 	}
 
+	@Test
+	public void typeResolutionClearedOnRegistration() throws Throwable {
+		final TypeResolutionCache cache = TypeResolutionCache.forIndexer(indexer);
+		assertEquals(0, eol("return IJavaProject.all.size;"));
+		assertTrue(cache.size() > 0);
+
+		indexer.registerMetamodels(new File("resources/metamodels/Tree.ecore"));
+		assertEquals(0, cache.size());
+		assertEquals(0, eol("return Tree.all.size;"));
+	}
+
+	@Test
+	public void typeResolutionIsBounded() throws Throwable {
+		final TypeResolutionCache cache = new TypeResolutionCache(2);
+		for (String name : Arrays.asList("Missing1", "Missing2", "Missing3")) {
+			cache.getTypeNodes(indexer.getGraph(), name, (k) -> Collections.emptyList());
+		}
+		assertEquals(2, cache.size());
+	}
+
 	private Object eolmm(String uri, String suffix) throws InvalidQueryException, QueryExecutionException {
 		return eol(String.format("return Model.metamodels.selectOne(mm|mm.uri='%s')%s;", uri, suffix));
 	}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.integration.tests.emf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.HashSet;
+
+import org.hawk.backend.tests.BackendTestSuite;
+import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.core.model.signature.Murmur3SignatureStrategy;
+import org.hawk.core.model.signature.SignatureStrategies;
+import org.hawk.core.runtime.ModelIndexerImpl;
+import org.hawk.core.security.FileBasedCredentialsStore;
+import org.hawk.core.util.HawkProperties;
+import org.hawk.integration.tests.ModelIndexingTest;
+import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+
+/**
+ * Checks that reopened indexes keep the signature strategy they were created
+ * with, even if they were not reopened through the server.
+ */
+public class SignatureStrategyRestoreTest extends ModelIndexingTest {
+
+	@Parameters(name = "{0}")
+	public static Iterable<Object[]> params() {
+		return BackendTestSuite.caseParams();
+	}
+
+	public SignatureStrategyRestoreTest(IGraphDatabaseFactory dbf) {
+		super(dbf, new EMFModelSupportFactory());
+	}
+
+	@Test
+	public void newIndexUsesDefault() throws Exception {
+		assertEquals(SignatureStrategies.getDefaultForNewIndexes(), indexer.getSignatureStrategy());
+		assertEquals(SignatureStrategies.getDefaultForNewIndexes(), readProperties().getSignatureStrategy());
+	}
+
+	@Test
+	public void reopenWithoutStrategy() throws Exception {
+		// Index saved before signature strategies were recorded
+		writeProperties(null);
+
+		final ModelIndexerImpl reopened = reopen();
+		assertEquals(SignatureStrategies.LEGACY, reopened.getSignatureStrategy());
+
+		reopened.saveIndexer();
+		assertEquals(SignatureStrategies.LEGACY, readProperties().getSignatureStrategy());
+	}
+
+	@Test
+	public void reopenWithStrategy() throws Exception {
+		writeProperties(Murmur3SignatureStrategy.NAME);
+		assertEquals(Murmur3SignatureStrategy.NAME, reopen().getSignatureStrategy());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void reopenWithUnknownStrategy() throws Exception {
+		writeProperties("doesNotExist");
+		reopen();
+	}
+
+	@Test
+	public void explicitStrategyIsKept() throws Exception {
+		writeProperties(null);
+
+		final ModelIndexerImpl reopened = createReopenedIndexer();
+		reopened.setSignatureStrategy(Murmur3SignatureStrategy.NAME);
+		reopened.setDB(db, false);
+		assertEquals(Murmur3SignatureStrategy.NAME, reopened.getSignatureStrategy());
+	}
+
+	private ModelIndexerImpl reopen() throws Exception {
+		final ModelIndexerImpl reopened = createReopenedIndexer();
+		reopened.setDB(db, false);
+		return reopened;
+	}
+
+	private ModelIndexerImpl createReopenedIndexer() throws Exception {
+		final FileBasedCredentialsStore credStore = new FileBasedCredentialsStore(new File("keystore"),
+				"admin".toCharArray());
+		return new ModelIndexerImpl("reopened", indexer.getParentFolder(), credStore, console);
+	}
+
+	private File getPropertiesFile() {
+		return new File(indexer.getParentFolder(), "properties.xml");
+	}
+
+	private XStream createStream() {
+		final XStream stream = new XStream(new DomDriver());
+		stream.processAnnotations(HawkProperties.class);
+		stream.setClassLoader(HawkProperties.class.getClassLoader());
+		return stream;
+	}
+
+	private HawkProperties readProperties() {
+		return (HawkProperties) createStream().fromXML(getPropertiesFile());
+	}
+
+	private void writeProperties(String strategy) throws Exception {
+		final HawkProperties hp = new HawkProperties(db.getType(), new HashSet<String[]>(), 0, 0);
+		hp.setSignatureStrategy(strategy);
+		try (Writer w = new FileWriter(getPropertiesFile())) {
+			w.write(createStream().toXML(hp));
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.integration.tests.emf;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.concurrent.Callable;
+
+import org.hawk.backend.tests.BackendTestSuite;
+import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.graph.syncValidationListener.SyncValidationListener;
+import org.hawk.graph.updater.GraphModelBatchInjector;
+import org.hawk.integration.tests.ModelIndexingTest;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Indexes models with the single-pass insertion mode, with a spill threshold
+ * low enough that most pending references go through the spill file, and most
+ * references to earlier elements have to be resolved against the nodes moved
+ * to disk.
+ */
+public class StreamingInsertTest extends ModelIndexingTest {
+
+	@Rule
+	public GraphChangeListenerRule<SyncValidationListener> syncValidation
+		= new GraphChangeListenerRule<>(new SyncValidationListener());
+
+	@Parameters(name = "{0}")
+	public static Iterable<Object[]> params() {
+		return BackendTestSuite.caseParams();
+	}
+
+	@BeforeClass
+	public static void enableStreaming() {
+		System.setProperty(GraphModelBatchInjector.STREAMING_PROPERTY, "true");
+		System.setProperty(GraphModelBatchInjector.SPILL_THRESHOLD_PROPERTY, "2");
+	}
+
+	@AfterClass
+	public static void disableStreaming() {
+		System.clearProperty(GraphModelBatchInjector.STREAMING_PROPERTY);
+		System.clearProperty(GraphModelBatchInjector.SPILL_THRESHOLD_PROPERTY);
+	}
+
+	public StreamingInsertTest(IGraphDatabaseFactory dbf) {
+		super(dbf, new EMFModelSupportFactory());
+	}
+
+	@Test
+	public void treeCrossResourceContainment() throws Throwable {
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/Tree.ecore"));
+		requestFolderIndex(new File("resources/models/tree-xres"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+				assertEquals(3, eol("return Tree.all.size;"));
+				assertEquals(2, eol("return Tree.all.selectOne(t|t.label='root').children.size;"));
+				assertEquals("root", eol("return Tree.all.selectOne(t|t.label='xyz').eContainer.label;"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void set0Fragmented() throws Throwable {
+		indexer.registerMetamodels(
+			new File("resources/metamodels/Ecore.ecore"),
+			new File("resources/metamodels/JDTAST.ecore"));
+		requestFolderIndex(new File("resources/models/set0-fragmented"));
+
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+				assertEquals(1, eol("return IJavaProject.all.size;"));
+
+				final int reportedSize = (Integer) eol("return TypeDeclaration.all.size;");
+				final Collection<?> actualList = (Collection<?>) eol("return TypeDeclaration.all;");
+				assertEquals(reportedSize, actualList.size());
+				return null;
+			}
+		});
+	}
+
+}
@@ -17,19 +17,36 @@
 package org.hawk.integration.tests.emf;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 import org.hawk.backend.tests.BackendTestSuite;
 import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.core.VcsCommitItem;
+import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.model.IHawkObject;
+import org.hawk.core.util.GraphChangeAdapter;
+import org.hawk.graph.FileNode;
+import org.hawk.graph.GraphWrapper;
 import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.SignatureSummary;
 import org.hawk.graph.syncValidationListener.SyncValidationListener;
+import org.hawk.graph.updater.GraphModelBatchInjector;
+import org.hawk.graph.updater.GraphModelInserter;
+import org.hawk.graph.updater.GraphModelUpdater;
+import org.hawk.graph.updater.TypeCache;
 import org.hawk.integration.tests.ModelIndexingTest;
 import org.junit.Rule;
 import org.junit.Test;
@@ -41,10 +58,65 @@ import org.junit.runners.Parameterized.Parameters;
  */
 public class TreeUpdateTest extends ModelIndexingTest {
 
+	/**
+	 * Counts the non-transient changes made to model elements.
+	 */
+	private static class ElementChangeCounter extends GraphChangeAdapter {
+		private final List<String> attributeUpdates = new ArrayList<>();
+		private int additions, removals, referenceChanges;
+
+		@Override
+		public void modelElementAddition(VcsCommitItem s, IHawkObject element, IGraphNode elementNode, boolean isTransient) {
+			if (!isTransient) {
+				additions++;
+			}
+		}
+
+		@Override
+		public void modelElementRemoval(VcsCommitItem s, IGraphNode elementNode, boolean isTransient) {
+			if (!isTransient) {
+				removals++;
+			}
+		}
+
+		@Override
+		public void modelElementAttributeUpdate(VcsCommitItem s, IHawkObject eObject, String attrName, Object oldValue,
+				Object newValue, IGraphNode elementNode, boolean isTransient) {
+			if (!isTransient) {
+				attributeUpdates.add(attrName + "=" + newValue);
+			}
+		}
+
+		@Override
+		public void referenceAddition(VcsCommitItem s, IGraphNode source, IGraphNode destination, String edgelabel, boolean isTransient) {
+			if (!isTransient) {
+				referenceChanges++;
+			}
+		}
+
+		@Override
+		public void referenceRemoval(VcsCommitItem s, IGraphNode source, IGraphNode destination, String edgelabel, boolean isTransient) {
+			if (!isTransient) {
+				referenceChanges++;
+			}
+		}
+
+		public void reset() {
+			attributeUpdates.clear();
+			additions = removals = referenceChanges = 0;
+		}
+	}
+
 	@Rule
 	public GraphChangeListenerRule<SyncValidationListener> syncValidation
 		= new GraphChangeListenerRule<>(new SyncValidationListener());
 
+	@Rule
+	public GraphChangeListenerRule<ElementChangeCounter> changeCounter
+		= new GraphChangeListenerRule<>(new ElementChangeCounter());
+
+	private final List<GraphModelInserter> inserters = Collections.synchronizedList(new ArrayList<GraphModelInserter>());
+
 	@Rule
 	public TemporaryFolder modelFolder = new TemporaryFolder();
 
@@ -59,10 +131,26 @@ public class TreeUpdateTest extends ModelIndexingTest {
 
 	private Path modelPath;
 
+	@Override
+	protected GraphModelUpdater createModelUpdater() {
+		// Keep the inserters, so we can check how many nodes they loaded
+		return new GraphModelUpdater() {
+			@Override
+			public GraphModelInserter createInserter() {
+				final GraphModelInserter inserter = super.createInserter();
+				inserters.add(inserter);
+				return inserter;
+			}
+		};
+	}
+
 	public void prepare(String baseModel) throws Throwable {
 		modelPath = new File(modelFolder.getRoot(), new File(baseModel).getName()).toPath();
 		Files.copy(new File("resources/models/" + baseModel).toPath(), modelPath);
+		indexModelFolder();
+	}
 
+	private void indexModelFolder() throws Throwable {
 		indexer.registerMetamodels(new File("resources/metamodels/Ecore.ecore"));
 		indexer.registerMetamodels(new File("resources/metamodels/XMLType.ecore"));
 		indexer.registerMetamodels(new File("resources/metamodels/Tree.ecore"));
@@ -158,6 +246,105 @@ public class TreeUpdateTest extends ModelIndexingTest {
 		});
 	}
 
+	@Test
+	public void signatureSummaryUpdated() throws Throwable {
+		assumeTrue(GraphModelBatchInjector.isSignatureSummaryEnabled(db));
+		prepare("tree/tree.model");
+		replaceWith("changed-trees/add-child.model");
+		indexer.requestImmediateSync();
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+				try (IGraphTransaction tx = db.beginTransaction()) {
+					final FileNode fn = new GraphWrapper(db).getFileNodes(
+						Collections.singleton("*"), Collections.singleton("*")).iterator().next();
+					final SignatureSummary summary = fn.getSignatureSummary();
+					assertNotNull(summary);
+					assertEquals(3, summary.getElementCount());
+					tx.success();
+				}
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void signatureSummarySkipsUnchangedElements() throws Throwable {
+		assumeTrue(GraphModelBatchInjector.isSignatureSummaryEnabled(db));
+
+		final int nChildren = 1000;
+		modelPath = new File(modelFolder.getRoot(), "wide.model").toPath();
+		writeWideTree(nChildren, -1);
+		indexModelFolder();
+
+		changeCounter.getListener().reset();
+		inserters.clear();
+		writeWideTree(nChildren, nChildren / 2);
+		indexer.requestImmediateSync();
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+
+				// Only the nodes in the buckets with the changed child should have been loaded
+				assertEquals(1, inserters.size());
+				final int loaded = inserters.get(0).getLoadedNodeCount();
+				assertTrue("Loaded " + loaded + " nodes for a single change", loaded > 0 && loaded < nChildren / 2);
+
+				// No spurious changes should have been reported
+				final ElementChangeCounter counter = changeCounter.getListener();
+				assertEquals(Collections.singletonList("label=changed"), counter.attributeUpdates);
+				assertEquals(0, counter.additions);
+				assertEquals(0, counter.removals);
+				assertEquals(0, counter.referenceChanges);
+
+				assertEquals(1, eol("return Tree.all.select(t|t.label='changed').size;"));
+				assertEquals(nChildren + 1, eol("return Tree.all.size;"));
+				return null;
+			}
+		});
+	}
+
+	@Test
+	public void typeCacheKeptAcrossSyncs() throws Throwable {
+		prepare("tree/tree.model");
+		final TypeCache typeCache = TypeCache.forGraph(db);
+		assertTrue(typeCache.size() > 0);
+		final long missesBefore = typeCache.getMissCount();
+		final long hitsBefore = typeCache.getHitCount();
+
+		replaceWith("changed-trees/add-child.model");
+		indexer.requestImmediateSync();
+		waitForSync(new Callable<Object>() {
+			@Override
+			public Object call() throws Exception {
+				assertEquals(0, syncValidation.getListener().getTotalErrors());
+				assertEquals(missesBefore, typeCache.getMissCount());
+				assertTrue(typeCache.getHitCount() > hitsBefore);
+				return null;
+			}
+		});
+
+		indexer.registerMetamodels(new File("resources/metamodels/JDTAST.ecore"));
+		assertEquals(0, typeCache.size());
+	}
+
+	/**
+	 * Writes a tree with a root and <code>nChildren</code> leaves, with the
+	 * label of the <code>changed</code>-th leaf set to "changed".
+	 */
+	private void writeWideTree(int nChildren, int changed) throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"ASCII\"?>\n");
+		sb.append("<Tree:Tree xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:Tree=\"Tree\" xmi:id=\"root\" label=\"root\">\n");
+		for (int i = 0; i < nChildren; i++) {
+			sb.append(String.format("  <children xmi:id=\"c%d\" label=\"%s\"/>\n", i, i == changed ? "changed" : "c" + i));
+		}
+		sb.append("</Tree:Tree>\n");
+		Files.write(modelPath, sb.toString().getBytes("US-ASCII"));
+	}
+
 	private void replaceWith(final String replacement) throws IOException {
 		final File replacementFile = new File("resources/models/" + replacement);
 		Files.copy(replacementFile.toPath(), modelPath,
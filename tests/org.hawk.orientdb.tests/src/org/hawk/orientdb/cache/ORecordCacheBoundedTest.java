@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.orientdb.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.Test;
+
+import com.orientechnologies.orient.core.id.ORID;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+
+/**
+ * Unit tests for the eviction, admission and weight accounting of
+ * {@link ORecordCacheBounded}. Every record used here has the same weight.
+ */
+public class ORecordCacheBoundedTest {
+
+	private static final int RECORD_SIZE = 104;
+	private static final int RECORD_WEIGHT = 200;
+
+	@Test
+	public void evictsLeastRecentlyUsed() {
+		final ORecordCacheBounded cache = new ORecordCacheBounded(3 * RECORD_WEIGHT, 0);
+		final ORecord a = record(1, 0), b = record(1, 1), c = record(1, 2), d = record(1, 3);
+		cache.put(a);
+		cache.put(b);
+		cache.put(c);
+		assertSame(a, cache.get(a.getIdentity()));
+
+		// d needs to be requested more often than b to be admitted
+		requestMissing(cache, d.getIdentity(), 3);
+		cache.put(d);
+
+		assertKeys(cache, a, c, d);
+		assertEquals(3 * RECORD_WEIGHT, cache.getWeight());
+	}
+
+	@Test
+	public void rejectsRarelyRequestedRecords() {
+		final ORecordCacheBounded cache = new ORecordCacheBounded(3 * RECORD_WEIGHT, 0);
+		final ORecord a = record(1, 0), b = record(1, 1), c = record(1, 2);
+		for (ORecord r : Arrays.asList(a, b, c)) {
+			cache.put(r);
+			requestMissing(cache, r.getIdentity(), 3);
+		}
+
+		// A scan over many records requested only once should not flush out the others
+		for (int i = 10; i < 20; i++) {
+			assertNull(cache.put(record(1, i)));
+		}
+		assertKeys(cache, a, b, c);
+	}
+
+	@Test
+	public void weightIsBounded() {
+		final int maxWeight = 5 * RECORD_WEIGHT;
+		final ORecordCacheBounded cache = new ORecordCacheBounded(maxWeight, 0);
+		for (int i = 0; i < 50; i++) {
+			final ORecord r = record(1 + i % 3, i);
+			requestMissing(cache, r.getIdentity(), 1 + i);
+			cache.put(r);
+			assertTrue("Weight should not go over the limit", cache.getWeight() <= maxWeight);
+			assertEquals(cache.size() * RECORD_WEIGHT, cache.getWeight());
+		}
+		assertEquals(5, cache.size());
+
+		// Records heavier than the whole cache are never admitted
+		final ORecordBytes big = new ORecordBytes(new byte[maxWeight]);
+		ORecordInternal.setIdentity(big, new ORecordId(1, 100));
+		requestMissing(cache, big.getIdentity(), 10);
+		cache.put(big);
+		assertNull(cache.get(big.getIdentity()));
+		assertEquals(maxWeight, cache.getWeight());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+	}
+
+	@Test
+	public void clusterWeightIsBounded() {
+		final ORecordCacheBounded cache = new ORecordCacheBounded(10 * RECORD_WEIGHT, 2 * RECORD_WEIGHT);
+		final ORecord a = record(1, 0), b = record(1, 1), c = record(1, 2), other = record(2, 0);
+		cache.put(other);
+		cache.put(a);
+		cache.put(b);
+		requestMissing(cache, c.getIdentity(), 3);
+		cache.put(c);
+
+		// Only the least recently used record of cluster 1 is evicted
+		assertKeys(cache, other, b, c);
+		assertEquals(3 * RECORD_WEIGHT, cache.getWeight());
+	}
+
+	@Test
+	public void replacingKeepsWeight() {
+		final ORecordCacheBounded cache = new ORecordCacheBounded(3 * RECORD_WEIGHT, 0);
+		final ORecord a = record(1, 0);
+		cache.put(a);
+
+		final ORecord newA = record(1, 0);
+		assertSame(a, cache.put(newA));
+		assertSame(newA, cache.get(new ORecordId(1, 0)));
+		assertEquals(1, cache.size());
+		assertEquals(RECORD_WEIGHT, cache.getWeight());
+	}
+
+	@Test
+	public void identityChangesDoNotRekeyEntries() {
+		final ORecordCacheBounded cache = new ORecordCacheBounded(3 * RECORD_WEIGHT, 2 * RECORD_WEIGHT);
+		final ORecord r = record(1, -2);
+		cache.put(r);
+
+		// OrientDB changes the identity of new records in place when saving them
+		ORecordInternal.setIdentity(r, 1, 5);
+		assertNull(cache.get(new ORecordId(1, 5)));
+		assertSame(r, cache.get(new ORecordId(1, -2)));
+
+		// The entry can still be removed under its original ID
+		assertSame(r, cache.remove(new ORecordId(1, -2)));
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getWeight());
+
+		// ... and evicted, without breaking the accounting
+		final ORecord s = record(1, -3);
+		cache.put(s);
+		ORecordInternal.setIdentity(s, 1, 6);
+		for (int i = 0; i < 3; i++) {
+			final ORecord t = record(1, i);
+			requestMissing(cache, t.getIdentity(), 3 + i);
+			cache.put(t);
+		}
+		assertKeys(cache, record(1, 1), record(1, 2));
+		assertEquals(2 * RECORD_WEIGHT, cache.getWeight());
+	}
+
+	private static ORecord record(int clusterId, long clusterPosition) {
+		final ORecordBytes record = new ORecordBytes(new byte[RECORD_SIZE]);
+		ORecordInternal.setIdentity(record, new ORecordId(clusterId, clusterPosition));
+		return record;
+	}
+
+	private static void requestMissing(ORecordCacheBounded cache, ORID rid, int times) {
+		for (int i = 0; i < times; i++) {
+			cache.get(rid);
+		}
+	}
+
+	private static void assertKeys(ORecordCacheBounded cache, ORecord... expected) {
+		final HashSet<ORID> expectedIds = new HashSet<>();
+		for (ORecord r : expected) {
+			expectedIds.add(r.getIdentity());
+		}
+		assertEquals(expectedIds, new HashSet<>(cache.keys()));
+	}
+
+}
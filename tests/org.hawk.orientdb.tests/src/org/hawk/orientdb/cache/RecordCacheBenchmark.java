@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.orientdb.cache;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.orientechnologies.orient.core.cache.ORecordCache;
+import com.orientechnologies.orient.core.id.ORecordId;
+import com.orientechnologies.orient.core.record.ORecord;
+import com.orientechnologies.orient.core.record.ORecordInternal;
+import com.orientechnologies.orient.core.record.impl.ORecordBytes;
+
+/**
+ * Replays a trace of record lookups against {@link ORecordCacheGuava} and
+ * {@link ORecordCacheBounded}, loading the record after every miss as
+ * OrientDB would, and logs the hit rate and the time taken by each cache.
+ * This is not run by the build: run it directly when needed.
+ *
+ * The trace is read from the file in the {@link #TRACE_PROPERTY} system
+ * property, with one "<code>#cluster:position size</code>" lookup per line.
+ * If it is not set, a synthetic trace is generated instead: a skewed workload
+ * over a set of frequently used records, interleaved with scans over records
+ * which are only read once.
+ */
+public class RecordCacheBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RecordCacheBenchmark.class);
+
+	public static final String TRACE_PROPERTY = "hawk.orient.recordCache.benchmarkTrace";
+
+	private static final int ITERATIONS = 5;
+	private static final long MAX_WEIGHT = ORecordCacheBounded.DEFAULT_MAX_WEIGHT;
+
+	private static final int SYNTHETIC_LOOKUPS = 2_000_000;
+	private static final int SYNTHETIC_HOT_RECORDS = 50_000;
+	private static final int SYNTHETIC_SCAN_EVERY = 200_000;
+	private static final int SYNTHETIC_SCAN_LENGTH = 50_000;
+	private static final int SYNTHETIC_RECORD_SIZE = 300;
+
+	private static final class Lookup {
+		final int clusterId;
+		final long clusterPosition;
+		final int size;
+
+		Lookup(int clusterId, long clusterPosition, int size) {
+			this.clusterId = clusterId;
+			this.clusterPosition = clusterPosition;
+			this.size = size;
+		}
+	}
+
+	private static List<Lookup> trace;
+
+	@BeforeClass
+	public static void loadTrace() throws IOException {
+		final String tracePath = System.getProperty(TRACE_PROPERTY);
+		trace = tracePath == null ? syntheticTrace() : readTrace(new File(tracePath));
+	}
+
+	@Test
+	public void guava() {
+		replay("guava", ORecordCacheGuava::new);
+	}
+
+	@Test
+	public void bounded() {
+		replay("bounded", () -> new ORecordCacheBounded(MAX_WEIGHT, 0));
+	}
+
+	private void replay(String name, Supplier<ORecordCache> cacheFactory) {
+		long hits = 0, nanos = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			final ORecordCache cache = cacheFactory.get();
+			final long start = System.nanoTime();
+			for (Lookup lookup : trace) {
+				final ORecordId rid = new ORecordId(lookup.clusterId, lookup.clusterPosition);
+				if (cache.get(rid) != null) {
+					hits++;
+				} else {
+					cache.put(load(rid, lookup.size));
+				}
+			}
+			nanos += System.nanoTime() - start;
+			cache.shutdown();
+		}
+
+		final double hitRate = hits / (double) (trace.size() * ITERATIONS);
+		assertTrue(hitRate >= 0 && hitRate <= 1);
+		LOGGER.info("{}: {} lookups, hit rate {}, {} ms", name, trace.size(),
+			String.format("%.3f", hitRate), String.format("%.2f", nanos / 1e6 / ITERATIONS));
+	}
+
+	private static ORecord load(ORecordId rid, int size) {
+		final ORecordBytes record = new ORecordBytes(new byte[size]);
+		ORecordInternal.setIdentity(record, rid);
+		return record;
+	}
+
+	private static List<Lookup> readTrace(File f) throws IOException {
+		final List<Lookup> lookups = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new FileReader(f))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				}
+				final String[] parts = line.split("\\s+");
+				final ORecordId rid = new ORecordId(parts[0]);
+				final int size = parts.length > 1 ? Integer.parseInt(parts[1]) : SYNTHETIC_RECORD_SIZE;
+				lookups.add(new Lookup(rid.getClusterId(), rid.getClusterPosition(), size));
+			}
+		}
+		return lookups;
+	}
+
+	private static List<Lookup> syntheticTrace() {
+		final Random rnd = new Random(42);
+		final List<Lookup> lookups = new ArrayList<>(SYNTHETIC_LOOKUPS);
+		long nextScanned = 0;
+		int sinceScan = 0;
+		while (lookups.size() < SYNTHETIC_LOOKUPS) {
+			if (++sinceScan == SYNTHETIC_SCAN_EVERY) {
+				for (int i = 0; i < SYNTHETIC_SCAN_LENGTH; i++) {
+					lookups.add(new Lookup(2, nextScanned++, SYNTHETIC_RECORD_SIZE));
+				}
+				sinceScan = 0;
+			} else {
+				// Roughly Zipf-like: lower positions are requested much more often
+				final double u = rnd.nextDouble();
+				final long position = (long) (SYNTHETIC_HOT_RECORDS * u * u * u);
+				lookups.add(new Lookup(1, position, SYNTHETIC_RECORD_SIZE));
+			}
+		}
+		return lookups;
+	}
+
+}
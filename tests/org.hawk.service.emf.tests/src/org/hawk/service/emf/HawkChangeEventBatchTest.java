@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.emf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.activemq.artemis.api.core.ActiveMQBuffer;
+import org.apache.activemq.artemis.api.core.ActiveMQBuffers;
+import org.apache.activemq.artemis.api.core.SimpleString;
+import org.apache.activemq.artemis.api.core.client.ClientMessage;
+import org.apache.thrift.protocol.TProtocolFactory;
+import org.hawk.service.api.CommitItem;
+import org.hawk.service.api.CommitItemChangeType;
+import org.hawk.service.api.HawkAttributeRemovalEvent;
+import org.hawk.service.api.HawkAttributeUpdateEvent;
+import org.hawk.service.api.HawkChangeEvent;
+import org.hawk.service.api.HawkModelElementRemovalEvent;
+import org.hawk.service.api.HawkSynchronizationStartEvent;
+import org.hawk.service.api.SlotValue;
+import org.hawk.service.api.utils.ActiveMQBufferTransport;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.api.utils.HawkChangeEventBatch;
+import org.junit.Test;
+
+/**
+ * Tests for the coalescing of attribute events and the encoding of the
+ * messages read through {@link HawkChangeEventBatch}. Messages are simulated
+ * by a proxy which only keeps a body buffer and the names and values of its
+ * properties.
+ */
+public class HawkChangeEventBatchTest {
+
+	private static final CommitItem VCS_ITEM = new CommitItem(
+		"file:///repo", "1", "/model.xmi", CommitItemChangeType.UPDATED);
+
+	@Test
+	public void coalesceKeepsLastAttributeEvent() {
+		final HawkChangeEvent first = update("a", "x", "1");
+		final HawkChangeEvent other = update("b", "x", "2");
+		final HawkChangeEvent otherAttribute = update("a", "y", "3");
+		final HawkChangeEvent removal = removal("a", "x");
+		final HawkChangeEvent last = update("b", "x", "4");
+
+		assertEquals(Arrays.asList(otherAttribute, removal, last),
+			HawkChangeEventBatch.coalesceAttributeEvents(
+				Arrays.asList(first, other, otherAttribute, removal, last)));
+	}
+
+	@Test
+	public void coalesceKeepsOtherEvents() {
+		final HawkChangeEvent syncStart = HawkChangeEvent.syncStart(new HawkSynchronizationStartEvent(1));
+		final HawkChangeEvent elementRemoval = HawkChangeEvent.modelElementRemoval(
+			new HawkModelElementRemovalEvent(VCS_ITEM, "a"));
+		final HawkChangeEvent update = update("a", "x", "1");
+
+		final List<HawkChangeEvent> events = Arrays.asList(syncStart, elementRemoval, elementRemoval, update);
+		assertEquals(events, HawkChangeEventBatch.coalesceAttributeEvents(events));
+		assertTrue(HawkChangeEventBatch.coalesceAttributeEvents(Collections.<HawkChangeEvent>emptyList()).isEmpty());
+	}
+
+	@Test
+	public void batchedRoundTrip() throws Exception {
+		final List<HawkChangeEvent> events = Arrays.asList(
+			HawkChangeEvent.syncStart(new HawkSynchronizationStartEvent(1)),
+			update("a", "x", "1"),
+			removal("a", "y"),
+			HawkChangeEvent.modelElementRemoval(new HawkModelElementRemovalEvent(VCS_ITEM, "b")));
+
+		for (ThriftProtocol protocol : ThriftProtocol.values()) {
+			final TProtocolFactory protocolFactory = protocol.getProtocolFactory();
+			final Map<SimpleString, Object> properties = new HashMap<>();
+			final ClientMessage msg = message(properties);
+
+			HawkChangeEventBatch.write(msg, protocolFactory, events);
+			assertEquals(events.size(), properties.get(HawkChangeEventBatch.BATCH_SIZE_PROPERTY));
+			assertEquals(protocol.name(), events, HawkChangeEventBatch.read(msg, protocolFactory));
+		}
+	}
+
+	@Test
+	public void singleEventRoundTrip() throws Exception {
+		final HawkChangeEvent event = update("a", "x", "1");
+
+		for (ThriftProtocol protocol : ThriftProtocol.values()) {
+			final TProtocolFactory protocolFactory = protocol.getProtocolFactory();
+			final Map<SimpleString, Object> properties = new HashMap<>();
+			final ClientMessage msg = message(properties);
+
+			// Messages without batching have the event as their body
+			event.write(protocolFactory.getProtocol(new ActiveMQBufferTransport(msg.getBodyBuffer())));
+			assertFalse(properties.containsKey(HawkChangeEventBatch.BATCH_SIZE_PROPERTY));
+			assertEquals(protocol.name(), Collections.singletonList(event), HawkChangeEventBatch.read(msg, protocolFactory));
+		}
+	}
+
+	private static HawkChangeEvent update(String id, String attribute, String value) {
+		return HawkChangeEvent.modelElementAttributeUpdate(
+			new HawkAttributeUpdateEvent(VCS_ITEM, id, attribute, SlotValue.vString(value)));
+	}
+
+	private static HawkChangeEvent removal(String id, String attribute) {
+		return HawkChangeEvent.modelElementAttributeRemoval(new HawkAttributeRemovalEvent(VCS_ITEM, id, attribute));
+	}
+
+	/**
+	 * Returns a message with an empty body, which stores its properties in the
+	 * specified map.
+	 */
+	private static ClientMessage message(final Map<SimpleString, Object> properties) {
+		final ActiveMQBuffer body = ActiveMQBuffers.dynamicBuffer(256);
+		return (ClientMessage) Proxy.newProxyInstance(ClientMessage.class.getClassLoader(),
+			new Class<?>[] { ClientMessage.class }, new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) {
+					switch (method.getName()) {
+					case "getBodyBuffer":
+						return body;
+					case "putIntProperty":
+						properties.put(toSimpleString(args[0]), args[1]);
+						return proxy;
+					case "containsProperty":
+						return properties.containsKey(toSimpleString(args[0]));
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				}
+			});
+	}
+
+	private static SimpleString toSimpleString(Object key) {
+		return key instanceof SimpleString ? (SimpleString) key : new SimpleString(key.toString());
+	}
+
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import org.hawk.core.IModelIndexer;
+import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.query.IAccessListener;
+import org.hawk.core.query.IQueryEngine;
+import org.hawk.core.query.InvalidQueryException;
+import org.hawk.core.query.QueryExecutionException;
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.QueryResult;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that synchronous and asynchronous queries through
+ * {@link HawkThriftIface} respect the query concurrency limit of the instance.
+ */
+public class QueryConcurrencyTest {
+
+	private static final String INSTANCE = "queryConcurrencyTest";
+	private static final long TIMEOUT_MILLIS = 10_000;
+
+	/**
+	 * Query engine whose queries block until released, keeping track of how
+	 * many of them run at once.
+	 */
+	private static class BlockingQueryEngine implements IQueryEngine {
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicInteger maxRunning = new AtomicInteger();
+		private final AtomicInteger cancelled = new AtomicInteger();
+		private volatile CountDownLatch release = new CountDownLatch(1);
+		private volatile CountDownLatch beforeRegisteringCancel = new CountDownLatch(0);
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public Object query(IModelIndexer m, String query, Map<String, Object> context)
+				throws InvalidQueryException, QueryExecutionException {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				beforeRegisteringCancel.await();
+				final Consumer<Runnable> cancelConsumer = (Consumer<Runnable>) context.get(PROPERTY_CANCEL_CONSUMER);
+				if (cancelConsumer != null) {
+					cancelConsumer.accept(cancelled::incrementAndGet);
+				}
+				release.await();
+			} catch (InterruptedException e) {
+				throw new QueryExecutionException(e);
+			} finally {
+				running.decrementAndGet();
+			}
+			return query;
+		}
+
+		@Override
+		public IAccessListener calculateDerivedAttributes(IModelIndexer m, Iterable<IGraphNode> nodes) {
+			return null;
+		}
+
+		@Override
+		public List<String> validate(String derivationlogic) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void setDefaultNamespaces(String defaultNamespaces) {
+			// not used
+		}
+
+		@Override
+		public String getHumanReadableName() {
+			return "Blocking query engine for tests";
+		}
+	}
+
+	private static HawkThriftIface iface;
+	private static HModel model;
+	private static BlockingQueryEngine engine;
+
+	private ExecutorService executor;
+
+	@BeforeClass
+	public static void createInstance() throws Exception {
+		iface = new HawkThriftIface(ThriftProtocol.TUPLE, null, null);
+		iface.createInstance(INSTANCE, "org.hawk.orientdb.OrientDatabase", 0, 0, Arrays.asList(
+			"org.hawk.emf.metamodel.EMFMetaModelResourceFactory",
+			"org.hawk.emf.model.EMFModelResourceFactory",
+			"org.hawk.graph.updater.GraphModelUpdater"), null);
+		model = HManager.getInstance().getHawkByName(INSTANCE);
+
+		engine = new BlockingQueryEngine();
+		model.getIndexer().addQueryEngine(engine);
+	}
+
+	@AfterClass
+	public static void removeInstance() throws Exception {
+		iface.removeInstance(INSTANCE);
+	}
+
+	@Before
+	public void setUp() {
+		executor = Executors.newCachedThreadPool();
+		engine.release = new CountDownLatch(1);
+		engine.beforeRegisteringCancel = new CountDownLatch(0);
+		engine.maxRunning.set(0);
+		engine.cancelled.set(0);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		engine.release.countDown();
+		executor.shutdown();
+		executor.awaitTermination(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		model.setQueryConcurrency(Runtime.getRuntime().availableProcessors());
+	}
+
+	@Test
+	public void syncQueriesWaitForSlot() throws Exception {
+		model.setQueryConcurrency(2);
+
+		final List<Future<QueryResult>> results = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			final String query = "q" + i;
+			results.add(executor.submit(() -> iface.query(INSTANCE, query, engine.getType(), new HawkQueryOptions())));
+		}
+		waitUntil(() -> engine.running.get() == 2 && model.getWaitingQueryCount() == 3);
+
+		engine.release.countDown();
+		for (int i = 0; i < results.size(); i++) {
+			assertEquals("q" + i, results.get(i).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getVString());
+		}
+		assertEquals(2, engine.maxRunning.get());
+	}
+
+	@Test
+	public void cancelAsyncQueryWaitingForSlot() throws Exception {
+		model.setQueryConcurrency(1);
+
+		final Future<QueryResult> blocking = executor.submit(
+			() -> iface.query(INSTANCE, "blocking", engine.getType(), new HawkQueryOptions()));
+		waitUntil(() -> engine.running.get() == 1);
+
+		final String uuid = iface.asyncQuery(INSTANCE, "waiting", engine.getType(), new HawkQueryOptions());
+		waitUntil(() -> model.getWaitingQueryCount() == 1);
+
+		// Cancelling should stop the wait, without taking the slot of the running query
+		iface.cancelAsyncQuery(uuid);
+		waitUntil(() -> model.getWaitingQueryCount() == 0);
+		assertEquals(1, engine.running.get());
+
+		engine.release.countDown();
+		assertEquals("blocking", blocking.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getVString());
+		assertEquals(1, engine.maxRunning.get());
+	}
+
+	@Test
+	public void cancelAsyncQueryBeforeEngineRegisters() throws Exception {
+		engine.beforeRegisteringCancel = new CountDownLatch(1);
+		final String uuid = iface.asyncQuery(INSTANCE, "late", engine.getType(), new HawkQueryOptions());
+		waitUntil(() -> engine.running.get() == 1);
+
+		// The cancellation arrives before the engine can be told: it should not be lost
+		iface.cancelAsyncQuery(uuid);
+		engine.beforeRegisteringCancel.countDown();
+		waitUntil(() -> engine.cancelled.get() == 1);
+	}
+
+	private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (!condition.getAsBoolean()) {
+			assertTrue("Timed out waiting for the queries", System.currentTimeMillis() < deadline);
+			Thread.sleep(50);
+		}
+	}
+
+}
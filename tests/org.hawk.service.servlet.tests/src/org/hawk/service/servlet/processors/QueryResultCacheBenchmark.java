@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.QueryResult;
+import org.hawk.service.api.Repository;
+import org.hawk.service.api.utils.APIUtils;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.servlet.processors.QueryResultCache.Invalidation;
+import org.hawk.service.servlet.processors.QueryResultCache.Lookup;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a commit trace over a folder of models, and compares the hit rates
+ * of {@link QueryResultCache} under {@link Invalidation#FILE} and
+ * {@link Invalidation#INDEX} for the same queries. After each commit, every
+ * file is queried on its own (as a client browsing the files would do), and
+ * the whole index is queried twice: once only for the number of elements,
+ * and once reading every element. Cached results are checked against freshly
+ * computed ones, so a file-level invalidation that keeps a stale result fails
+ * the benchmark.
+ *
+ * The trace is generated from a fixed seed, following the usual shape of
+ * version control histories: most commits touch one to three files, a few
+ * "hot" files receive most of the commits (Zipf-distributed), most changes
+ * edit existing elements rather than add or remove them, and new files are
+ * added every so often. This is not part of the test suite, as it takes a
+ * while to run: run it directly when needed.
+ */
+public class QueryResultCacheBenchmark {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCacheBenchmark.class);
+
+	private static final String INSTANCE = "queryResultCacheBenchmark";
+	private static final String TREE_METAMODEL = "resources/Tree/Tree.ecore";
+	private static final String EOL = "org.hawk.epsilon.emc.EOLQueryEngine";
+
+	private static final long SEED = 42;
+	private static final int INITIAL_FILES = 20;
+	private static final int CHILDREN_PER_FILE = 10;
+	private static final int COMMITS = 100;
+	private static final int NEW_FILE_EVERY = 20;
+
+	/**
+	 * Each commit sets a later modification time on the files it changes, so
+	 * LocalFolder notices them even if they keep their size.
+	 */
+	private static final long BASE_MILLIS = 1_500_000_000_000L;
+
+	private static final class TreeFile {
+		private final String path;
+		private final List<String> labels = new ArrayList<>();
+		private int nextChild = 0;
+
+		public TreeFile(String path) {
+			this.path = path;
+			for (int i = 0; i < CHILDREN_PER_FILE; i++) {
+				addChild();
+			}
+		}
+
+		public String getName() {
+			return path.substring(1, path.lastIndexOf('.'));
+		}
+
+		public void addChild() {
+			labels.add(getName() + "." + nextChild++);
+		}
+
+		public void write(int commit) throws IOException {
+			final File f = new File(modelFolder.getRoot(), path);
+			try (PrintWriter pw = new PrintWriter(f, "UTF-8")) {
+				pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+				pw.println(String.format("<Tree:Tree xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:Tree=\"Tree\" label=\"%s\">", getName()));
+				for (String label : labels) {
+					pw.println(String.format("<children label=\"%s\"/>", label));
+				}
+				pw.println("</Tree:Tree>");
+			}
+			f.setLastModified(BASE_MILLIS + commit * 1000L);
+		}
+	}
+
+	private static final class Query {
+		private final String eol;
+		private final HawkQueryOptions options = new HawkQueryOptions();
+
+		public Query(String eol, String filePattern) {
+			this.eol = eol;
+			if (filePattern != null) {
+				options.setFilePatterns(Collections.singletonList(filePattern));
+			}
+		}
+
+		@Override
+		public String toString() {
+			return options.isSetFilePatterns() ? eol + " on " + options.getFilePatterns() : eol;
+		}
+	}
+
+	private static final class HitRate {
+		private int lookups, hits;
+
+		@Override
+		public String toString() {
+			return String.format("%.1f%% (%d/%d)", 100.0 * hits / lookups, hits, lookups);
+		}
+	}
+
+	@ClassRule
+	public static TemporaryFolder modelFolder = new TemporaryFolder();
+
+	private static HawkThriftIface iface;
+	private static HModel model;
+	private static final List<TreeFile> files = new ArrayList<>();
+
+	@BeforeClass
+	public static void createInstance() throws Exception {
+		for (int i = 0; i < INITIAL_FILES; i++) {
+			final TreeFile file = new TreeFile(String.format("/f%02d.xmi", i));
+			file.write(0);
+			files.add(file);
+		}
+
+		iface = new HawkThriftIface(ThriftProtocol.TUPLE, null, null);
+		iface.createInstance(INSTANCE, "org.hawk.orientdb.OrientDatabase", 0, 0, Arrays.asList(
+			"org.hawk.emf.metamodel.EMFMetaModelResourceFactory",
+			"org.hawk.emf.model.EMFModelResourceFactory",
+			"org.hawk.graph.updater.GraphModelUpdater"), null);
+		model = HManager.getInstance().getHawkByName(INSTANCE);
+
+		iface.registerMetamodels(INSTANCE, Arrays.asList(
+			APIUtils.convertJavaFileToThriftFile(new File(TREE_METAMODEL))));
+		iface.addRepository(INSTANCE, new Repository(
+			modelFolder.getRoot().toPath().toUri().toString(), "org.hawk.localfolder.LocalFolder"), null);
+		iface.syncInstance(INSTANCE, true);
+	}
+
+	@AfterClass
+	public static void removeInstance() throws Exception {
+		iface.removeInstance(INSTANCE);
+	}
+
+	@Test
+	public void replayTrace() throws Exception {
+		final QueryResultCache fileCache = new QueryResultCache(10_000_000, 3_600, Invalidation.FILE, 100_000);
+		final QueryResultCache indexCache = new QueryResultCache(10_000_000, 3_600, Invalidation.INDEX, 100_000);
+		final HitRate fileRate = new HitRate(), indexRate = new HitRate();
+
+		final Random rnd = new Random(SEED);
+		for (int commit = 0; commit <= COMMITS; commit++) {
+			if (commit > 0) {
+				commit(rnd, commit);
+				iface.syncInstance(INSTANCE, true);
+			}
+
+			for (Query q : getQueries()) {
+				final QueryResult expected = iface.runQuery(model, q.eol, EOL, q.options, null, null);
+				ask(fileCache, q, expected, fileRate);
+				ask(indexCache, q, expected, indexRate);
+			}
+		}
+
+		LOGGER.info("{} commits over {} files: hit rate {} with file invalidation, {} with index invalidation",
+			COMMITS, files.size(), fileRate, indexRate);
+		assertTrue("File invalidation should keep more results than index invalidation",
+			fileRate.hits > indexRate.hits);
+	}
+
+	private List<Query> getQueries() {
+		final List<Query> queries = new ArrayList<>();
+		for (TreeFile file : files) {
+			queries.add(new Query("return Tree.all.collect(t|t.label).sortBy(l|l);", file.path));
+		}
+		queries.add(new Query("return Tree.all.size();", null));
+		queries.add(new Query("return Tree.all.select(t|t.label.endsWith('.0')).size();", null));
+		return queries;
+	}
+
+	private void ask(QueryResultCache cache, Query q, QueryResult expected, HitRate rate) throws Exception {
+		final Lookup lookup = cache.lookup(model, EOL, q.eol, q.options);
+		final QueryResult cached = lookup.getCachedResult();
+		if (cached != null) {
+			assertEquals("Cached result of " + q + " should be up to date", expected, cached);
+			rate.hits++;
+		} else {
+			iface.runQuery(model, q.eol, EOL, q.options, null, lookup);
+		}
+		rate.lookups++;
+	}
+
+	private void commit(Random rnd, int commit) throws IOException {
+		if (commit % NEW_FILE_EVERY == 0) {
+			final TreeFile file = new TreeFile(String.format("/f%02d.xmi", files.size()));
+			file.write(commit);
+			files.add(file);
+		}
+
+		final double pFiles = rnd.nextDouble();
+		final int nFiles = pFiles < 0.6 ? 1 : pFiles < 0.9 ? 2 : 3;
+		final Set<TreeFile> touched = new LinkedHashSet<>();
+		while (touched.size() < nFiles) {
+			touched.add(files.get(pickZipf(rnd, files.size())));
+		}
+
+		for (TreeFile file : touched) {
+			final double pChange = rnd.nextDouble();
+			if (pChange < 0.8 || pChange >= 0.95 && file.labels.size() <= 1) {
+				final int i = rnd.nextInt(file.labels.size());
+				file.labels.set(i, file.labels.get(i) + "r");
+			} else if (pChange < 0.95) {
+				file.addChild();
+			} else {
+				file.labels.remove(rnd.nextInt(file.labels.size()));
+			}
+			file.write(commit);
+		}
+	}
+
+	/**
+	 * Picks an index in <code>[0, n)</code>, where index <code>i</code> has a
+	 * weight of <code>1/(i+1)</code>.
+	 */
+	private static int pickZipf(Random rnd, int n) {
+		double total = 0;
+		for (int i = 0; i < n; i++) {
+			total += 1.0 / (i + 1);
+		}
+
+		double target = rnd.nextDouble() * total;
+		for (int i = 0; i < n; i++) {
+			target -= 1.0 / (i + 1);
+			if (target < 0) {
+				return i;
+			}
+		}
+		return n - 1;
+	}
+
+}
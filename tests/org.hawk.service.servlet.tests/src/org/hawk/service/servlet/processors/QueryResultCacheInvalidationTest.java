@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.hawk.core.IVcsManager;
+import org.hawk.core.VcsCommit;
+import org.hawk.core.VcsCommitItem;
+import org.hawk.core.VcsRepositoryDelta;
+import org.hawk.core.graph.IGraphNode;
+import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.core.runtime.CompositeGraphChangeListener;
+import org.hawk.graph.GraphWrapper;
+import org.hawk.graph.ModelElementNode;
+import org.hawk.graph.updater.GraphModelUpdater;
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.Repository;
+import org.hawk.service.api.utils.APIUtils;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.servlet.processors.QueryResultCache.Changes;
+import org.hawk.service.servlet.processors.QueryResultCache.Dependencies;
+import org.hawk.service.servlet.processors.QueryResultCache.InstanceGeneration;
+import org.hawk.service.servlet.processors.QueryResultCache.Invalidation;
+import org.hawk.service.servlet.processors.QueryResultCache.Lookup;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for the {@link Invalidation#FILE} mode of {@link QueryResultCache}:
+ * which changes affect the dependencies of a result, and how the changes are
+ * collected from the graph change notifications. The notifications are sent
+ * directly to an {@link InstanceGeneration}, using the nodes of an indexed
+ * model with two files.
+ */
+public class QueryResultCacheInvalidationTest {
+
+	private static final String INSTANCE = "queryResultCacheInvalidationTest";
+	private static final String TREE_METAMODEL = "resources/Tree/Tree.ecore";
+	private static final String FILE_A = "/a.xmi", FILE_B = "/b.xmi";
+	private static final String EOL = "org.hawk.epsilon.emc.EOLQueryEngine";
+
+	@ClassRule
+	public static TemporaryFolder modelFolder = new TemporaryFolder();
+
+	private static HawkThriftIface iface;
+	private static HModel model;
+	private static IVcsManager vcs;
+
+	private QueryResultCache cache;
+	private InstanceGeneration generation;
+
+	@BeforeClass
+	public static void createInstance() throws Exception {
+		writeTreeModel(new File(modelFolder.getRoot(), FILE_A), "a");
+		writeTreeModel(new File(modelFolder.getRoot(), FILE_B), "b");
+
+		iface = new HawkThriftIface(ThriftProtocol.TUPLE, null, null);
+		iface.createInstance(INSTANCE, "org.hawk.orientdb.OrientDatabase", 0, 0, Arrays.asList(
+			"org.hawk.emf.metamodel.EMFMetaModelResourceFactory",
+			"org.hawk.emf.model.EMFModelResourceFactory",
+			"org.hawk.graph.updater.GraphModelUpdater"), null);
+		model = HManager.getInstance().getHawkByName(INSTANCE);
+
+		iface.registerMetamodels(INSTANCE, Arrays.asList(
+			APIUtils.convertJavaFileToThriftFile(new File(TREE_METAMODEL))));
+		iface.addRepository(INSTANCE, new Repository(
+			modelFolder.getRoot().toPath().toUri().toString(), "org.hawk.localfolder.LocalFolder"), null);
+		iface.syncInstance(INSTANCE, true);
+		vcs = model.getIndexer().getRunningVCSManagers().iterator().next();
+	}
+
+	@AfterClass
+	public static void removeInstance() throws Exception {
+		iface.removeInstance(INSTANCE);
+	}
+
+	@Before
+	public void setUp() {
+		cache = new QueryResultCache(1_000_000, 300, Invalidation.FILE, 1_000);
+		generation = cache.new InstanceGeneration(INSTANCE);
+	}
+
+	@Test
+	public void dependenciesOnFiles() {
+		final Dependencies deps = new Dependencies(set(fileKey(FILE_A)), set(), false);
+
+		final Changes changes = new Changes();
+		changes.files.add(fileKey(FILE_B));
+		changes.contents = true;
+		changes.typeExtents.add("1");
+		assertFalse(deps.isAffectedBy(changes));
+
+		changes.files.add(fileKey(FILE_A));
+		assertTrue(deps.isAffectedBy(changes));
+	}
+
+	@Test
+	public void dependenciesOnTypeExtents() {
+		final Dependencies deps = new Dependencies(set(), set("1"), false);
+
+		final Changes changes = new Changes();
+		changes.files.add(fileKey(FILE_A));
+		changes.contents = true;
+		changes.typeExtents.add("2");
+		assertFalse(deps.isAffectedBy(changes));
+
+		changes.typeExtents.add("1");
+		assertTrue(deps.isAffectedBy(changes));
+
+		// Removed elements could have been in any extent
+		final Changes removals = new Changes();
+		removals.removals = true;
+		assertTrue(deps.isAffectedBy(removals));
+		assertFalse(new Dependencies(set(fileKey(FILE_A)), set(), false).isAffectedBy(removals));
+	}
+
+	@Test
+	public void dependenciesOnAllContents() {
+		final Dependencies deps = new Dependencies(set(), set(), true);
+
+		final Changes changes = new Changes();
+		changes.files.add(fileKey(FILE_A));
+		changes.typeExtents.add("1");
+		assertFalse(deps.isAffectedBy(changes));
+
+		changes.contents = true;
+		assertTrue(deps.isAffectedBy(changes));
+	}
+
+	@Test
+	public void attributeUpdateRecordsFileOfNode() throws Exception {
+		try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+			generation.modelElementAttributeUpdate(null, null, "label", "a", "a2", getRoot(FILE_A), false);
+		}
+
+		assertEquals(set(fileKey(FILE_A)), generation.changes.files);
+		assertTrue(generation.changes.typeExtents.isEmpty());
+		assertFalse(generation.changes.contents);
+		assertFalse(generation.changes.global);
+	}
+
+	@Test
+	public void indexedAttributeUpdateRecordsTypeExtents() throws Exception {
+		model.getIndexer().addIndexedAttribute("Tree", "Tree", "label");
+		try {
+			final String typeNodeId;
+			try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+				final IGraphNode root = getRoot(FILE_A);
+				typeNodeId = new ModelElementNode(root).getTypeNode().getNode().getId() + "";
+				generation.modelElementAttributeUpdate(null, null, "label", "a", "a2", root, false);
+			}
+
+			assertEquals(set(fileKey(FILE_A)), generation.changes.files);
+			assertTrue(generation.changes.typeExtents.contains(typeNodeId));
+			assertFalse(generation.changes.global);
+		} finally {
+			model.getIndexer().removeIndexedAttribute("Tree", "Tree", "label");
+		}
+	}
+
+	@Test
+	public void indexedSelectSeesNewMatchesInOtherFiles() throws Exception {
+		model.getIndexer().addIndexedAttribute("Tree", "Tree", "label");
+		try {
+			// The index lookup only reads the current matches: there are none yet
+			final String query = "return Tree.all.select(t|t.label = 'x').size();";
+			final HawkQueryOptions options = new HawkQueryOptions();
+			final Lookup miss = cache.lookup(model, EOL, query, options);
+			assertNull(miss.getCachedResult());
+			iface.runQuery(model, query, EOL, options, null, miss);
+			assertNotNull(cache.lookup(model, EOL, query, options).getCachedResult());
+
+			// A commit to another file changes a label to 'x'
+			final CompositeGraphChangeListener listener = model.getIndexer().getCompositeGraphChangeListener();
+			listener.synchroniseStart();
+			try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+				listener.modelElementAttributeUpdate(commitItem(FILE_B), null, "label", "b", "x", getRoot(FILE_B), false);
+			} finally {
+				listener.synchroniseEnd();
+			}
+
+			assertNull(cache.lookup(model, EOL, query, options).getCachedResult());
+		} finally {
+			model.getIndexer().removeIndexedAttribute("Tree", "Tree", "label");
+		}
+	}
+
+	@Test
+	public void referenceChangeRecordsBothFiles() throws Exception {
+		try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+			generation.referenceAddition(null, getRoot(FILE_A), getRoot(FILE_B), "children", false);
+		}
+
+		assertEquals(set(fileKey(FILE_A), fileKey(FILE_B)), generation.changes.files);
+		assertFalse(generation.changes.global);
+	}
+
+	@Test
+	public void additionRecordsTypeExtents() throws Exception {
+		final String typeNodeId;
+		try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+			final IGraphNode root = getRoot(FILE_A);
+			typeNodeId = new ModelElementNode(root).getTypeNode().getNode().getId() + "";
+			generation.modelElementAddition(null, null, root, false);
+		}
+
+		assertTrue(generation.changes.typeExtents.contains(typeNodeId));
+		assertEquals(set(fileKey(FILE_A)), generation.changes.files);
+		assertTrue(generation.changes.contents);
+		assertFalse(generation.changes.removals);
+		assertFalse(generation.changes.global);
+	}
+
+	@Test
+	public void removalRecordsFileOfCommitItem() {
+		// The node of a removed element is gone by the time listeners are told
+		generation.modelElementRemoval(commitItem(FILE_B), null, false);
+
+		assertEquals(set(fileKey(FILE_B)), generation.changes.files);
+		assertTrue(generation.changes.typeExtents.isEmpty());
+		assertTrue(generation.changes.contents);
+		assertTrue(generation.changes.removals);
+		assertFalse(generation.changes.global);
+	}
+
+	@Test
+	public void unknownFilesAreGlobal() {
+		generation.modelElementAttributeUpdate(null, null, "label", "a", "a2", null, false);
+		assertTrue(generation.changes.global);
+	}
+
+	@Test
+	public void metamodelChangesAreGlobal() {
+		generation.metamodelRemoval("Tree", null);
+		assertTrue(generation.changes.global);
+	}
+
+	@Test
+	public void changesAreClearedAfterInvalidation() {
+		generation.modelElementRemoval(commitItem(FILE_B), null, false);
+		generation.synchroniseStart();
+		generation.changeSuccess();
+		assertFalse(generation.changes.isEmpty());
+
+		generation.synchroniseEnd();
+		assertTrue(generation.changes.isEmpty());
+	}
+
+	private static IGraphNode getRoot(String path) {
+		final GraphWrapper gw = new GraphWrapper(model.getGraph());
+		return gw.getFileNodes(Collections.singleton("*"), Collections.singleton(path))
+			.iterator().next().getRootModelElements().iterator().next().getNode();
+	}
+
+	private static VcsCommitItem commitItem(String path) {
+		final VcsRepositoryDelta delta = new VcsRepositoryDelta();
+		delta.setManager(vcs);
+		final VcsCommit commit = new VcsCommit();
+		commit.setDelta(delta);
+		final VcsCommitItem item = new VcsCommitItem();
+		item.setCommit(commit);
+		item.setPath(path);
+		return item;
+	}
+
+	private static String fileKey(String path) {
+		return vcs.getLocation() + GraphModelUpdater.FILEINDEX_REPO_SEPARATOR + path;
+	}
+
+	private static Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
+	private static void writeTreeModel(File f, String label) throws IOException {
+		try (PrintWriter pw = new PrintWriter(f, "UTF-8")) {
+			pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			pw.println(String.format("<Tree:Tree xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:Tree=\"Tree\" label=\"%s\">", label));
+			pw.println(String.format("<children label=\"%s.0\"/>", label));
+			pw.println("</Tree:Tree>");
+		}
+	}
+
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.processors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.thrift.TSerializer;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.hawk.core.runtime.CompositeGraphChangeListener;
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.QueryResult;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.servlet.processors.QueryResultCache.Invalidation;
+import org.hawk.service.servlet.processors.QueryResultCache.Lookup;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests for the generations, the handling of stores racing with changes, and
+ * the size accounting of {@link QueryResultCache}. Changes to the index are
+ * simulated by notifying the graph change listeners of the instance.
+ */
+public class QueryResultCacheTest {
+
+	private static final String INSTANCE = "queryResultCacheTest";
+	private static final String LANGUAGE = "language";
+	private static final long MAX_BYTES = 1_000_000;
+
+	private static HawkThriftIface iface;
+	private static HModel model;
+	private static CompositeGraphChangeListener listener;
+
+	private QueryResultCache cache;
+
+	@BeforeClass
+	public static void createInstance() throws Exception {
+		iface = new HawkThriftIface(ThriftProtocol.TUPLE, null, null);
+		iface.createInstance(INSTANCE, "org.hawk.orientdb.OrientDatabase", 0, 0, Arrays.asList(
+			"org.hawk.emf.metamodel.EMFMetaModelResourceFactory",
+			"org.hawk.emf.model.EMFModelResourceFactory",
+			"org.hawk.graph.updater.GraphModelUpdater"), null);
+		model = HManager.getInstance().getHawkByName(INSTANCE);
+		listener = model.getIndexer().getCompositeGraphChangeListener();
+	}
+
+	@AfterClass
+	public static void removeInstance() throws Exception {
+		iface.removeInstance(INSTANCE);
+	}
+
+	@Before
+	public void setUp() {
+		cache = new QueryResultCache(MAX_BYTES, 300, Invalidation.INDEX, 1_000);
+	}
+
+	@Test
+	public void storedResultIsReturned() throws Exception {
+		final Lookup miss = lookup("q");
+		assertNull(miss.getCachedResult());
+
+		final QueryResult result = result("r");
+		miss.store(result, null, Collections.<String>emptyList());
+		assertEquals(result, lookup("q").getCachedResult());
+		assertNull(lookup("other").getCachedResult());
+
+		final HawkQueryOptions opts = new HawkQueryOptions();
+		opts.setDefaultNamespaces("other");
+		assertNull(cache.lookup(model, LANGUAGE, "q", opts).getCachedResult());
+	}
+
+	@Test
+	public void changesMoveToNewGeneration() throws Exception {
+		lookup("q").store(result("r"), null, Collections.<String>emptyList());
+
+		// Completing a change without modifying anything keeps the results
+		listener.changeSuccess();
+		assertEquals(result("r"), lookup("q").getCachedResult());
+
+		final Lookup beforeChange = lookup("q");
+		listener.metamodelRemoval("http://example.com/mm", null);
+		listener.changeSuccess();
+		assertNull(lookup("q").getCachedResult());
+		assertNull(beforeChange.getCachedResult());
+		assertEquals(0, cache.getCachedBytes());
+
+		// Results can be stored again in the new generation
+		lookup("q").store(result("r2"), null, Collections.<String>emptyList());
+		assertEquals(result("r2"), lookup("q").getCachedResult());
+	}
+
+	@Test
+	public void storeAfterChangeIsDropped() throws Exception {
+		final Lookup lookup = lookup("q");
+		assertNull(lookup.getCachedResult());
+
+		// The index changes while the query is running
+		listener.metamodelRemoval("http://example.com/mm", null);
+		listener.changeSuccess();
+
+		lookup.store(result("stale"), null, Collections.<String>emptyList());
+		assertNull(lookup("q").getCachedResult());
+		assertEquals(0, cache.getCachedBytes());
+	}
+
+	@Test
+	public void noResultsDuringSync() throws Exception {
+		lookup("q").store(result("r"), null, Collections.<String>emptyList());
+
+		listener.synchroniseStart();
+		try {
+			assertNull(lookup("q").getCachedResult());
+
+			// Results computed during a sync may see partial changes
+			lookup("duringSync").store(result("r"), null, Collections.<String>emptyList());
+		} finally {
+			listener.synchroniseEnd();
+		}
+
+		// The sync did not change anything, so the earlier result is still valid
+		assertEquals(result("r"), lookup("q").getCachedResult());
+		assertNull(lookup("duringSync").getCachedResult());
+		assertEquals(size(result("r")), cache.getCachedBytes());
+	}
+
+	@Test
+	public void syncWithChangesDropsResults() throws Exception {
+		final Lookup beforeSync = lookup("q");
+		listener.synchroniseStart();
+		listener.metamodelRemoval("http://example.com/mm", null);
+		listener.synchroniseEnd();
+
+		beforeSync.store(result("r"), null, Collections.<String>emptyList());
+		assertNull(lookup("q").getCachedResult());
+	}
+
+	@Test
+	public void bytesAreAccounted() throws Exception {
+		final QueryResult r = result("r");
+		lookup("q1").store(r, null, Collections.<String>emptyList());
+		lookup("q2").store(r, null, Collections.<String>emptyList());
+		assertEquals(2 * size(r), cache.getCachedBytes());
+
+		// Replacing a result does not count it twice
+		lookup("q1").store(r, null, Collections.<String>emptyList());
+		assertEquals(2 * size(r), cache.getCachedBytes());
+
+		listener.metamodelRemoval("http://example.com/mm", null);
+		listener.changeSuccess();
+		assertEquals(0, cache.getCachedBytes());
+	}
+
+	@Test
+	public void bytesAreBounded() throws Exception {
+		final int resultSize = size(result("r00"));
+		final long maxBytes = 10 * resultSize;
+		cache = new QueryResultCache(maxBytes, 300, Invalidation.INDEX, 1_000);
+
+		final int nResults = 40;
+		for (int i = 0; i < nResults; i++) {
+			lookup("q" + i).store(result(String.format("r%02d", i)), null, Collections.<String>emptyList());
+			assertTrue(cache.getCachedBytes() <= maxBytes);
+		}
+
+		int nCached = 0;
+		for (int i = 0; i < nResults; i++) {
+			if (lookup("q" + i).getCachedResult() != null) {
+				nCached++;
+			}
+		}
+		assertTrue(nCached < nResults);
+		assertEquals(nCached * resultSize, cache.getCachedBytes());
+
+		// Results larger than the whole cache are never stored
+		final StringBuilder sb = new StringBuilder();
+		while (sb.length() <= maxBytes) {
+			sb.append("large");
+		}
+		lookup("large").store(result(sb.toString()), null, Collections.<String>emptyList());
+		assertNull(lookup("large").getCachedResult());
+		assertEquals(nCached * resultSize, cache.getCachedBytes());
+	}
+
+	private Lookup lookup(String query) {
+		return cache.lookup(model, LANGUAGE, query, new HawkQueryOptions());
+	}
+
+	private static QueryResult result(String value) {
+		return QueryResult.vString(value);
+	}
+
+	private static int size(QueryResult result) throws Exception {
+		return new TSerializer(new TCompactProtocol.Factory()).serialize(result).length;
+	}
+
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Aston University.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0.
+ *
+ * This Source Code may also be made available under the following Secondary
+ * Licenses when the conditions for such availability set forth in the Eclipse
+ * Public License, v. 2.0 are satisfied: GNU General Public License, version 3.
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-3.0
+ *
+ * Contributors:
+ *     Antonio Garcia-Dominguez - initial API and implementation
+ ******************************************************************************/
+package org.hawk.service.servlet.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.protocol.TTupleProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+import org.hawk.core.graph.IGraphEdge;
+import org.hawk.core.graph.IGraphTransaction;
+import org.hawk.graph.GraphWrapper;
+import org.hawk.osgiserver.HManager;
+import org.hawk.osgiserver.HModel;
+import org.hawk.service.api.HawkQueryOptions;
+import org.hawk.service.api.ModelElement;
+import org.hawk.service.api.ReferenceSlot;
+import org.hawk.service.api.Repository;
+import org.hawk.service.api.utils.APIUtils;
+import org.hawk.service.api.utils.APIUtils.ThriftProtocol;
+import org.hawk.service.api.utils.ModelElementPageStream;
+import org.hawk.service.servlet.processors.HawkThriftIface;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Sends an indexed model through a {@link HawkModelElementPager} and reads it
+ * back with a {@link ModelElementPageStream}, checking that every reference
+ * can be resolved to the same elements as in the graph.
+ */
+public class HawkModelElementPagerTest {
+
+	private static final String INSTANCE = "modelElementPagerTest";
+	private static final String TREE_METAMODEL = "resources/Tree/Tree.ecore";
+
+	private static final int CHILDREN = 3;
+	private static final int DEPTH = 3;
+
+	/** Number of elements in a complete tree of {@link #CHILDREN} children and {@link #DEPTH} levels. */
+	private static final int ELEMENTS = 1 + 3 + 9 + 27;
+
+	@ClassRule
+	public static TemporaryFolder modelFolder = new TemporaryFolder();
+
+	private static HawkThriftIface iface;
+	private static HModel model;
+
+	@BeforeClass
+	public static void createInstance() throws Exception {
+		writeTreeModel(new File(modelFolder.getRoot(), "tree.xmi"));
+
+		iface = new HawkThriftIface(ThriftProtocol.TUPLE, null, null);
+		iface.createInstance(INSTANCE, "org.hawk.orientdb.OrientDatabase", 0, 0, Arrays.asList(
+			"org.hawk.emf.metamodel.EMFMetaModelResourceFactory",
+			"org.hawk.emf.model.EMFModelResourceFactory",
+			"org.hawk.graph.updater.GraphModelUpdater"), null);
+		model = HManager.getInstance().getHawkByName(INSTANCE);
+
+		iface.registerMetamodels(INSTANCE, Arrays.asList(
+			APIUtils.convertJavaFileToThriftFile(new File(TREE_METAMODEL))));
+		iface.addRepository(INSTANCE, new Repository(
+			modelFolder.getRoot().toPath().toUri().toString(), "org.hawk.localfolder.LocalFolder"), null);
+		iface.syncInstance(INSTANCE, true);
+	}
+
+	@AfterClass
+	public static void removeInstance() throws Exception {
+		iface.removeInstance(INSTANCE);
+	}
+
+	@Test
+	public void roundTripWithSmallWindow() throws Exception {
+		// Some references will be to elements which are out of the window
+		roundTrip(3, 10);
+	}
+
+	@Test
+	public void roundTripWithLargeWindow() throws Exception {
+		roundTrip(7, ModelElementPageStream.DEFAULT_POSITION_WINDOW);
+	}
+
+	@Test
+	public void revisitedElementsAreNotSent() throws Exception {
+		try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+			final GraphWrapper gw = new GraphWrapper(model.getGraph());
+			final HawkModelElementCollector collector = new HawkModelElementCollector(gw, new HawkQueryOptions());
+
+			final List<Integer> pageSizes = new ArrayList<>();
+			try (HawkModelElementPager pager = new HawkModelElementPager(new HawkModelElementEncoder(gw), 4,
+					ModelElementPageStream.DEFAULT_POSITION_WINDOW, (page) -> pageSizes.add(page.size()))) {
+				// Elements visited again (in the same page or in an earlier one) do not count
+				collector.visitAll((meNode) -> {
+					pager.visit(meNode);
+					pager.visit(meNode);
+				});
+				collector.visitAll(pager);
+				assertEquals(ELEMENTS, pager.getSentCount());
+			}
+
+			for (int i = 0; i < pageSizes.size() - 1; i++) {
+				assertEquals(4, (int) pageSizes.get(i));
+			}
+		}
+	}
+
+	private void roundTrip(final int pageSize, final int positionWindow) throws Exception {
+		try (IGraphTransaction tx = model.getGraph().beginTransaction()) {
+			final GraphWrapper gw = new GraphWrapper(model.getGraph());
+			final HawkModelElementCollector collector = new HawkModelElementCollector(gw, new HawkQueryOptions());
+
+			final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			final TProtocol out = new TTupleProtocol(new TIOStreamTransport(bos));
+			try (HawkModelElementPager pager = new HawkModelElementPager(new HawkModelElementEncoder(gw), pageSize,
+					positionWindow, (page) -> ModelElementPageStream.writePage(out, page))) {
+				collector.visitAll(pager);
+			}
+			ModelElementPageStream.writeEnd(out);
+
+			final Set<String> seen = new HashSet<>();
+			int nChildren = 0;
+			try (ModelElementPageStream in = new ModelElementPageStream(
+					new TTupleProtocol(new TIOStreamTransport(new ByteArrayInputStream(bos.toByteArray()))),
+					positionWindow)) {
+				for (List<ModelElement> page = in.nextPage(); page != null; page = in.nextPage()) {
+					assertTrue(page.size() <= pageSize);
+
+					final int firstPosition = in.getNextPosition() - page.size();
+					for (int i = 0; i < page.size(); i++) {
+						final ModelElement me = page.get(i);
+						assertSame(me, in.getElement(firstPosition + i));
+						assertTrue("Element " + me.getId() + " should only be sent once", seen.add(me.getId()));
+
+						if (me.isSetReferences()) {
+							for (ReferenceSlot slot : me.getReferences()) {
+								final List<String> targetIds = in.getReferencedIds(slot);
+								assertEquals(getTargetIds(gw, me.getId(), slot.getName()), new HashSet<>(targetIds));
+								if ("children".equals(slot.getName())) {
+									nChildren += targetIds.size();
+								}
+							}
+						}
+					}
+				}
+				assertTrue(in.isFinished());
+				assertNull(in.getElement(-1));
+			}
+
+			assertEquals(ELEMENTS, seen.size());
+			// Every element except the root is the child of another
+			assertEquals(ELEMENTS - 1, nChildren);
+		}
+	}
+
+	private static Set<String> getTargetIds(GraphWrapper gw, String sourceId, String edgeLabel) {
+		final Set<String> targets = new HashSet<>();
+		for (IGraphEdge e : gw.getModelElementNodeById(sourceId).getNode().getOutgoingWithType(edgeLabel)) {
+			targets.add(e.getEndNode().getId().toString());
+		}
+		return targets;
+	}
+
+	private static void writeTreeModel(File f) throws IOException {
+		try (PrintWriter pw = new PrintWriter(f, "UTF-8")) {
+			pw.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+			pw.println("<Tree:Tree xmi:version=\"2.0\" xmlns:xmi=\"http://www.omg.org/XMI\" xmlns:Tree=\"Tree\" label=\"0\">");
+			writeChildren(pw, "0", 1);
+			pw.println("</Tree:Tree>");
+		}
+	}
+
+	private static void writeChildren(PrintWriter pw, String parentLabel, int level) {
+		if (level > DEPTH) {
+			return;
+		}
+		for (int i = 0; i < CHILDREN; i++) {
+			final String label = parentLabel + "." + i;
+			pw.println(String.format("<children label=\"%s\">", label));
+			writeChildren(pw, label, level + 1);
+			pw.println("</children>");
+		}
+	}
+
+}
@@ -18,6 +18,7 @@ package org.hawk.svn.tests;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -30,7 +31,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hawk.core.ICredentialsStore;
 import org.hawk.core.ICredentialsStore.Credentials;
@@ -215,6 +218,37 @@ public class SvnManagerTest {
 		}
 	}
 
+	@Test
+	public void importFilesBulk() throws Exception {
+		File fileA = svn.write("a", "a.xmi").toFile();
+		File fileB = svn.write("b", "b.xmi").toFile();
+		svn.add(fileA);
+		svn.add(fileB);
+		svn.commit("initial commit");
+
+		File fTempDir = Files.createTempDirectory("import").toFile();
+		try {
+			final Map<String, File> pathToTemp = new HashMap<>();
+			pathToTemp.put("a.xmi", new File(fTempDir, "a.xmi"));
+			pathToTemp.put("b.xmi", new File(fTempDir, "b.xmi"));
+			pathToTemp.put("missing.xmi", new File(fTempDir, "missing.xmi"));
+
+			final Map<String, File> imported = vcs.importFiles(null, pathToTemp);
+			assertEquals(3, imported.size());
+			assertEquals(Collections.singletonList("a"), Files.readAllLines(imported.get("a.xmi").toPath()));
+			assertEquals(Collections.singletonList("b"), Files.readAllLines(imported.get("b.xmi").toPath()));
+			assertNull(imported.get("missing.xmi"));
+			assertFalse(new File(fTempDir, "missing.xmi").exists());
+
+			// Later batches reuse the pooled session
+			final Map<String, File> reimported = vcs.importFiles(null,
+				Collections.singletonMap("a.xmi", new File(fTempDir, "a2.xmi")));
+			assertEquals(Collections.singletonList("a"), Files.readAllLines(reimported.get("a.xmi").toPath()));
+		} finally {
+			fTempDir.delete();
+		}
+	}
+
 	protected void assertFilenameIsIgnored(final String filename) throws IOException, SVNException, Exception {
 		File testFile = svn.write("this should not be seen", filename).toFile();
 		svn.add(testFile);
@@ -23,20 +23,26 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.hawk.backend.tests.BackendTestSuite;
 import org.hawk.backend.tests.factories.IGraphDatabaseFactory;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
 import org.hawk.epsilon.emc.EOLQueryEngine;
 import org.hawk.epsilon.emc.wrappers.GraphNodeWrapper;
 import org.hawk.integration.tests.emf.EMFModelSupportFactory;
 import org.hawk.svn.tests.rules.TemporarySVNRepository;
+import org.hawk.timeaware.graph.TimeAwareIndexer;
+import org.hawk.timeaware.queries.TimelineEOLQueryEngine;
 import org.hawk.timeaware.tests.tree.Tree.Tree;
 import org.hawk.timeaware.tests.tree.Tree.TreeFactory;
 import org.junit.Rule;
@@ -179,6 +185,62 @@ public class NodeHistoryTest extends AbstractTimeAwareModelIndexingTest {
 		});
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void countInstancesTimelineParallel() throws Throwable {
+		twoCommitTree();
+		waitForSync(() -> {
+			assertTrue("Time-aware backends should support parallel reads", ((ITimeAwareGraphDatabase) db).supportsParallelReads());
+
+			final String query = "return Tree.all.size;";
+			final long parallelBefore = timelineQueryEngine.getParallelInstantCount();
+			final Object sequential = timelineQueryEngine.query(indexer, query,
+				Collections.singletonMap(TimelineEOLQueryEngine.PROPERTY_PARALLELISM, 1));
+			assertEquals(parallelBefore, timelineQueryEngine.getParallelInstantCount());
+
+			final List<List<Object>> parallel = (List<List<Object>>) timelineQueryEngine.query(indexer, query,
+				Collections.singletonMap(TimelineEOLQueryEngine.PROPERTY_PARALLELISM, 4));
+			assertEquals(sequential, parallel);
+			assertEquals("All instants should have been evaluated by the workers",
+				parallelBefore + parallel.size(), timelineQueryEngine.getParallelInstantCount());
+			assertEquals(Arrays.asList(0, 1, 0), parallel.stream().map(r -> r.get(1)).collect(Collectors.toList()));
+
+			// Results are streamed in order, and the consumer can stop the evaluation
+			final List<Long> instants = new ArrayList<>();
+			timelineQueryEngine.query(indexer, query, null, (instant, result) -> {
+				instants.add(instant);
+				return instants.size() < 2;
+			});
+			assertEquals(Arrays.asList(parallel.get(0).get(0), parallel.get(1).get(0)), instants);
+
+			return null;
+		});
+	}
+
+	@Test
+	public void countInstancesTimelineIncremental() throws Throwable {
+		twoCommitTree();
+		waitForSync(() -> {
+			for (String query : Arrays.asList("return Tree.all.size;", "return Tree.all.label;", "return 42;")) {
+				final List<?> full = (List<?>) timelineEOL(query);
+				final long evaluatedBefore = timelineQueryEngine.getEvaluatedInstantCount();
+				final long reusedBefore = timelineQueryEngine.getReusedInstantCount();
+				final Object incremental = timelineQueryEngine.query(indexer, query,
+					Collections.singletonMap(TimelineEOLQueryEngine.PROPERTY_INCREMENTAL, true));
+				assertEquals(full, incremental);
+
+				final long evaluated = timelineQueryEngine.getEvaluatedInstantCount() - evaluatedBefore;
+				final long reused = timelineQueryEngine.getReusedInstantCount() - reusedBefore;
+				assertEquals(full.size(), evaluated + reused);
+				if ("return 42;".equals(query)) {
+					// Nothing is read from the graph: only the first instant is evaluated
+					assertEquals(1, evaluated);
+				}
+			}
+			return null;
+		});
+	}
+
 	@Test
 	public void countInstancesModelAll() throws Throwable {
 		final File fTree = new File(svnRepository.getCheckoutDirectory(), "root.xmi");
@@ -224,6 +286,43 @@ public class NodeHistoryTest extends AbstractTimeAwareModelIndexingTest {
 		return tRoot;
 	}
 
+	@Test
+	public void noCommitLookahead() throws Throwable {
+		assertHistoryWithLookahead(0);
+	}
+
+	@Test
+	public void commitLookahead() throws Throwable {
+		assertHistoryWithLookahead(2);
+	}
+
+	/**
+	 * Preparing commits ahead of writing them should not change the indexed
+	 * history: both tests check the same timeline for the same commits.
+	 */
+	@SuppressWarnings("unchecked")
+	private void assertHistoryWithLookahead(int lookahead) throws Throwable {
+		((TimeAwareIndexer) indexer).setCommitLookahead(lookahead);
+		keepAddingChildren();
+
+		waitForSync(() -> {
+			final List<List<Object>> results = (List<List<Object>>) timelineEOL(
+				"return Tree.all.collect(t|t.label + ':' + t.children.size).sortBy(s|s);");
+			final List<?> states = results.stream()
+				.map(r -> new ArrayList<>((Collection<Object>) r.get(1)))
+				.collect(Collectors.toList());
+
+			assertEquals(Arrays.asList(
+				Collections.emptyList(),
+				Arrays.asList("Root:0"),
+				Arrays.asList("Root:1", "T1:0"),
+				Arrays.asList("Root:2", "T1:0", "T2:0"),
+				Arrays.asList("Root:3", "T1:0", "T2:0", "T3:0")
+			), states);
+			return null;
+		});
+	}
+
 	@Test
 	public void rangesAreBothInclusive() throws Throwable {
 		keepAddingChildren();
@@ -16,14 +16,24 @@
  ******************************************************************************/
 package org.hawk.timeaware.tests;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
 
 import org.hawk.backend.tests.BackendTestSuite;
 import org.hawk.backend.tests.LogbackOnlyErrorsRule;
@@ -35,7 +45,11 @@ import org.hawk.core.graph.IGraphIterable;
 import org.hawk.core.graph.IGraphNode;
 import org.hawk.core.graph.IGraphTransaction;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphDatabase.ITimeScope;
 import org.hawk.core.graph.timeaware.ITimeAwareGraphNode;
+import org.hawk.core.graph.timeaware.ITimeAwareGraphNodeIndex;
+import org.hawk.greycat.AbstractGreycatDatabase;
+import org.hawk.greycat.lucene.CompactionReport;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -72,6 +86,14 @@ public class TimeAwareBackendTest extends TemporaryDatabaseTest {
 		taDB = (ITimeAwareGraphDatabase)db;
 	}
 
+	/**
+	 * Skips the test unless the backend is based on Greycat, and returns it.
+	 */
+	private AbstractGreycatDatabase assumeGreycat() {
+		assumeTrue("Greycat-specific test", db instanceof AbstractGreycatDatabase);
+		return (AbstractGreycatDatabase) db;
+	}
+
 	@Test
 	public void indexQueryEndedNodes() throws Exception {
 		Object nodeId;
@@ -160,6 +182,121 @@ public class TimeAwareBackendTest extends TemporaryDatabaseTest {
 		}
 	}
 
+	@Test
+	public void batchedInstants() throws Exception {
+		final List<Object> ids = new ArrayList<>();
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			for (int i = 0; i < 3; i++) {
+				ids.add(db.createNode(Collections.singletonMap("x", 0), "test").getId());
+			}
+			tx.success();
+		}
+
+		// Node i gets i additional versions
+		for (long time = 1; time < 3; time++) {
+			try (ITimeScope scope = taDB.atTime(time); IGraphTransaction tx = db.beginTransaction()) {
+				for (int i = (int) time; i < ids.size(); i++) {
+					taDB.getNodeById(ids.get(i)).setProperty("x", time);
+				}
+				tx.success();
+			}
+		}
+
+		try (ITimeScope scope = taDB.atTime(2); IGraphTransaction tx = db.beginTransaction()) {
+			final List<ITimeAwareGraphNode> nodes = new ArrayList<>();
+			for (Object id : ids) {
+				nodes.add(taDB.getNodeById(id));
+			}
+
+			final long[][] allInstants = taDB.getAllInstants(nodes);
+			final long[][] laterInstants = taDB.getInstantsBetween(nodes, 1, 2);
+			for (int i = 0; i < nodes.size(); i++) {
+				final ITimeAwareGraphNode node = nodes.get(i);
+				assertArrayEquals(node.getAllInstantsArray(), allInstants[i]);
+				assertArrayEquals(node.getInstantsBetweenArray(1, 2), laterInstants[i]);
+				assertEquals(i + 1, allInstants[i].length);
+				assertEquals(i, laterInstants[i].length);
+
+				// Versions are produced from newest to oldest
+				final Iterator<ITimeAwareGraphNode> itVersions = node.getVersionIterator();
+				for (long instant : allInstants[i]) {
+					assertEquals(instant, itVersions.next().getTime());
+				}
+				assertFalse(itVersions.hasNext());
+			}
+			tx.success();
+		}
+	}
+
+	@Test
+	public void indexCompaction() throws Exception {
+		final AbstractGreycatDatabase gdb = assumeGreycat();
+		final ITimeAwareGraphNodeIndex idx = taDB.getOrCreateNodeIndex("compaction");
+		Object nodeId;
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			IGraphNode n = db.createNode(Collections.singletonMap("x", 0), "test");
+			nodeId = n.getId();
+			idx.add(n, "k", "foo");
+			tx.success();
+		}
+
+		// Adding the same value at 2 and then at 1 leaves [1, 1] and [2, ...) with the same values
+		for (long time : new long[] { 2, 1 }) {
+			try (ITimeScope scope = taDB.atTime(time); IGraphTransaction tx = db.beginTransaction()) {
+				final IGraphNode n = taDB.getNodeById(nodeId);
+				n.setProperty("x", time);
+				idx.add(n, "j", 1);
+				tx.success();
+			}
+		}
+
+		List<Long> versionsBefore;
+		try (ITimeScope scope = taDB.atTime(2); IGraphTransaction tx = db.beginTransaction()) {
+			versionsBefore = idx.getVersions(taDB.getNodeById(nodeId), "j", 1);
+			tx.success();
+		}
+		assertEquals(Arrays.asList(2L, 1L), versionsBefore);
+
+		final CompactionReport report = gdb.compactLuceneIndex();
+		assertEquals(1, report.getMergedVersions());
+		assertEquals(report.getDocumentsBefore() - 1, report.getDocumentsAfter());
+
+		try (ITimeScope scope = taDB.atTime(2); IGraphTransaction tx = db.beginTransaction()) {
+			final ITimeAwareGraphNode n = taDB.getNodeById(nodeId);
+			assertEquals(versionsBefore, idx.getVersions(n, "j", 1));
+			assertEquals(Long.valueOf(2), idx.getEarliestVersionSince(n, "j", 1));
+			assertEquals(Long.valueOf(1), idx.getEarliestVersionSince(n.travelInTime(0), "j", 1));
+			assertEquals(1, idx.get("j", 1).size());
+			tx.success();
+		}
+	}
+
+	@Test
+	public void compactionWaitsForQueries() throws Exception {
+		assumeGreycat();
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Object> compaction;
+			final Lock readLock = taDB.getHistoryLock().readLock();
+			readLock.lock();
+			try {
+				// Compaction rewrites the index documents: it cannot start while a query reads them
+				compaction = executor.submit(() -> {
+					taDB.compactHistory();
+					return null;
+				});
+				Thread.sleep(500);
+				assertFalse(compaction.isDone());
+			} finally {
+				readLock.unlock();
+			}
+			compaction.get();
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void nodeEndWithLightEdge() throws Exception {
 		nodeEndWithEdges(Collections.emptyMap());
@@ -248,6 +385,234 @@ public class TimeAwareBackendTest extends TemporaryDatabaseTest {
 			tx.success();
 		}
 	}
+
+	@Test
+	public void timeIsPerThread() throws Exception {
+		Object nodeId;
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			nodeId = db.createNode(Collections.singletonMap("x", 1), "test").getId();
+			tx.success();
+		}
+
+		try (ITimeScope scope = taDB.atTime(5L)) {
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				db.getNodeById(nodeId).setProperty("x", 2);
+				tx.success();
+			}
+
+			// Other threads start at the origin and do not see our changes to the time
+			final ExecutorService executor = Executors.newSingleThreadExecutor();
+			try {
+				final Future<Object> otherX = executor.submit(() -> {
+					assertEquals(0L, taDB.getTime());
+					try (IGraphTransaction tx = db.beginTransaction()) {
+						final Object x = db.getNodeById(nodeId).getProperty("x");
+						tx.success();
+						return x;
+					}
+				});
+				assertEquals(1, otherX.get());
+			} finally {
+				executor.shutdown();
+			}
+
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				assertEquals(2, db.getNodeById(nodeId).getProperty("x"));
+				tx.success();
+			}
+		}
+
+		// Closing the scope restores the previous time
+		assertEquals(0L, taDB.getTime());
+	}
+
+	@Test
+	public void queryWaitsForCommitBeingWritten() throws Exception {
+		final Object nodeId;
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			nodeId = db.createNode(Collections.singletonMap("x", 1), "test").getId();
+			tx.success();
+		}
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final Future<Object> query;
+			final Lock writeLock = taDB.getHistoryLock().writeLock();
+			writeLock.lock();
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				db.getNodeById(nodeId).setProperty("x", 2);
+
+				// The query cannot start (or save our changes) until the commit is written
+				query = executor.submit(() -> queryProperty(nodeId, "x", false));
+				Thread.sleep(500);
+				assertFalse(query.isDone());
+
+				db.getNodeById(nodeId).setProperty("x", 3);
+				tx.success();
+			} finally {
+				writeLock.unlock();
+			}
+
+			assertEquals(3, query.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void failedQueryDoesNotRollBackOtherThreads() throws Exception {
+		assumeGreycat();
+		final Object nodeId;
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			nodeId = db.createNode(Collections.singletonMap("x", 1), "test").getId();
+			tx.success();
+		}
+
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				db.getNodeById(nodeId).setProperty("x", 2);
+				// Greycat does not isolate transactions: the rollback must not drop our changes
+				executor.submit(() -> queryProperty(nodeId, "x", true)).get();
+				tx.success();
+			}
+			assertEquals(2, executor.submit(() -> queryProperty(nodeId, "x", false)).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void indexSearchesSeeUncommittedWritesUntilRollback() throws Exception {
+		assumeGreycat();
+		final ITimeAwareGraphNodeIndex idx = taDB.getOrCreateNodeIndex("nrt");
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			try (IGraphTransaction tx = db.beginTransaction()) {
+				final IGraphNode n = db.createNode(Collections.emptyMap(), "test");
+				idx.add(n, "x", 1);
+
+				// The writing thread sees its own changes right away
+				assertEquals(1, idx.get("x", 1).size());
+
+				// Other threads see them after the next near-real-time refresh, before any commit
+				final long deadline = System.currentTimeMillis() + 10_000;
+				int otherHits;
+				do {
+					Thread.sleep(100);
+					otherHits = executor.submit(() -> idx.get("x", 1).size()).get();
+				} while (otherHits == 0 && System.currentTimeMillis() < deadline);
+				assertEquals(1, otherHits);
+
+				tx.failure();
+			}
+
+			// The rollback undoes the uncommitted changes for everyone
+			assertEquals(0, idx.get("x", 1).size());
+			assertEquals(0, (int) executor.submit(() -> idx.get("x", 1).size()).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void nodeCacheWeightIsBounded() throws Exception {
+		final AbstractGreycatDatabase gdb = assumeGreycat();
+		final String text = String.join("", Collections.nCopies(100, "x"));
+		final List<Object> ids = new ArrayList<>();
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			for (int i = 0; i < 200; i++) {
+				ids.add(db.createNode(Collections.singletonMap("text", text), "test").getId());
+			}
+			tx.success();
+		}
+
+		// Each node takes up a few hundred bytes: they cannot all fit in the cache
+		final long maxWeight = 10_000;
+		gdb.setNodeCacheMaxWeight(maxWeight);
+		gdb.reconnect();
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			for (Object id : ids) {
+				assertEquals(text, db.getNodeById(id).getProperty("text"));
+				assertTrue(gdb.getNodeCacheWeight() <= maxWeight);
+			}
+			tx.success();
+		}
+		assertTrue(gdb.getNodeCacheStats().evictionCount() > 0);
+	}
+
+	@Test
+	public void batchModeSavesAfterDirtyNodes() throws Exception {
+		final AbstractGreycatDatabase gdb = assumeGreycat();
+		gdb.setSaveDirtyBytes(Long.MAX_VALUE);
+		gdb.setSaveDirtyNodes(10);
+
+		gdb.enterBatchMode();
+		try {
+			for (int i = 0; i < 100; i++) {
+				db.createNode(Collections.singletonMap("x", i), "test");
+				assertTrue(gdb.getDirtyNodeCount() <= 11);
+			}
+		} finally {
+			gdb.exitBatchMode();
+		}
+
+		assertEquals(0, gdb.getDirtyNodeCount());
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			assertEquals(100, db.allNodes("test").size());
+			tx.success();
+		}
+	}
+
+	@Test
+	public void batchModeSavesAfterDirtyBytes() throws Exception {
+		final AbstractGreycatDatabase gdb = assumeGreycat();
+		final long saveDirtyBytes = 2_000;
+		gdb.setSaveDirtyBytes(saveDirtyBytes);
+		gdb.setSaveDirtyNodes(Long.MAX_VALUE);
+
+		// Each node is estimated at a few hundred bytes, so a save should happen every few nodes
+		final String text = String.join("", Collections.nCopies(200, "x"));
+		int maxDirtyNodes = 0;
+		gdb.enterBatchMode();
+		try {
+			for (int i = 0; i < 100; i++) {
+				db.createNode(Collections.singletonMap("text", text), "test");
+				assertTrue(gdb.getDirtyBytes() <= saveDirtyBytes);
+				maxDirtyNodes = Math.max(maxDirtyNodes, gdb.getDirtyNodeCount());
+			}
+		} finally {
+			gdb.exitBatchMode();
+		}
+		assertTrue(maxDirtyNodes > 0 && maxDirtyNodes < 10);
+
+		assertEquals(0, gdb.getDirtyBytes());
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			assertEquals(100, db.allNodes("test").size());
+			tx.success();
+		}
+	}
+
+	/**
+	 * Reads a property while holding the read lock of the history, as queries
+	 * do, and then either commits or rolls back the transaction.
+	 */
+	private Object queryProperty(Object nodeId, String key, boolean fail) throws Exception {
+		final Lock readLock = taDB.getHistoryLock().readLock();
+		readLock.lock();
+		try (IGraphTransaction tx = db.beginTransaction()) {
+			final Object value = db.getNodeById(nodeId).getProperty(key);
+			if (fail) {
+				tx.failure();
+			} else {
+				tx.success();
+			}
+			return value;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
 	
 	/* TODO add test cases for derived/indexed properties in combination with time-awareness */
 }